@@ -70,9 +70,11 @@ import com.qut.middleware.saml2.schemas.assertion.SubjectConfirmation;
 import com.qut.middleware.saml2.schemas.assertion.SubjectConfirmationDataType;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.assertion.LXACMLAuthzDecisionStatement;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.Request;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.context.Result;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.grouptarget.GroupTarget;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.protocol.LXACMLAuthzDecisionQuery;
+import com.qut.middleware.saml2.schemas.protocol.Extensions;
 import com.qut.middleware.saml2.schemas.protocol.Response;
 import com.qut.middleware.saml2.schemas.protocol.Status;
 import com.qut.middleware.saml2.schemas.protocol.StatusCode;
@@ -106,12 +108,19 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 	private MetadataProcessor metadata;
 	private SAMLValidator samlValidator;
 	private Unmarshaller<LXACMLAuthzDecisionQuery> unmarshaller;
+	private Unmarshaller<Request> requestUnmarshaller;
 	private Marshaller<Response> marshaller;
 	private int allowedTimeSkew;
+	private int maxBatchSize;
+
+	/** The number of additional requests accepted in a batch query when no maximum is configured */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 100;
 
 	private String[] schemas = new String[] { SchemaConstants.samlProtocol, SchemaConstants.lxacmlSAMLProtocol, SchemaConstants.lxacmlGroupTarget, SchemaConstants.lxacmlSAMLAssertion, SchemaConstants.samlAssertion };
 
 	private final String UNMAR_PKGNAMES = LXACMLAuthzDecisionQuery.class.getPackage().getName();
+	private final String UNMAR_PKGNAMES2 = Request.class.getPackage().getName();
+	private final String BATCH_REQUEST_ELEMENT = "Request"; //$NON-NLS-1$
 	private final String MAR_PKGNAMES = LXACMLAuthzDecisionQuery.class.getPackage().getName() + ":" + //$NON-NLS-1$
 	GroupTarget.class.getPackage().getName() + ":" + //$NON-NLS-1$
 	StatementAbstractType.class.getPackage().getName() + ":" + //$NON-NLS-1$
@@ -146,6 +155,19 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 	 * @throws Exception
 	 */
 	public AuthorizationProcessorImpl(DecisionPoint pdp, SessionsProcessor sessionProcessor, MetadataProcessor metadata, SAMLValidator samlValidator, IdentifierGenerator identifierGenerator, KeystoreResolver keyStoreResolver,  int allowedTimeSkew, String esoeIdentifier) throws UnmarshallerException, MarshallerException
+	{
+		this(pdp, sessionProcessor, metadata, samlValidator, identifierGenerator, keyStoreResolver, allowedTimeSkew, esoeIdentifier, DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	/**
+	 * As above, limiting the number of additional requests that a batch query may carry.
+	 * 
+	 * @param maxBatchSize
+	 *            The maximum number of additional requests in the extensions of a single query. Queries carrying more
+	 *            are refused with a requester status. Zero refuses all batch queries.
+	 * @throws Exception
+	 */
+	public AuthorizationProcessorImpl(DecisionPoint pdp, SessionsProcessor sessionProcessor, MetadataProcessor metadata, SAMLValidator samlValidator, IdentifierGenerator identifierGenerator, KeystoreResolver keyStoreResolver,  int allowedTimeSkew, String esoeIdentifier, int maxBatchSize) throws UnmarshallerException, MarshallerException
 	{
 		if (pdp == null)
 			throw new IllegalArgumentException("DecisionPoint can NOT be null."); //$NON-NLS-1$
@@ -168,6 +190,9 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 		if (esoeIdentifier == null)
 			throw new IllegalArgumentException("ESOE identifier cannot be null");
 
+		if (maxBatchSize < 0)
+			throw new IllegalArgumentException(Messages.getString("AuthorizationProcessorImpl.160")); //$NON-NLS-1$
+
 		if (allowedTimeSkew > Integer.MAX_VALUE / 1000)
 		{
 			this.allowedTimeSkew = allowedTimeSkew;
@@ -180,8 +205,10 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 		this.metadata = metadata;
 		this.allowedTimeSkew = allowedTimeSkew;
 		this.esoeIdentifier = esoeIdentifier;
+		this.maxBatchSize = maxBatchSize;
 
 		this.unmarshaller = new UnmarshallerImpl<LXACMLAuthzDecisionQuery>(this.UNMAR_PKGNAMES, this.schemas, this.metadata);
+		this.requestUnmarshaller = new UnmarshallerImpl<Request>(this.UNMAR_PKGNAMES2, new String[] { SchemaConstants.lxacmlContext });
 		this.marshaller = new MarshallerImpl<Response>(this.MAR_PKGNAMES, this.schemas, keyStoreResolver);
 
 		this.logger.info(Messages.getString("AuthorizationProcessorImpl.64") + pdp.getDefaultMode()); //$NON-NLS-1$
@@ -221,6 +248,18 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 			authData.setIssuerID(requestEval.getEntityID(authzRequest));
 			authData.setSubjectID(requestEval.getSubjectID(authzRequest));
 
+			// refuse oversized batch queries before any of their requests are evaluated
+			List<Element> batchElements = this.getBatchElements(authzRequest);
+			if (batchElements.size() > this.maxBatchSize)
+			{
+				this.logger.warn(MessageFormat.format(Messages.getString("AuthorizationProcessorImpl.161"), Integer.toString(batchElements.size()), Integer.toString(this.maxBatchSize))); //$NON-NLS-1$
+				authResult = this.createResult(null, null, Messages.getString("AuthorizationProcessorImpl.162")); //$NON-NLS-1$
+				authzResponse = ProtocolTools.generateAuthzDecisionStatement(authzRequest.getRequest(), authResult);
+				response = this.buildResponse(StatusCodeConstants.requester, authzResponse, authData, null, null);
+
+				throw new InvalidRequestException(Messages.getString("AuthorizationProcessorImpl.162")); //$NON-NLS-1$
+			}
+
 			principal = this.sessionProcessor.getQuery().querySAMLSession(authData.getSubjectID());
 			
 			// Principal not found in cache, return authn error 
@@ -239,8 +278,10 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 
 			this.authzLogger.info(MessageFormat.format(Messages.getString("AuthorizationProcessorImpl.80"), authData.getIssuerID(), requestedResource, specifiedAction, principal.getPrincipalAuthnIdentifier())); //$NON-NLS-1$ 
 
+			Map<String, List<String>> principalAttributes = this.convertIdentityToStrings(principal.getAttributes());
+
 			DecisionData decisionData = new DecisionData();
-			DecisionType decision = this.pdp.makeAuthzDecision(requestedResource, authData.getIssuerID(),  this.convertIdentityToStrings(principal.getAttributes()), specifiedAction, decisionData );
+			DecisionType decision = this.pdp.makeAuthzDecision(requestedResource, authData.getIssuerID(), principalAttributes, specifiedAction, decisionData );
 			
 			authResult = this.createGenericResult(decision, decisionData, decisionData.getDecisionMessage());
 		
@@ -249,8 +290,19 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 			// call external helper to generate the LXACMLAuthzDecisionStatement
 			authzResponse = ProtocolTools.generateAuthzDecisionStatement(authzRequest.getRequest(), authResult);
 
-			// build success response with embedded authz return statement
-			response = this.buildResponse(StatusCodeConstants.success, authzResponse, authData, restrictedAudience, inResponseTo);
+			List<LXACMLAuthzDecisionStatement> authzResponses = new Vector<LXACMLAuthzDecisionStatement>();
+			authzResponses.add(authzResponse);
+
+			// a batch query carries further requests for the same principal, answered in the same signed response
+			for (Request batchRequest : this.getBatchRequests(batchElements))
+			{
+				LXACMLAuthzDecisionStatement batchResponse = this.evaluateBatchRequest(batchRequest, authData, principal, principalAttributes, requestEval);
+				if (batchResponse != null)
+					authzResponses.add(batchResponse);
+			}
+
+			// build success response with embedded authz return statements
+			response = this.buildResponse(StatusCodeConstants.success, authzResponses, authData, restrictedAudience, inResponseTo);
 		}
 		catch (InvalidSAMLRequestException e)
 		{
@@ -321,6 +373,90 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 		return result.Successful;
 	}
 
+
+	/*
+	 * Retrieve the elements of the additional requests of a batch query. These are carried as lxacml context Request
+	 * elements in the extensions of the query, so are covered by its signature.
+	 */
+	private List<Element> getBatchElements(LXACMLAuthzDecisionQuery authzRequest)
+	{
+		List<Element> elements = new Vector<Element>();
+		Extensions extensions = authzRequest.getExtensions();
+
+		if (extensions == null || extensions.getAnies() == null)
+			return elements;
+
+		for (Element element : extensions.getAnies())
+		{
+			if (this.BATCH_REQUEST_ELEMENT.equals(element.getLocalName()))
+				elements.add(element);
+		}
+
+		return elements;
+	}
+
+	/*
+	 * Unmarshall the additional requests of a batch query, skipping any that are invalid.
+	 */
+	private List<Request> getBatchRequests(List<Element> batchElements)
+	{
+		List<Request> requests = new Vector<Request>();
+
+		for (Element element : batchElements)
+		{
+			try
+			{
+				requests.add(this.requestUnmarshaller.unMarshallUnSigned(element));
+			}
+			catch (UnmarshallerException e)
+			{
+				this.logger.warn(Messages.getString("AuthorizationProcessorImpl.163") + e.getMessage()); //$NON-NLS-1$
+			}
+		}
+
+		this.logger.debug(Messages.getString("AuthorizationProcessorImpl.164"), Integer.toString(requests.size())); //$NON-NLS-1$
+
+		return requests;
+	}
+
+	/*
+	 * Evaluate an additional request of a batch query against the principal of the query. Returns null if the request
+	 * is invalid or names another principal, in which case the SPEP receives no statement for it.
+	 */
+	private LXACMLAuthzDecisionStatement evaluateBatchRequest(Request batchRequest, AuthorizationProcessorData authData, Principal principal, Map<String, List<String>> principalAttributes, RequestEvaluator requestEval)
+	{
+		String requestedResource;
+		String specifiedAction;
+
+		try
+		{
+			if (!authData.getSubjectID().equals(requestEval.getRequestSubjectID(batchRequest)))
+			{
+				this.logger.warn(Messages.getString("AuthorizationProcessorImpl.165")); //$NON-NLS-1$
+				return null;
+			}
+
+			requestedResource = requestEval.getRequestResource(batchRequest);
+			specifiedAction = requestEval.getRequestAction(batchRequest);
+		}
+		catch (InvalidRequestException e)
+		{
+			this.logger.warn(Messages.getString("AuthorizationProcessorImpl.166") + e.getMessage()); //$NON-NLS-1$
+			return null;
+		}
+
+		this.authzLogger.info(MessageFormat.format(Messages.getString("AuthorizationProcessorImpl.80"), authData.getIssuerID(), requestedResource, specifiedAction, principal.getPrincipalAuthnIdentifier())); //$NON-NLS-1$
+
+		DecisionData decisionData = new DecisionData();
+		DecisionType decision = this.pdp.makeAuthzDecision(requestedResource, authData.getIssuerID(), principalAttributes, specifiedAction, decisionData);
+
+		Result authResult = this.createGenericResult(decision, decisionData, decisionData.getDecisionMessage());
+
+		this.authzLogger.info(MessageFormat.format(Messages.getString("AuthorizationProcessorImpl.84"), authData.getIssuerID(), requestedResource, specifiedAction, principal.getPrincipalAuthnIdentifier(), authResult.getDecision())); //$NON-NLS-1$
+
+		// the request is returned with the statement so the SPEP can tell which resource it answers
+		return ProtocolTools.generateAuthzDecisionStatement(batchRequest, authResult);
+	}
 	
 	private Map<String, List<String>> convertIdentityToStrings(Map<String, IdentityAttribute> principalIdentity)
 	{
@@ -393,7 +529,7 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 				{
 					if(localData.getCurrentPolicy() == null)
 					{
-						result = eval.createDenyResult(localData.getDecisionMessage(), null);
+						result = eval.createDenyResult(localData.getDecisionMessage(), localData);
 					}
 					else
 					{
@@ -450,6 +586,17 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 	 * this value, set to null.
 	 */
 	private Response buildResponse(String samlStatusCode, LXACMLAuthzDecisionStatement authzResponse, AuthorizationProcessorData authData, String audienceRestriction, String inResponseTo)
+	{
+		List<LXACMLAuthzDecisionStatement> authzResponses = new Vector<LXACMLAuthzDecisionStatement>();
+		authzResponses.add(authzResponse);
+
+		return this.buildResponse(samlStatusCode, authzResponses, authData, audienceRestriction, inResponseTo);
+	}
+
+	/*
+	 * Build a saml <code>Response</code> as above, embedding each of the given statements in the generated assertion.
+	 */
+	private Response buildResponse(String samlStatusCode, List<LXACMLAuthzDecisionStatement> authzResponses, AuthorizationProcessorData authData, String audienceRestriction, String inResponseTo)
 	{
 		Response response = new Response();
 		response.setVersion(VersionConstants.saml20);
@@ -510,8 +657,8 @@ public class AuthorizationProcessorImpl implements AuthorizationProcessor
 		assertion.setIssuer(issuer);
 		response.setIssuer(issuer);
 
-		// add our authz decision statement
-		assertion.getAuthnStatementsAndAuthzDecisionStatementsAndAttributeStatements().add(authzResponse);
+		// add our authz decision statements
+		assertion.getAuthnStatementsAndAuthzDecisionStatementsAndAttributeStatements().addAll(authzResponses);
 
 		response.getEncryptedAssertionsAndAssertions().add(assertion);
 
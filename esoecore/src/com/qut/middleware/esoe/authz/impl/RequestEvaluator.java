@@ -46,12 +46,26 @@ public class RequestEvaluator
 	 * @throws InvalidRequestException
 	 */
 	public String getResource(LXACMLAuthzDecisionQuery authzRequest) throws InvalidRequestException
+	{
+		if (authzRequest == null)
+			throw new InvalidRequestException(Messages.getString("RequestEvaluator.0")); //$NON-NLS-1$
+
+		return this.getRequestResource(authzRequest.getRequest());
+	}
+	
+	/** Get the requested resource from the given Request, which may be the request of an LXACMLAuthzDecisionQuery or
+	 * one of the additional requests of a batch query.
+	 * 
+	 * @param request The request to extract the resource string from.
+	 * @return The resource that was located
+	 * @throws InvalidRequestException
+	 */
+	public String getRequestResource(Request request) throws InvalidRequestException
 	{
 		String value = new String();
 		
 		try
 		{
-			Request request = authzRequest.getRequest();
 			List<Object> content = request.getResource().getAttribute().getAttributeValue().getContent();
 		
 			Iterator<Object> iter = content.iterator();
@@ -75,12 +89,25 @@ public class RequestEvaluator
 	 * @throws InvalidRequestException
 	 */
 	public String getAction(LXACMLAuthzDecisionQuery authzRequest) throws InvalidRequestException
+	{
+		if (authzRequest == null)
+			throw new InvalidRequestException(Messages.getString("RequestEvaluator.0")); //$NON-NLS-1$
+
+		return this.getRequestAction(authzRequest.getRequest());
+	}
+	
+	/** Get specified action from the given Request.
+	 * 
+	 * @param request The request to extract the action string from.
+	 * @return The action that was located, null if non specified (default from SPEPS)
+	 * @throws InvalidRequestException
+	 */
+	public String getRequestAction(Request request) throws InvalidRequestException
 	{
 		String value = new String();
 		
 		try
 		{
-			Request request = authzRequest.getRequest();
 			if(request.getAction() != null)
 			{
 				List<Object> content = request.getAction().getAttribute().getAttributeValue().getContent();
@@ -112,12 +139,26 @@ public class RequestEvaluator
 	 * @throws InvalidRequestException
 	 */
 	public String getSubjectID(LXACMLAuthzDecisionQuery authzRequest) throws InvalidRequestException
+	{
+		if (authzRequest == null)
+			throw new InvalidRequestException(Messages.getString("RequestEvaluator.1")); //$NON-NLS-1$
+
+		return this.getRequestSubjectID(authzRequest.getRequest());
+	}
+	
+	/** Get the subjectID from the given Request.
+	 * 
+	 * @param request The request to extract the subject ID from.
+	 * @return The subject ID
+	 * @throws InvalidRequestException
+	 */
+	public String getRequestSubjectID(Request request) throws InvalidRequestException
 	{
 		String value = new String();
 	
 		try
 		{
-			Subject subject = authzRequest.getRequest().getSubject();
+			Subject subject = request.getSubject();
 			AttributeValue attribute = subject.getAttribute().getAttributeValue();
 			Iterator<Object> values = attribute.getContent().iterator();
 			
@@ -21,7 +21,6 @@ package com.qut.middleware.esoe.sessions.cache.impl;
 
 import java.text.MessageFormat;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -30,8 +29,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantLock;
 
-import javax.xml.datatype.XMLGregorianCalendar;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -245,8 +242,7 @@ public class SessionCacheImpl implements SessionCache
 				Set<Entry<String, Principal>> entryList = this.sessionMap.entrySet();
 				Iterator<Entry<String, Principal>> entryIterator = entryList.iterator();
 				
-				XMLGregorianCalendar thisXmlCal = CalendarUtils.generateXMLCalendar();
-				GregorianCalendar thisCal = thisXmlCal.toGregorianCalendar();
+				long thisTime = CalendarUtils.currentTimeMillis();
 				
 				int numIterations = 0;
 				while (entryIterator.hasNext())
@@ -274,9 +270,9 @@ public class SessionCacheImpl implements SessionCache
 						this.logger.trace(MessageFormat.format("Processing session {0} with principal ID {1}", entry.getKey(), principalSessionID) );
 						
 						// Remove any sessions that have been idle too long
-						this.logger.trace(MessageFormat.format("Comparing Session notOnOrAfter time of {0} against current time of {1}.",  new Date(notOnOrAfter), thisCal.getTime()) ); //$NON-NLS-1$
+						this.logger.trace(MessageFormat.format("Comparing Session notOnOrAfter time of {0} against current time of {1}.",  new Date(notOnOrAfter), new Date(thisTime)) ); //$NON-NLS-1$
 					
-						if (thisCal.getTimeInMillis() > notOnOrAfter)
+						if (thisTime > notOnOrAfter)
 						{			
 							this.logger.debug(MessageFormat.format("Session ID {0} has passed the maximum valid time. ", entry.getKey()) ); //$NON-NLS-1$
 							
@@ -326,7 +322,7 @@ public class SessionCacheImpl implements SessionCache
 				this.logger.debug(MessageFormat.format("Cleanup process did {0} iterations over cache Map.", numIterations) );
 				
 				
-				long duration = System.currentTimeMillis() - thisCal.getTimeInMillis();
+				long duration = System.currentTimeMillis() - thisTime;
 		
 				this.logger.info(MessageFormat.format("Completed cache cleanup in {0} milliseconds. {1} Idle, {2} Expired sessions removed. {3} sessions logged out. Current Map size is {4}.", duration ,  idleRemoved, expiredRemoved, logouts,  this.sessionMap.size()) );
 			
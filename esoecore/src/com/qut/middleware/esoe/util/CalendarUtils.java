@@ -10,8 +10,76 @@ import javax.xml.datatype.XMLGregorianCalendar;
 
 import com.qut.middleware.esoe.ConfigurationConstants;
 
+/** Generates calendars for SAML documents, and provides the current time for comparisons. The current time is read
+ * from a replaceable clock, and a single DatatypeFactory is created on first use and shared by all threads rather
+ * than looked up on every call.
+ * Code which only compares times should use currentTimeMillis() rather than generating a calendar.
+ */
 public class CalendarUtils 
 {
+	private static final Clock SYSTEM_CLOCK = new Clock()
+	{
+		public long currentTimeMillis()
+		{
+			return System.currentTimeMillis();
+		}
+	};
+
+	private static volatile Clock clock = SYSTEM_CLOCK;
+
+	/* Created on first use and shared by all threads. DatatypeFactory implementations are not required to be thread
+	 * safe, but the only method called here is newXMLGregorianCalendar(GregorianCalendar), which builds its result
+	 * from the calendar given and keeps no state in the factory. */
+	private static volatile DatatypeFactory factory;
+
+	/**
+	 * @return The current time in milliseconds since the epoch, as given by the clock in use.
+	 */
+	public static long currentTimeMillis()
+	{
+		return clock.currentTimeMillis();
+	}
+
+	/**
+	 * Replaces the clock providing the current time, for testing.
+	 * 
+	 * @param newClock The clock to use, or null to use the system clock.
+	 */
+	public static void setClock(Clock newClock)
+	{
+		clock = (newClock == null) ? SYSTEM_CLOCK : newClock;
+	}
+
+	/* Creates a calendar in UTC for the given time */
+	private static GregorianCalendar createCalendar(long millis)
+	{
+		SimpleTimeZone tz = new SimpleTimeZone(0, ConfigurationConstants.timeZone);
+		GregorianCalendar calendar = new GregorianCalendar(tz);
+		calendar.setTimeInMillis(millis);
+
+		return calendar;
+	}
+
+	/* Converts a calendar using the shared DatatypeFactory, returning null if no factory can be created */
+	private static XMLGregorianCalendar createXMLCalendar(GregorianCalendar calendar)
+	{
+		// Threads racing on first use may each create a factory, any of them will do
+		DatatypeFactory datatypeFactory = factory;
+		if (datatypeFactory == null)
+		{
+			try
+			{
+				datatypeFactory = DatatypeFactory.newInstance();
+			}
+			catch(DatatypeConfigurationException e)
+			{
+				return null;
+			}
+			factory = datatypeFactory;
+		}
+
+		return datatypeFactory.newXMLGregorianCalendar(calendar);
+	}
 	
 	
 	/**
@@ -22,20 +90,7 @@ public class CalendarUtils
 	 */
 	public static XMLGregorianCalendar generateXMLCalendar()
 	{
-		GregorianCalendar calendar;
-				
-		SimpleTimeZone tz = new SimpleTimeZone(0, ConfigurationConstants.timeZone);
-		calendar = new GregorianCalendar(tz);
-		
-		try
-		{
-			DatatypeFactory factory = DatatypeFactory.newInstance();		
-			return factory.newXMLGregorianCalendar(calendar);
-		}
-		catch(DatatypeConfigurationException e)
-		{
-			return null;
-		}
+		return createXMLCalendar(createCalendar(currentTimeMillis()));
 	}
 	
 	
@@ -49,20 +104,10 @@ public class CalendarUtils
 	 */
 	public static XMLGregorianCalendar generateXMLCalendar(int offset)
 	{
-		GregorianCalendar calendar;
-				
-		SimpleTimeZone tz = new SimpleTimeZone(0, ConfigurationConstants.timeZone);
-		calendar = new GregorianCalendar(tz);
+		GregorianCalendar calendar = createCalendar(currentTimeMillis());
 		calendar.add(Calendar.SECOND, offset);
-		try
-		{
-			DatatypeFactory factory = DatatypeFactory.newInstance();		
-			return factory.newXMLGregorianCalendar(calendar);
-		}
-		catch(DatatypeConfigurationException e)
-		{
-			return null;
-		}
+
+		return createXMLCalendar(calendar);
 	}
 	
 	
@@ -79,21 +124,10 @@ public class CalendarUtils
 	 */
 	public static XMLGregorianCalendar generateXMLCalendar(int offset, int increment)
 	{
-		GregorianCalendar calendar;
-				
-		SimpleTimeZone tz = new SimpleTimeZone(0, ConfigurationConstants.timeZone);
-		calendar = new GregorianCalendar(tz);
+		GregorianCalendar calendar = createCalendar(currentTimeMillis());
 		calendar.add(increment, offset);
-		
-		try
-		{
-			DatatypeFactory factory = DatatypeFactory.newInstance();		
-			return factory.newXMLGregorianCalendar(calendar);
-		}
-		catch(DatatypeConfigurationException e)
-		{
-			return null;
-		}
+
+		return createXMLCalendar(calendar);
 	}
 
 	
@@ -110,20 +144,6 @@ public class CalendarUtils
 	 */
 	public static XMLGregorianCalendar generateXMLCalendar(long millis)
 	{
-		GregorianCalendar calendar;
-				
-		SimpleTimeZone tz = new SimpleTimeZone(0, ConfigurationConstants.timeZone);
-		calendar = new GregorianCalendar(tz);
-		calendar.setTimeInMillis(millis);
-		
-		try
-		{
-			DatatypeFactory factory = DatatypeFactory.newInstance();		
-			return factory.newXMLGregorianCalendar(calendar);
-		}
-		catch(DatatypeConfigurationException e)
-		{
-			return null;
-		}
+		return createXMLCalendar(createCalendar(millis));
 	}
 }
@@ -49,6 +49,7 @@ import com.qut.middleware.esoe.sessions.exception.InvalidSessionIdentifierExcept
 import com.qut.middleware.esoe.spep.SPEPProcessor;
 import com.qut.middleware.metadata.processor.MetadataProcessor;
 import com.qut.middleware.saml2.SchemaConstants;
+import com.qut.middleware.saml2.StatusCodeConstants;
 import com.qut.middleware.saml2.VersionConstants;
 import com.qut.middleware.saml2.exception.KeyResolutionException;
 import com.qut.middleware.saml2.exception.UnmarshallerException;
@@ -76,6 +77,7 @@ import com.qut.middleware.saml2.schemas.esoe.lxacml.context.Resource;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.context.Result;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.context.Subject;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.protocol.LXACMLAuthzDecisionQuery;
+import com.qut.middleware.saml2.schemas.protocol.Extensions;
 import com.qut.middleware.saml2.schemas.protocol.Response;
 import com.qut.middleware.saml2.validator.SAMLValidator;
 import com.qut.middleware.saml2.validator.impl.SAMLValidatorImpl;
@@ -96,6 +98,7 @@ public class AuthorizationProcessorTest
 	Unmarshaller<PolicySet> policySetUnmarshaller;
 	Unmarshaller<Response> responseUnmarshaller;
 	Marshaller<LXACMLAuthzDecisionQuery> requestMarshaller;
+	Marshaller<Request> batchRequestMarshaller;
 	MetadataProcessor metadata;
 	SPEPProcessor spepProcessor;
 
@@ -164,6 +167,7 @@ public class AuthorizationProcessorTest
 		this.responseUnmarshaller = new UnmarshallerImpl<Response>(Response.class.getPackage().getName() + ":" + LXACMLAuthzDecisionStatement.class.getPackage().getName(), schemas, metadata);
 
 		this.requestMarshaller = new MarshallerImpl<LXACMLAuthzDecisionQuery>(LXACMLAuthzDecisionQuery.class.getPackage().getName(), schemas, keyStoreResolver);
+		this.batchRequestMarshaller = new MarshallerImpl<Request>(Request.class.getPackage().getName(), new String[] { SchemaConstants.lxacmlContext });
 
 	}
 
@@ -1264,6 +1268,88 @@ public class AuthorizationProcessorTest
 	
 	}
 	
+	/*
+	 * Using test policy PolicySetSimple.xml. A batch query carries requests for further resources in its extensions,
+	 * and a statement is returned for every resource in a single signed response.
+	 */
+	@Test
+	public final void testBatchAuthzRequest() throws Exception
+	{
+		AuthorizationProcessorData authData = new AuthorizationProcessorDataImpl();
+
+		expect(this.principal.getPrincipalAuthnIdentifier()).andReturn(authnIdentifier).anyTimes();
+		expect(this.principal.getSAMLAuthnIdentifier()).andReturn(samlIdentifier).anyTimes();
+		expect(this.principal.getAttributes()).andReturn(this.attributeList).anyTimes();
+		expect(this.sessionsProcessor.getQuery()).andReturn(this.query).anyTimes();
+		expect(this.query.querySAMLSession((String) notNull())).andReturn(this.principal).anyTimes();
+		expect(this.cache.getPolicies("urn:test:spep:id:s")).andReturn(new Vector(this.database.get("urn:test:spep:id:s"))).anyTimes();
+		expect(this.cache.getSize()).andReturn(this.database.size()).anyTimes();
+		setupMock();
+
+		List<String> resources = new Vector<String>();
+		resources.add("/default/hello.jsp");
+		resources.add("/some/denied/resource.jsp");
+		resources.add("/default/other/index.html");
+
+		authData.setRequestDocument(createRequestXml(resources, "urn:test:spep:id:s"));
+
+		assertEquals("Unexpected return value. ", AuthorizationProcessor.result.Successful, this.authProcessor.execute(authData));
+		assertNotNull(authData.getResponseDocument());
+
+		Response response = this.responseUnmarshaller.unMarshallSigned(authData.getResponseDocument());
+		Assertion assertion = (Assertion) response.getEncryptedAssertionsAndAssertions().get(0);
+
+		Map<String, DecisionType> decisions = new HashMap<String, DecisionType>();
+		for (Object statement : assertion.getAuthnStatementsAndAuthzDecisionStatementsAndAttributeStatements())
+		{
+			LXACMLAuthzDecisionStatement authzResponse = (LXACMLAuthzDecisionStatement) statement;
+			String resource = (String) authzResponse.getRequest().getResource().getAttribute().getAttributeValue().getContent().get(0);
+
+			decisions.put(resource, authzResponse.getResponse().getResult().getDecision());
+		}
+
+		assertEquals("Incorrect number of statements returned. ", 3, decisions.size());
+		assertEquals(DecisionType.PERMIT, decisions.get("/default/hello.jsp"));
+		assertEquals(DecisionType.DENY, decisions.get("/some/denied/resource.jsp"));
+		assertEquals(DecisionType.PERMIT, decisions.get("/default/other/index.html"));
+	}
+	
+	/*
+	 * A batch query carrying more additional requests than the configured maximum is refused with a requester status,
+	 * and none of its requests are evaluated.
+	 */
+	@Test
+	public final void testBatchAuthzRequestTooLarge() throws Exception
+	{
+		AuthorizationProcessorData authData = new AuthorizationProcessorDataImpl();
+		this.authProcessor = new AuthorizationProcessorImpl(pdp, sessionsProcessor, this.metadata, this.validator, this.identifierGenerator, this.keyStoreResolver, 20, "http://esoe.id", 1);
+
+		// the principal is never looked up
+		setupMock();
+
+		List<String> resources = new Vector<String>();
+		resources.add("/default/hello.jsp");
+		resources.add("/some/denied/resource.jsp");
+		resources.add("/default/other/index.html");
+
+		authData.setRequestDocument(createRequestXml(resources, "urn:test:spep:id:s"));
+
+		try
+		{
+			this.authProcessor.execute(authData);
+			fail("Oversized batch query was not refused.");
+		}
+		catch (InvalidRequestException e)
+		{
+			// expected
+		}
+
+		assertNotNull(authData.getResponseDocument());
+
+		Response response = this.responseUnmarshaller.unMarshallSigned(authData.getResponseDocument());
+		assertEquals(StatusCodeConstants.requester, response.getStatus().getStatusCode().getValue());
+	}
+	
 	/*
 	 * add some policies to the cache for testing
 	 * 
@@ -1347,9 +1433,62 @@ public class AuthorizationProcessorTest
 	}
 
 	private Element createRequestXml(String requestedResource, String undertakenAction, String descriptorID)
+	{
+		return createRequestXml(requestedResource, undertakenAction, descriptorID, null);
+	}
+
+	/*
+	 * Creates a batch authz request. The first resource forms the request of the query, the others are carried
+	 * in its extensions.
+	 */
+	private Element createRequestXml(List<String> requestedResources, String descriptorID) throws Exception
+	{
+		Extensions extensions = new Extensions();
+		for (String requestedResource : requestedResources.subList(1, requestedResources.size()))
+		{
+			extensions.getAnies().add(this.batchRequestMarshaller.marshallUnSignedElement(createRequest(requestedResource, null)));
+		}
+
+		return createRequestXml(requestedResources.get(0), null, descriptorID, extensions);
+	}
+
+	private Element createRequestXml(String requestedResource, String undertakenAction, String descriptorID, Extensions extensions)
 	{
 		Element requestXml = null;
+
+		LXACMLAuthzDecisionQuery authRequest = new LXACMLAuthzDecisionQuery();
+		authRequest.setRequest(createRequest(requestedResource, undertakenAction));
+		authRequest.setIssueInstant(new XMLGregorianCalendarImpl(new GregorianCalendar()));
+		authRequest.setID(this.identifierGenerator.generateSAMLID());
+		authRequest.setVersion(VersionConstants.saml20);
+		authRequest.setExtensions(extensions);
+
+		// this will be retrieved from the SAML request (it is the SPEP ID)
+		NameIDType issuer = new NameIDType();
+		issuer.setNameQualifier(descriptorID);
+		issuer.setValue(descriptorID);
+		authRequest.setIssuer(issuer);
+		Signature signature = new Signature();
+		authRequest.setSignature(signature);
+
+		try
+		{
+			// Supplied private/public key will be in RSA format
+			requestXml = this.requestMarshaller.marshallSignedElement(authRequest);
+		}
+		catch (Exception e)
+		{
+			// Marshaller
+			e.printStackTrace();
+
+			fail("Failed to marshal auth request");
+		}
 		
+		return requestXml;
+	}
+
+	private Request createRequest(String requestedResource, String undertakenAction)
+	{
 		Action action = new Action();;
 
 		// set up the resources we're requesting access to
@@ -1389,34 +1528,7 @@ public class AuthorizationProcessorTest
 
 		request.setSubject(subject);
 
-		LXACMLAuthzDecisionQuery authRequest = new LXACMLAuthzDecisionQuery();
-		authRequest.setRequest(request);
-		authRequest.setIssueInstant(new XMLGregorianCalendarImpl(new GregorianCalendar()));
-		authRequest.setID(this.identifierGenerator.generateSAMLID());
-		authRequest.setVersion(VersionConstants.saml20);
-
-		// this will be retrieved from the SAML request (it is the SPEP ID)
-		NameIDType issuer = new NameIDType();
-		issuer.setNameQualifier(descriptorID);
-		issuer.setValue(descriptorID);
-		authRequest.setIssuer(issuer);
-		Signature signature = new Signature();
-		authRequest.setSignature(signature);
-
-		try
-		{
-			// Supplied private/public key will be in RSA format
-			requestXml = this.requestMarshaller.marshallSignedElement(authRequest);
-		}
-		catch (Exception e)
-		{
-			// Marshaller
-			e.printStackTrace();
-
-			fail("Failed to marshal auth request");
-		}
-		
-		return requestXml;
+		return request;
 	}
 
 	/*
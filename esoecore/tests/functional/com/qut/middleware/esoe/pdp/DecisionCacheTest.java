@@ -0,0 +1,320 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Verifies that cached PDP decisions are identical to evaluated decisions and are invalidated by policy updates
+ */
+package com.qut.middleware.esoe.pdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.qut.middleware.esoe.pdp.cache.DecisionKey;
+import com.qut.middleware.esoe.pdp.cache.impl.AuthzPolicyCacheImpl;
+import com.qut.middleware.esoe.pdp.cache.impl.DecisionCacheImpl;
+import com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex;
+import com.qut.middleware.esoe.pdp.processor.impl.DecisionData;
+import com.qut.middleware.esoe.pdp.processor.impl.DecisionPointImpl;
+import com.qut.middleware.saml2.SchemaConstants;
+import com.qut.middleware.saml2.handler.Unmarshaller;
+import com.qut.middleware.saml2.handler.impl.UnmarshallerImpl;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Policy;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.PolicySet;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+
+@SuppressWarnings("nls")
+public class DecisionCacheTest
+{
+	private final int ITERATIONS = 20000;
+
+	private String[] filenames = new String[] { "PolicySetSimple.xml", "PolicySetSimple2.xml", "PolicySetComplexity1.xml", "PolicySetComplexity2.xml", "PolicySetComplexity3.xml", "PolicySetAction1.xml", "PolicySetAction2.xml", "PolicySetAction3.xml" };
+
+	private String[] resources = new String[] { "/default/hello.jsp", "/default/private/index.html", "/default/something/hello.jsp", "/secure/admin/users.jsp", "http://new.com/public/index.html", "https://new.com/private/a.jsp", "/unmatched/resource" };
+
+	private String[] actions = new String[] { null, "read", "write" };
+
+	private AuthzPolicyCacheImpl policyCache;
+	private List<Map<String, List<String>>> principals;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.policyCache = new AuthzPolicyCacheImpl();
+		Unmarshaller<PolicySet> unmarshaller = new UnmarshallerImpl<PolicySet>(PolicySet.class.getPackage().getName(), new String[] { SchemaConstants.lxacml });
+
+		for (String filename : this.filenames)
+		{
+			File file = new File("tests" + File.separator + "testdata" + File.separator + filename);
+			byte[] byteArray = new byte[(int) file.length()];
+
+			InputStream fileStream = new FileInputStream(file);
+			fileStream.read(byteArray);
+			fileStream.close();
+
+			PolicySet policySet = unmarshaller.unMarshallUnSigned(byteArray);
+			assertNotNull(policySet);
+
+			this.policyCache.add(filename, policySet.getPolicies());
+		}
+
+		this.principals = new ArrayList<Map<String, List<String>>>();
+
+		Map<String, List<String>> attributes = new HashMap<String, List<String>>();
+		attributes.put("email", list("a.zitelli@qut.edu.au", "t.smith@blah.com"));
+		attributes.put("type", list("STUDENT", "STAFF", "part-time-staff"));
+		attributes.put("username", list("zitelli"));
+		attributes.put("uid", list("zitelli"));
+		this.principals.add(attributes);
+
+		attributes = new HashMap<String, List<String>>();
+		attributes.put("email", list("someone@blah.com"));
+		attributes.put("type", list("staff  ", "Guest"));
+		attributes.put("username", list("ZITELLI"));
+		attributes.put("uid", list("beddoes"));
+		this.principals.add(attributes);
+
+		attributes = new HashMap<String, List<String>>();
+		attributes.put("type", list("visitor"));
+		this.principals.add(attributes);
+
+		this.principals.add(new HashMap<String, List<String>>());
+	}
+
+	/*
+	 * Cached decisions, and the data recorded with them, must be those the PDP makes without a cache.
+	 */
+	@Test
+	public void testEquivalence()
+	{
+		DecisionCacheImpl decisionCache = new DecisionCacheImpl();
+		DecisionPointImpl pdp = new DecisionPointImpl(this.policyCache, "DENY");
+		DecisionPointImpl cachingPdp = new DecisionPointImpl(this.policyCache, "DENY", decisionCache);
+
+		// the first pass populates the cache, the second is answered from it
+		for (int pass = 0; pass < 2; pass++)
+		{
+			for (String entity : this.filenames)
+			{
+				for (String resource : this.resources)
+				{
+					for (String action : this.actions)
+					{
+						for (Map<String, List<String>> attributes : this.principals)
+						{
+							DecisionData expectedData = new DecisionData();
+							DecisionType expected = pdp.makeAuthzDecision(resource, entity, attributes, action, expectedData);
+
+							DecisionData actualData = new DecisionData();
+							DecisionType actual = cachingPdp.makeAuthzDecision(resource, entity, attributes, action, actualData);
+
+							String request = entity + " " + resource + " " + action + " " + attributes;
+							assertEquals("Decision differs for " + request, expected, actual);
+							assertEquals("Group targets differ for " + request, expectedData.getGroupTargets(), actualData.getGroupTargets());
+							assertEquals("Decision message differs for " + request, expectedData.getDecisionMessage(), actualData.getDecisionMessage());
+							assertEquals(expectedData.getCurrentPolicy(), actualData.getCurrentPolicy());
+							assertEquals(expectedData.getCurrentRule(), actualData.getCurrentRule());
+						}
+					}
+				}
+			}
+		}
+
+		assertTrue("Decisions were not cached", decisionCache.getHitCount() > 0);
+		assertTrue(decisionCache.getHitRate() >= 0.5);
+	}
+
+	/*
+	 * Principals differing only in attributes the matching policies do not refer to share a decision.
+	 */
+	@Test
+	public void testUnreferencedAttributes()
+	{
+		DecisionCacheImpl decisionCache = new DecisionCacheImpl();
+		DecisionPointImpl pdp = new DecisionPointImpl(this.policyCache, "DENY", decisionCache);
+
+		Map<String, List<String>> first = new HashMap<String, List<String>>(this.principals.get(0));
+		first.put("sessionIndex", list("1"));
+		Map<String, List<String>> second = new HashMap<String, List<String>>(this.principals.get(0));
+		second.put("sessionIndex", list("2"));
+
+		DecisionType decision = pdp.makeAuthzDecision("/default/hello.jsp", "PolicySetComplexity1.xml", first, null);
+		assertEquals(0, decisionCache.getHitCount());
+
+		assertEquals(decision, pdp.makeAuthzDecision("/default/hello.jsp", "PolicySetComplexity1.xml", second, null));
+		assertEquals(1, decisionCache.getHitCount());
+
+		// a referenced attribute with a different value is a different request
+		second.put("username", list("smith"));
+		pdp.makeAuthzDecision("/default/hello.jsp", "PolicySetComplexity1.xml", second, null);
+		assertEquals(1, decisionCache.getHitCount());
+		assertEquals(2, decisionCache.getMissCount());
+	}
+
+	/*
+	 * Updating the policies of an entity must immediately stop its cached decisions being returned.
+	 */
+	@Test
+	public void testInvalidation()
+	{
+		DecisionCacheImpl decisionCache = new DecisionCacheImpl();
+		DecisionPointImpl pdp = new DecisionPointImpl(this.policyCache, "DENY", decisionCache);
+		Map<String, List<String>> attributes = this.principals.get(0);
+
+		assertEquals(DecisionType.PERMIT, pdp.makeAuthzDecision("/default/hello.jsp", "PolicySetSimple.xml", attributes, null));
+		DecisionType other = pdp.makeAuthzDecision("/default/hello.jsp", "PolicySetComplexity1.xml", attributes, null);
+		assertEquals(DecisionType.PERMIT, pdp.makeAuthzDecision("/default/hello.jsp", "PolicySetSimple.xml", attributes, null));
+		assertEquals(1, decisionCache.getHitCount());
+		assertEquals(2, decisionCache.getSize());
+
+		// the update removes the entity's decisions, so they no longer hold the replaced policies in memory
+		this.policyCache.add("PolicySetSimple.xml", new Vector<Policy>());
+		assertEquals(1, decisionCache.getSize());
+
+		assertEquals(DecisionType.DENY, pdp.makeAuthzDecision("/default/hello.jsp", "PolicySetSimple.xml", attributes, null));
+		assertEquals(0, decisionCache.getStaleCount());
+
+		// decisions for other entities are unaffected
+		assertEquals(other, pdp.makeAuthzDecision("/default/hello.jsp", "PolicySetComplexity1.xml", attributes, null));
+		assertEquals(2, decisionCache.getHitCount());
+	}
+
+	@Test
+	public void testEviction()
+	{
+		DecisionCacheImpl decisionCache = new DecisionCacheImpl(8);
+		DecisionPointImpl pdp = new DecisionPointImpl(this.policyCache, "DENY", decisionCache);
+
+		for (int i = 0; i < 100; i++)
+		{
+			pdp.makeAuthzDecision("/default/page" + i + ".jsp", "PolicySetSimple.xml", this.principals.get(0), null);
+		}
+
+		assertTrue("Cache exceeded its maximum size", decisionCache.getSize() <= 8);
+		assertEquals(100 - decisionCache.getSize(), decisionCache.getEvictionCount());
+
+		decisionCache.clear();
+		assertEquals(0, decisionCache.getSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize()
+	{
+		new DecisionCacheImpl(0);
+	}
+
+	/*
+	 * A decision made against replaced policies which is added after the update must never be returned.
+	 */
+	@Test
+	public void testStaleDecision()
+	{
+		DecisionCacheImpl decisionCache = new DecisionCacheImpl();
+		Map<String, List<String>> attributes = this.principals.get(0);
+		DecisionKey key = new DecisionKey("PolicySetSimple.xml", "/default/hello.jsp", null, new String[0], attributes);
+		ResourceIndex replaced = this.policyCache.getResourceIndex("PolicySetSimple.xml");
+
+		this.policyCache.add("PolicySetSimple.xml", new Vector<Policy>());
+		decisionCache.addDecision(key, replaced, DecisionType.PERMIT, new DecisionData());
+
+		assertNull(decisionCache.getDecision(key, this.policyCache.getResourceIndex("PolicySetSimple.xml"), null));
+		assertEquals(1, decisionCache.getStaleCount());
+		assertEquals(0, decisionCache.getSize());
+	}
+
+	/*
+	 * Replacing every entity's policies removes every decision.
+	 */
+	@Test
+	public void testReload()
+	{
+		DecisionCacheImpl decisionCache = new DecisionCacheImpl();
+		DecisionPointImpl pdp = new DecisionPointImpl(this.policyCache, "DENY", decisionCache);
+
+		for (String entity : this.filenames)
+		{
+			pdp.makeAuthzDecision("/default/hello.jsp", entity, this.principals.get(0), null);
+		}
+		assertEquals(this.filenames.length, decisionCache.getSize());
+
+		Map<String, List<Policy>> policies = new HashMap<String, List<Policy>>();
+		for (String entity : this.filenames)
+		{
+			policies.put(entity, this.policyCache.getPolicies(entity));
+		}
+		this.policyCache.setCache(policies);
+		assertEquals(0, decisionCache.getSize());
+
+		// removing an entity removes only its decisions
+		pdp.makeAuthzDecision("/default/hello.jsp", this.filenames[0], this.principals.get(0), null);
+		pdp.makeAuthzDecision("/default/hello.jsp", this.filenames[1], this.principals.get(0), null);
+		assertTrue(this.policyCache.remove(this.filenames[0]));
+		assertEquals(1, decisionCache.getSize());
+	}
+
+	/*
+	 * Repeated requests from principals sharing attribute values are answered from the cache, only the first request
+	 * for each distinct resource and principal being evaluated.
+	 */
+	@Test
+	public void testRepeatedRequests()
+	{
+		DecisionCacheImpl decisionCache = new DecisionCacheImpl();
+		DecisionPointImpl pdp = new DecisionPointImpl(this.policyCache, "DENY");
+		DecisionPointImpl cachingPdp = new DecisionPointImpl(this.policyCache, "DENY", decisionCache);
+
+		int distinct = this.resources.length * this.principals.size();
+		for (int i = 0; i < this.ITERATIONS; i++)
+		{
+			String resource = this.resources[i % this.resources.length];
+			Map<String, List<String>> attributes = this.principals.get((i / this.resources.length) % this.principals.size());
+
+			DecisionData expectedData = new DecisionData();
+			DecisionData actualData = new DecisionData();
+			assertEquals(pdp.makeAuthzDecision(resource, "PolicySetComplexity3.xml", attributes, null, expectedData), cachingPdp.makeAuthzDecision(resource, "PolicySetComplexity3.xml", attributes, null, actualData));
+			assertEquals(expectedData.getGroupTargets(), actualData.getGroupTargets());
+		}
+
+		// principals which differ only in unreferenced attributes share decisions, so there may be fewer misses
+		assertTrue("Too many requests were evaluated", decisionCache.getMissCount() <= distinct);
+		assertEquals(this.ITERATIONS - decisionCache.getMissCount(), decisionCache.getHitCount());
+		assertEquals(decisionCache.getMissCount(), decisionCache.getSize());
+	}
+
+	private static List<String> list(String... values)
+	{
+		List<String> list = new Vector<String>();
+		for (String value : values)
+		{
+			list.add(value);
+		}
+
+		return list;
+	}
+}
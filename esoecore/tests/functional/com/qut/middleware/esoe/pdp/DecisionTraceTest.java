@@ -0,0 +1,134 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Verifies that PDP decisions are only explained when an explanation is requested
+ */
+package com.qut.middleware.esoe.pdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.qut.middleware.esoe.pdp.cache.impl.AuthzPolicyCacheImpl;
+import com.qut.middleware.esoe.pdp.cache.impl.DecisionCacheImpl;
+import com.qut.middleware.esoe.pdp.processor.impl.DecisionData;
+import com.qut.middleware.esoe.pdp.processor.impl.DecisionPointImpl;
+import com.qut.middleware.saml2.SchemaConstants;
+import com.qut.middleware.saml2.handler.Unmarshaller;
+import com.qut.middleware.saml2.handler.impl.UnmarshallerImpl;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.PolicySet;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+
+@SuppressWarnings("nls")
+public class DecisionTraceTest
+{
+	private static final String ENTITY = "urn:test:spep";
+	private static final String RESOURCE = "/default/hello.jsp";
+
+	private AuthzPolicyCacheImpl policyCache;
+	private Map<String, List<String>> attributes;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		Unmarshaller<PolicySet> unmarshaller = new UnmarshallerImpl<PolicySet>(PolicySet.class.getPackage().getName(), new String[] { SchemaConstants.lxacml });
+
+		File file = new File("tests" + File.separator + "testdata" + File.separator + "PolicySetSimple.xml");
+		byte[] byteArray = new byte[(int) file.length()];
+
+		InputStream fileStream = new FileInputStream(file);
+		fileStream.read(byteArray);
+		fileStream.close();
+
+		PolicySet policySet = unmarshaller.unMarshallUnSigned(byteArray);
+		assertNotNull(policySet);
+
+		this.policyCache = new AuthzPolicyCacheImpl();
+		this.policyCache.add(ENTITY, policySet.getPolicies());
+
+		this.attributes = new HashMap<String, List<String>>();
+		List<String> username = new Vector<String>();
+		username.add("zitelli");
+		this.attributes.put("username", username);
+	}
+
+	/*
+	 * Without an explanation the decision message is fixed and no processed policies are recorded.
+	 */
+	@Test
+	public void testUnexplainedDecision()
+	{
+		DecisionPointImpl pdp = new DecisionPointImpl(this.policyCache, "DENY");
+
+		DecisionData decisionData = new DecisionData();
+		assertEquals(DecisionType.PERMIT, pdp.makeAuthzDecision(RESOURCE, ENTITY, this.attributes, null, decisionData));
+
+		assertEquals("Identified PERMIT state for principal.", decisionData.getDecisionMessage());
+		assertEquals("", decisionData.getProcessedPolicies());
+		assertEquals("urn:simpletest", decisionData.getCurrentPolicy());
+		assertEquals("1", decisionData.getCurrentRule());
+		assertEquals(1, decisionData.getGroupTargets().size());
+	}
+
+	@Test
+	public void testExplainedDecision()
+	{
+		DecisionPointImpl pdp = new DecisionPointImpl(this.policyCache, "DENY");
+
+		DecisionData unexplained = new DecisionData();
+		pdp.makeAuthzDecision(RESOURCE, ENTITY, this.attributes, null, unexplained);
+
+		DecisionData explained = new DecisionData(true);
+		assertEquals(DecisionType.PERMIT, pdp.makeAuthzDecision(RESOURCE, ENTITY, this.attributes, null, explained));
+
+		assertEquals("{Policy : urn:simpletest : Rules [1]}", explained.getProcessedPolicies());
+		assertEquals("Identified PERMIT state for principal. Evaluated  {Policy : urn:simpletest : Rules [1]}.", explained.getDecisionMessage());
+
+		// the explanation doesn't change the outcome
+		assertEquals(unexplained.getGroupTargets(), explained.getGroupTargets());
+	}
+
+	/*
+	 * Cached decisions carry no explanation, so a request for one must be evaluated.
+	 */
+	@Test
+	public void testExplanationWithDecisionCache()
+	{
+		DecisionCacheImpl decisionCache = new DecisionCacheImpl();
+		DecisionPointImpl pdp = new DecisionPointImpl(this.policyCache, "DENY", decisionCache);
+
+		pdp.makeAuthzDecision(RESOURCE, ENTITY, this.attributes, null, new DecisionData());
+		pdp.makeAuthzDecision(RESOURCE, ENTITY, this.attributes, null, new DecisionData());
+		assertEquals(1, decisionCache.getHitCount());
+
+		DecisionData explained = new DecisionData(true);
+		pdp.makeAuthzDecision(RESOURCE, ENTITY, this.attributes, null, explained);
+		assertEquals(1, decisionCache.getHitCount());
+		assertTrue(explained.getDecisionMessage().contains("urn:simpletest"));
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Measures PDP decision throughput while the policy cache is reloaded concurrently
+ */
+package com.qut.middleware.esoe.pdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.qut.middleware.esoe.pdp.cache.impl.AuthzPolicyCacheImpl;
+import com.qut.middleware.esoe.pdp.processor.DecisionPoint;
+import com.qut.middleware.esoe.pdp.processor.impl.DecisionPointImpl;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.AttributeValueType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.EffectType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Policy;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Resource;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Resources;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Rule;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Target;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+
+@SuppressWarnings("nls")
+public class PolicyCacheStressTest
+{
+	private final int THREADS = 4;
+	private final int POLICIES = 2000;
+	private final long DURATION = 1000;
+
+	@Test
+	public void testDecisionsDuringReload() throws Exception
+	{
+		Map<String, List<Policy>> data = new HashMap<String, List<Policy>>();
+		for (int entity = 0; entity < 4; entity++)
+		{
+			List<Policy> policies = new Vector<Policy>();
+			for (int i = 0; i < this.POLICIES; i++)
+			{
+				policies.add(createPolicy("urn:test:policy:" + i, "/application" + i + "/.*"));
+			}
+			data.put("urn:test:spep:" + entity, policies);
+		}
+
+		AuthzPolicyCacheImpl cache = new AuthzPolicyCacheImpl();
+		cache.setCache(data);
+		DecisionPoint pdp = new DecisionPointImpl(cache, "DENY");
+
+		// warm up
+		this.run(pdp, cache, null, this.DURATION / 2);
+
+		long baseline = this.run(pdp, cache, null, this.DURATION);
+		AtomicLong reloads = new AtomicLong();
+		long reloading = this.run(pdp, cache, new Reloader(cache, data, reloads), this.DURATION);
+
+		System.out.println("Decisions without reload: " + (baseline * 1000 / this.DURATION) + "/second");
+		System.out.println("Decisions during reload: " + (reloading * 1000 / this.DURATION) + "/second, " + reloads.get() + " full reloads of " + (data.size() * this.POLICIES) + " policies");
+
+		assertTrue("No reloads were performed", reloads.get() > 0);
+		assertTrue("No decisions were made during reload", reloading > 0);
+	}
+
+	/* Runs the evaluating threads, and the reloader if supplied, for the given time returning the number of decisions */
+	private long run(final DecisionPoint pdp, AuthzPolicyCacheImpl cache, Reloader reloader, long duration) throws Exception
+	{
+		final AtomicLong decisions = new AtomicLong();
+		final AtomicLong failures = new AtomicLong();
+		final long end = System.currentTimeMillis() + duration;
+		final Map<String, List<String>> attributes = new HashMap<String, List<String>>();
+
+		Thread[] threads = new Thread[this.THREADS];
+		for (int i = 0; i < threads.length; i++)
+		{
+			final int offset = i;
+			threads[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					long count = 0;
+					while (System.currentTimeMillis() < end)
+					{
+						for (int j = 0; j < 100; j++)
+						{
+							int policy = (int) ((count * 7 + offset) % PolicyCacheStressTest.this.POLICIES);
+							DecisionType decision = pdp.makeAuthzDecision("/application" + policy + "/index.jsp", "urn:test:spep:" + (count % 4), attributes, null);
+							if (decision != DecisionType.PERMIT)
+								failures.incrementAndGet();
+
+							count++;
+						}
+					}
+
+					decisions.addAndGet(count);
+				}
+			};
+			threads[i].start();
+		}
+
+		if (reloader != null)
+		{
+			reloader.end = end;
+			reloader.start();
+		}
+
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		if (reloader != null)
+			reloader.join();
+
+		assertEquals("Decisions were incorrect while the cache was being updated", 0, failures.get());
+
+		return decisions.get();
+	}
+
+	/* Repeatedly replaces the entire cache contents */
+	class Reloader extends Thread
+	{
+		private AuthzPolicyCacheImpl cache;
+		private Map<String, List<Policy>> data;
+		private AtomicLong reloads;
+		volatile long end;
+
+		Reloader(AuthzPolicyCacheImpl cache, Map<String, List<Policy>> data, AtomicLong reloads)
+		{
+			this.cache = cache;
+			this.data = data;
+			this.reloads = reloads;
+		}
+
+		@Override
+		public void run()
+		{
+			while (System.currentTimeMillis() < this.end)
+			{
+				this.cache.setCache(this.data);
+				this.reloads.incrementAndGet();
+			}
+		}
+	}
+
+	private static Policy createPolicy(String policyID, String resource)
+	{
+		AttributeValueType attributeValue = new AttributeValueType();
+		attributeValue.getContent().add(resource);
+
+		Resource targetResource = new Resource();
+		targetResource.setAttributeValue(attributeValue);
+
+		Resources resources = new Resources();
+		resources.getResources().add(targetResource);
+
+		Target target = new Target();
+		target.setResources(resources);
+
+		Rule rule = new Rule();
+		rule.setRuleId(policyID + ":rule");
+		rule.setEffect(EffectType.PERMIT);
+
+		Policy policy = new Policy();
+		policy.setPolicyId(policyID);
+		policy.setTarget(target);
+		policy.getRules().add(rule);
+
+		return policy;
+	}
+}
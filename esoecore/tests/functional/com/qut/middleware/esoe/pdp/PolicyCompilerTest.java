@@ -0,0 +1,339 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Verifies compiled policies against the interpreted apply functions and compares their performance
+ */
+package com.qut.middleware.esoe.pdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import javax.xml.bind.JAXBElement;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.qut.middleware.esoe.pdp.cache.impl.AuthzPolicyCacheImpl;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.And;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.Not;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.Or;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.StringEqual;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.StringRegex;
+import com.qut.middleware.esoe.pdp.processor.compiled.CompiledPolicy;
+import com.qut.middleware.esoe.pdp.processor.compiled.CompiledRule;
+import com.qut.middleware.esoe.pdp.processor.compiled.Condition;
+import com.qut.middleware.esoe.pdp.processor.compiled.PolicyCompiler;
+import com.qut.middleware.esoe.pdp.processor.compiled.TargetResource;
+import com.qut.middleware.esoe.pdp.processor.impl.DecisionPointImpl;
+import com.qut.middleware.esoe.pdp.processor.impl.PolicyEvaluator;
+import com.qut.middleware.saml2.SchemaConstants;
+import com.qut.middleware.saml2.handler.Unmarshaller;
+import com.qut.middleware.saml2.handler.impl.UnmarshallerImpl;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.ApplyType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Policy;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.PolicySet;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Rule;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+
+@SuppressWarnings(value = { "nls", "unchecked" })
+public class PolicyCompilerTest
+{
+	private final int ITERATIONS = 20000;
+
+	private String[] filenames = new String[] { "PolicySetSimple.xml", "PolicySetSimple2.xml", "PolicySetComplexity1.xml", "PolicySetComplexity2.xml", "PolicySetComplexity3.xml", "PolicySetAction1.xml", "PolicySetAction2.xml", "PolicySetAction3.xml" };
+
+	private String[] resources = new String[] { "/default/hello.jsp", "/default/private/index.html", "/default/something/hello.jsp", "/secure/admin/users.jsp", "http://new.com/public/index.html", "https://new.com/private/a.jsp", "/unmatched/resource" };
+
+	private Map<String, List<Policy>> database;
+	private List<Map<String, List<String>>> principals;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.database = new HashMap<String, List<Policy>>();
+		Unmarshaller<PolicySet> unmarshaller = new UnmarshallerImpl<PolicySet>(PolicySet.class.getPackage().getName(), new String[] { SchemaConstants.lxacml });
+
+		for (String filename : this.filenames)
+		{
+			File file = new File("tests" + File.separator + "testdata" + File.separator + filename);
+			byte[] byteArray = new byte[(int) file.length()];
+
+			InputStream fileStream = new FileInputStream(file);
+			fileStream.read(byteArray);
+			fileStream.close();
+
+			PolicySet policySet = unmarshaller.unMarshallUnSigned(byteArray);
+			assertNotNull(policySet);
+
+			this.database.put(filename, policySet.getPolicies());
+		}
+
+		this.principals = new ArrayList<Map<String, List<String>>>();
+
+		Map<String, List<String>> attributes = new HashMap<String, List<String>>();
+		attributes.put("email", list("a.zitelli@qut.edu.au", "t.smith@blah.com"));
+		attributes.put("type", list("STUDENT", "STAFF", "part-time-staff"));
+		attributes.put("username", list("zitelli"));
+		attributes.put("uid", list("zitelli"));
+		this.principals.add(attributes);
+
+		attributes = new HashMap<String, List<String>>();
+		attributes.put("email", list("someone@blah.com"));
+		attributes.put("type", list("staff  ", "Guest"));
+		attributes.put("username", list("ZITELLI"));
+		attributes.put("uid", list("beddoes"));
+		this.principals.add(attributes);
+
+		attributes = new HashMap<String, List<String>>();
+		attributes.put("type", list("visitor"));
+		this.principals.add(attributes);
+
+		this.principals.add(new HashMap<String, List<String>>());
+		this.principals.add(null);
+	}
+
+	/*
+	 * Every rule condition in the test policies must give the same result compiled as it does interpreted.
+	 */
+	@Test
+	public void testConditionEquivalence()
+	{
+		int evaluated = 0;
+
+		for (List<Policy> policies : this.database.values())
+		{
+			for (Policy policy : policies)
+			{
+				for (Rule rule : policy.getRules())
+				{
+					Condition condition = PolicyCompiler.compile(rule.getCondition());
+					if (condition == null)
+						continue;
+
+					for (Map<String, List<String>> attributes : this.principals)
+					{
+						assertEquals("Compiled condition of rule " + rule.getRuleId() + " differs from interpreted result", interpret(rule, attributes), evaluate(condition, attributes));
+						evaluated++;
+					}
+				}
+			}
+		}
+
+		assertTrue("No conditions were evaluated", evaluated > 0);
+	}
+
+	/*
+	 * Compiled targets must match the same resources as the interpreted regular expressions.
+	 */
+	@Test
+	public void testTargetEquivalence()
+	{
+		for (List<Policy> policies : this.database.values())
+		{
+			for (Policy policy : policies)
+			{
+				CompiledPolicy compiled = PolicyCompiler.compile(policy);
+				List<String> policyResources = PolicyEvaluator.getPolicyTargetResources(policy);
+				assertEquals(policyResources.size(), compiled.getResources().length);
+
+				for (int i = 0; i < policyResources.size(); i++)
+				{
+					for (String resource : this.resources)
+					{
+						String target = policyResources.get(i);
+						assertEquals(resource.equals(target) || resource.matches(target), compiled.getResources()[i].matches(resource));
+					}
+				}
+
+				assertEquals(policy.getRules().size(), compiled.getRules().length);
+			}
+		}
+	}
+
+	@Test
+	public void testCompiledCache()
+	{
+		AuthzPolicyCacheImpl cache = new AuthzPolicyCacheImpl();
+		cache.add("urn:test:spep:id:s", this.database.get("PolicySetSimple.xml"));
+
+		List<CompiledPolicy> compiled = cache.getCompiledPolicies("urn:test:spep:id:s");
+		assertEquals(cache.getPolicies("urn:test:spep:id:s").size(), compiled.size());
+		assertEquals(0, cache.getCompiledPolicies("urn:test:spep:id:unknown").size());
+
+		DecisionPointImpl pdp = new DecisionPointImpl(cache, "DENY");
+		assertEquals(DecisionType.PERMIT, pdp.makeAuthzDecision("/default/hello.jsp", "urn:test:spep:id:s", this.principals.get(0), null));
+		assertEquals(DecisionType.DENY, pdp.makeAuthzDecision("/unmatched/resource", "urn:test:spep:id:s", this.principals.get(0), null));
+
+		cache.remove("urn:test:spep:id:s");
+		assertEquals(0, cache.getCompiledPolicies("urn:test:spep:id:s").size());
+
+		Map<String, List<Policy>> newData = new HashMap<String, List<Policy>>();
+		newData.put("urn:test:spep:id:1", new Vector<Policy>(this.database.get("PolicySetComplexity1.xml")));
+		cache.setCache(newData);
+		assertEquals(newData.get("urn:test:spep:id:1").size(), cache.getCompiledPolicies("urn:test:spep:id:1").size());
+	}
+
+	/*
+	 * Compares the time taken to match targets and evaluate conditions for every rule of the test policies.
+	 */
+	@Test
+	public void testBenchmark()
+	{
+		List<Policy> policies = new ArrayList<Policy>();
+		for (String filename : this.filenames)
+		{
+			policies.addAll(this.database.get(filename));
+		}
+		List<CompiledPolicy> compiled = PolicyCompiler.compile(policies);
+
+		// Warm up both paths before measuring
+		int interpretedMatches = this.runInterpreted(policies, this.ITERATIONS / 10);
+		int compiledMatches = this.runCompiled(compiled, this.ITERATIONS / 10);
+		assertEquals(interpretedMatches, compiledMatches);
+
+		long begin = System.nanoTime();
+		this.runInterpreted(policies, this.ITERATIONS);
+		long interpreted = System.nanoTime() - begin;
+
+		begin = System.nanoTime();
+		this.runCompiled(compiled, this.ITERATIONS);
+		long elapsed = System.nanoTime() - begin;
+
+		System.out.println("Interpreted policy evaluation: " + (interpreted / this.ITERATIONS) + " ns/request");
+		System.out.println("Compiled policy evaluation: " + (elapsed / this.ITERATIONS) + " ns/request");
+	}
+
+	private int runInterpreted(List<Policy> policies, int iterations)
+	{
+		int matches = 0;
+
+		for (int n = 0; n < iterations; n++)
+		{
+			String resource = this.resources[n % this.resources.length];
+			Map<String, List<String>> attributes = this.principals.get(n % this.principals.size());
+
+			for (Policy policy : policies)
+			{
+				List<String> policyResources = PolicyEvaluator.getPolicyTargetResources(policy);
+				for (Rule rule : policy.getRules())
+				{
+					List<String> ruleResources = PolicyEvaluator.getRuleTargetResources(rule);
+					if (ruleResources == null)
+						ruleResources = policyResources;
+
+					for (String target : ruleResources)
+					{
+						if ((resource.equals(target) || resource.matches(target)) && interpret(rule, attributes))
+							matches++;
+					}
+				}
+			}
+		}
+
+		return matches;
+	}
+
+	private int runCompiled(List<CompiledPolicy> policies, int iterations)
+	{
+		int matches = 0;
+
+		for (int n = 0; n < iterations; n++)
+		{
+			String resource = this.resources[n % this.resources.length];
+			Map<String, List<String>> attributes = this.principals.get(n % this.principals.size());
+
+			for (CompiledPolicy policy : policies)
+			{
+				for (CompiledRule rule : policy.getRules())
+				{
+					for (TargetResource target : rule.getResources())
+					{
+						if (target.matches(resource) && (rule.getCondition() == null || evaluate(rule.getCondition(), attributes)))
+							matches++;
+					}
+				}
+			}
+		}
+
+		return matches;
+	}
+
+	/* Evaluates a rule condition with the apply functions, in the same way DecisionPointImpl previously did */
+	private static boolean interpret(Rule rule, Map<String, List<String>> attributes)
+	{
+		if (rule.getCondition() == null || rule.getCondition().getExpression() == null)
+			return true;
+
+		try
+		{
+			JAXBElement<ApplyType> root = (JAXBElement<ApplyType>) rule.getCondition().getExpression();
+			if (root.getDeclaredType() != ApplyType.class || root.getValue().getFunctionId() == null)
+				return false;
+
+			String function = root.getValue().getFunctionId();
+			if (function.equals(Or.FUNCTION_NAME))
+				return new Or().evaluateExpression(root, attributes);
+			if (function.equals(Not.FUNCTION_NAME))
+				return new Not().evaluateExpression(root, attributes);
+			if (function.equals(And.FUNCTION_NAME))
+				return new And().evaluateExpression(root, attributes);
+			if (function.equals(StringRegex.FUNCTION_NAME))
+				return new StringRegex().evaluateExpression(root, attributes);
+			if (function.equals(StringEqual.FUNCTION_NAME))
+				return new StringEqual().evaluateExpression(root, attributes);
+
+			return false;
+		}
+		catch (IllegalArgumentException e)
+		{
+			return false;
+		}
+	}
+
+	private static boolean evaluate(Condition condition, Map<String, List<String>> attributes)
+	{
+		try
+		{
+			return condition.evaluate(attributes);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return false;
+		}
+	}
+
+	private static List<String> list(String... values)
+	{
+		List<String> list = new Vector<String>();
+		for (String value : values)
+		{
+			list.add(value);
+		}
+
+		return list;
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Verifies the resource target index and measures decision cost as unrelated policies are added
+ */
+package com.qut.middleware.esoe.pdp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.junit.Test;
+
+import com.qut.middleware.esoe.pdp.cache.impl.AuthzPolicyCacheImpl;
+import com.qut.middleware.esoe.pdp.processor.compiled.CompiledPolicy;
+import com.qut.middleware.esoe.pdp.processor.compiled.PolicyCompiler;
+import com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex;
+import com.qut.middleware.esoe.pdp.processor.compiled.TargetResource;
+import com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex.PolicyTarget;
+import com.qut.middleware.esoe.pdp.processor.impl.DecisionPointImpl;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.AttributeValueType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.EffectType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Policy;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Resource;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Resources;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Rule;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Target;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+
+@SuppressWarnings("nls")
+public class ResourceIndexTest
+{
+	private final int ITERATIONS = 20000;
+
+	private String[] targets = new String[] { "/default/.*", "/default/hello.jsp", "/default/private/.*", "https?://new.com/.*", "/a|/b", "/x+y", "/opt?ional", "(?i)/CASE/.*", "[invalid", "/exact", ".*\\.jsp", "/default/.*/index.html" };
+
+	private String[] resources = new String[] { "/default/hello.jsp", "/default/private/index.html", "/default/", "/default", "http://new.com/x", "https://new.com/", "/a", "/b", "/xy", "/xxy", "/y", "/optional", "/opt", "/opional", "/case/Page", "[invalid", "/exact", "/exactly", "/other/page.jsp", "/default/line\nbreak", "" };
+
+	/*
+	 * The index must yield exactly the targets which match when every target is tested, in policy order.
+	 */
+	@Test
+	public void testMatchingTargets()
+	{
+		List<Policy> policies = new Vector<Policy>();
+		for (int i = 0; i < this.targets.length; i++)
+		{
+			// spread the targets across policies, several to a policy
+			policies.add(createPolicy("urn:test:policy:" + i, this.targets[i], this.targets[(i + 5) % this.targets.length]));
+		}
+
+		List<CompiledPolicy> compiled = PolicyCompiler.compile(policies);
+		ResourceIndex index = new ResourceIndex(compiled);
+		assertEquals(this.targets.length * 2, index.getSize());
+
+		for (String resource : this.resources)
+		{
+			List<PolicyTarget> matches = index.getMatchingTargets(resource);
+
+			int m = 0;
+			for (int p = 0; p < compiled.size(); p++)
+			{
+				TargetResource[] policyTargets = compiled.get(p).getResources();
+				for (int t = 0; t < policyTargets.length; t++)
+				{
+					if (policyTargets[t].matches(resource))
+					{
+						PolicyTarget match = matches.get(m++);
+						assertEquals("Unexpected match for " + resource, p, match.getPolicyIndex());
+						assertEquals("Unexpected match for " + resource, t, match.getTargetIndex());
+					}
+				}
+			}
+
+			assertEquals("Unexpected number of matches for " + resource, m, matches.size());
+		}
+	}
+
+	/*
+	 * Decision time for a resource should not grow with the number of policies protecting unrelated resources.
+	 */
+	@Test
+	public void testScaling()
+	{
+		Map<String, List<String>> attributes = new HashMap<String, List<String>>();
+
+		for (int policyCount = 10; policyCount <= 10000; policyCount *= 10)
+		{
+			List<Policy> policies = new Vector<Policy>();
+			for (int i = 0; i < policyCount; i++)
+			{
+				policies.add(createPolicy("urn:test:policy:" + i, "/application" + i + "/.*", "/application" + i + "/[a-z]+\\.jsp"));
+			}
+
+			AuthzPolicyCacheImpl cache = new AuthzPolicyCacheImpl();
+			cache.add("urn:test:spep", policies);
+			DecisionPointImpl pdp = new DecisionPointImpl(cache, "DENY");
+
+			String resource = "/application" + (policyCount / 2) + "/index.jsp";
+			assertEquals(DecisionType.PERMIT, pdp.makeAuthzDecision(resource, "urn:test:spep", attributes, null));
+
+			long begin = System.nanoTime();
+			for (int i = 0; i < this.ITERATIONS; i++)
+			{
+				pdp.makeAuthzDecision(resource, "urn:test:spep", attributes, null);
+			}
+			long indexed = (System.nanoTime() - begin) / this.ITERATIONS;
+
+			// the cost of testing every target, as evaluation did before the index
+			List<CompiledPolicy> compiled = cache.getCompiledPolicies("urn:test:spep");
+			int iterations = Math.max(this.ITERATIONS / policyCount, 10);
+			begin = System.nanoTime();
+			for (int i = 0; i < iterations; i++)
+			{
+				for (CompiledPolicy policy : compiled)
+				{
+					for (TargetResource target : policy.getResources())
+					{
+						target.matches(resource);
+					}
+				}
+			}
+			long scanned = (System.nanoTime() - begin) / iterations;
+
+			System.out.println(policyCount + " policies: indexed decision " + indexed + " ns, target scan " + scanned + " ns");
+		}
+	}
+
+	private static Policy createPolicy(String policyID, String... resources)
+	{
+		Policy policy = new Policy();
+		policy.setPolicyId(policyID);
+		policy.setTarget(createTarget(resources));
+
+		Rule rule = new Rule();
+		rule.setRuleId(policyID + ":rule");
+		rule.setEffect(EffectType.PERMIT);
+		policy.getRules().add(rule);
+
+		return policy;
+	}
+
+	private static Target createTarget(String... values)
+	{
+		Resources resources = new Resources();
+		for (String value : values)
+		{
+			AttributeValueType attributeValue = new AttributeValueType();
+			attributeValue.getContent().add(value);
+
+			Resource resource = new Resource();
+			resource.setAttributeValue(attributeValue);
+			resources.getResources().add(resource);
+		}
+
+		Target target = new Target();
+		target.setResources(resources);
+
+		return target;
+	}
+}
@@ -72,7 +72,8 @@ public interface AuthzPolicyCache
 
 	/**
 	 * Set the cache map object. The implementation of this method MUST ensure that only one thread can set the cache at
-	 * any time, and that all read access is blocked until the cache update has completed.
+	 * any time, and that readers see either the previous or the new contents of the cache, never a partially
+	 * completed update.
 	 * 
 	 * @pre newData != null
 	 * @param newData The cache to replace the existing cache.
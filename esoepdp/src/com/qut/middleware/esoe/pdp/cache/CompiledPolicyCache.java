@@ -0,0 +1,60 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: An AuthzPolicyCache which also holds the compiled form of its policies.
+ */
+package com.qut.middleware.esoe.pdp.cache;
+
+import java.util.List;
+
+import com.qut.middleware.esoe.pdp.processor.compiled.CompiledPolicy;
+import com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex;
+
+/** An AuthzPolicyCache which compiles policies as they are added, so they are not interpreted on each authorization
+ * request. Implementations of this Interface MUST ensure that all operations are thread safe.
+ */
+public interface CompiledPolicyCache extends AuthzPolicyCache
+{
+	/**
+	 * Retrieve the compiled policies associated with the entityID.
+	 * 
+	 * @param entityID
+	 *            The entityID of the policies to retrieve.
+	 * @return A zero or more sized immutable List of compiled policies, in the same order as getPolicies.
+	 */
+	public List<CompiledPolicy> getCompiledPolicies(String entityID);
+
+	/**
+	 * Retrieve the index of the resource targets of the compiled policies associated with the entityID.
+	 * 
+	 * @param entityID
+	 *            The entityID of the policies to retrieve.
+	 * @return The index of the entity's compiled policies, which is empty if no policies are associated with the given
+	 *         entity.
+	 */
+	public ResourceIndex getResourceIndex(String entityID);
+
+	/**
+	 * Register a cache of decisions made against this cache's resource indexes. Whenever the index of an entity is
+	 * replaced or removed, the decisions made for that entity are removed from every registered decision cache, so
+	 * they no longer hold the replaced compiled policies in memory.
+	 * 
+	 * @param decisionCache
+	 *            The decision cache to notify of updates.
+	 */
+	public void addDecisionCache(DecisionCache decisionCache);
+}
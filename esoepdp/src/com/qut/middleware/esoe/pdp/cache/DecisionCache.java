@@ -0,0 +1,98 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: A bounded cache of authorization decisions made by the PDP.
+ */
+package com.qut.middleware.esoe.pdp.cache;
+
+import com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex;
+import com.qut.middleware.esoe.pdp.processor.impl.DecisionData;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+
+/** A bounded cache of authorization decisions made by the PDP. Each decision is stored with the resource index of the
+ * policies it was made against. As the policy cache replaces the index of an entity whenever that entity's policies
+ * are updated, a decision is only returned while the policies it was made against are current. Implementations of
+ * this Interface MUST ensure that all operations are thread safe.
+ */
+public interface DecisionCache
+{
+	/**
+	 * Retrieve a cached decision.
+	 *
+	 * @param key The inputs of the decision.
+	 * @param index The current resource index of the entity. Decisions made against any other index are stale and
+	 * are not returned.
+	 * @param decisionData If not null and the decision is found, its state is replaced with the data recorded when the
+	 * decision was made.
+	 * @return The cached decision, or null if there is no current decision for the key.
+	 */
+	public DecisionType getDecision(DecisionKey key, ResourceIndex index, DecisionData decisionData);
+
+	/**
+	 * Add a decision to the cache, discarding the least recently used decision if the cache is full.
+	 *
+	 * @param key The inputs of the decision.
+	 * @param index The resource index of the entity the decision was made against.
+	 * @param decision The decision.
+	 * @param decisionData The data recorded when the decision was made, including the group targets. A copy is
+	 * stored.
+	 */
+	public void addDecision(DecisionKey key, ResourceIndex index, DecisionType decision, DecisionData decisionData);
+
+	/**
+	 * Remove all decisions made for an entity, called when the policies of that entity are replaced.
+	 *
+	 * @param entityID The entity whose decisions are removed.
+	 * @return The number of decisions removed.
+	 */
+	public int removeDecisions(String entityID);
+
+	/**
+	 * Remove all decisions from the cache.
+	 */
+	public void clear();
+
+	/**
+	 * @return The number of decisions stored in the cache.
+	 */
+	public int getSize();
+
+	/**
+	 * @return The number of lookups which returned a decision.
+	 */
+	public long getHitCount();
+
+	/**
+	 * @return The number of lookups which did not return a decision, including those which found a stale decision.
+	 */
+	public long getMissCount();
+
+	/**
+	 * @return The number of lookups which found a decision made against policies which have since been updated.
+	 */
+	public long getStaleCount();
+
+	/**
+	 * @return The number of decisions discarded to keep the cache within its bounds.
+	 */
+	public long getEvictionCount();
+
+	/**
+	 * @return The proportion of lookups which returned a decision, between 0 and 1.
+	 */
+	public double getHitRate();
+}
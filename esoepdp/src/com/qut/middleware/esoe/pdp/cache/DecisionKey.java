@@ -0,0 +1,115 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Identifies an authorization decision by the inputs it depends on.
+ */
+package com.qut.middleware.esoe.pdp.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/** Identifies an authorization decision by the inputs it depends on: the requesting entity, the resource, the action
+ * and the values of only those principal attributes referred to by the policies matching the resource. Principals
+ * with the same values for those attributes receive the same decision, whatever their other attributes.
+ *
+ * The attribute values are copied when the key is created, and are compared in full by equals, so distinct
+ * attribute values never share a key even if their hash codes collide.
+ */
+public final class DecisionKey
+{
+	private final String entityID;
+	private final String resource;
+	private final String action;
+	private final String[] attributeNames;
+	private final List<?>[] attributeValues;
+	private final int hashCode;
+
+	/**
+	 * @param entityID The entity the decision is made for.
+	 * @param resource The requested resource.
+	 * @param action The requested action, may be null.
+	 * @param attributeNames The sorted, distinct names of the attributes the decision depends on. The array must not be
+	 * modified after the key is created.
+	 * @param principalAttributes The attributes of the principal, may be null.
+	 */
+	public DecisionKey(String entityID, String resource, String action, String[] attributeNames, Map<String, List<String>> principalAttributes)
+	{
+		this.entityID = entityID;
+		this.resource = resource;
+		this.action = action;
+		this.attributeNames = attributeNames;
+		this.attributeValues = new List<?>[attributeNames.length];
+
+		int hash = hashCode(entityID);
+		hash = 31 * hash + hashCode(resource);
+		hash = 31 * hash + hashCode(action);
+
+		for (int i = 0; i < attributeNames.length; i++)
+		{
+			List<String> values = (principalAttributes == null) ? null : principalAttributes.get(attributeNames[i]);
+			if (values != null)
+			{
+				this.attributeValues[i] = new ArrayList<String>(values);
+				hash = 31 * hash + values.hashCode();
+			}
+			else
+				hash = 31 * hash;
+		}
+
+		this.hashCode = hash;
+	}
+
+	/**
+	 * @return The entity the decision is made for.
+	 */
+	public String getEntityID()
+	{
+		return this.entityID;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+
+		if (!(obj instanceof DecisionKey))
+			return false;
+
+		DecisionKey other = (DecisionKey) obj;
+
+		return this.hashCode == other.hashCode && equals(this.entityID, other.entityID) && equals(this.resource, other.resource) && equals(this.action, other.action) && Arrays.equals(this.attributeNames, other.attributeNames) && Arrays.equals(this.attributeValues, other.attributeValues);
+	}
+
+	private static int hashCode(Object value)
+	{
+		return (value == null) ? 0 : value.hashCode();
+	}
+
+	private static boolean equals(Object a, Object b)
+	{
+		return (a == null) ? b == null : a.equals(b);
+	}
+}
@@ -24,26 +24,37 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import com.qut.middleware.esoe.pdp.cache.AuthzPolicyCache;
+import com.qut.middleware.esoe.pdp.cache.CompiledPolicyCache;
+import com.qut.middleware.esoe.pdp.cache.DecisionCache;
+import com.qut.middleware.esoe.pdp.processor.compiled.CompiledPolicy;
+import com.qut.middleware.esoe.pdp.processor.compiled.PolicyCompiler;
+import com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.Policy;
 
 
-public class AuthzPolicyCacheImpl implements AuthzPolicyCache
+/** Policy cache which publishes an immutable snapshot of its contents through a volatile reference. Updates copy the
+ * snapshot, compile any new policies and then replace it, so readers never lock and are never blocked by a rebuild.
+ * Updates are serialized with respect to each other. Once an update is published the decisions made against the
+ * replaced policies are removed from any registered decision cache.
+ */
+public class AuthzPolicyCacheImpl implements CompiledPolicyCache
 {	
-	private Map<String, List<Policy>> cache;
+	private volatile Map<String, CacheEntry> cache;
 	
-	private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
+	private final Object writeLock = new Object();
+	private final List<DecisionCache> decisionCaches = new CopyOnWriteArrayList<DecisionCache>();
     private volatile long sequenceId;
     
+	private static final CacheEntry EMPTY_ENTRY = new CacheEntry(new Vector<Policy>());
+    
 	/**
 	 * Default constructor
 	 */
 	public AuthzPolicyCacheImpl()
 	{		
-		this.cache = new HashMap<String, List<Policy>>();
+		this.cache = Collections.emptyMap();
 		this.sequenceId = SEQUENCE_UNINITIALIZED;
 	}
 	
@@ -58,21 +69,23 @@ public class AuthzPolicyCacheImpl implements AuthzPolicyCache
 	 */
 	public void add(String entityID, List<Policy> policies)
 	{
-		this.rwl.writeLock().lock();
+		Vector<Policy> clonedList = new Vector<Policy>();
+		
+		if(policies != null)
+			clonedList.addAll(policies);
 		
-		try
+		// compile before taking the lock so other updates are not held up while a large policy set is processed
+		CacheEntry entry = new CacheEntry(clonedList);
+		
+		synchronized(this.writeLock)
 		{						
-			Vector<Policy> clonedList = new Vector<Policy>();
+			Map<String, CacheEntry> newCache = new HashMap<String, CacheEntry>(this.cache);
+			newCache.put(entityID, entry);
 			
-			if(policies != null)
-				clonedList.addAll(policies);
-			
-			this.cache.put(entityID, (Vector<Policy>)clonedList.clone());
-		}
-		finally
-		{
-			this.rwl.writeLock().unlock();
+			this.cache = Collections.unmodifiableMap(newCache);
 		}
+		
+		this.removeDecisions(entityID);
 	}
 	
 
@@ -87,28 +100,33 @@ public class AuthzPolicyCacheImpl implements AuthzPolicyCache
 	}
 	
 
-	/*
+	/* Returns a copy of the cached list, as callers are free to modify it. The PDP does not use this method, it reads
+	 * the shared compiled policies through getResourceIndex.
+	 * 
 	 * @see com.qut.middleware.esoe.pdp.cache.bean.AuthzPolicyCache#getPolicy(java.lang.String)
 	 */
 	public List<Policy> getPolicies(String entityID)
 	{		
-		this.rwl.readLock().lock();
-		
-		try
-		{	
-			Vector<Policy> clonedList = new Vector<Policy>();
-			List<Policy>policies = this.cache.get(entityID);
-		
-			if(policies != null)
-				clonedList.addAll(policies);
-			
-			return (Vector<Policy>)clonedList.clone();						
-		}
-		finally
-		{
-			this.rwl.readLock().unlock();
-		}
-		
+		return new Vector<Policy>(this.getEntry(entityID).policies);
+	}
+
+
+	/*
+	 * @see com.qut.middleware.esoe.pdp.cache.CompiledPolicyCache#getCompiledPolicies(java.lang.String)
+	 */
+	public List<CompiledPolicy> getCompiledPolicies(String entityID)
+	{
+		return this.getEntry(entityID).index.getPolicies();
+	}
+
+
+	/*
+	 * @see com.qut.middleware.esoe.pdp.cache.CompiledPolicyCache#getResourceIndex(java.lang.String)
+	 */
+	public ResourceIndex getResourceIndex(String entityID)
+	{
+		// indexes are immutable so can be shared with the caller
+		return this.getEntry(entityID).index;
 	}
 
 
@@ -117,37 +135,58 @@ public class AuthzPolicyCacheImpl implements AuthzPolicyCache
 	 */
 	public boolean remove(String entityID)
 	{
-		this.rwl.writeLock().lock();
-		
-		try
+		synchronized(this.writeLock)
 		{
-			return (this.cache.remove(entityID) != null);
-		}
-		finally
-		{
-			this.rwl.writeLock().unlock();
+			if(!this.cache.containsKey(entityID))
+				return false;
+			
+			Map<String, CacheEntry> newCache = new HashMap<String, CacheEntry>(this.cache);
+			newCache.remove(entityID);
+			
+			this.cache = Collections.unmodifiableMap(newCache);
 		}
+		
+		this.removeDecisions(entityID);
+		return true;
 	}
 
 
-	/* 
+	/* The given map is copied and its policies compiled before the new contents are published, so requests continue to
+	 * be evaluated against the previous contents until the update is complete.
+	 * 
 	 * @see com.qut.middleware.esoe.pdp.cache.bean.AuthzPolicyCache#setCache(com.qut.middleware.esoe.xml.lxacml.Policy)
 	 */
 	public void setCache(Map<String, List<Policy>> newData)
 	{
-		this.rwl.writeLock().lock();
+		if(newData == null)
+			return;
 		
-		try
+		Map<String, CacheEntry> newCache = new HashMap<String, CacheEntry>();
+		for(Map.Entry<String, List<Policy>> entry : newData.entrySet())
 		{
+			List<Policy> policies = entry.getValue();
 			
-			if(newData != null)
-				this.cache = newData;
+			if(policies != null)
+				newCache.put(entry.getKey(), new CacheEntry(new Vector<Policy>(policies)));
 		}
-		finally
+		
+		synchronized(this.writeLock)
 		{
-			this.rwl.writeLock().unlock();
+			this.cache = Collections.unmodifiableMap(newCache);
 		}
 		
+		for(DecisionCache decisionCache : this.decisionCaches)
+			decisionCache.clear();
+	}
+
+
+	/*
+	 * @see com.qut.middleware.esoe.pdp.cache.CompiledPolicyCache#addDecisionCache(com.qut.middleware.esoe.pdp.cache.DecisionCache)
+	 */
+	public void addDecisionCache(DecisionCache decisionCache)
+	{
+		if(decisionCache != null && !this.decisionCaches.contains(decisionCache))
+			this.decisionCaches.add(decisionCache);
 	}
 
 
@@ -157,17 +196,7 @@ public class AuthzPolicyCacheImpl implements AuthzPolicyCache
 	 */
 	public long getBuildSequenceId()
 	{
-		this.rwl.readLock().lock();
-		
-		try
-		{
-			return this.sequenceId;
-		}
-		finally
-		{
-			this.rwl.readLock().unlock();
-		}
-		
+		return this.sequenceId;
 	}
 
 	/*
@@ -176,16 +205,7 @@ public class AuthzPolicyCacheImpl implements AuthzPolicyCache
 	 */
 	public void setBuildSequenceId(long sequenceId)
 	{
-		this.rwl.writeLock().lock();
-		
-		try
-		{
-			this.sequenceId = sequenceId;
-		}
-		finally
-		{
-			this.rwl.writeLock().unlock();
-		}
+		this.sequenceId = sequenceId;
 	}
 
 	/*
@@ -194,16 +214,36 @@ public class AuthzPolicyCacheImpl implements AuthzPolicyCache
 	 */
 	public int getSize()
 	{
-		this.rwl.readLock().lock();
+		return this.cache.size();
+	}
+
+	/* Decisions added by requests still evaluating against the replaced index are caught as stale by the decision cache */
+	private void removeDecisions(String entityID)
+	{
+		for(DecisionCache decisionCache : this.decisionCaches)
+			decisionCache.removeDecisions(entityID);
+	}
+	
+	private CacheEntry getEntry(String entityID)
+	{
+		CacheEntry entry = this.cache.get(entityID);
 		
-		try
-		{		
-			return this.cache.size();
-		}
-		finally
+		if(entry == null)
+			return EMPTY_ENTRY;
+		
+		return entry;
+	}
+	
+	/* The policies of an entity and their compiled form, never modified once constructed */
+	private static class CacheEntry
+	{
+		protected final List<Policy> policies;
+		protected final ResourceIndex index;
+		
+		protected CacheEntry(Vector<Policy> policies)
 		{
-			this.rwl.readLock().unlock();
+			this.policies = Collections.unmodifiableList(policies);
+			this.index = new ResourceIndex(PolicyCompiler.compile(policies));
 		}
 	}
-
 }
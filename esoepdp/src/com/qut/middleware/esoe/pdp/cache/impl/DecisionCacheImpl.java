@@ -0,0 +1,276 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Bounded, least recently used cache of authorization decisions made by the PDP.
+ */
+package com.qut.middleware.esoe.pdp.cache.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.qut.middleware.esoe.pdp.cache.DecisionCache;
+import com.qut.middleware.esoe.pdp.cache.DecisionKey;
+import com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex;
+import com.qut.middleware.esoe.pdp.processor.impl.DecisionData;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+
+/** Decision cache bounded by discarding the least recently used decisions. Decisions are spread over a number of
+ * independently locked segments by key, each holding an equal share of the maximum size, so concurrent lookups
+ * seldom contend for the same lock.
+ */
+public class DecisionCacheImpl implements DecisionCache
+{
+	private static final int DEFAULT_MAX_SIZE = 10000;
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong stale = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates a cache holding at most 10000 decisions.
+	 */
+	public DecisionCacheImpl()
+	{
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize The maximum number of decisions to hold. The cache holds at most this many decisions, but may
+	 * begin to discard decisions before it is reached if keys are unevenly spread across segments.
+	 */
+	public DecisionCacheImpl(int maxSize)
+	{
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("Maximum size of the decision cache must be greater than zero."); //$NON-NLS-1$
+
+		int segmentCount = Math.min(SEGMENTS, maxSize);
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++)
+		{
+			// distribute the remainder so the segment sizes add up to the maximum
+			this.segments[i] = new Segment(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.qut.middleware.esoe.pdp.cache.DecisionCache#getDecision(com.qut.middleware.esoe.pdp.cache.DecisionKey, com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex, com.qut.middleware.esoe.pdp.processor.impl.DecisionData)
+	 */
+	public DecisionType getDecision(DecisionKey key, ResourceIndex index, DecisionData decisionData)
+	{
+		Segment segment = this.segmentFor(key);
+		CachedDecision cached;
+
+		synchronized (segment)
+		{
+			cached = segment.get(key);
+
+			// made against policies which have since been replaced, it can never be returned again
+			if (cached != null && cached.index != index)
+			{
+				segment.remove(key);
+				this.stale.incrementAndGet();
+				cached = null;
+			}
+		}
+
+		if (cached == null)
+		{
+			this.misses.incrementAndGet();
+			return null;
+		}
+
+		this.hits.incrementAndGet();
+
+		// entries are never modified once stored, so may be copied outside the lock
+		if (decisionData != null)
+			decisionData.copyFrom(cached.decisionData);
+
+		return cached.decision;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.qut.middleware.esoe.pdp.cache.DecisionCache#addDecision(com.qut.middleware.esoe.pdp.cache.DecisionKey, com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex, com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType, com.qut.middleware.esoe.pdp.processor.impl.DecisionData)
+	 */
+	public void addDecision(DecisionKey key, ResourceIndex index, DecisionType decision, DecisionData decisionData)
+	{
+		DecisionData copy = new DecisionData();
+		copy.copyFrom(decisionData);
+		CachedDecision cached = new CachedDecision(index, decision, copy);
+
+		Segment segment = this.segmentFor(key);
+		synchronized (segment)
+		{
+			segment.put(key, cached);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.qut.middleware.esoe.pdp.cache.DecisionCache#removeDecisions(java.lang.String)
+	 */
+	public int removeDecisions(String entityID)
+	{
+		int removed = 0;
+
+		// policy updates are rare, so every segment is scanned rather than indexing keys by entity
+		for (Segment segment : this.segments)
+		{
+			synchronized (segment)
+			{
+				Iterator<DecisionKey> keyIterator = segment.keySet().iterator();
+				while (keyIterator.hasNext())
+				{
+					DecisionKey key = keyIterator.next();
+					if (entityID == null ? key.getEntityID() == null : entityID.equals(key.getEntityID()))
+					{
+						keyIterator.remove();
+						removed++;
+					}
+				}
+			}
+		}
+
+		return removed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.qut.middleware.esoe.pdp.cache.DecisionCache#clear()
+	 */
+	public void clear()
+	{
+		for (Segment segment : this.segments)
+		{
+			synchronized (segment)
+			{
+				segment.clear();
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.qut.middleware.esoe.pdp.cache.DecisionCache#getSize()
+	 */
+	public int getSize()
+	{
+		int size = 0;
+		for (Segment segment : this.segments)
+		{
+			synchronized (segment)
+			{
+				size += segment.size();
+			}
+		}
+
+		return size;
+	}
+
+	public long getHitCount()
+	{
+		return this.hits.get();
+	}
+
+	public long getMissCount()
+	{
+		return this.misses.get();
+	}
+
+	public long getStaleCount()
+	{
+		return this.stale.get();
+	}
+
+	public long getEvictionCount()
+	{
+		return this.evictions.get();
+	}
+
+	public double getHitRate()
+	{
+		long hitCount = this.hits.get();
+		long total = hitCount + this.misses.get();
+
+		if (total == 0)
+			return 0;
+
+		return (double) hitCount / total;
+	}
+
+	private Segment segmentFor(DecisionKey key)
+	{
+		int hash = key.hashCode();
+
+		// spread the higher bits, as the low bits of string based hashes are not well distributed
+		hash ^= (hash >>> 16);
+
+		return this.segments[(hash & 0x7fffffff) % this.segments.length];
+	}
+
+	/* Access ordered map discarding its least recently used entry when full, guarded by its own monitor */
+	private class Segment extends LinkedHashMap<DecisionKey, CachedDecision>
+	{
+		private static final long serialVersionUID = 7129587473061290553L;
+
+		private final int maxSize;
+
+		Segment(int maxSize)
+		{
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<DecisionKey, CachedDecision> eldest)
+		{
+			if (size() > this.maxSize)
+			{
+				DecisionCacheImpl.this.evictions.incrementAndGet();
+				return true;
+			}
+
+			return false;
+		}
+	}
+
+	private static class CachedDecision
+	{
+		final ResourceIndex index;
+		final DecisionType decision;
+		final DecisionData decisionData;
+
+		CachedDecision(ResourceIndex index, DecisionType decision, DecisionData decisionData)
+		{
+			this.index = index;
+			this.decision = decision;
+			this.decisionData = decisionData;
+		}
+	}
+}
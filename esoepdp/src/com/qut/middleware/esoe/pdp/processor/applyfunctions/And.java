@@ -83,12 +83,14 @@ public class And
 			// if any returns evaluate to false, no dice
 			if (!result)
 			{
-				this.logger.debug(MessageFormat.format("Evaluation of {0} completed. Returning FALSE.", FUNCTION_NAME ) );
+				if (this.logger.isDebugEnabled())
+					this.logger.debug(MessageFormat.format("Evaluation of {0} completed. Returning FALSE.", FUNCTION_NAME ));
 				return false;
 			}
 		}
 
-		this.logger.debug(MessageFormat.format("Evaluation of {0} completed. Returning TRUE.", FUNCTION_NAME ) );
+		if (this.logger.isDebugEnabled())
+			this.logger.debug(MessageFormat.format("Evaluation of {0} completed. Returning TRUE.", FUNCTION_NAME ));
 		return true;
 	}
 
@@ -100,12 +100,14 @@ public class Or
 			// if any returns evaluate to true, the OR is successful
 			if (result)
 			{
-				this.logger.debug(MessageFormat.format("Evaluation of {0} completed. Returning TRUE.", FUNCTION_NAME ) );
+				if (this.logger.isDebugEnabled())
+					this.logger.debug(MessageFormat.format("Evaluation of {0} completed. Returning TRUE.", FUNCTION_NAME ));
 				return true;
 			}
 		}
 
-		this.logger.debug(MessageFormat.format("Evaluation of {0} completed. Returning FALSE.", FUNCTION_NAME ) );
+		if (this.logger.isDebugEnabled())
+			this.logger.debug(MessageFormat.format("Evaluation of {0} completed. Returning FALSE.", FUNCTION_NAME ));
 		return false;
 	}
 }
@@ -40,7 +40,9 @@ public class StringEqual
 	@SuppressWarnings("unchecked")//$NON-NLS-1$
 	public boolean evaluateExpression(JAXBElement<ApplyType> node, Map<String, List<String>> principalAttributes)
 	{
-		String logMessage = "Evaluating string equal " ; //$NON-NLS-1$
+		// the trail of comparisons made is only recorded if it will be logged
+		boolean debug = this.logger.isDebugEnabled();
+		StringBuilder logMessage = debug ? new StringBuilder("Evaluating string equal ") : null; //$NON-NLS-1$
 		String function = null;
 		boolean toLower = false;
 		boolean normalizeSpaces = false;
@@ -116,20 +118,19 @@ public class StringEqual
 		// for each policy specified subject designator, retrieve any matching identity attributes from the principal.
 		List<List<String>> matchingIdentityAttributes = new Vector<List<String>>();
 		Iterator subjDesignatorIter = subjectDesignatorAttributes.iterator();
-		while (subjDesignatorIter.hasNext())
-		{
-			// make sure the attribute exists, if so add
-			if (principalAttributes != null)
+		if (principalAttributes == null)
+			this.logger.debug("Attributes for given Principal are null. Unable to match any values.");
+		else
+			while (subjDesignatorIter.hasNext())
 			{
+				// make sure the attribute exists, if so add
 				List<String> attributes = principalAttributes.get(subjDesignatorIter.next());
 				if (attributes != null)
 					matchingIdentityAttributes.add(attributes);
 			}
-			else
-				this.logger.debug("Attributes for given Principal are null. Unable to match any values.");
-		}
 
-		this.logger.trace(MessageFormat.format("Populated {0} Identity attributes that matched a SubjectAttribute designator.", matchingIdentityAttributes.size())  );
+		if (this.logger.isTraceEnabled())
+			this.logger.trace(MessageFormat.format("Populated {0} Identity attributes that matched a SubjectAttribute designator.", matchingIdentityAttributes.size())  );
 
 		Iterator subjectAttributeIterator = attributeValues.iterator();
 		while (subjectAttributeIterator.hasNext())
@@ -141,9 +142,10 @@ public class StringEqual
 			
 			// if the principal's identity attributes did not match any requested attributes as
 			// specified by the policy, format our message accordingly
-			if (!matchingAttributes.hasNext())
+			if (debug && !matchingAttributes.hasNext())
 			{
-				logMessage = "{null.equals(" + matcher + ")}"; //$NON-NLS-1$ //$NON-NLS-2$
+				logMessage.setLength(0);
+				logMessage.append("{null.equals(").append(matcher).append(")}"); //$NON-NLS-1$ //$NON-NLS-2$
 			}			
 			
 			while (matchingAttributes.hasNext())
@@ -163,9 +165,10 @@ public class StringEqual
 				Iterator attributeValueIterator = attribute.iterator();
 
 				// if no attribute values for the slected attribute, format our message accordingly
-				if (!attributeValueIterator.hasNext())
+				if (debug && !attributeValueIterator.hasNext())
 				{
-					logMessage = "{null.equals(" + matcher + ")}"; //$NON-NLS-1$ //$NON-NLS-2$
+					logMessage.setLength(0);
+					logMessage.append("{null.equals(").append(matcher).append(")}"); //$NON-NLS-1$ //$NON-NLS-2$
 				}
 				while (attributeValueIterator.hasNext())
 				{
@@ -173,11 +176,13 @@ public class StringEqual
 
 					try
 					{						
-						logMessage += "{" + attrValue + ".equals(" + matcher + ")}" ;
+						if (debug)
+							logMessage.append('{').append(attrValue).append(".equals(").append(matcher).append(")}"); //$NON-NLS-1$ //$NON-NLS-2$
 						
 						if (attrValue.matches(matcher))
 						{
-							this.logger.debug(logMessage + ". Returning TRUE."); //$NON-NLS-1$
+							if (debug)
+								this.logger.debug(logMessage.append(". Returning TRUE.").toString()); //$NON-NLS-1$
 							return true;
 						}
 					}
@@ -189,7 +194,8 @@ public class StringEqual
 			}
 		}
 
-		this.logger.debug(logMessage + ". Returning FALSE."); //$NON-NLS-1$
+		if (debug)
+			this.logger.debug(logMessage.append(". Returning FALSE.").toString()); //$NON-NLS-1$
 		
 		return false;
 	}
@@ -47,7 +47,9 @@ public class StringRegex
 	@SuppressWarnings("unchecked")//$NON-NLS-1$
 	public boolean evaluateExpression(JAXBElement<ApplyType> node, Map<String, List<String>> principalAttributes)
 	{		
-		String logMessage = "Evaluating regex ";
+		// the trail of comparisons made is only recorded if it will be logged
+		boolean debug = this.logger.isDebugEnabled();
+		StringBuilder logMessage = debug ? new StringBuilder("Evaluating regex ") : null; //$NON-NLS-1$
 		String function = null;
 		boolean toLower = false;
 		boolean normalizeSpaces = false;
@@ -125,17 +127,15 @@ public class StringRegex
 		// for each policy specified subject attribute designator, store any identity attributes that match the designator.
 		List<List<String>> matchingIdentityAttributes = new Vector<List<String>>();
 		Iterator subjDesignatorIter = subjectDesignatorAttributes.iterator();
-		while (subjDesignatorIter.hasNext())
-		{			
-			if (principalAttributes != null)
-			{
+		if (principalAttributes == null)
+			this.logger.debug("Attributes for given Principal are null. Unable to match any values.");
+		else
+			while (subjDesignatorIter.hasNext())
+			{			
 				List<String> attribs = principalAttributes.get(subjDesignatorIter.next());
 				if (attribs != null)
 					matchingIdentityAttributes.add(attribs);
 			}
-			else
-				this.logger.debug("Attributes for given Principal are null. Unable to match any values.");
-		}
 
 		// Attempt to match against policy defined values
 		Iterator policyAttributes = policyAttributeValues.iterator();
@@ -149,9 +149,10 @@ public class StringRegex
 			
 			// If the principal's identity attributes did not match any requested attributes as
 			// specified by the policy, format our message accordingly.
-			if (!matchingAttributes.hasNext())
+			if (debug && !matchingAttributes.hasNext())
 			{
-				logMessage = "{null.matches(" + matcher + ")}"; //$NON-NLS-1$ //$NON-NLS-2$
+				logMessage.setLength(0);
+				logMessage.append("{null.matches(").append(matcher).append(")}"); //$NON-NLS-1$ //$NON-NLS-2$
 			}
 			
 			while (matchingAttributes.hasNext())
@@ -171,9 +172,10 @@ public class StringRegex
 				Iterator attributeValueIterator = attribute.iterator();
 
 				// if no attribute values for the slected attribute, format our message accordingly
-				if (!attributeValueIterator.hasNext())
+				if (debug && !attributeValueIterator.hasNext())
 				{
-					logMessage = "{null.equals(" + matcher + ")}"; //$NON-NLS-1$ //$NON-NLS-2$
+					logMessage.setLength(0);
+					logMessage.append("{null.equals(").append(matcher).append(")}"); //$NON-NLS-1$ //$NON-NLS-2$
 				}
 				while (attributeValueIterator.hasNext())
 				{
@@ -181,11 +183,13 @@ public class StringRegex
 
 					try
 					{						
-						logMessage += "{" + attrValue + ".matches(" + matcher + ")}" ;
+						if (debug)
+							logMessage.append('{').append(attrValue).append(".matches(").append(matcher).append(")}"); //$NON-NLS-1$ //$NON-NLS-2$
 						
 						if (attrValue.matches(matcher))
 						{
-							this.logger.debug(logMessage + ". Returning TRUE."); //$NON-NLS-1$
+							if (debug)
+								this.logger.debug(logMessage.append(". Returning TRUE.").toString()); //$NON-NLS-1$
 							return true;
 						}
 					}
@@ -197,7 +201,8 @@ public class StringRegex
 			}
 		}
 
-		this.logger.debug(logMessage + ". Returning FALSE."); //$NON-NLS-1$
+		if (debug)
+			this.logger.debug(logMessage.append(". Returning FALSE.").toString()); //$NON-NLS-1$
 		return false;
 	}
 
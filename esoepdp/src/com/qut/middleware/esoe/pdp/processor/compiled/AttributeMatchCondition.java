@@ -0,0 +1,128 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Compiled form of the LXACML string-equal and string-regex-match functions.
+ */
+package com.qut.middleware.esoe.pdp.processor.compiled;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/** Compiled form of the LXACML string-equal and string-regex-match functions. Both functions are evaluated as regular
+ * expression matches of the principal's attribute values against the policy values, so policy values containing no
+ * regular expression syntax are compared directly and all others are compiled to a Pattern once.
+ */
+final class AttributeMatchCondition implements Condition
+{
+	private final String[] designators;
+	private final String[] literals;
+	private final Pattern[] patterns;
+	private final boolean toLower;
+	private final boolean normalizeSpace;
+
+	/**
+	 * @param designators The principal attribute names the values are matched against.
+	 * @param literals Policy values which match only themselves.
+	 * @param patterns Compiled policy values. Values which were not valid regular expressions are omitted, as they
+	 * can never match.
+	 * @param toLower Whether attribute values are converted to lower case before matching.
+	 * @param normalizeSpace Whether trailing whitespace is removed from attribute values before matching.
+	 */
+	AttributeMatchCondition(String[] designators, String[] literals, Pattern[] patterns, boolean toLower, boolean normalizeSpace)
+	{
+		this.designators = designators;
+		this.literals = literals;
+		this.patterns = patterns;
+		this.toLower = toLower;
+		this.normalizeSpace = normalizeSpace;
+	}
+
+	public boolean evaluate(Map<String, List<String>> principalAttributes)
+	{
+		if (principalAttributes == null)
+			return false;
+
+		for (int i = 0; i < this.designators.length; i++)
+		{
+			List<String> values = principalAttributes.get(this.designators[i]);
+			if (values == null)
+				continue;
+
+			for (String value : values)
+			{
+				if (value == null)
+					continue;
+
+				if (this.matches(this.normalize(value)))
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	public void addAttributeNames(Set<String> names)
+	{
+		for (int i = 0; i < this.designators.length; i++)
+		{
+			names.add(this.designators[i]);
+		}
+	}
+
+	private boolean matches(String value)
+	{
+		for (int i = 0; i < this.literals.length; i++)
+		{
+			if (this.literals[i].equals(value))
+				return true;
+		}
+
+		for (int i = 0; i < this.patterns.length; i++)
+		{
+			if (this.patterns[i].matcher(value).matches())
+				return true;
+		}
+
+		return false;
+	}
+
+	/* Applies the same transformations as StringNormalizeLower and StringNormalizeSpace, in the same order */
+	private String normalize(String value)
+	{
+		if (this.toLower)
+			value = value.toLowerCase();
+
+		if (this.normalizeSpace)
+		{
+			int end = value.length();
+			while (end > 0 && isWhitespace(value.charAt(end - 1)))
+				end--;
+
+			value = value.substring(0, end);
+		}
+
+		return value;
+	}
+
+	/* Matches the characters in the regex \s class */
+	private static boolean isWhitespace(char c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+	}
+}
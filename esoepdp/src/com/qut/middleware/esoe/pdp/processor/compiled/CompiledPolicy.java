@@ -0,0 +1,80 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Immutable compiled form of an LXACML Policy.
+ */
+package com.qut.middleware.esoe.pdp.processor.compiled;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/** Immutable compiled form of an LXACML Policy. */
+public final class CompiledPolicy
+{
+	private final String policyId;
+	private final TargetResource[] resources;
+	private final CompiledRule[] rules;
+	private final String[] attributeNames;
+
+	CompiledPolicy(String policyId, TargetResource[] resources, CompiledRule[] rules)
+	{
+		this.policyId = policyId;
+		this.resources = resources;
+		this.rules = rules;
+
+		Set<String> names = new TreeSet<String>();
+		for (int i = 0; i < rules.length; i++)
+		{
+			if (rules[i].getCondition() != null)
+				rules[i].getCondition().addAttributeNames(names);
+		}
+		this.attributeNames = names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * @return The ID of the policy.
+	 */
+	public String getPolicyId()
+	{
+		return this.policyId;
+	}
+
+	/**
+	 * @return The resource targets of the policy. The returned array must not be modified.
+	 */
+	public TargetResource[] getResources()
+	{
+		return this.resources;
+	}
+
+	/**
+	 * @return The rules of the policy, in document order. The returned array must not be modified.
+	 */
+	public CompiledRule[] getRules()
+	{
+		return this.rules;
+	}
+
+	/**
+	 * @return The sorted, distinct names of the principal attributes referred to by the conditions of the policy's
+	 * rules. Decisions made against the policy depend on no other attributes. The returned array must not be modified.
+	 */
+	public String[] getAttributeNames()
+	{
+		return this.attributeNames;
+	}
+}
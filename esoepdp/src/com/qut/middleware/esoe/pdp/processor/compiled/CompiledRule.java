@@ -0,0 +1,102 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Immutable compiled form of an LXACML Rule.
+ */
+package com.qut.middleware.esoe.pdp.processor.compiled;
+
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+
+/** Immutable compiled form of an LXACML Rule. Target resources and actions have already been resolved against the
+ * enclosing policy, so a rule without targets of its own holds those of its policy.
+ */
+public final class CompiledRule
+{
+	private final String ruleId;
+	private final DecisionType effect;
+	private final TargetResource[] resources;
+	private final String[] actions;
+	private final Condition condition;
+
+	CompiledRule(String ruleId, DecisionType effect, TargetResource[] resources, String[] actions, Condition condition)
+	{
+		this.ruleId = ruleId;
+		this.effect = effect;
+		this.resources = resources;
+		this.actions = actions;
+		this.condition = condition;
+	}
+
+	/**
+	 * @return The ID of the rule.
+	 */
+	public String getRuleId()
+	{
+		return this.ruleId;
+	}
+
+	/**
+	 * @return The decision applied when the rule's condition matches, or null if the rule has no recognised effect.
+	 */
+	public DecisionType getEffect()
+	{
+		return this.effect;
+	}
+
+	/**
+	 * @return The resource targets of the rule. The returned array must not be modified.
+	 */
+	public TargetResource[] getResources()
+	{
+		return this.resources;
+	}
+
+	/**
+	 * @return The actions the rule applies to, or null if it applies to any action. The returned array must not be
+	 * modified.
+	 */
+	public String[] getActions()
+	{
+		return this.actions;
+	}
+
+	/**
+	 * @return The compiled condition of the rule, or null if the rule has no condition and so always applies.
+	 */
+	public Condition getCondition()
+	{
+		return this.condition;
+	}
+
+	/**
+	 * @param action The action specified in the authorization request.
+	 * @return true if the rule applies to the given action.
+	 */
+	public boolean isValidAction(String action)
+	{
+		if (this.actions == null)
+			return true;
+
+		for (int i = 0; i < this.actions.length; i++)
+		{
+			if (this.actions[i].equals(action))
+				return true;
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: A policy condition compiled into an executable predicate.
+ */
+package com.qut.middleware.esoe.pdp.processor.compiled;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** A policy condition compiled into an executable predicate. Implementations are immutable and may be evaluated
+ * concurrently by any number of threads.
+ */
+public interface Condition
+{
+	/** Evaluates the condition against the attributes of a principal.
+	 * 
+	 * @param principalAttributes The attributes to match against, may be null.
+	 * @return true if the condition holds for the given attributes, else false.
+	 * @throws IllegalArgumentException if the condition was compiled from an invalid expression. As with the
+	 * interpreted apply functions, this is only raised if evaluation reaches the invalid expression.
+	 */
+	public boolean evaluate(Map<String, List<String>> principalAttributes);
+
+	/** Adds the names of the principal attributes the condition refers to. The outcome of evaluation depends only on
+	 * the values of these attributes.
+	 * 
+	 * @param names The set to add the attribute names to.
+	 */
+	public void addAttributeNames(Set<String> names);
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Condition with a fixed outcome.
+ */
+package com.qut.middleware.esoe.pdp.processor.compiled;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Condition with a fixed outcome, used for expressions which can never match such as unknown functions. */
+final class ConstantCondition implements Condition
+{
+	static final ConstantCondition FALSE = new ConstantCondition(false);
+
+	private final boolean value;
+
+	private ConstantCondition(boolean value)
+	{
+		this.value = value;
+	}
+
+	public boolean evaluate(Map<String, List<String>> principalAttributes)
+	{
+		return this.value;
+	}
+
+	public void addAttributeNames(Set<String> names)
+	{
+		// refers to no attributes
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Compiled form of the LXACML not function.
+ */
+package com.qut.middleware.esoe.pdp.processor.compiled;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Compiled form of the LXACML not function, which holds if none of its children hold. */
+final class NotCondition implements Condition
+{
+	private final Condition[] children;
+	private final boolean truncated;
+
+	/**
+	 * @param children The compiled child expressions, in document order.
+	 * @param truncated Whether the expression contained a child which is not an apply element. Evaluation stops and
+	 * returns false on reaching such a child.
+	 */
+	NotCondition(Condition[] children, boolean truncated)
+	{
+		this.children = children;
+		this.truncated = truncated;
+	}
+
+	public boolean evaluate(Map<String, List<String>> principalAttributes)
+	{
+		for (int i = 0; i < this.children.length; i++)
+		{
+			if (this.children[i].evaluate(principalAttributes))
+				return false;
+		}
+
+		return !this.truncated;
+	}
+
+	public void addAttributeNames(Set<String> names)
+	{
+		for (int i = 0; i < this.children.length; i++)
+		{
+			this.children[i].addAttributeNames(names);
+		}
+	}
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Compiles LXACML policies into immutable structures which can be evaluated without interpreting the JAXB tree.
+ */
+package com.qut.middleware.esoe.pdp.processor.compiled;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.xml.bind.JAXBElement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.And;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.Not;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.Or;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.StringEqual;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.StringNormalizeLower;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.StringNormalizeSpace;
+import com.qut.middleware.esoe.pdp.processor.applyfunctions.StringRegex;
+import com.qut.middleware.esoe.pdp.processor.impl.PolicyEvaluator;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.ApplyType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.AttributeValueType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.ConditionType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.EffectType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Policy;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.Rule;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.SubjectAttributeDesignatorType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+
+/** Compiles LXACML policies into immutable structures which can be evaluated without interpreting the JAXB tree.
+ * 
+ * The compiled form gives the same outcome as the interpreted apply functions for any policy that has been validated
+ * against the LXACML schema. Targets and attribute values are extracted once, regular expressions are compiled once,
+ * and expressions which can never match, such as unknown functions, are folded to constants. Invalid expressions
+ * compile to a condition which raises IllegalArgumentException when evaluated, as the apply functions do.
+ */
+public class PolicyCompiler
+{
+	/* Characters which give a regular expression a meaning other than the literal string */
+	private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}"; //$NON-NLS-1$
+
+	private static Logger logger = LoggerFactory.getLogger(PolicyCompiler.class.getName());
+
+	/** Compile a list of policies.
+	 * 
+	 * @param policies The policies to compile.
+	 * @return The compiled policies, in the same order.
+	 */
+	public static List<CompiledPolicy> compile(List<Policy> policies)
+	{
+		List<CompiledPolicy> compiled = new ArrayList<CompiledPolicy>(policies.size());
+
+		for (Policy policy : policies)
+		{
+			compiled.add(compile(policy));
+		}
+
+		return compiled;
+	}
+
+	/** Compile a single policy and all of its rules.
+	 * 
+	 * @param policy The policy to compile.
+	 * @return The compiled policy.
+	 */
+	public static CompiledPolicy compile(Policy policy)
+	{
+		TargetResource[] policyResources = compileResources(getPolicyTargetResources(policy));
+		List<String> policyActions = PolicyEvaluator.getPolicyTargetActions(policy);
+
+		CompiledRule[] rules = new CompiledRule[policy.getRules().size()];
+		int i = 0;
+		for (Rule rule : policy.getRules())
+		{
+			rules[i++] = compile(rule, policyResources, policyActions);
+		}
+
+		return new CompiledPolicy(policy.getPolicyId(), policyResources, rules);
+	}
+
+	/** Compile a single regular expression target.
+	 * 
+	 * @param target The target string as it appears in the policy.
+	 * @return The compiled target.
+	 */
+	public static TargetResource compileResource(String target)
+	{
+		Pattern pattern = null;
+
+		if (!isLiteral(target))
+		{
+			try
+			{
+				pattern = Pattern.compile(target);
+			}
+			catch (PatternSyntaxException e)
+			{
+				logger.warn(MessageFormat.format("Resource target {0} is not a valid regular expression. It will only match an identical resource.", target)); //$NON-NLS-1$
+			}
+		}
+
+		return new TargetResource(target, pattern);
+	}
+
+	/** Compile the condition of a rule.
+	 * 
+	 * @param condition The condition element of the rule, may be null.
+	 * @return The compiled condition, or null if there is no condition expression to evaluate.
+	 */
+	public static Condition compile(ConditionType condition)
+	{
+		if (condition == null || condition.getExpression() == null)
+			return null;
+
+		JAXBElement<?> root = condition.getExpression();
+
+		if (root.getDeclaredType() != ApplyType.class)
+			return new InvalidCondition("Root Node of Condition is not an Apply Element."); //$NON-NLS-1$
+
+		ApplyType apply = (ApplyType) root.getValue();
+		if (apply.getFunctionId() == null)
+			return new InvalidCondition("Function ID of root Node does not exist. Unable to parse policy data."); //$NON-NLS-1$
+
+		return compileApply(apply);
+	}
+
+	/* Compile a rule, resolving any targets the rule does not specify itself against its policy */
+	private static CompiledRule compile(Rule rule, TargetResource[] policyResources, List<String> policyActions)
+	{
+		TargetResource[] resources = policyResources;
+		List<String> ruleResources = PolicyEvaluator.getRuleTargetResources(rule);
+		if (ruleResources != null)
+			resources = compileResources(ruleResources);
+
+		List<String> actions = PolicyEvaluator.getRuleTargetActions(rule);
+		if (actions == null || actions.size() == 0)
+			actions = policyActions;
+
+		String[] actionArray = null;
+		if (actions != null && actions.size() > 0)
+			actionArray = actions.toArray(new String[actions.size()]);
+
+		DecisionType effect = null;
+		if (rule.getEffect() == EffectType.PERMIT)
+			effect = DecisionType.PERMIT;
+		else
+			if (rule.getEffect() == EffectType.DENY)
+				effect = DecisionType.DENY;
+
+		return new CompiledRule(rule.getRuleId(), effect, resources, actionArray, compile(rule.getCondition()));
+	}
+
+	/* Compile an apply element, dispatching on its function in the same way as the apply functions */
+	private static Condition compileApply(ApplyType apply)
+	{
+		String function = apply.getFunctionId();
+
+		if (function == null)
+			return new InvalidCondition("Function ID of Apply element does not exist. Unable to parse policy data."); //$NON-NLS-1$
+
+		if (function.equals(Or.FUNCTION_NAME))
+		{
+			List<Condition> children = new ArrayList<Condition>();
+			compileChildren(apply, children);
+			return new OrCondition(children.toArray(new Condition[children.size()]));
+		}
+
+		if (function.equals(Not.FUNCTION_NAME))
+		{
+			List<Condition> children = new ArrayList<Condition>();
+			boolean truncated = compileChildren(apply, children);
+			return new NotCondition(children.toArray(new Condition[children.size()]), truncated);
+		}
+
+		if (function.equals(And.FUNCTION_NAME))
+		{
+			List<Condition> children = new ArrayList<Condition>();
+			boolean truncated = compileChildren(apply, children);
+			return new AndCondition(children.toArray(new Condition[children.size()]), truncated);
+		}
+
+		if (function.equals(StringRegex.FUNCTION_NAME) || function.equals(StringEqual.FUNCTION_NAME))
+			return compileAttributeMatch(apply, function);
+
+		return ConstantCondition.FALSE;
+	}
+
+	/* Compile the children of a logical function, returning true if a child that is not an apply element was found */
+	private static boolean compileChildren(ApplyType apply, List<Condition> children)
+	{
+		for (JAXBElement<?> child : apply.getExpressions())
+		{
+			if (child.getDeclaredType() != ApplyType.class)
+				return true;
+
+			children.add(compileApply((ApplyType) child.getValue()));
+		}
+
+		return false;
+	}
+
+	/* Compile a string-equal or string-regex-match function */
+	private static Condition compileAttributeMatch(ApplyType apply, String function)
+	{
+		List<String> designators = new ArrayList<String>();
+		List<String> values = new ArrayList<String>();
+		boolean toLower = false;
+		boolean normalizeSpace = false;
+
+		for (JAXBElement<?> child : apply.getExpressions())
+		{
+			if (child.getDeclaredType() == SubjectAttributeDesignatorType.class)
+			{
+				SubjectAttributeDesignatorType designator = (SubjectAttributeDesignatorType) child.getValue();
+				if (designator != null)
+					designators.add(designator.getAttributeId());
+			}
+			else
+				if (child.getDeclaredType() == AttributeValueType.class)
+				{
+					for (Object content : ((AttributeValueType) child.getValue()).getContent())
+					{
+						values.add(content.toString());
+					}
+				}
+				else
+					if (child.getDeclaredType() == ApplyType.class)
+					{
+						String childFunction = ((ApplyType) child.getValue()).getFunctionId();
+
+						if (StringNormalizeLower.FUNCTION_NAME.equals(childFunction))
+							toLower = true;
+						else
+							if (StringNormalizeSpace.FUNCTION_NAME.equals(childFunction))
+								normalizeSpace = true;
+							else
+								return new InvalidCondition(MessageFormat.format("Invalid Element. The {0} function can only contain a {1} OR {2}. Received {3}.", function, StringNormalizeLower.FUNCTION_NAME, StringNormalizeSpace.FUNCTION_NAME, childFunction)); //$NON-NLS-1$
+					}
+		}
+
+		if (designators.isEmpty() || values.isEmpty())
+			return new InvalidCondition("Given Expression does not contain BOTH a SubjectAttributeDesignator and AttributeValue. Unable to match content."); //$NON-NLS-1$
+
+		List<String> literals = new ArrayList<String>();
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		for (String value : values)
+		{
+			if (isLiteral(value))
+			{
+				literals.add(value);
+			}
+			else
+			{
+				try
+				{
+					patterns.add(Pattern.compile(value));
+				}
+				catch (PatternSyntaxException e)
+				{
+					logger.warn(MessageFormat.format("Invalid regex {0} found in content for expression {1}. It will never match.", value, function)); //$NON-NLS-1$
+				}
+			}
+		}
+
+		return new AttributeMatchCondition(designators.toArray(new String[designators.size()]), literals.toArray(new String[literals.size()]), patterns.toArray(new Pattern[patterns.size()]), toLower, normalizeSpace);
+	}
+
+	/* Policy resources, or none if the policy target is missing */
+	private static List<String> getPolicyTargetResources(Policy policy)
+	{
+		try
+		{
+			return PolicyEvaluator.getPolicyTargetResources(policy);
+		}
+		catch (NullPointerException e)
+		{
+			logger.warn(MessageFormat.format("Policy {0} has no resource targets. It will never match.", policy.getPolicyId())); //$NON-NLS-1$
+			return new ArrayList<String>();
+		}
+	}
+
+	private static TargetResource[] compileResources(List<String> targets)
+	{
+		TargetResource[] resources = new TargetResource[targets.size()];
+
+		int i = 0;
+		for (String target : targets)
+		{
+			resources[i++] = compileResource(target);
+		}
+
+		return resources;
+	}
+
+	/* A string containing no metacharacters only matches itself as a regular expression */
+	private static boolean isLiteral(String value)
+	{
+		for (int i = 0; i < value.length(); i++)
+		{
+			if (isMetacharacter(value.charAt(i)))
+				return false;
+		}
+
+		return true;
+	}
+
+	static boolean isMetacharacter(char c)
+	{
+		return REGEX_METACHARACTERS.indexOf(c) != -1;
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Index of the policy resource targets of an entity, used to find the policies a requested resource can match.
+ */
+package com.qut.middleware.esoe.pdp.processor.compiled;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Index of the policy resource targets of an entity, used to find the policies a requested resource can match
+ * without testing every target of every policy.
+ *
+ * Targets are held in a character trie. Literal targets are stored at the node for their full value and match only
+ * when the requested resource ends at that node. Regular expression targets are stored at the node for the literal
+ * prefix every matching resource must begin with, so only those whose prefix is a prefix of the requested resource
+ * are considered. Targets of the common form prefix.* are matched without running the regular expression.
+ *
+ * Instances are immutable once constructed and may be shared between threads.
+ */
+public final class ResourceIndex
+{
+	/* Characters which quantify the preceding character, so it can't be part of a required prefix */
+	private static final String REGEX_QUANTIFIERS = "?*{"; //$NON-NLS-1$
+
+	private static final String MATCH_ANY = ".*"; //$NON-NLS-1$
+
+	private static final char LINE_SEPARATOR = 0x2028;
+	private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+	private static final int LITERAL = 0;
+	private static final int PREFIX = 1;
+	private static final int REGEX = 2;
+
+	private final List<CompiledPolicy> policies;
+	private final Node root;
+	private final int size;
+
+	/**
+	 * @param policies The compiled policies of the entity, in the order they are evaluated.
+	 */
+	public ResourceIndex(List<CompiledPolicy> policies)
+	{
+		this.policies = Collections.unmodifiableList(new ArrayList<CompiledPolicy>(policies));
+
+		Builder builder = new Builder();
+		int size = 0;
+		for (int p = 0; p < this.policies.size(); p++)
+		{
+			TargetResource[] targets = this.policies.get(p).getResources();
+			for (int t = 0; t < targets.length; t++)
+			{
+				builder.add(new PolicyTarget(p, t, targets[t], size++));
+			}
+		}
+
+		this.root = builder.build();
+		this.size = size;
+	}
+
+	/**
+	 * @return The indexed policies, in the order they are evaluated.
+	 */
+	public List<CompiledPolicy> getPolicies()
+	{
+		return this.policies;
+	}
+
+	/**
+	 * @return The number of policy targets held in the index.
+	 */
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	/** Find the policy targets which match the requested resource.
+	 *
+	 * @param resource The requested resource.
+	 * @return The matching targets, ordered by policy and then by position within the policy target. May be zero sized.
+	 */
+	public List<PolicyTarget> getMatchingTargets(String resource)
+	{
+		List<PolicyTarget> matches = null;
+		Node node = this.root;
+		int depth = 0;
+
+		while (node != null)
+		{
+			for (int i = 0; i < node.entries.length; i++)
+			{
+				PolicyTarget entry = node.entries[i];
+				if (matches(entry, node.kinds[i], resource, depth))
+				{
+					if (matches == null)
+						matches = new ArrayList<PolicyTarget>(4);
+
+					matches.add(entry);
+				}
+			}
+
+			if (depth == resource.length())
+				break;
+
+			node = node.child(resource.charAt(depth++));
+		}
+
+		if (matches == null)
+			return Collections.emptyList();
+
+		// Entries are found in order of prefix length, evaluation requires them in policy order
+		if (matches.size() > 1)
+			Collections.sort(matches);
+
+		return matches;
+	}
+
+	private static boolean matches(PolicyTarget entry, int kind, String resource, int depth)
+	{
+		switch (kind)
+		{
+			case LITERAL:
+				return depth == resource.length();
+
+			case PREFIX:
+				// .* matches anything except a line terminator
+				for (int i = depth; i < resource.length(); i++)
+				{
+					char c = resource.charAt(i);
+					if (c == '\n' || c == '\r' || c == '\u0085' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR)
+						return false;
+				}
+				return true;
+
+			default:
+				return entry.getTarget().matches(resource);
+		}
+	}
+
+	/* Literal prefix that any resource matched by the given regular expression must begin with */
+	static String requiredPrefix(String regex)
+	{
+		// Alternation could allow a match which doesn't begin with the prefix
+		if (regex.indexOf('|') != -1)
+			return ""; //$NON-NLS-1$
+
+		int end = 0;
+		while (end < regex.length() && !PolicyCompiler.isMetacharacter(regex.charAt(end)))
+			end++;
+
+		// The last literal character is optional if it is quantified
+		if (end > 0 && end < regex.length() && REGEX_QUANTIFIERS.indexOf(regex.charAt(end)) != -1)
+			end--;
+
+		return regex.substring(0, end);
+	}
+
+	/** A resource target of an indexed policy. */
+	public static final class PolicyTarget implements Comparable<PolicyTarget>
+	{
+		private final int policyIndex;
+		private final int targetIndex;
+		private final TargetResource target;
+		private final int order;
+
+		PolicyTarget(int policyIndex, int targetIndex, TargetResource target, int order)
+		{
+			this.policyIndex = policyIndex;
+			this.targetIndex = targetIndex;
+			this.target = target;
+			this.order = order;
+		}
+
+		/**
+		 * @return The position of the policy in the indexed list.
+		 */
+		public int getPolicyIndex()
+		{
+			return this.policyIndex;
+		}
+
+		/**
+		 * @return The position of the target within the policy's resource targets.
+		 */
+		public int getTargetIndex()
+		{
+			return this.targetIndex;
+		}
+
+		/**
+		 * @return The target itself.
+		 */
+		public TargetResource getTarget()
+		{
+			return this.target;
+		}
+
+		public int compareTo(PolicyTarget other)
+		{
+			return this.order < other.order ? -1 : (this.order == other.order ? 0 : 1);
+		}
+	}
+
+	/* Immutable trie node, children are held in arrays sorted by character */
+	private static final class Node
+	{
+		private final char[] keys;
+		private final Node[] children;
+		private final PolicyTarget[] entries;
+		private final int[] kinds;
+
+		Node(char[] keys, Node[] children, PolicyTarget[] entries, int[] kinds)
+		{
+			this.keys = keys;
+			this.children = children;
+			this.entries = entries;
+			this.kinds = kinds;
+		}
+
+		Node child(char c)
+		{
+			int low = 0;
+			int high = this.keys.length - 1;
+
+			while (low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				if (this.keys[mid] < c)
+					low = mid + 1;
+				else
+					if (this.keys[mid] > c)
+						high = mid - 1;
+					else
+						return this.children[mid];
+			}
+
+			return null;
+		}
+	}
+
+	/* Mutable trie used while the index is constructed */
+	private static final class Builder
+	{
+		private final Map<Character, Builder> children = new TreeMap<Character, Builder>();
+		private final List<PolicyTarget> entries = new ArrayList<PolicyTarget>();
+		private final List<Integer> kinds = new ArrayList<Integer>();
+
+		void add(PolicyTarget entry)
+		{
+			String value = entry.getTarget().getValue();
+
+			if (entry.getTarget().isLiteral())
+			{
+				this.find(value).addEntry(entry, LITERAL);
+				return;
+			}
+
+			String prefix = requiredPrefix(value);
+			if (value.length() == prefix.length() + MATCH_ANY.length() && value.endsWith(MATCH_ANY))
+				this.find(prefix).addEntry(entry, PREFIX);
+			else
+				this.find(prefix).addEntry(entry, REGEX);
+		}
+
+		private void addEntry(PolicyTarget entry, int kind)
+		{
+			this.entries.add(entry);
+			this.kinds.add(Integer.valueOf(kind));
+		}
+
+		private Builder find(String key)
+		{
+			Builder node = this;
+			for (int i = 0; i < key.length(); i++)
+			{
+				Character c = Character.valueOf(key.charAt(i));
+				Builder child = node.children.get(c);
+				if (child == null)
+				{
+					child = new Builder();
+					node.children.put(c, child);
+				}
+				node = child;
+			}
+
+			return node;
+		}
+
+		Node build()
+		{
+			char[] keys = new char[this.children.size()];
+			Node[] nodes = new Node[this.children.size()];
+			int i = 0;
+			for (Map.Entry<Character, Builder> child : this.children.entrySet())
+			{
+				keys[i] = child.getKey().charValue();
+				nodes[i] = child.getValue().build();
+				i++;
+			}
+
+			int[] kindArray = new int[this.kinds.size()];
+			for (int j = 0; j < kindArray.length; j++)
+			{
+				kindArray[j] = this.kinds.get(j).intValue();
+			}
+
+			return new Node(keys, nodes, this.entries.toArray(new PolicyTarget[this.entries.size()]), kindArray);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: A policy or rule resource target with its regular expression precompiled.
+ */
+package com.qut.middleware.esoe.pdp.processor.compiled;
+
+import java.util.regex.Pattern;
+
+/** A policy or rule resource target with its regular expression precompiled. A requested resource matches the target
+ * if it is equal to the target string or matches it as a regular expression.
+ */
+public final class TargetResource
+{
+	private final String value;
+	private final Pattern pattern;
+
+	/**
+	 * @param value The target string as it appears in the policy.
+	 * @param pattern The compiled target, or null if the target contains no regular expression syntax or is not a valid
+	 * regular expression. Such targets only match a resource equal to them.
+	 */
+	TargetResource(String value, Pattern pattern)
+	{
+		this.value = value;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * @param resource The requested resource.
+	 * @return true if the resource matches this target.
+	 */
+	public boolean matches(String resource)
+	{
+		if (resource.equals(this.value))
+			return true;
+
+		return this.pattern != null && this.pattern.matcher(resource).matches();
+	}
+
+	/**
+	 * @return The target string as it appears in the policy.
+	 */
+	public String getValue()
+	{
+		return this.value;
+	}
+
+	/**
+	 * @return true if this target matches only the resource equal to it.
+	 */
+	public boolean isLiteral()
+	{
+		return this.pattern == null;
+	}
+}
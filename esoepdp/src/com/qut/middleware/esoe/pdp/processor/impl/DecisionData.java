@@ -32,6 +32,8 @@ import java.util.Vector;
 /** An object to hold state data with regards to the processing of policies. Can be used to populate return values of decision
  * statements after a list of policies has been evaluated.
  * 
+ * The policies and rules processed are only recorded, and the decision message only describes them, if an explanation
+ * of the decision is requested. Otherwise evaluation records only what is needed to build the result.
  * */
 public class DecisionData
 {
@@ -41,22 +43,82 @@ public class DecisionData
 	private String decisionMessage;	
 	private String currentPolicy;
 	private String currentRule;
+	private boolean explanationRequested;
 	
 	// a map of group target to corresponding authz targets
 	private Map<String, List<String>>groupTargetAuthzTargetMap;
 
-	// a map of processed policies to corresponding processed rules 
+	// a map of processed policies to corresponding processed rules, only populated if an explanation is requested
 	private Map<String, List<String>> processedPolicies; 
 
 	/**
-	 * Default constructor
+	 * Default constructor. No explanation of the decision is recorded.
 	 */
 	public DecisionData()
+	{
+		this(false);
+	}
+	
+	/**
+	 * @param explanationRequested Whether the policies and rules processed should be recorded to explain the decision.
+	 */
+	public DecisionData(boolean explanationRequested)
 	{
 		this.matches = new Vector<String>();
 		this.processedPolicies = new HashMap<String, List<String>>();
 		this.groupTargetAuthzTargetMap = new HashMap<String,List<String>>();
 		this.groupTargetMarker = ""; //$NON-NLS-1$
+		this.explanationRequested = explanationRequested;
+	}
+	
+	
+	/** Whether the policies and rules processed are recorded to explain the decision.
+	 * 
+	 * @return true if an explanation of the decision is requested.
+	 */
+	public boolean isExplanationRequested()
+	{
+		return this.explanationRequested;
+	}
+	
+	
+	/** Request that the policies and rules processed from now on are recorded to explain the decision.
+	 * 
+	 * @param explanationRequested true to record the processed policies and rules.
+	 */
+	public void setExplanationRequested(boolean explanationRequested)
+	{
+		this.explanationRequested = explanationRequested;
+	}
+	
+	
+	/** Replaces the state of this object with a copy of the state of the given object. Lists held by the
+	 * given object are copied, so neither object is affected by later changes to the other. Whether an
+	 * explanation is requested is not copied.
+	 * 
+	 * @param other The decision data to copy.
+	 */
+	public void copyFrom(DecisionData other)
+	{
+		this.matches = new Vector<String>(other.matches);
+		this.groupTargetMarker = other.groupTargetMarker;
+		this.decisionMessage = other.decisionMessage;
+		this.currentPolicy = other.currentPolicy;
+		this.currentRule = other.currentRule;
+		this.groupTargetAuthzTargetMap = copyMap(other.groupTargetAuthzTargetMap);
+		this.processedPolicies = copyMap(other.processedPolicies);
+	}
+	
+	
+	private static Map<String, List<String>> copyMap(Map<String, List<String>> map)
+	{
+		Map<String, List<String>> copy = new HashMap<String, List<String>>();
+		for (Map.Entry<String, List<String>> entry : map.entrySet())
+		{
+			copy.put(entry.getKey(), new Vector<String>(entry.getValue()));
+		}
+		
+		return copy;
 	}
 	
 	
@@ -90,7 +152,7 @@ public class DecisionData
 	
 		
 	/** Add a policy which has been processed. Adding a processed Policy updates the currentPolicy field
-	 * to be the new addition.
+	 * to be the new addition. The policy is only recorded in the processed policies if an explanation is requested.
 	 * 
 	 * @param policyID The policy ID to add
 	 */
@@ -98,7 +160,9 @@ public class DecisionData
 	{
 		if(policyID != null)
 		{
-			this.processedPolicies.put(policyID, new Vector<String>());
+			if(this.explanationRequested)
+				this.processedPolicies.put(policyID, new Vector<String>());
+			
 			this.currentPolicy = policyID;
 		}
 	}
@@ -135,8 +199,8 @@ public class DecisionData
 			return null;
 	}
 	
-	/** Add a processed rule to this object. The Rule will be added to the internal Map of the currently processed Policy
-	 * and it will be marked as the currentRule.
+	/** Add a processed rule to this object. The Rule will be marked as the currentRule and, if an explanation is
+	 * requested, added to the internal Map of the currently processed Policy.
 	 * 
 	 * @param ruleID The rule ID to add
 	 */
@@ -144,7 +208,20 @@ public class DecisionData
 	{
 		if(ruleID != null)
 		{
-			this.processedPolicies.get(this.currentPolicy).add(ruleID);
+			if(this.explanationRequested)
+			{
+				List<String> rules = this.processedPolicies.get(this.currentPolicy);
+				
+				// the policy was added before an explanation was requested
+				if(rules == null)
+				{
+					rules = new Vector<String>();
+					this.processedPolicies.put(this.currentPolicy, rules);
+				}
+				
+				rules.add(ruleID);
+			}
+			
 			this.currentRule = ruleID;
 		}
 	}
@@ -178,37 +255,31 @@ public class DecisionData
 	
 	/** Returns a formatted representation of the policies processed and the processed Rules contained in those policies.
 	 * 
-	 * @return A comma separated string representation of policies added to this object
+	 * @return A comma separated string representation of policies added to this object. Empty unless an explanation
+	 * was requested.
 	 */
 	@SuppressWarnings("nls")
 	public String getProcessedPolicies()
 	{
-		String value = new String();
+		StringBuilder value = new StringBuilder();
 
-		for (String policy : this.processedPolicies.keySet())
+		for (Map.Entry<String, List<String>> policy : this.processedPolicies.entrySet())
 		{
-			int counter = 1;
-			value += "{Policy : " + policy;
+			value.append("{Policy : ").append(policy.getKey());
 
-			List<String> rules = this.processedPolicies.get(policy);
-			for(String rule : rules)
+			List<String> rules = policy.getValue();
+			for (int i = 0; i < rules.size(); i++)
 			{
-				if(counter == 1)
-					value += " : Rules ["+ rule;			
-				else
-					value += "," + rule;
-			
-				if(counter == rules.size())
-					value += "]";
-		
-				counter++;
+				value.append(i == 0 ? " : Rules [" : ",").append(rules.get(i));
 			}
 			
-			value += "}";
+			if (!rules.isEmpty())
+				value.append("]");
 			
+			value.append("}");
 		}
 		
-		return value;
+		return value.toString();
 	}
 	
 	
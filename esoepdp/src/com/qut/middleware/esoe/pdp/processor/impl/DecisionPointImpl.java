@@ -1,37 +1,61 @@
 package com.qut.middleware.esoe.pdp.processor.impl;
 
 import java.text.MessageFormat;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-
-import javax.xml.bind.JAXBElement;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.qut.middleware.esoe.pdp.cache.AuthzPolicyCache;
+import com.qut.middleware.esoe.pdp.cache.CompiledPolicyCache;
+import com.qut.middleware.esoe.pdp.cache.DecisionCache;
+import com.qut.middleware.esoe.pdp.cache.DecisionKey;
 import com.qut.middleware.esoe.pdp.processor.DecisionPoint;
-import com.qut.middleware.esoe.pdp.processor.applyfunctions.And;
-import com.qut.middleware.esoe.pdp.processor.applyfunctions.Not;
-import com.qut.middleware.esoe.pdp.processor.applyfunctions.Or;
-import com.qut.middleware.esoe.pdp.processor.applyfunctions.StringEqual;
-import com.qut.middleware.esoe.pdp.processor.applyfunctions.StringRegex;
-import com.qut.middleware.saml2.schemas.esoe.lxacml.ApplyType;
-import com.qut.middleware.saml2.schemas.esoe.lxacml.ConditionType;
+import com.qut.middleware.esoe.pdp.processor.compiled.CompiledPolicy;
+import com.qut.middleware.esoe.pdp.processor.compiled.CompiledRule;
+import com.qut.middleware.esoe.pdp.processor.compiled.Condition;
+import com.qut.middleware.esoe.pdp.processor.compiled.PolicyCompiler;
+import com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex;
+import com.qut.middleware.esoe.pdp.processor.compiled.ResourceIndex.PolicyTarget;
+import com.qut.middleware.esoe.pdp.processor.compiled.TargetResource;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.Policy;
-import com.qut.middleware.saml2.schemas.esoe.lxacml.Rule;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
 
 public class DecisionPointImpl implements DecisionPoint 
 {
 
 	private AuthzPolicyCache globalCache;
+	private DecisionCache decisionCache;
 	private String defaultMode;
 	
+	private static final String[] NO_ATTRIBUTES = new String[0];
+
+	// decision messages used when no explanation of the decision is requested
+	private static final String DENY_MESSAGE = "Identified DENY state for principal."; //$NON-NLS-1$
+	private static final String PERMIT_MESSAGE = "Identified PERMIT state for principal."; //$NON-NLS-1$
+	private static final String DEFAULT_MESSAGE = "Policies located and rules evaluated but no explicit outcome detected. Falling through to default state of "; //$NON-NLS-1$
+	private static final String DEFAULT_DENY_MESSAGE = DEFAULT_MESSAGE + ProtocolTools.DENY + "."; //$NON-NLS-1$
+	private static final String DEFAULT_PERMIT_MESSAGE = DEFAULT_MESSAGE + ProtocolTools.PERMIT + "."; //$NON-NLS-1$
+
 	Logger logger = LoggerFactory.getLogger(this.getClass().getName());
 	
 	public DecisionPointImpl(AuthzPolicyCache cache, String defaultMode)
+	{
+		this(cache, defaultMode, null);
+	}
+
+	/**
+	 * @param cache The policy cache decisions are made against.
+	 * @param defaultMode The decision made when no policy produces an outcome.
+	 * @param decisionCache Cache of decisions already made, or null to evaluate every request. Decisions are only
+	 * cached if the policy cache compiles its policies, in which case the decision cache is registered with it so
+	 * decisions are removed when the policies they were made against are replaced.
+	 */
+	public DecisionPointImpl(AuthzPolicyCache cache, String defaultMode, DecisionCache decisionCache)
 	{
 		if (cache == null)
 			throw new IllegalArgumentException("AuthzPolicyCache can NOT be null.");
@@ -43,6 +67,10 @@ public class DecisionPointImpl implements DecisionPoint
 			this.defaultMode = defaultMode;
 				
 		this.globalCache = cache;
+		this.decisionCache = decisionCache;
+		
+		if (decisionCache != null && cache instanceof CompiledPolicyCache)
+			((CompiledPolicyCache) cache).addDecisionCache(decisionCache);
 	
 		this.logger.info(MessageFormat.format("Successfully created DecisionPointImpl using default Mode of {0}.", this.defaultMode));
 	}
@@ -63,18 +91,19 @@ public class DecisionPointImpl implements DecisionPoint
 		}
 		
 		// retrieve policy set associated with SPEP
-		List<Policy> policies = this.globalCache.getPolicies(issuer);
+		ResourceIndex index = this.getResourceIndex(issuer);
 
-		if (policies == null)
+		if (index == null)
 		{
-			this.logger.debug( MessageFormat.format("No matching policy located for {0}. Falling through to default state of {1}. ", issuer, this.defaultMode) ); 
+			if (this.logger.isDebugEnabled())
+				this.logger.debug( MessageFormat.format("No matching policy located for {0}. Falling through to default state of {1}. ", issuer, this.defaultMode) ); 
 			return ProtocolTools.createDecision(this.defaultMode);
 		}
 		else
 		// process auth request against policies
 		{
 			this.logger.debug("Policies located.");
-			return this.evaluatePolicyRequest(policies, resource, action, identityAttributes, null);
+			return this.makeDecision(index, issuer, resource, action, identityAttributes, null);
 		}
 	}
 	
@@ -82,44 +111,111 @@ public class DecisionPointImpl implements DecisionPoint
 	{
 
 		// retrieve policy set associated with SPEP
-		List<Policy> policies = this.globalCache.getPolicies(issuer);
+		ResourceIndex index = this.getResourceIndex(issuer);
 
-		if (policies == null)
+		if (index == null)
 		{
-			this.logger.debug( MessageFormat.format("No matching policy located for {0}. Falling through to default state of {1}. ", issuer, this.defaultMode) ); 
+			if (this.logger.isDebugEnabled())
+				this.logger.debug( MessageFormat.format("No matching policy located for {0}. Falling through to default state of {1}. ", issuer, this.defaultMode) ); 
 			return ProtocolTools.createDecision(this.defaultMode);
 		}
 		else
 		// process auth request against policies
 		{
-			this.logger.debug(MessageFormat.format("Located {0} policies located for Issuer {1}.", policies.size(), issuer) );
-			return this.evaluatePolicyRequest(policies, resource, action, identityAttributes, decisionData);
+			if (this.logger.isDebugEnabled())
+				this.logger.debug(MessageFormat.format("Located {0} policies located for Issuer {1}.", index.getPolicies().size(), issuer) );
+			return this.makeDecision(index, issuer, resource, action, identityAttributes, decisionData);
 		}
 	}
 	
-	private boolean isValidAction(String specifiedAction, List<String> policyActions, Rule currentRule)
+	/*
+	 * Retrieve the indexed compiled policies for the given issuer. Caches which do not compile their policies have them
+	 * compiled and indexed for each request.
+	 */
+	private ResourceIndex getResourceIndex(String issuer)
 	{
-		// Get all action targets of the rule and check for a match
-		List<String> targetActions = PolicyEvaluator.getRuleTargetActions(currentRule);
+		if (this.globalCache instanceof CompiledPolicyCache)
+			return ((CompiledPolicyCache) this.globalCache).getResourceIndex(issuer);
 
-		// If the rule has no specified targets, use the policy targets
-		if (targetActions == null || targetActions.size() == 0)
-		{
-			if (policyActions == null || policyActions.size() == 0)
-				return true;
+		List<Policy> policies = this.globalCache.getPolicies(issuer);
+		if (policies == null)
+			return null;
 
-			targetActions = policyActions;
+		return new ResourceIndex(PolicyCompiler.compile(policies));
+	}
+
+	/*
+	 * Make the decision for the given request, returning the decision already made for the same request if one is
+	 * cached. Requests are the same if they are for the same entity, resource and action and the principals have the
+	 * same values for every attribute referred to by the policies matching the resource.
+	 */
+	private DecisionType makeDecision(ResourceIndex index, String issuer, String resource, String action, Map<String, List<String>> principalAttributes, DecisionData decisionData)
+	{
+		List<PolicyTarget> matches = index.getMatchingTargets(resource);
+
+		// an index compiled for each request can never be matched by a later one, and cached decisions carry no
+		// explanation
+		if (this.decisionCache == null || !(this.globalCache instanceof CompiledPolicyCache) || this.isExplaining(decisionData))
+			return this.evaluatePolicyRequest(index, matches, resource, action, principalAttributes, decisionData);
+
+		DecisionKey key = new DecisionKey(issuer, resource, action, getAttributeNames(index, matches), principalAttributes);
+
+		DecisionType decision = this.decisionCache.getDecision(key, index, decisionData);
+		if (decision != null)
+		{
+			this.logger.debug("Returning cached decision."); //$NON-NLS-1$
+			return decision;
 		}
 
-		Iterator<String> actIter = targetActions.iterator();
+		DecisionData localDecisionData = (decisionData != null) ? decisionData : new DecisionData();
+		decision = this.evaluatePolicyRequest(index, matches, resource, action, principalAttributes, localDecisionData);
+		this.decisionCache.addDecision(key, index, decision, localDecisionData);
 
-		while (actIter.hasNext())
+		return decision;
+	}
+
+	/*
+	 * Whether the reasoning behind the decision is to be recorded, either for the caller or the debug log.
+	 */
+	private boolean isExplaining(DecisionData decisionData)
+	{
+		return (decisionData != null && decisionData.isExplanationRequested()) || this.logger.isDebugEnabled();
+	}
+
+	/*
+	 * Retrieve the sorted, distinct names of the attributes referred to by the policies with a matching target.
+	 */
+	private static String[] getAttributeNames(ResourceIndex index, List<PolicyTarget> matches)
+	{
+		String[] names = NO_ATTRIBUTES;
+		Set<String> merged = null;
+		int previous = -1;
+
+		for (PolicyTarget match : matches)
 		{
-			if (actIter.next().equals(specifiedAction))
-				return true;
+			// matches are in policy order, so each policy is seen once
+			if (match.getPolicyIndex() == previous)
+				continue;
+
+			previous = match.getPolicyIndex();
+			String[] policyNames = index.getPolicies().get(previous).getAttributeNames();
+
+			if (names.length == 0)
+				names = policyNames;
+			else
+				if (policyNames.length > 0)
+				{
+					if (merged == null)
+						merged = new TreeSet<String>(Arrays.asList(names));
+
+					merged.addAll(Arrays.asList(policyNames));
+				}
 		}
 
-		return false;
+		if (merged != null)
+			return merged.toArray(new String[merged.size()]);
+
+		return names;
 	}
 
 	/*
@@ -127,14 +223,15 @@ public class DecisionPointImpl implements DecisionPoint
 	 * session. NOTE: This function assumes that the policy object retrieved has been validated against the
 	 * lxacmlSchema.xsd to contain only valid xml.
 	 * 
-	 * @param policy The authorization policy associated with the given SPEP. @param resource The target resource as
+	 * @param index The index of the compiled authorization policies associated with the given SPEP. @param matches
+	 * The policy targets of the index which match the resource. @param resource The target resource as
 	 * requested by the SPEP. This is the resource given to the authorization processor in the <code>LXACMLAuthzDecisionQuery<code>.
 	 * @param specifiedAction The action specified to be evaluated with this request. May be null if no action
 	 * specified. @param principal The principal associated with the auth request @return the Result representing the
 	 * outcome of the request processing.
 	 * 
 	 */
-	private DecisionType evaluatePolicyRequest(List<Policy> policies, String resource, String specifiedAction, Map<String, List<String>> principalAttributes, DecisionData decisionData)
+	private DecisionType evaluatePolicyRequest(ResourceIndex index, List<PolicyTarget> matches, String resource, String specifiedAction, Map<String, List<String>> principalAttributes, DecisionData decisionData)
 	{	
 		DecisionType currentDecision = null;
 		
@@ -142,139 +239,132 @@ public class DecisionPointImpl implements DecisionPoint
 		if(decisionData != null)
 			localDecisionData = decisionData;
 
-		// for each policy, see if any targets match the resource request
-		Iterator<Policy> policyIter = policies.iterator();
+		boolean debug = this.logger.isDebugEnabled();
+
+		// the policies and rules processed are recorded for the debug log as well as for callers wanting an explanation
+		if (debug)
+			localDecisionData.setExplanationRequested(true);
+
+		boolean explain = localDecisionData.isExplanationRequested();
 
 		// we'll want to break out of loops on deny
 		boolean continueProcessing = true;
 
-		while (policyIter.hasNext())
-		{
-			if (!continueProcessing)
-				break;
+		// policy targets matching the resource request, in policy order
+		List<CompiledPolicy> policies = index.getPolicies();
+		int m = 0;
 
-			Policy policy = policyIter.next();
-
-			// retrieve a list of all resources and action strings in the policy
-			List<String> policyResources = PolicyEvaluator.getPolicyTargetResources(policy);
-			List<String> policyActions = PolicyEvaluator.getPolicyTargetActions(policy);
+		// only policies with a target matching the resource request are processed
+		while (continueProcessing && m < matches.size())
+		{
+			int p = matches.get(m).getPolicyIndex();
+			CompiledPolicy policy = policies.get(p);
 
 			// add current policy to list of processed policies
 			localDecisionData.addProcessedPolicy(policy.getPolicyId());
-			this.logger.debug("Processing Policy " + localDecisionData.getCurrentPolicy());
+			if (debug)
+				this.logger.debug("Processing Policy " + localDecisionData.getCurrentPolicy());
 			
-			Iterator<String> resIter = policyResources.iterator();
-
-			while (resIter.hasNext())
+			// each target of this policy which matches the requested resource
+			for (; continueProcessing && m < matches.size() && matches.get(m).getPolicyIndex() == p; m++)
 			{
-				if (!continueProcessing)
-					break;
+				String policyResource = matches.get(m).getTarget().getValue();
 
-				String policyResource = resIter.next();
+				if (debug)
+					this.logger.debug(MessageFormat.format("Matched requested Resource against Policy Target {0}.", policyResource) ); //$NON-NLS-1$
 
-				this.logger.debug(MessageFormat.format("Policy Target is {0}", policyResource) ); //$NON-NLS-1$
+				CompiledRule[] rules = policy.getRules();
 
-				// match the requested resource against policy derived resources
-				if (resource.equals(policyResource) || resource.matches(policyResource))
+				if (debug)
+					this.logger.debug(MessageFormat.format("Retrieved {0} rules.", rules.length));
+				
+				for (int r = 0; continueProcessing && r < rules.length; r++)
 				{
-					this.logger.debug("Matched requested Resource against Policy Target."); //$NON-NLS-1$
-
-					Iterator<Rule> rulesIter = policy.getRules().iterator();
+					CompiledRule currentRule = rules[r];
 
-					this.logger.debug(MessageFormat.format("Retrieved {0} rules.", policy.getRules().size()));
+					localDecisionData.addProcessedRule(currentRule.getRuleId());
+					if (debug)
+						this.logger.debug("Processing Rule " + localDecisionData.getCurrentRule());
 					
-					while (rulesIter.hasNext())
-					{
-						if (!continueProcessing)
-							break;
+					// resource targets of the rule, compiled with the policy targets if the rule has none of its own
+					TargetResource[] ruleResources = currentRule.getResources();
 
-						Rule currentRule = rulesIter.next();
+					for (int j = 0; continueProcessing && j < ruleResources.length; j++)
+					{
+						String ruleResource = ruleResources[j].getValue();
 
-						localDecisionData.addProcessedRule(currentRule.getRuleId().toString());
-						this.logger.debug("Processing Rule " + localDecisionData.getCurrentRule());
+						if (debug)
+							this.logger.debug("Rule Target is  " + ruleResource);
 						
-						// get all resource targets of the rule and check for a match
-						List<String> targetResources = PolicyEvaluator.getRuleTargetResources(currentRule);
-
-						// if the rule has no specified targets, use the policy targets
-						if (targetResources == null)
-						{
-						//	this.logger.debug(Messages.getString("AuthorizationProcessorImpl.159")); //$NON-NLS-1$
-							targetResources = policyResources;
-						}
-
-						Iterator<String> ruleResources = targetResources.iterator();
-
-						while (ruleResources.hasNext())
+						if (ruleResources[j].matches(resource))
 						{
-							if (!continueProcessing)
-								break;
-
-							String ruleResource = ruleResources.next();
-
-							this.logger.debug("Rule Target is  " + ruleResource);
+							this.logger.debug("Matched requested Resource against Rule Target."); //$NON-NLS-1$
 							
-							if (resource.equals(ruleResource) || resource.matches(ruleResource))
-							{
-								this.logger.debug("Matched requested Resource against Rule Target."); //$NON-NLS-1$
-								
-								if (isValidAction(specifiedAction, policyActions, currentRule))
-								{									
-									// Process the associated rules 
-									DecisionType newDecision = this.processRule(currentRule, resource, principalAttributes);
-
-									// end processing if we hit a deny
-									if (newDecision == DecisionType.DENY)
-									{
-										this.logger.debug("Encountered DENY decision. Terminating Rule processing ..."); //$NON-NLS-1$
-
-										currentDecision = DecisionType.DENY;
-
-										// We also only want to send the deny group target and authz target that matched
-										// the  requested resource, so we need to clear and reset these values in decision  data bean.
-										localDecisionData.clearTargets();
-										continueProcessing = false;
-									}
-									else if (newDecision == DecisionType.PERMIT)
-									{
-										this.logger.debug("Permit decision returned. Continuing processing .."); //$NON-NLS-1$
-
-										currentDecision = DecisionType.PERMIT;
-									}
-									else
-										this.logger.debug("No decision could be made. Continuing processing ..");
-									
-									// add the policy target match and authz match to data object
-									localDecisionData.addGroupTarget(policyResource);
-									localDecisionData.addMatch(ruleResource);
+							if (currentRule.isValidAction(specifiedAction))
+							{									
+								// Process the associated rules 
+								DecisionType newDecision = this.processRule(currentRule, principalAttributes);
+
+								// end processing if we hit a deny
+								if (newDecision == DecisionType.DENY)
+								{
+									this.logger.debug("Encountered DENY decision. Terminating Rule processing ..."); //$NON-NLS-1$
+
+									currentDecision = DecisionType.DENY;
+
+									// We also only want to send the deny group target and authz target that matched
+									// the  requested resource, so we need to clear and reset these values in decision  data bean.
+									localDecisionData.clearTargets();
+									continueProcessing = false;
+								}
+								else if (newDecision == DecisionType.PERMIT)
+								{
+									this.logger.debug("Permit decision returned. Continuing processing .."); //$NON-NLS-1$
+
+									currentDecision = DecisionType.PERMIT;
 								}
 								else
-									this.logger.warn("Invalid Action submitted in Authz Request.");
+									this.logger.debug("No decision could be made. Continuing processing ..");
+								
+								// add the policy target match and authz match to data object
+								localDecisionData.addGroupTarget(policyResource);
+								localDecisionData.addMatch(ruleResource);
 							}
 							else
-								this.logger.debug(MessageFormat.format("Requested resource {0} does not match. Skipping ..", resource));
+								this.logger.warn("Invalid Action submitted in Authz Request.");
 						}
+						else
+							if (debug)
+								this.logger.debug(MessageFormat.format("Requested resource {0} does not match. Skipping ..", resource));
 					}
 				}
-				else
-					this.logger.debug("Requested Resource did not match any Policy targets."); //$NON-NLS-1$
-
 			}
 		}
 
+		// detailed messages are only built when an explanation has been requested
 		if (currentDecision == DecisionType.DENY)
 		{
-			Object[] args = { localDecisionData.getCurrentPolicy(), localDecisionData.getCurrentRule(),  localDecisionData.getProcessedPolicies() };
-			localDecisionData.setDecisionMessage(MessageFormat.format("Identified DENY state for principal in Policy {0} Rule {1}. Evaluated {2}.", args) );
+			if (explain)
+			{
+				Object[] args = { localDecisionData.getCurrentPolicy(), localDecisionData.getCurrentRule(),  localDecisionData.getProcessedPolicies() };
+				localDecisionData.setDecisionMessage(MessageFormat.format("Identified DENY state for principal in Policy {0} Rule {1}. Evaluated {2}.", args) );
+			}
+			else
+				localDecisionData.setDecisionMessage(DENY_MESSAGE);
 		}
 		else if(currentDecision == DecisionType.PERMIT)
 		{
-			Object[] args = {localDecisionData.getProcessedPolicies()};
-			localDecisionData.setDecisionMessage(MessageFormat.format("Identified PERMIT state for principal. Evaluated  {0}.", args));
+			if (explain)
+			{
+				Object[] args = {localDecisionData.getProcessedPolicies()};
+				localDecisionData.setDecisionMessage(MessageFormat.format("Identified PERMIT state for principal. Evaluated  {0}.", args));
+			}
+			else
+				localDecisionData.setDecisionMessage(PERMIT_MESSAGE);
 		}
 		else // If no decision could be made, set info accordingly and return default mode Decision.
 		{
-			localDecisionData.setDecisionMessage(MessageFormat.format("Policies located and rules evaluated but no explicit outcome detected. Falling through to default state of {0}.", this.defaultMode));
+			localDecisionData.setDecisionMessage(ProtocolTools.PERMIT.equalsIgnoreCase(this.defaultMode) ? DEFAULT_PERMIT_MESSAGE : DEFAULT_DENY_MESSAGE);
 			return ProtocolTools.createDecision(this.defaultMode);
 		}
 		
@@ -285,44 +375,34 @@ public class DecisionPointImpl implements DecisionPoint
 	/*
 	 * Evaluate and process the given rule to determine the outcome of the resource request.
 	 * 
-	 * @param rule The Rule to evaluate. @param principal The Principal object that contains information to match
+	 * @param rule The compiled Rule to evaluate. @param principal The Principal object that contains information to match
 	 * against any conditions contained in the given Rule. @return A DecisionType representing the outcome of the Rule
 	 * evaluation if one can be made. If a condition contained in the given rule evaluates to False, a decision can not
 	 * be made based on the Effect of the Rule (because the condition does not match) and null is returned.
 	 */
-	@SuppressWarnings("unchecked")//$NON-NLS-1$
-	private DecisionType processRule(Rule rule, String requestedResource, Map<String, List<String>> principalAttributes)
+	private DecisionType processRule(CompiledRule rule, Map<String, List<String>> principalAttributes)
 	{
 		boolean conditionMatches = true;
-		String effect = new String();
-		ConditionType cond = rule.getCondition();
+		Condition cond = rule.getCondition();
 
-		this.logger.debug(MessageFormat.format("Evaluating Rule. Effect of Rule is {1}", rule.getRuleId(), rule.getEffect()) ); //$NON-NLS-1$
+		if (this.logger.isDebugEnabled())
+			this.logger.debug(MessageFormat.format("Evaluating Rule. Effect of Rule is {1}", rule.getRuleId(), rule.getEffect()) ); //$NON-NLS-1$
 
 		// If a condition exists, evaluate its expression
 		if (cond != null)
 		{
-			JAXBElement<ApplyType> expression = (JAXBElement<ApplyType>) cond.getExpression();
+			this.logger.debug("Processing conditions ..."); //$NON-NLS-1$
 
-			// condition can only hold an apply element so this shouldnt be necessary, but ...
-			if (expression != null)
+			// we don't want IllegalArgument Exceptions to halt the auth process, so we'll deal
+			// with them here. Invalid parameters in a Rule = ignore that Rule.
+			try
 			{
-				this.logger.debug("Processing conditions ..."); //$NON-NLS-1$
-
-				// root level apply element (condition can only have 1 apply element)
-				JAXBElement<ApplyType> apply = expression;
-
-				// we don't want IllegalArgument Exceptions to halt the auth process, so we'll deal
-				// with them here. Invalid parameters in a Rule = ignore that Rule.
-				try
-				{
-					conditionMatches = this.processExpressions(apply, principalAttributes);
-				}
-				catch (IllegalArgumentException e)
-				{
-					this.logger.warn("Ignoring bad Rule. " + e.getMessage()); //$NON-NLS-1$
-					conditionMatches = false;
-				}
+				conditionMatches = cond.evaluate(principalAttributes);
+			}
+			catch (IllegalArgumentException e)
+			{
+				this.logger.warn("Ignoring bad Rule. " + e.getMessage()); //$NON-NLS-1$
+				conditionMatches = false;
 			}
 		}
 		else
@@ -331,57 +411,14 @@ public class DecisionPointImpl implements DecisionPoint
 		// The condition is the return value of any processed expression.  If the condition matches, we apply
 		// the effect of the rule, else we ignore it.
 		if (!conditionMatches)
+		{
 			this.logger.debug("Condition did not match. Ignoring Effect of Rule and returning null."); //$NON-NLS-1$
+			
+			// in this case, the condition did not match so the Effect must be ignored.
+			return null;
+		}
 
-		effect = rule.getEffect().toString();
-		if (conditionMatches && effect.equalsIgnoreCase(ProtocolTools.PERMIT))
-			return DecisionType.PERMIT;
-		else
-			if (conditionMatches && effect.equalsIgnoreCase(ProtocolTools.DENY))
-				return DecisionType.DENY;
-			else
-				// in this case, the condition did not match so the Effect must be ignored.
-				return null;
-	}
-
-	/*
-	 * Evaluates all expresssions contained in the given apply type element and returns a boolean value based on the
-	 * outcome of the processing. See specification for valid expressions.
-	 * 
-	 * @param rootNode The root apply type of the condition being processed. @param principal The principal associated
-	 * with the request. @return boolean statement representing outcome of evaluated expression
-	 */
-	private boolean processExpressions(JAXBElement<ApplyType> rootNode, Map<String, List<String>> principalAttributes)
-	{
-		String function = null;
-
-		if (rootNode == null || (rootNode.getDeclaredType() != ApplyType.class))
-			throw new IllegalArgumentException("Root Node of Condition is not an Apply Element.");  //$NON-NLS-1$
-
-		JAXBElement<ApplyType> apply = rootNode;
-
-		function = apply.getValue().getFunctionId();
-
-		if (function == null)
-			throw new IllegalArgumentException("Function ID of root Node does not exist. Unable to parse policy data."); //$NON-NLS-1$
-
-		if (function.equals(Or.FUNCTION_NAME))
-			return new Or().evaluateExpression(rootNode, principalAttributes);
-		else
-			if (function.equals(Not.FUNCTION_NAME))
-				return new Not().evaluateExpression(rootNode, principalAttributes);
-			else
-				if (function.equals(And.FUNCTION_NAME))
-					return new And().evaluateExpression(rootNode, principalAttributes);
-				else
-					if (function.equals(StringRegex.FUNCTION_NAME))
-						return new StringRegex().evaluateExpression(rootNode, principalAttributes);
-					else
-						if (function.equals(StringEqual.FUNCTION_NAME))
-							return  new StringEqual().evaluateExpression(rootNode, principalAttributes);
-
-		return false;
-
+		return rule.getEffect();
 	}
 
 	public String getDefaultMode()
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Process wide registry of JAXBContext and compiled Schema instances shared by all marshallers and unmarshallers
+ */
+package com.qut.middleware.saml2.handler;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import com.qut.middleware.saml2.exception.ResourceException;
+import com.qut.middleware.saml2.resolver.ResourceResolver;
+import com.qut.middleware.saml2.resolver.SchemaResolver;
+
+/**
+ * Process wide registry of JAXBContext and compiled Schema instances shared by all marshallers and unmarshallers.
+ *
+ * Both JAXBContext and Schema are thread safe and expensive to create, so each distinct package set and schema set is
+ * built once only. Package sets and schema sets are compared without regard to order, so "a:b" and "b:a" share a
+ * context. JAXB contexts are additionally keyed by the thread context class loader, as that is the loader JAXB uses to
+ * locate generated classes.
+ *
+ * A JAXBContext refers to classes defined by the loader it is keyed by, so the contexts of each loader are held softly.
+ * Otherwise the weak keys would always be reachable through their values, and every redeployed webapp would leak its
+ * class loader.
+ */
+public final class HandlerRegistry
+{
+	private static final String PACKAGE_SEPERATOR = ":"; //$NON-NLS-1$
+	private static final String SCHEMA_SEPERATOR = ","; //$NON-NLS-1$
+
+	private static final Map<ClassLoader, SoftReference<Map<String, JAXBContext>>> contexts = new WeakHashMap<ClassLoader, SoftReference<Map<String, JAXBContext>>>();
+	private static final Map<String, Schema> schemas = new ConcurrentHashMap<String, Schema>();
+
+	/* Local logging instance */
+	private static Logger logger = LoggerFactory.getLogger(HandlerRegistry.class.getName());
+
+	private HandlerRegistry()
+	{
+		// Static access only
+	}
+
+	/**
+	 * Retrieves the shared JAXBContext for the supplied packages, creating it on first use.
+	 *
+	 * @param packageName
+	 *            Colon seperated list of packages containing JAXB generated classes
+	 * @return The shared JAXBContext
+	 * @throws JAXBException
+	 *             if the context could not be created
+	 */
+	public static JAXBContext getJAXBContext(String packageName) throws JAXBException
+	{
+		if ((packageName == null) || (packageName.length() <= 0))
+		{
+			throw new IllegalArgumentException(Messages.getString("HandlerRegistry.0")); //$NON-NLS-1$
+		}
+
+		String key = normalize(packageName.split(PACKAGE_SEPERATOR), PACKAGE_SEPERATOR);
+		Map<String, JAXBContext> loaderContexts = getLoaderContexts(Thread.currentThread().getContextClassLoader());
+
+		JAXBContext jaxbContext = loaderContexts.get(key);
+		if (jaxbContext != null)
+		{
+			return jaxbContext;
+		}
+
+		synchronized (loaderContexts)
+		{
+			jaxbContext = loaderContexts.get(key);
+			if (jaxbContext == null)
+			{
+				logger.debug(Messages.getString("HandlerRegistry.1") + key); //$NON-NLS-1$
+				jaxbContext = JAXBContext.newInstance(key);
+				loaderContexts.put(key, jaxbContext);
+			}
+
+			return jaxbContext;
+		}
+	}
+
+	/**
+	 * Retrieves the shared compiled Schema for the supplied schema files, compiling it on first use.
+	 *
+	 * @param schemaList
+	 *            List of schema files which must exist in the classpath of SchemaResolver
+	 * @return The shared Schema
+	 * @throws SAXException
+	 *             if the schemas could not be compiled
+	 * @throws IOException
+	 *             if a schema file could not be read
+	 * @throws ResourceException
+	 *             if the resource resolver could not be created
+	 */
+	public static Schema getSchema(String[] schemaList) throws SAXException, IOException, ResourceException
+	{
+		if ((schemaList == null) || (schemaList.length == 0))
+		{
+			throw new IllegalArgumentException(Messages.getString("HandlerRegistry.2")); //$NON-NLS-1$
+		}
+
+		String key = normalize(schemaList, SCHEMA_SEPERATOR);
+
+		Schema schema = schemas.get(key);
+		if (schema != null)
+		{
+			return schema;
+		}
+
+		synchronized (schemas)
+		{
+			schema = schemas.get(key);
+			if (schema == null)
+			{
+				logger.debug(Messages.getString("HandlerRegistry.3") + key); //$NON-NLS-1$
+				schema = compileSchema(schemaList);
+				schemas.put(key, schema);
+			}
+
+			return schema;
+		}
+	}
+
+	private static Schema compileSchema(String[] schemaList) throws SAXException, IOException, ResourceException
+	{
+		Source[] schemaSource = new Source[schemaList.length];
+
+		/* Prepare all schemas requested by caller to be used in validation */
+		for (int i = 0; i < schemaList.length; i++)
+		{
+			URL location = SchemaResolver.class.getResource(schemaList[i]);
+			if (location == null)
+			{
+				logger.error(Messages.getString("HandlerRegistry.4") + schemaList[i] + Messages.getString("HandlerRegistry.5")); //$NON-NLS-1$ //$NON-NLS-2$
+				throw new IllegalArgumentException(Messages.getString("HandlerRegistry.6") + schemaList[i] + Messages.getString("HandlerRegistry.7")); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+
+			schemaSource[i] = new StreamSource(location.openStream());
+		}
+
+		/* SchemaFactory is not thread safe, it is only used while holding the registry lock */
+		SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+		schemaFactory.setResourceResolver(new ResourceResolver());
+
+		return schemaFactory.newSchema(schemaSource);
+	}
+
+	private static Map<String, JAXBContext> getLoaderContexts(ClassLoader classLoader)
+	{
+		synchronized (contexts)
+		{
+			SoftReference<Map<String, JAXBContext>> reference = contexts.get(classLoader);
+			Map<String, JAXBContext> loaderContexts = (reference == null) ? null : reference.get();
+			if (loaderContexts == null)
+			{
+				loaderContexts = new ConcurrentHashMap<String, JAXBContext>();
+				contexts.put(classLoader, new SoftReference<Map<String, JAXBContext>>(loaderContexts));
+			}
+
+			return loaderContexts;
+		}
+	}
+
+	/* Order independant key for a set of package or schema names */
+	private static String normalize(String[] names, String seperator)
+	{
+		TreeSet<String> sorted = new TreeSet<String>();
+		for (String name : Arrays.asList(names))
+		{
+			if (name != null && name.trim().length() > 0)
+			{
+				sorted.add(name.trim());
+			}
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (String name : sorted)
+		{
+			if (key.length() > 0)
+			{
+				key.append(seperator);
+			}
+			key.append(name);
+		}
+
+		return key.toString();
+	}
+}
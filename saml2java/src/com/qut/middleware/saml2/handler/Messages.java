@@ -0,0 +1,52 @@
+/* 
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not 
+ * use this file except in compliance with the License. You may obtain a copy of 
+ * the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT 
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the 
+ * License for the specific language governing permissions and limitations under 
+ * the License.
+ * 
+ * Author:
+ * Creation Date: 17/10/2026
+ * 
+ * Purpose: Provides access to externalized strings for the SAML2lib handler registry
+ */
+package com.qut.middleware.saml2.handler;
+
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/** */
+public class Messages
+{
+	private static final String BUNDLE_NAME = "com.qut.middleware.saml2.handler.messages"; //$NON-NLS-1$
+
+	private static final ResourceBundle RESOURCE_BUNDLE = ResourceBundle.getBundle(BUNDLE_NAME);
+
+	private Messages()
+	{
+		// Not Implemented
+	}
+
+	/**
+	 * @param key The key to use for locating the String
+	 * @return The externalized String value
+	 */
+	public static String getString(String key)
+	{
+		try
+		{
+			return RESOURCE_BUNDLE.getString(key);
+		}
+		catch (MissingResourceException e)
+		{
+			return '!' + key + '!';
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Interface to incremental unmarshalling of elements from a verified metadata document
+ */
+package com.qut.middleware.saml2.handler;
+
+import com.qut.middleware.saml2.exception.UnmarshallerException;
+
+/**
+ * Interface to incremental unmarshalling of elements from a verified metadata document.<br>
+ * Each element is unmarshalled only when requested from the verified document, so only one unmarshalled element needs to
+ * be held in memory at a time. The document itself is held until the stream is closed.
+ *
+ * @param <E>
+ *            The type of element being unmarshalled, usually a JAXB generated type such as EntityDescriptor
+ */
+public interface MetadataStream<E>
+{
+	/**
+	 * Unmarshalls the next matching element in document order.
+	 *
+	 * @return The next element, or null once the document has been fully read
+	 * @throws UnmarshallerException
+	 *             if an error occurs reading or unmarshalling the document.
+	 */
+	public E next() throws UnmarshallerException;
+
+	/**
+	 * Releases resources held by the stream. Should be called even if the document was not fully read.
+	 */
+	public void close();
+}
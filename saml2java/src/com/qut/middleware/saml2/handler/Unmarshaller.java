@@ -122,5 +122,22 @@ public interface Unmarshaller<T>
 	 */
 	public T unMarshallMetadata( byte[] document, Map<String, KeyData> keyList, boolean signed ) throws SignatureValueException, ReferenceValueException, UnmarshallerException;
 	
+	/**
+	 * Validates SAML metadata document against schema, verifies its signature when required and determines all public keys
+	 * stored in document. Rather than unmarshalling the complete document, returns a stream which unmarshalls each element of
+	 * the requested type in document order, so that large metadata aggregates can be processed one element at a time.
+	 * Utilised where public key information for validating the metadata signature is extracted from a supplied key resolver.
+	 * 
+	 * @param document The document to unmarshall
+	 * @param keyList An initiated but empty Map<String, PublicKey> with which to fill with key values
+	 * @param signed True if the document signature must be verified
+	 * @param elementType JAXB type of the elements to unmarshall, eg EntityDescriptor
+	 * @return A stream of unmarshalled elements, which the caller must close.
+	 * @throws SignatureValueException if the signature cannot be decoded.
+	 * @throws ReferenceValueException if the reference cannot be decoded.
+	 * @throws UnmarshallerException if an error occurs unmarshalling the document.
+	 */
+	public <E> MetadataStream<E> unMarshallMetadataStream( byte[] document, Map<String, KeyData> keyList, boolean signed, Class<E> elementType ) throws SignatureValueException, ReferenceValueException, UnmarshallerException;
+	
 	public Document generateDocument(byte[] document, boolean validate) throws UnmarshallerException;
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Builds a w3c DOM Document from SAX events
+ */
+package com.qut.middleware.saml2.handler.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+
+/**
+ * Builds a w3c DOM Document from SAX events.
+ *
+ * The resulting tree matches that created by a namespace aware, non validating DocumentBuilder. Namespace declarations
+ * are retained as xmlns attributes so that canonicalization of the tree is unchanged.
+ */
+class DOMBuilderHandler implements ContentHandler, LexicalHandler
+{
+	private static final String XMLNS_PREFIX = "xmlns:"; //$NON-NLS-1$
+
+	private Document doc;
+	private Node current;
+	private List<String[]> pendingMappings;
+	private boolean inCDATA;
+	private boolean inDTD;
+
+	/**
+	 * @param doc
+	 *            Empty document the parsed content will be appended to
+	 */
+	DOMBuilderHandler(Document doc)
+	{
+		this.doc = doc;
+		this.current = doc;
+		this.pendingMappings = new ArrayList<String[]>();
+	}
+
+	/**
+	 * @return The document built from received events
+	 */
+	Document getDocument()
+	{
+		return this.doc;
+	}
+
+	public void setDocumentLocator(Locator locator)
+	{
+		// Not required
+	}
+
+	public void startDocument() throws SAXException
+	{
+		// Document supplied at construction
+	}
+
+	public void endDocument() throws SAXException
+	{
+		// Nothing to complete
+	}
+
+	public void startPrefixMapping(String prefix, String uri) throws SAXException
+	{
+		this.pendingMappings.add(new String[] { prefix, uri });
+	}
+
+	public void endPrefixMapping(String prefix) throws SAXException
+	{
+		// Declarations are scoped by the element they were attached to
+	}
+
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+	{
+		Element element = this.doc.createElementNS(emptyToNull(uri), qName);
+
+		for (String[] mapping : this.pendingMappings)
+		{
+			if (mapping[0].length() == 0)
+			{
+				element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE, mapping[1]);
+			}
+			else
+			{
+				element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLNS_PREFIX + mapping[0], mapping[1]);
+			}
+		}
+		this.pendingMappings.clear();
+
+		for (int i = 0; i < atts.getLength(); i++)
+		{
+			element.setAttributeNS(emptyToNull(atts.getURI(i)), atts.getQName(i), atts.getValue(i));
+		}
+
+		this.current.appendChild(element);
+		this.current = element;
+	}
+
+	public void endElement(String uri, String localName, String qName) throws SAXException
+	{
+		this.current = this.current.getParentNode();
+	}
+
+	public void characters(char[] ch, int start, int length) throws SAXException
+	{
+		/* Text outside the document element is not represented in a DOM */
+		if (this.current == this.doc)
+			return;
+
+		Node last = this.current.getLastChild();
+
+		if (this.inCDATA)
+		{
+			if (last != null && last.getNodeType() == Node.CDATA_SECTION_NODE)
+				((CDATASection) last).appendData(new String(ch, start, length));
+			else
+				this.current.appendChild(this.doc.createCDATASection(new String(ch, start, length)));
+
+			return;
+		}
+
+		/* Parsers may deliver a single text node in several chunks */
+		if (last != null && last.getNodeType() == Node.TEXT_NODE)
+			((Text) last).appendData(new String(ch, start, length));
+		else
+			this.current.appendChild(this.doc.createTextNode(new String(ch, start, length)));
+	}
+
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+	{
+		this.characters(ch, start, length);
+	}
+
+	public void processingInstruction(String target, String data) throws SAXException
+	{
+		this.current.appendChild(this.doc.createProcessingInstruction(target, data));
+	}
+
+	public void skippedEntity(String name) throws SAXException
+	{
+		// External entities are not resolved
+	}
+
+	public void comment(char[] ch, int start, int length) throws SAXException
+	{
+		/* DTDs are not represented, so neither are the comments inside them */
+		if (this.inDTD)
+			return;
+
+		this.current.appendChild(this.doc.createComment(new String(ch, start, length)));
+	}
+
+	public void startCDATA() throws SAXException
+	{
+		this.inCDATA = true;
+
+		/* Adjacent CDATA sections remain seperate nodes */
+		this.current.appendChild(this.doc.createCDATASection("")); //$NON-NLS-1$
+	}
+
+	public void endCDATA() throws SAXException
+	{
+		this.inCDATA = false;
+	}
+
+	public void startDTD(String name, String publicId, String systemId) throws SAXException
+	{
+		this.inDTD = true;
+	}
+
+	public void endDTD() throws SAXException
+	{
+		this.inDTD = false;
+	}
+
+	public void startEntity(String name) throws SAXException
+	{
+		// Entities are expanded inline
+	}
+
+	public void endEntity(String name) throws SAXException
+	{
+		// Entities are expanded inline
+	}
+
+	private String emptyToNull(String uri)
+	{
+		if (uri == null || uri.length() == 0)
+			return null;
+
+		return uri;
+	}
+}
@@ -19,23 +19,19 @@
  */
 package com.qut.middleware.saml2.handler.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
-import java.security.Provider;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
-import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -43,10 +39,7 @@ import javax.xml.bind.PropertyException;
 import javax.xml.crypto.MarshalException;
 import javax.xml.crypto.dsig.CanonicalizationMethod;
 import javax.xml.crypto.dsig.DigestMethod;
-import javax.xml.crypto.dsig.Reference;
 import javax.xml.crypto.dsig.SignatureMethod;
-import javax.xml.crypto.dsig.SignedInfo;
-import javax.xml.crypto.dsig.Transform;
 import javax.xml.crypto.dsig.XMLSignature;
 import javax.xml.crypto.dsig.XMLSignatureException;
 import javax.xml.crypto.dsig.XMLSignatureFactory;
@@ -57,21 +50,16 @@ import javax.xml.crypto.dsig.keyinfo.KeyName;
 import javax.xml.crypto.dsig.keyinfo.X509Data;
 import javax.xml.crypto.dsig.keyinfo.X509IssuerSerial;
 import javax.xml.crypto.dsig.spec.ExcC14NParameterSpec;
-import javax.xml.crypto.dsig.spec.TransformParameterSpec;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 
 import org.slf4j.Logger;
@@ -86,9 +74,8 @@ import com.qut.middleware.saml2.Constants;
 import com.qut.middleware.saml2.LocalKeyResolver;
 import com.qut.middleware.saml2.exception.MarshallerException;
 import com.qut.middleware.saml2.exception.ResourceException;
+import com.qut.middleware.saml2.handler.HandlerRegistry;
 import com.qut.middleware.saml2.namespace.NamespacePrefixMapperImpl;
-import com.qut.middleware.saml2.resolver.ResourceResolver;
-import com.qut.middleware.saml2.resolver.SchemaResolver;
 
 /**
  * Concrete implementation of all marshalling operations supported by saml2lib-j.
@@ -97,10 +84,7 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 {
 	private TransformerFactory transFac;
 
-	private ResourceResolver resourceResolver;
-
 	private JAXBContext jaxbContext;
-	private SchemaFactory schemaFactory;
 	private Schema schema;
 
 	private MarshallerValidationHandler validationHandler;
@@ -115,6 +99,12 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 
 	private Certificate cert;
 
+	/* Signature structures are bound to the thread confined XMLSignatureFactory that created them */
+	private ThreadLocal<SignatureTemplate> signatureTemplates = new ThreadLocal<SignatureTemplate>();
+
+	private AtomicLong signatureCount = new AtomicLong();
+	private AtomicLong signingTime = new AtomicLong();
+
 	/**
 	 * Constructor for MarshallerImpl
 	 * 
@@ -141,34 +131,11 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 			throw new IllegalArgumentException(Messages.getString("MarshallerImpl.2")); //$NON-NLS-1$
 		}
 
-		URL location;
-
 		try
 		{
-			/* Schema Factory is expensive to create so preload everything at start up */
-			this.resourceResolver = new ResourceResolver();
-
-			Source[] schemaSource = new Source[schemaList.length];
-
-			/* Prepare all schemas requested by caller to be used in validation */
-			for (int i = 0; i < schemaList.length; i++)
-			{
-				location = SchemaResolver.class.getResource(schemaList[i]);
-				if (location == null)
-				{
-					this.logger.error(Messages.getString("UnmarshallerImpl.49") + schemaList[i] //$NON-NLS-1$
-							+ Messages.getString("UnmarshallerImpl.50")); //$NON-NLS-1$
-					throw new IllegalArgumentException(Messages.getString("UnmarshallerImpl.26") + schemaList[i] + Messages.getString("UnmarshallerImpl.27")); //$NON-NLS-1$//$NON-NLS-2$
-				}
-
-				schemaSource[i] = new StreamSource(location.openStream());
-			}
-
-			this.jaxbContext = JAXBContext.newInstance(packageName);
-
-			this.schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-			this.schemaFactory.setResourceResolver(this.resourceResolver);
-			this.schema = this.schemaFactory.newSchema(schemaSource);
+			/* JAXBContext and Schema are expensive to create, share them with all other marshallers */
+			this.jaxbContext = HandlerRegistry.getJAXBContext(packageName);
+			this.schema = HandlerRegistry.getSchema(schemaList);
 
 			this.logger.info(Messages.getString("MarshallerImpl.23")); //$NON-NLS-1$
 		}
@@ -235,33 +202,11 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 			throw new IllegalArgumentException(Messages.getString("MarshallerImpl.5")); //$NON-NLS-1$
 		}
 
-		URL location;
-
 		try
 		{
-			this.resourceResolver = new ResourceResolver();
-
-			Source[] schemaSource = new Source[schemaList.length];
-
-			/* Prepare all schemas requested by caller to be used in validation */
-			for (int i = 0; i < schemaList.length; i++)
-			{
-				location = SchemaResolver.class.getResource(schemaList[i]);
-				if (location == null)
-				{
-					this.logger.error(Messages.getString("UnmarshallerImpl.49") + schemaList[i] //$NON-NLS-1$
-							+ Messages.getString("UnmarshallerImpl.50")); //$NON-NLS-1$
-					throw new IllegalArgumentException(Messages.getString("UnmarshallerImpl.26") + schemaList[i] + Messages.getString("UnmarshallerImpl.27")); //$NON-NLS-1$//$NON-NLS-2$
-				}
-
-				schemaSource[i] = new StreamSource(location.openStream());
-			}
-
-			this.jaxbContext = JAXBContext.newInstance(packageName);
-
-			this.schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-			this.schemaFactory.setResourceResolver(this.resourceResolver);
-			this.schema = this.schemaFactory.newSchema(schemaSource);
+			/* JAXBContext and Schema are expensive to create, share them with all other marshallers */
+			this.jaxbContext = HandlerRegistry.getJAXBContext(packageName);
+			this.schema = HandlerRegistry.getSchema(schemaList);
 
 			this.transFac = TransformerFactory.newInstance();
 
@@ -327,13 +272,11 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 			throw new IllegalArgumentException(Messages.getString("MarshallerImpl.9")); //$NON-NLS-1$
 		}
 
-		ByteArrayInputStream byteArrayInputStream;
-		byte[] xml = marshallUnSigned(xmlObj, encoding);
-
-		byteArrayInputStream = new ByteArrayInputStream(xml); //$NON-NLS-1$
-		xml = sign(byteArrayInputStream, encoding);
+		/* Marshall directly to DOM so the document is serialized only once, after signing */
+		Document doc = marshallDocument(xmlObj, encoding);
+		signDocument(doc);
 
-		return xml;
+		return generateOutput(doc, encoding);
 	}
 
 	/* (non-Javadoc)
@@ -412,17 +355,29 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 			throw new IllegalArgumentException(Messages.getString("MarshallerImpl.14")); //$NON-NLS-1$
 		}
 
+		return marshallDocument(xmlObj, encoding).getDocumentElement();
+	}
+
+	/**
+	 * Marshalls the supplied object into a new DOM Document.
+	 * 
+	 * @param xmlObj
+	 *            JAXB object to be marshalled
+	 * @param encoding
+	 *            Character encoding to declare for the document
+	 * @return A DOM representation of xmlObj
+	 * @throws MarshallerException
+	 */
+	private Document marshallDocument(T xmlObj, String encoding) throws MarshallerException
+	{
 		Marshaller marshaller;
-		DocumentBuilderFactory docBuildFac;
 		DocumentBuilder docBuilder;
 		Document doc;
 
 		try
 		{
 			this.logger.debug(Messages.getString("MarshallerImpl.48")); //$NON-NLS-1$
-			docBuildFac = DocumentBuilderFactory.newInstance();
-			docBuildFac.setNamespaceAware(true);
-			docBuilder = docBuildFac.newDocumentBuilder();
+			docBuilder = XMLFactoryCache.getDocumentBuilder();
 			doc = docBuilder.newDocument();
 
 			marshaller = jaxbContext.createMarshaller();
@@ -442,7 +397,7 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 
 			marshaller.marshal(xmlObj, doc);
 
-			return doc.getDocumentElement();
+			return doc;
 		}
 		catch (JAXBException je)
 		{
@@ -482,34 +437,12 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 			throw new IllegalArgumentException(Messages.getString("MarshallerImpl.9")); //$NON-NLS-1$
 		}
 
-		byte[] xml = marshallUnSigned(xmlObj, encoding);
-
-		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(xml); //$NON-NLS-1$
-		Document doc = signDocument(byteArrayInputStream, encoding);
+		Document doc = marshallDocument(xmlObj, encoding);
+		signDocument(doc);
 
 		return doc.getDocumentElement();
 	}
 
-	/**
-	 * Validates, Signs and creates XML content.
-	 * 
-	 * This function will validate the supplied schema. For each supplied XML compliant id in idList an empty
-	 * <Signature/> block is assumed to be present so that the Signature generation output can be inserted in a valid
-	 * position in the final document.
-	 * 
-	 * @param schema
-	 *            The name of the schema file eg "my-schema.xsd" to validate against
-	 * @param document
-	 *            The validated xml content to be signed
-	 * @return A string representation of the completed document
-	 */
-	private byte[] sign(InputStream document, String encoding) throws MarshallerException
-	{
-			Document doc = this.signDocument(document, encoding);
-	
-			return generateOutput(doc, encoding);
-	}
-
 	public byte[] generateOutput(Document doc, String encoding) throws MarshallerException
 	{
 		try
@@ -547,68 +480,38 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 	}
 	
 	/**
-	 * Validates, Signs and creates XML DOM object.
+	 * Validates and signs an XML DOM object in place.
 	 * 
-	 * This function will validate the supplied schema. For each supplied XML compliant id in idList an empty
-	 * <Signature/> block is assumed to be present so that the Signature generation output can be inserted in a valid
-	 * position in the final document.
+	 * This function will validate the supplied document against schema. For each supplied XML compliant id in idList
+	 * an empty <Signature/> block is assumed to be present so that the Signature generation output can be inserted in
+	 * a valid position in the final document.
 	 * 
-	 * @param schema
-	 *            The name of the schema file eg "my-schema.xsd" to validate against
-	 * @param document
-	 *            The validated xml content to be signed
-	 * @return A DOM representation of the completed document
+	 * @param doc
+	 *            The marshalled document to be validated and signed
 	 */
-	private Document signDocument(InputStream document, String encoding) throws MarshallerException
+	private void signDocument(Document doc) throws MarshallerException
 	{
-		XMLSignatureFactory xmlSigFac;
-		DigestMethod digestMethod;
-		CanonicalizationMethod canocMeth;
-		SignatureMethod sigMeth;
-
-		ArrayList<Transform> transformList;
-		Document doc;
-		SignedInfo signedInfo;
+		SignatureTemplate template;
 		DOMSignContext domSignContext;
 		Element signatureParent = null;
 		Element signatureElement = null;
 		XMLSignature signature;
 		Element postSignature;
-		Reference ref;
-		KeyInfoFactory factory;
-		KeyInfo keyInfo;
-		KeyName keyName;
 		NodeList nodeList;
 		String id;
 
 		this.logger.debug(Messages.getString("MarshallerImpl.52")); //$NON-NLS-1$
 		try
 		{
-			/* XMLSignatureFactory instances are not thread safe outside static functions so create in local scope */
-			xmlSigFac = XMLSignatureFactory.getInstance(Constants.DOM_FACTORY, (Provider) Class.forName(System.getProperty(Constants.JSR_MECHANISM, Constants.JSR_PROVIDER)).newInstance()); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
-			digestMethod = xmlSigFac.newDigestMethod(DigestMethod.SHA1, null);
-			canocMeth = xmlSigFac.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE, (ExcC14NParameterSpec) null);
+			template = getSignatureTemplate();
 
-			if (this.pk.getAlgorithm().equals(Constants.RSA_KEY)) //$NON-NLS-1$
-			{
-				this.logger.info(Messages.getString("MarshallerImpl.29")); //$NON-NLS-1$
-				sigMeth = xmlSigFac.newSignatureMethod(SignatureMethod.RSA_SHA1, null);
-			}
-			else
-			{
-				if (this.pk.getAlgorithm().equals(Constants.DSA_KEY)) //$NON-NLS-1$
-				{
-					this.logger.info(Messages.getString("MarshallerImpl.30")); //$NON-NLS-1$
-					sigMeth = xmlSigFac.newSignatureMethod(SignatureMethod.DSA_SHA1, null);
-				}
-				else
-				{
-					this.logger.error(Messages.getString("MarshallerImpl.19")); //$NON-NLS-1$
-					throw new MarshallerException(Messages.getString("MarshallerImpl.19")); //$NON-NLS-1$
-				}
-			}
+			validate(doc);
 
-			doc = validate(document);
+			/*
+			 * Signed documents were previously reparsed from JAXB stream output, which is declared standalone. Mark the
+			 * document the same way so serialized output is unchanged.
+			 */
+			doc.setXmlStandalone(true);
 
 			/* Locate all the empty Signature elements we wish to populate */
 			nodeList = doc.getElementsByTagNameNS(XMLSignature.XMLNS, Constants.SIGNATURE_ELEMENT);
@@ -622,15 +525,7 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 			/* Sign elements in reverse so that outer calculations take into account inner signature blocks */
 			for (int i = nodeList.getLength() - 1; i >= 0; i--)
 			{
-				/* Create new transform object for each element being signed */
-				transformList = new ArrayList<Transform>();
-				TransformParameterSpec transformSpec = null;
-
-				Transform exc14nTransform = xmlSigFac.newTransform(Constants.EXC14NTRANS, transformSpec); //$NON-NLS-1$
-				Transform envTransform = xmlSigFac.newTransform(Constants.ENVTRANS, transformSpec); //$NON-NLS-1$
-
-				transformList.add(envTransform);
-				transformList.add(exc14nTransform);
+				long start = System.nanoTime();
 
 				/* Get the signature element and parent element for this enveloped signature */
 				signatureElement = (Element) nodeList.item(i);
@@ -647,26 +542,6 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 
 				this.logger.debug(Messages.getString("MarshallerImpl.54") + id); //$NON-NLS-1$
 
-				ref = xmlSigFac.newReference("#" + id, digestMethod, transformList, null, null); //$NON-NLS-1$
-				signedInfo = xmlSigFac.newSignedInfo(canocMeth, sigMeth, Collections.singletonList(ref));
-
-				factory = KeyInfoFactory.getInstance(Constants.DOM_FACTORY, (Provider) Class.forName(System.getProperty(Constants.JSR_MECHANISM, Constants.JSR_PROVIDER)).newInstance()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-				keyName = factory.newKeyName(this.keyPairName);
-				
-				List<Object> keyInfoList = new ArrayList<Object>();
-				keyInfoList.add(keyName);
-				
-				if (this.cert instanceof X509Certificate)
-				{
-					X509Certificate x509Certificate = (X509Certificate)this.cert;
-					X509IssuerSerial x509IssuerSerial = factory.newX509IssuerSerial(x509Certificate.getIssuerDN().getName(), x509Certificate.getSerialNumber());
-					X509Data x509Data = factory.newX509Data(Collections.singletonList(x509IssuerSerial));
-					keyInfoList.add(x509Data);
-				}
-
-				/* Future additions to the KeyInfo block should be extended here */
-				keyInfo = factory.newKeyInfo(keyInfoList);
-
 				/* Skip text nodes here (handles human generated xml correctly) */
 				if ((signatureElement.getNextSibling() != null) && (signatureElement.getNextSibling().getNodeType() == Node.TEXT_NODE))
 				{
@@ -684,7 +559,7 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 				}
 
 				signatureParent.removeChild(signatureElement);
-				signature = xmlSigFac.newXMLSignature(signedInfo, keyInfo);
+				signature = template.newSignature(id);
 
 				/* Determine signature context dependant on document contents */
 				if (postSignature != null)
@@ -694,9 +569,10 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 
 				domSignContext.putNamespacePrefix(XMLSignature.XMLNS, "ds"); //$NON-NLS-1$
 				signature.sign(domSignContext);
-			}
 
-			return doc;
+				this.signingTime.addAndGet(System.nanoTime() - start);
+				this.signatureCount.incrementAndGet();
+			}
 		}
 		catch (InvalidAlgorithmParameterException iape)
 		{
@@ -734,12 +610,6 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 			this.logger.debug(ioe.getLocalizedMessage(), ioe);
 			throw new MarshallerException(ioe.getMessage(), ioe);
 		}
-		catch (ParserConfigurationException pce)
-		{
-			this.logger.warn(Messages.getString("MarshallerImpl.57")); //$NON-NLS-1$
-			this.logger.debug(pce.getLocalizedMessage(), pce);
-			throw new MarshallerException(pce.getMessage(), pce);
-		}
 		catch (SAXException saxe)
 		{
 			this.logger.warn(Messages.getString("MarshallerImpl.58")); //$NON-NLS-1$
@@ -761,35 +631,105 @@ public class MarshallerImpl<T> implements com.qut.middleware.saml2.handler.Marsh
 	}
 
 	/**
-	 * Validates the supplied document against schema, returns DOMResult on success.
+	 * Resolves the signature template for the current thread, creating it on first use or when the configured JSR-105
+	 * provider changes.
 	 * 
-	 * @param schema
-	 *            Schema document to validate against
-	 * @param document
-	 *            InputStream representation of the document to validate
-	 * @return
-	 * @throws ParserConfigurationException
-	 * @throws IOException
-	 * @throws SAXException
+	 * @return Template holding the signature structures for this marshallers keypair
 	 */
-	private Document validate(InputStream document) throws ParserConfigurationException, IOException, SAXException
+	private SignatureTemplate getSignatureTemplate() throws MarshallerException, ClassNotFoundException,
+			InstantiationException, IllegalAccessException, NoSuchAlgorithmException, InvalidAlgorithmParameterException
 	{
-		this.logger.debug(Messages.getString("MarshallerImpl.64")); //$NON-NLS-1$
+		XMLSignatureFactory xmlSigFac;
+		DigestMethod digestMethod;
+		CanonicalizationMethod canocMeth;
+		SignatureMethod sigMeth;
+		KeyInfoFactory factory;
+		KeyInfo keyInfo;
+		KeyName keyName;
 
-		DocumentBuilderFactory docBuildFac = DocumentBuilderFactory.newInstance();
-		docBuildFac.setNamespaceAware(true);
-		docBuildFac.setValidating(false);
-		docBuildFac.setAttribute("http://apache.org/xml/features/dom/defer-node-expansion", Boolean.FALSE); //$NON-NLS-1$
+		/* XMLSignatureFactory instances are not thread safe outside static functions so obtain one confined to this thread */
+		xmlSigFac = XMLFactoryCache.getXMLSignatureFactory();
 
-		DocumentBuilder docBuilder = docBuildFac.newDocumentBuilder();
-		Document doc = docBuilder.parse(document);
+		SignatureTemplate template = this.signatureTemplates.get();
+		if (template != null && template.getSignatureFactory() == xmlSigFac)
+		{
+			return template;
+		}
 
-		Validator validator = this.schema.newValidator();
-		validator.setErrorHandler(this.validationHandler);
+		digestMethod = xmlSigFac.newDigestMethod(DigestMethod.SHA1, null);
+		canocMeth = xmlSigFac.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE, (ExcC14NParameterSpec) null);
 
-		validator.validate(new DOMSource(doc));
+		if (this.pk.getAlgorithm().equals(Constants.RSA_KEY)) //$NON-NLS-1$
+		{
+			this.logger.info(Messages.getString("MarshallerImpl.29")); //$NON-NLS-1$
+			sigMeth = xmlSigFac.newSignatureMethod(SignatureMethod.RSA_SHA1, null);
+		}
+		else
+		{
+			if (this.pk.getAlgorithm().equals(Constants.DSA_KEY)) //$NON-NLS-1$
+			{
+				this.logger.info(Messages.getString("MarshallerImpl.30")); //$NON-NLS-1$
+				sigMeth = xmlSigFac.newSignatureMethod(SignatureMethod.DSA_SHA1, null);
+			}
+			else
+			{
+				this.logger.error(Messages.getString("MarshallerImpl.19")); //$NON-NLS-1$
+				throw new MarshallerException(Messages.getString("MarshallerImpl.19")); //$NON-NLS-1$
+			}
+		}
+
+		factory = XMLFactoryCache.getKeyInfoFactory();
+		keyName = factory.newKeyName(this.keyPairName);
+
+		List<Object> keyInfoList = new ArrayList<Object>();
+		keyInfoList.add(keyName);
+
+		if (this.cert instanceof X509Certificate)
+		{
+			X509Certificate x509Certificate = (X509Certificate) this.cert;
+			X509IssuerSerial x509IssuerSerial = factory.newX509IssuerSerial(x509Certificate.getIssuerDN().getName(), x509Certificate.getSerialNumber());
+			X509Data x509Data = factory.newX509Data(Collections.singletonList(x509IssuerSerial));
+			keyInfoList.add(x509Data);
+		}
+
+		/* Future additions to the KeyInfo block should be extended here */
+		keyInfo = factory.newKeyInfo(keyInfoList);
 
-		return doc;
+		template = new SignatureTemplate(xmlSigFac, digestMethod, canocMeth, sigMeth, keyInfo);
+		this.signatureTemplates.set(template);
+
+		return template;
+	}
 
+	/**
+	 * @return The number of signatures produced by this marshaller
+	 */
+	public long getSignatureCount()
+	{
+		return this.signatureCount.get();
+	}
+
+	/**
+	 * @return The total time in nanoseconds this marshaller has spent producing signatures, excluding schema validation
+	 */
+	public long getSigningTime()
+	{
+		return this.signingTime.get();
+	}
+
+	/**
+	 * Validates the supplied document against schema in place.
+	 * 
+	 * @param doc
+	 *            DOM representation of the document to validate
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	private void validate(Document doc) throws IOException, SAXException
+	{
+		this.logger.debug(Messages.getString("MarshallerImpl.64")); //$NON-NLS-1$
+
+		Validator validator = XMLFactoryCache.getValidator(this.schema, this.validationHandler);
+		validator.validate(new DOMSource(doc));
 	}
 }
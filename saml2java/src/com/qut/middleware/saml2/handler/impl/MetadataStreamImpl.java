@@ -0,0 +1,145 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Incremental unmarshalling of elements from a verified metadata DOM
+ */
+package com.qut.middleware.saml2.handler.impl;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.qut.middleware.saml2.exception.UnmarshallerException;
+import com.qut.middleware.saml2.handler.MetadataStream;
+
+/**
+ * Incremental unmarshalling of elements from a metadata DOM. The document is expected to have already been validated
+ * against schema and had its signatures verified, so the elements unmarshalled are exactly those that were verified.
+ * Each element is detached from the document once unmarshalled, so the document shrinks as the stream is read.
+ */
+class MetadataStreamImpl<E> implements MetadataStream<E>
+{
+	private Document document;
+	private Node position;
+	private Unmarshaller unmarshaller;
+	private QName elementName;
+	private Class<E> elementType;
+
+	/* Local logging instance */
+	private Logger logger = LoggerFactory.getLogger(MetadataStreamImpl.class.getName());
+
+	/**
+	 * @param document
+	 *            Verified metadata document
+	 * @param unmarshaller
+	 *            JAXB unmarshaller for the document, confined to this stream
+	 * @param elementName
+	 *            Name of the elements to unmarshall
+	 * @param elementType
+	 *            JAXB type the elements are bound to
+	 */
+	MetadataStreamImpl(Document document, Unmarshaller unmarshaller, QName elementName, Class<E> elementType)
+	{
+		this.document = document;
+		this.position = document.getDocumentElement();
+		this.unmarshaller = unmarshaller;
+		this.elementName = elementName;
+		this.elementType = elementType;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.qut.middleware.saml2.handler.MetadataStream#next()
+	 */
+	public E next() throws UnmarshallerException
+	{
+		if (this.document == null)
+			return null;
+
+		/* Search the document in document order, without descending into elements already matched */
+		Node node = this.position;
+		while (node != null)
+		{
+			if (node.getNodeType() == Node.ELEMENT_NODE && this.elementName.getNamespaceURI().equals(nullToEmpty(node.getNamespaceURI()))
+					&& this.elementName.getLocalPart().equals(node.getLocalName()))
+			{
+				Element element = (Element) node;
+				this.position = following(element);
+
+				try
+				{
+					E value = this.unmarshaller.unmarshal(element, this.elementType).getValue();
+					element.getParentNode().removeChild(element);
+
+					return value;
+				}
+				catch (JAXBException je)
+				{
+					this.logger.error(Messages.getString("UnmarshallerImpl.133")); //$NON-NLS-1$
+					this.logger.debug(je.getLocalizedMessage(), je);
+					throw new UnmarshallerException(je.getMessage(), je, null);
+				}
+			}
+
+			if (node.getFirstChild() != null)
+				node = node.getFirstChild();
+			else
+				node = following(node);
+		}
+
+		close();
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.qut.middleware.saml2.handler.MetadataStream#close()
+	 */
+	public void close()
+	{
+		this.document = null;
+		this.position = null;
+	}
+
+	/* The node following the supplied node and all its descendants in document order */
+	private Node following(Node node)
+	{
+		Node current = node;
+		while (current != null)
+		{
+			if (current.getNextSibling() != null)
+				return current.getNextSibling();
+
+			current = current.getParentNode();
+		}
+
+		return null;
+	}
+
+	private String nullToEmpty(String value)
+	{
+		return (value == null) ? "" : value; //$NON-NLS-1$
+	}
+}
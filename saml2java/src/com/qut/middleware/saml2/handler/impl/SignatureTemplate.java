@@ -0,0 +1,107 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Holds the signature structures which are identical for every document signed with a keypair
+ */
+package com.qut.middleware.saml2.handler.impl;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignatureMethod;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.keyinfo.KeyInfo;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+
+import com.qut.middleware.saml2.Constants;
+
+/**
+ * Holds the signature structures which are identical for every document signed with a keypair, so that only the
+ * reference to the signed element and its transforms need to be created per signature.
+ *
+ * Provider implementations of canonicalization and signature methods cache engines internally, so templates must be
+ * confined to the thread owning the XMLSignatureFactory that created them.
+ */
+class SignatureTemplate
+{
+	private XMLSignatureFactory xmlSigFac;
+	private DigestMethod digestMethod;
+	private CanonicalizationMethod canocMeth;
+	private SignatureMethod sigMeth;
+	private KeyInfo keyInfo;
+
+	/**
+	 * @param xmlSigFac
+	 *            Factory which created all supplied structures
+	 * @param digestMethod
+	 *            Digest applied to referenced content
+	 * @param canocMeth
+	 *            Canonicalization applied to SignedInfo
+	 * @param sigMeth
+	 *            Signature algorithm matching the signing key
+	 * @param keyInfo
+	 *            KeyInfo block identifying the signing key to remote parties
+	 */
+	SignatureTemplate(XMLSignatureFactory xmlSigFac, DigestMethod digestMethod, CanonicalizationMethod canocMeth,
+			SignatureMethod sigMeth, KeyInfo keyInfo)
+	{
+		this.xmlSigFac = xmlSigFac;
+		this.digestMethod = digestMethod;
+		this.canocMeth = canocMeth;
+		this.sigMeth = sigMeth;
+		this.keyInfo = keyInfo;
+	}
+
+	/**
+	 * @return The factory which created this template
+	 */
+	XMLSignatureFactory getSignatureFactory()
+	{
+		return this.xmlSigFac;
+	}
+
+	/**
+	 * Creates an enveloped signature over the element with the supplied ID.
+	 *
+	 * @param id
+	 *            Value of the ID attribute of the element being signed
+	 * @return An unsigned XMLSignature ready to be signed into a document
+	 */
+	XMLSignature newSignature(String id) throws NoSuchAlgorithmException, InvalidAlgorithmParameterException
+	{
+		/* Transform implementations bind to the document they are first applied to so can't be reused */
+		List<Transform> transformList = new ArrayList<Transform>();
+		TransformParameterSpec transformSpec = null;
+
+		transformList.add(this.xmlSigFac.newTransform(Constants.ENVTRANS, transformSpec));
+		transformList.add(this.xmlSigFac.newTransform(Constants.EXC14NTRANS, transformSpec));
+
+		Reference ref = this.xmlSigFac.newReference("#" + id, this.digestMethod, transformList, null, null); //$NON-NLS-1$
+		SignedInfo signedInfo = this.xmlSigFac.newSignedInfo(this.canocMeth, this.sigMeth, Collections.singletonList(ref));
+
+		return this.xmlSigFac.newXMLSignature(signedInfo, this.keyInfo);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Forwards SAX events from a single parse to both a schema validator and a document consumer
+ */
+package com.qut.middleware.saml2.handler.impl;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * Forwards SAX events from a single parse to both a schema validator and a document consumer.
+ *
+ * The consumer receives events exactly as produced by the parser rather than the validator's augmented output, so
+ * default attributes added during validation never appear in documents which may later have their signatures verified.
+ */
+class TeeContentHandler implements ContentHandler
+{
+	private ContentHandler validator;
+	private ContentHandler consumer;
+
+	/**
+	 * @param validator
+	 *            Handler performing schema validation, usually a ValidatorHandler
+	 * @param consumer
+	 *            Handler building the document, such as a DOM builder or JAXB UnmarshallerHandler
+	 */
+	TeeContentHandler(ContentHandler validator, ContentHandler consumer)
+	{
+		this.validator = validator;
+		this.consumer = consumer;
+	}
+
+	public void setDocumentLocator(Locator locator)
+	{
+		this.validator.setDocumentLocator(locator);
+		this.consumer.setDocumentLocator(locator);
+	}
+
+	public void startDocument() throws SAXException
+	{
+		this.validator.startDocument();
+		this.consumer.startDocument();
+	}
+
+	public void endDocument() throws SAXException
+	{
+		this.validator.endDocument();
+		this.consumer.endDocument();
+	}
+
+	public void startPrefixMapping(String prefix, String uri) throws SAXException
+	{
+		this.validator.startPrefixMapping(prefix, uri);
+		this.consumer.startPrefixMapping(prefix, uri);
+	}
+
+	public void endPrefixMapping(String prefix) throws SAXException
+	{
+		this.validator.endPrefixMapping(prefix);
+		this.consumer.endPrefixMapping(prefix);
+	}
+
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+	{
+		this.validator.startElement(uri, localName, qName, atts);
+		this.consumer.startElement(uri, localName, qName, atts);
+	}
+
+	public void endElement(String uri, String localName, String qName) throws SAXException
+	{
+		this.validator.endElement(uri, localName, qName);
+		this.consumer.endElement(uri, localName, qName);
+	}
+
+	public void characters(char[] ch, int start, int length) throws SAXException
+	{
+		this.validator.characters(ch, start, length);
+		this.consumer.characters(ch, start, length);
+	}
+
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+	{
+		this.validator.ignorableWhitespace(ch, start, length);
+		this.consumer.ignorableWhitespace(ch, start, length);
+	}
+
+	public void processingInstruction(String target, String data) throws SAXException
+	{
+		this.validator.processingInstruction(target, data);
+		this.consumer.processingInstruction(target, data);
+	}
+
+	public void skippedEntity(String name) throws SAXException
+	{
+		this.validator.skippedEntity(name);
+		this.consumer.skippedEntity(name);
+	}
+}
@@ -24,21 +24,19 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
-import java.net.URL;
 import java.security.Key;
 import java.security.KeyException;
-import java.security.Provider;
 import java.security.PublicKey;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.PropertyException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.UnmarshallerHandler;
 import javax.xml.crypto.AlgorithmMethod;
 import javax.xml.crypto.KeySelector;
 import javax.xml.crypto.KeySelectorException;
@@ -57,34 +55,35 @@ import javax.xml.crypto.dsig.keyinfo.KeyName;
 import javax.xml.crypto.dsig.keyinfo.KeyValue;
 import javax.xml.crypto.dsig.keyinfo.X509Data;
 import javax.xml.crypto.dsig.keyinfo.X509IssuerSerial;
+import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
 
-import com.qut.middleware.saml2.Constants;
 import com.qut.middleware.saml2.ExternalKeyResolver;
 import com.qut.middleware.saml2.exception.KeyResolutionException;
 import com.qut.middleware.saml2.exception.ReferenceValueException;
 import com.qut.middleware.saml2.exception.ResourceException;
 import com.qut.middleware.saml2.exception.SignatureValueException;
 import com.qut.middleware.saml2.exception.UnmarshallerException;
+import com.qut.middleware.saml2.handler.HandlerRegistry;
+import com.qut.middleware.saml2.handler.MetadataStream;
 import com.qut.middleware.saml2.namespace.NamespacePrefixMapperImpl;
-import com.qut.middleware.saml2.resolver.ResourceResolver;
-import com.qut.middleware.saml2.resolver.SchemaResolver;
 import com.qut.middleware.saml2.schemas.metadata.KeyTypes;
 import com.qut.middleware.saml2.sec.KeyData;
 
@@ -260,13 +259,21 @@ public class UnmarshallerImpl<T> implements com.qut.middleware.saml2.handler.Unm
 	}
 
 	private JAXBContext jaxbContext;
-	private ResourceResolver resourceResolver;
 	private ExternalKeyResolver extKeyResolver;
 
-	private SchemaFactory schemaFactory;
 	private Schema schema;
 	private UnmarshallerValidationHandler validationHandler;
 
+	/**
+	 * System property used to enable single pass parsing and validation, defaults to false. It speeds up parsing to a
+	 * DOM, but unMarshallUnSigned is slower for some documents, such as Responses, than the two pass path.
+	 */
+	public static final String STREAMING_VALIDATION_PROPERTY = "saml2StreamingValidation"; //$NON-NLS-1$
+
+	private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler"; //$NON-NLS-1$
+
+	private boolean streamingValidation = Boolean.valueOf(System.getProperty(STREAMING_VALIDATION_PROPERTY, "false")).booleanValue(); //$NON-NLS-1$
+
 	private final String KEY_PURPOSE = "use"; //$NON-NLS-1$
 	private final String KEY_DESCRIPTOR = "KeyDescriptor"; //$NON-NLS-1$
 
@@ -336,38 +343,14 @@ public class UnmarshallerImpl<T> implements com.qut.middleware.saml2.handler.Unm
 			throw new IllegalArgumentException(Messages.getString("UnmarshallerImpl.4")); //$NON-NLS-1$
 		}
 
-		URL location;
-
 		try
 		{
-			this.resourceResolver = new ResourceResolver();
-
-			/* JAXBContext is thread safe and expensive to initiate so create once only */
-			this.jaxbContext = JAXBContext.newInstance(packageName);
+			/* JAXBContext and Schema are thread safe and expensive to initiate so share them process wide */
+			this.jaxbContext = HandlerRegistry.getJAXBContext(packageName);
+			this.schema = HandlerRegistry.getSchema(schemaList);
 
 			this.validationHandler = new UnmarshallerValidationHandler();
 
-			Source[] schemaSource = new Source[schemaList.length];
-
-			/* Prepare all schemas requested by caller to be used in validation */
-			for (int i = 0; i < schemaList.length; i++)
-			{
-				location = SchemaResolver.class.getResource(schemaList[i]);
-				if (location == null)
-				{
-					this.logger.error(Messages.getString("UnmarshallerImpl.49") + schemaList[i] //$NON-NLS-1$
-							+ Messages.getString("UnmarshallerImpl.50")); //$NON-NLS-1$   //$NON-NLS-2$
-					throw new IllegalArgumentException(
-							Messages.getString("UnmarshallerImpl.26") + schemaList[i] + Messages.getString("UnmarshallerImpl.27")); //$NON-NLS-1$ //$NON-NLS-2$
-				}
-
-				schemaSource[i] = new StreamSource(location.openStream());
-			}
-
-			this.schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-			this.schemaFactory.setResourceResolver(this.resourceResolver);
-			this.schema = this.schemaFactory.newSchema(schemaSource);
-
 			this.logger.info(Messages.getString("UnmarshallerImpl.51")); //$NON-NLS-1$ 
 		}
 		catch (JAXBException je)
@@ -396,6 +379,23 @@ public class UnmarshallerImpl<T> implements com.qut.middleware.saml2.handler.Unm
 		}
 	}
 	
+	/**
+	 * @return true if documents are validated during parsing, false if validation is a second pass over the DOM
+	 */
+	public boolean isStreamingValidation()
+	{
+		return this.streamingValidation;
+	}
+
+	/**
+	 * @param streamingValidation
+	 *            true to validate documents during parsing, false to validate the parsed DOM in a second pass
+	 */
+	public void setStreamingValidation(boolean streamingValidation)
+	{
+		this.streamingValidation = streamingValidation;
+	}
+
 	private Document generateDocument(byte[] document) throws UnmarshallerException
 	{
 		return this.generateDocument(document, true);
@@ -644,14 +644,117 @@ public class UnmarshallerImpl<T> implements com.qut.middleware.saml2.handler.Unm
 		}
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.qut.middleware.saml2.handler.Unmarshaller#unMarshallMetadataStream(byte[], java.util.Map, boolean,
+	 *      java.lang.Class)
+	 */
+	public <E> MetadataStream<E> unMarshallMetadataStream(byte[] document, Map<String, KeyData> keyList, boolean signed,
+			Class<E> elementType) throws SignatureValueException, ReferenceValueException, UnmarshallerException
+	{
+		this.logger.debug(Messages.getString("UnmarshallerImpl.131")); //$NON-NLS-1$
+
+		if ((document == null) || (document.length <= 0))
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.7")); //$NON-NLS-1$ 
+			throw new IllegalArgumentException(Messages.getString("UnmarshallerImpl.7")); //$NON-NLS-1$ 
+		}
+
+		if ((keyList == null))
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.28")); //$NON-NLS-1$ 
+			throw new IllegalArgumentException(Messages.getString("UnmarshallerImpl.28")); //$NON-NLS-1$
+		}
+
+		if (elementType == null)
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.134")); //$NON-NLS-1$ 
+			throw new IllegalArgumentException(Messages.getString("UnmarshallerImpl.134")); //$NON-NLS-1$
+		}
+
+		Document doc;
+		QName elementName;
+
+		try
+		{
+			/*
+			 * Signature verification requires the complete document. Elements are unmarshalled from the same verified
+			 * document rather than a second parse, so only one JAXB element is held at a time, while the document
+			 * shrinks as the stream is read.
+			 */
+			this.logger.debug(Messages.getString("UnmarshallerImpl.67")); //$NON-NLS-1$ 
+			doc = this.generateDocument(document);
+
+			if (signed)
+			{
+				this.logger.debug(Messages.getString("UnmarshallerImpl.68")); //$NON-NLS-1$ 
+				validateSignature(doc, null, null);
+			}
+
+			processMetadataKeys(doc, keyList, null);
+
+			elementName = this.jaxbContext.createJAXBIntrospector().getElementName(elementType.newInstance());
+			if (elementName == null)
+			{
+				this.logger.error(Messages.getString("UnmarshallerImpl.134")); //$NON-NLS-1$ 
+				throw new IllegalArgumentException(Messages.getString("UnmarshallerImpl.134")); //$NON-NLS-1$
+			}
+
+			this.logger.debug(Messages.getString("UnmarshallerImpl.75")); //$NON-NLS-1$
+			return new MetadataStreamImpl<E>(doc, this.jaxbContext.createUnmarshaller(), elementName, elementType);
+		}
+		catch (ClassNotFoundException cfe)
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.52")); //$NON-NLS-1$ 
+			this.logger.debug(cfe.getLocalizedMessage(), cfe);
+			throw new UnmarshallerException(cfe.getMessage(), cfe, null);
+		}
+		catch (IllegalAccessException iae)
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.53")); //$NON-NLS-1$ 
+			this.logger.debug(iae.getLocalizedMessage(), iae);
+			throw new UnmarshallerException(iae.getMessage(), iae, null);
+		}
+		catch (InstantiationException cfe)
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.54")); //$NON-NLS-1$ 
+			this.logger.debug(cfe.getLocalizedMessage(), cfe);
+			throw new UnmarshallerException(cfe.getMessage(), cfe, null);
+		}
+		catch (JAXBException je)
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.76")); //$NON-NLS-1$ 
+			this.logger.debug(je.getLocalizedMessage(), je);
+			throw new UnmarshallerException(je.getMessage(), je, null);
+		}
+		catch (MarshalException me)
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.77")); //$NON-NLS-1$ 
+			this.logger.debug(me.getLocalizedMessage(), me);
+			throw new UnmarshallerException(me.getMessage(), me, null);
+		}
+		catch (KeyException ke)
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.78")); //$NON-NLS-1$
+			this.logger.debug(ke.getLocalizedMessage(), ke);
+			throw new UnmarshallerException(ke.getMessage(), ke, null);
+		}
+		catch (XMLSignatureException xse)
+		{
+			this.logger.error(Messages.getString("UnmarshallerImpl.79")); //$NON-NLS-1$ 
+			this.logger.debug(xse.getLocalizedMessage(), xse);
+			throw new UnmarshallerException(xse.getMessage(), xse, null);
+		}
+	}
+	
 	private void processMetadataKeys(Document doc, Map<String, KeyData> keyList, T jaxbObject) throws KeyException, InstantiationException, IllegalAccessException, ClassNotFoundException, MarshalException, UnmarshallerException
 	{
 		NodeList nodeList;
 		XMLSignatureFactory xmlSigFac;
 
-		/* XMLSignatureFactory instances are not thread safe outside static functions so create in local scope */
-		xmlSigFac = XMLSignatureFactory.getInstance(Constants.DOM_FACTORY, (Provider) Class.forName(
-				System.getProperty(Constants.JSR_MECHANISM, Constants.JSR_PROVIDER)).newInstance()); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+		/* XMLSignatureFactory instances are not thread safe outside static functions so obtain one confined to this thread */
+		xmlSigFac = XMLFactoryCache.getXMLSignatureFactory();
 
 		this.logger.debug(Messages.getString("UnmarshallerImpl.69")); //$NON-NLS-1$ 
 		nodeList = doc.getElementsByTagNameNS("*", this.KEY_DESCRIPTOR); //$NON-NLS-1$ 
@@ -988,9 +1091,20 @@ public class UnmarshallerImpl<T> implements com.qut.middleware.saml2.handler.Unm
 		try
 		{
 			this.logger.debug(Messages.getString("UnmarshallerImpl.109")); //$NON-NLS-1$
+			Unmarshaller unmarshaller = this.jaxbContext.createUnmarshaller();
+
+			if (this.streamingValidation)
+			{
+				/* No signature to verify so no DOM is required, validate while JAXB consumes the parse events */
+				UnmarshallerHandler unmarshallerHandler = unmarshaller.getUnmarshallerHandler();
+				this.parseValidated(new ByteArrayInputStream(document), unmarshallerHandler);
+
+				jaxbObject = (T) unmarshallerHandler.getResult();
+				return jaxbObject;
+			}
+
 			doc = this.generateDocument(document);
 
-			Unmarshaller unmarshaller = this.jaxbContext.createUnmarshaller();
 			jaxbObject = (T) unmarshaller.unmarshal(doc);
 			return jaxbObject;
 		}
@@ -1000,6 +1114,24 @@ public class UnmarshallerImpl<T> implements com.qut.middleware.saml2.handler.Unm
 			this.logger.debug(je.getMessage(), je);
 			throw new UnmarshallerException(je.getMessage(), je, jaxbObject);
 		}
+		catch (IOException ioe)
+		{
+			this.logger.warn(Messages.getString("UnmarshallerImpl.58")); //$NON-NLS-1$
+			this.logger.debug(ioe.getLocalizedMessage(), ioe);
+			throw new UnmarshallerException(ioe.getMessage(), ioe, jaxbObject);
+		}
+		catch (ParserConfigurationException pce)
+		{
+			this.logger.warn(Messages.getString("UnmarshallerImpl.59")); //$NON-NLS-1$
+			this.logger.debug(pce.getLocalizedMessage(), pce);
+			throw new UnmarshallerException(pce.getMessage(), pce, jaxbObject);
+		}
+		catch (SAXException saxe)
+		{
+			this.logger.warn(Messages.getString("UnmarshallerImpl.60")); //$NON-NLS-1$
+			this.logger.debug(saxe.getLocalizedMessage(), saxe);
+			throw new UnmarshallerException(saxe.getMessage(), saxe, jaxbObject);
+		}
 	}
 
 	/**
@@ -1021,25 +1153,75 @@ public class UnmarshallerImpl<T> implements com.qut.middleware.saml2.handler.Unm
 	{
 		this.logger.debug(Messages.getString("UnmarshallerImpl.111")); //$NON-NLS-1$
 
-		DocumentBuilderFactory docBuildFac = DocumentBuilderFactory.newInstance();
-		docBuildFac.setNamespaceAware(true);
-		docBuildFac.setValidating(false);
-		docBuildFac.setAttribute("http://apache.org/xml/features/dom/defer-node-expansion", Boolean.FALSE); //$NON-NLS-1$
+		if (validate && this.streamingValidation)
+		{
+			return this.parseValidatedDocument(document);
+		}
 
-		DocumentBuilder docBuilder = docBuildFac.newDocumentBuilder();
+		DocumentBuilder docBuilder = XMLFactoryCache.getDocumentBuilder();
 		Document doc = docBuilder.parse(document);
 
 		if (validate)
 		{
-			Validator validator = this.schema.newValidator();
-			validator.setErrorHandler(this.validationHandler);
-	
+			Validator validator = XMLFactoryCache.getValidator(this.schema, this.validationHandler);
 			validator.validate(new DOMSource(doc));
 		}
 		
 		return doc;
 	}
 
+	/**
+	 * Parses the supplied document into a DOM, validating against schema in the same pass.
+	 * 
+	 * @param document
+	 *            InputStream representation of the document to parse
+	 * @return A Document representation of the supplied xml stream.
+	 * @throws ParserConfigurationException
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	private Document parseValidatedDocument(InputStream document) throws ParserConfigurationException, IOException,
+			SAXException
+	{
+		DOMBuilderHandler domBuilder = new DOMBuilderHandler(XMLFactoryCache.getDocumentBuilder().newDocument());
+
+		this.parseValidated(document, domBuilder);
+
+		return domBuilder.getDocument();
+	}
+
+	/**
+	 * Parses the supplied document once, passing each event to both a schema validator and the supplied consumer.
+	 * 
+	 * @param document
+	 *            InputStream representation of the document to parse
+	 * @param consumer
+	 *            Handler which builds the final document representation
+	 * @throws ParserConfigurationException
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	private void parseValidated(InputStream document, ContentHandler consumer) throws ParserConfigurationException,
+			IOException, SAXException
+	{
+		XMLReader reader = XMLFactoryCache.getSAXParser().getXMLReader();
+		ValidatorHandler validatorHandler = XMLFactoryCache.getValidatorHandler(this.schema, this.validationHandler);
+
+		reader.setContentHandler(new TeeContentHandler(validatorHandler, consumer));
+
+		/* Preserve comments and CDATA sections when the consumer is building a DOM */
+		if (consumer instanceof LexicalHandler)
+		{
+			reader.setProperty(LEXICAL_HANDLER, consumer);
+		}
+		else
+		{
+			reader.setProperty(LEXICAL_HANDLER, null);
+		}
+
+		reader.parse(new InputSource(document));
+	}
+
 	/**
 	 * Validates the supplied document against schema, returns DOMResult on success.
 	 * 
@@ -1054,8 +1236,7 @@ public class UnmarshallerImpl<T> implements com.qut.middleware.saml2.handler.Unm
 	{
 		this.logger.debug(Messages.getString("UnmarshallerImpl.113")); //$NON-NLS-1$
 
-		Validator validator = this.schema.newValidator();
-		validator.setErrorHandler(this.validationHandler);
+		Validator validator = XMLFactoryCache.getValidator(this.schema, this.validationHandler);
 
 		this.logger.debug(Messages.getString("UnmarshallerImpl.114")); //$NON-NLS-1$
 		validator.validate(new DOMSource(node));
@@ -1085,9 +1266,8 @@ public class UnmarshallerImpl<T> implements com.qut.middleware.saml2.handler.Unm
 
 		try
 		{
-			/* XMLSignatureFactory instances are not thread safe outside static functions so create in local scope */
-			xmlSigFac = XMLSignatureFactory.getInstance(Constants.DOM_FACTORY, (Provider) Class.forName(
-					System.getProperty(Constants.JSR_MECHANISM, Constants.JSR_PROVIDER)).newInstance()); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+			/* XMLSignatureFactory instances are not thread safe outside static functions so obtain one confined to this thread */
+			xmlSigFac = XMLFactoryCache.getXMLSignatureFactory();
 		}
 		catch (ClassNotFoundException cfe)
 		{
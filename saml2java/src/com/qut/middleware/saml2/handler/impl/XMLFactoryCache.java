@@ -0,0 +1,335 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Caches the JSR-105 provider and thread confined parser, validator and signature factories used by the
+ * marshalling operations supported by saml2lib-j
+ */
+package com.qut.middleware.saml2.handler.impl;
+
+import java.lang.ref.SoftReference;
+import java.security.Provider;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+
+import com.qut.middleware.saml2.Constants;
+
+/**
+ * Caches the JSR-105 provider and thread confined parser, validator and signature factories used by the marshalling
+ * operations supported by saml2lib-j.
+ *
+ * None of DocumentBuilder, SAXParser, Validator or XMLSignatureFactory are thread safe so each thread holds its own instance,
+ * which is reset before being handed out again. Caching may be disabled by setting the system property
+ * "saml2FactoryCache" to false or by calling setEnabled(false), in which case new instances are created for every call.
+ */
+public final class XMLFactoryCache
+{
+	/** System property used to disable factory caching, defaults to true */
+	public static final String FACTORY_CACHE_PROPERTY = "saml2FactoryCache"; //$NON-NLS-1$
+
+	private static final String DEFER_NODE_EXPANSION = "http://apache.org/xml/features/dom/defer-node-expansion"; //$NON-NLS-1$
+
+	private static volatile boolean enabled = Boolean.valueOf(System.getProperty(FACTORY_CACHE_PROPERTY, "true")).booleanValue(); //$NON-NLS-1$
+
+	/* Providers are stateless once created so may be shared by all threads, keyed by provider class name */
+	private static final Map<String, Provider> providers = new ConcurrentHashMap<String, Provider>();
+
+	private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>();
+	private static final ThreadLocal<SAXParser> saxParsers = new ThreadLocal<SAXParser>();
+	private static final ThreadLocal<Map<String, XMLSignatureFactory>> signatureFactories = new ThreadLocal<Map<String, XMLSignatureFactory>>();
+	private static final ThreadLocal<Map<String, KeyInfoFactory>> keyInfoFactories = new ThreadLocal<Map<String, KeyInfoFactory>>();
+
+	/*
+	 * Schemas may be discarded by their owners. Validators refer to their Schema, so are held softly, otherwise the
+	 * weak keys would always be reachable through the values. Once a Schema is discarded its entry goes when the
+	 * collector clears its validator, which is no later than when memory runs short.
+	 */
+	private static final ThreadLocal<Map<Schema, SoftReference<Validator>>> validators = new ThreadLocal<Map<Schema, SoftReference<Validator>>>();
+	private static final ThreadLocal<Map<Schema, SoftReference<ValidatorHandler>>> validatorHandlers = new ThreadLocal<Map<Schema, SoftReference<ValidatorHandler>>>();
+
+	private XMLFactoryCache()
+	{
+		// Static access only
+	}
+
+	/**
+	 * @return true if factories are being cached, false if they are created per call
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * @param enabled
+	 *            true to cache factories, false to create new factories on every call
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		XMLFactoryCache.enabled = enabled;
+	}
+
+	/**
+	 * Resolves the JSR-105 provider named by the jsr105Provider system property. The provider is instantiated once per
+	 * class name.
+	 *
+	 * @return The configured JSR-105 provider
+	 */
+	public static Provider getProvider() throws ClassNotFoundException, InstantiationException, IllegalAccessException
+	{
+		String providerName = System.getProperty(Constants.JSR_MECHANISM, Constants.JSR_PROVIDER);
+
+		if (!enabled)
+		{
+			return (Provider) Class.forName(providerName).newInstance();
+		}
+
+		Provider provider = providers.get(providerName);
+		if (provider == null)
+		{
+			/* Racing threads may both create an instance, either is acceptable */
+			provider = (Provider) Class.forName(providerName).newInstance();
+			providers.put(providerName, provider);
+		}
+
+		return provider;
+	}
+
+	/**
+	 * @return An XMLSignatureFactory for the configured provider which is confined to the calling thread
+	 */
+	public static XMLSignatureFactory getXMLSignatureFactory() throws ClassNotFoundException, InstantiationException,
+			IllegalAccessException
+	{
+		Provider provider = getProvider();
+
+		if (!enabled)
+		{
+			return XMLSignatureFactory.getInstance(Constants.DOM_FACTORY, provider);
+		}
+
+		Map<String, XMLSignatureFactory> factories = signatureFactories.get();
+		if (factories == null)
+		{
+			factories = new HashMap<String, XMLSignatureFactory>();
+			signatureFactories.set(factories);
+		}
+
+		XMLSignatureFactory factory = factories.get(provider.getClass().getName());
+		if (factory == null)
+		{
+			factory = XMLSignatureFactory.getInstance(Constants.DOM_FACTORY, provider);
+			factories.put(provider.getClass().getName(), factory);
+		}
+
+		return factory;
+	}
+
+	/**
+	 * @return A KeyInfoFactory for the configured provider which is confined to the calling thread
+	 */
+	public static KeyInfoFactory getKeyInfoFactory() throws ClassNotFoundException, InstantiationException,
+			IllegalAccessException
+	{
+		Provider provider = getProvider();
+
+		if (!enabled)
+		{
+			return KeyInfoFactory.getInstance(Constants.DOM_FACTORY, provider);
+		}
+
+		Map<String, KeyInfoFactory> factories = keyInfoFactories.get();
+		if (factories == null)
+		{
+			factories = new HashMap<String, KeyInfoFactory>();
+			keyInfoFactories.set(factories);
+		}
+
+		KeyInfoFactory factory = factories.get(provider.getClass().getName());
+		if (factory == null)
+		{
+			factory = KeyInfoFactory.getInstance(Constants.DOM_FACTORY, provider);
+			factories.put(provider.getClass().getName(), factory);
+		}
+
+		return factory;
+	}
+
+	/**
+	 * @return A namespace aware, non validating DocumentBuilder confined to the calling thread and reset for use
+	 * @throws ParserConfigurationException
+	 */
+	public static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException
+	{
+		if (!enabled)
+		{
+			return createDocumentBuilder();
+		}
+
+		DocumentBuilder docBuilder = documentBuilders.get();
+		if (docBuilder == null)
+		{
+			docBuilder = createDocumentBuilder();
+			documentBuilders.set(docBuilder);
+		}
+		else
+		{
+			docBuilder.reset();
+		}
+
+		return docBuilder;
+	}
+
+	/**
+	 * @param schema
+	 *            The compiled schema the validator should enforce
+	 * @param errorHandler
+	 *            Handler to receive validation events
+	 * @return A Validator for the supplied schema confined to the calling thread and reset for use
+	 */
+	public static Validator getValidator(Schema schema, ErrorHandler errorHandler)
+	{
+		Validator validator;
+
+		if (!enabled)
+		{
+			validator = schema.newValidator();
+			validator.setErrorHandler(errorHandler);
+			return validator;
+		}
+
+		Map<Schema, SoftReference<Validator>> schemaValidators = validators.get();
+		if (schemaValidators == null)
+		{
+			schemaValidators = new WeakHashMap<Schema, SoftReference<Validator>>();
+			validators.set(schemaValidators);
+		}
+
+		SoftReference<Validator> reference = schemaValidators.get(schema);
+		validator = (reference == null) ? null : reference.get();
+		if (validator == null)
+		{
+			validator = schema.newValidator();
+			schemaValidators.put(schema, new SoftReference<Validator>(validator));
+		}
+		else
+		{
+			validator.reset();
+		}
+
+		validator.setErrorHandler(errorHandler);
+		return validator;
+	}
+
+	/**
+	 * @return A namespace aware, non validating SAXParser confined to the calling thread and reset for use
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 */
+	public static SAXParser getSAXParser() throws ParserConfigurationException, SAXException
+	{
+		if (!enabled)
+		{
+			return createSAXParser();
+		}
+
+		SAXParser saxParser = saxParsers.get();
+		if (saxParser == null)
+		{
+			saxParser = createSAXParser();
+			saxParsers.set(saxParser);
+		}
+		else
+		{
+			saxParser.reset();
+		}
+
+		return saxParser;
+	}
+
+	/**
+	 * @param schema
+	 *            The compiled schema the validator should enforce
+	 * @param errorHandler
+	 *            Handler to receive validation events
+	 * @return A ValidatorHandler for the supplied schema confined to the calling thread
+	 */
+	public static ValidatorHandler getValidatorHandler(Schema schema, ErrorHandler errorHandler)
+	{
+		ValidatorHandler validatorHandler;
+
+		if (!enabled)
+		{
+			validatorHandler = schema.newValidatorHandler();
+			validatorHandler.setErrorHandler(errorHandler);
+			return validatorHandler;
+		}
+
+		Map<Schema, SoftReference<ValidatorHandler>> schemaValidatorHandlers = validatorHandlers.get();
+		if (schemaValidatorHandlers == null)
+		{
+			schemaValidatorHandlers = new WeakHashMap<Schema, SoftReference<ValidatorHandler>>();
+			validatorHandlers.set(schemaValidatorHandlers);
+		}
+
+		/* ValidatorHandler state is reset by startDocument so instances may be reused sequentially */
+		SoftReference<ValidatorHandler> reference = schemaValidatorHandlers.get(schema);
+		validatorHandler = (reference == null) ? null : reference.get();
+		if (validatorHandler == null)
+		{
+			validatorHandler = schema.newValidatorHandler();
+			schemaValidatorHandlers.put(schema, new SoftReference<ValidatorHandler>(validatorHandler));
+		}
+
+		validatorHandler.setErrorHandler(errorHandler);
+		return validatorHandler;
+	}
+
+	private static SAXParser createSAXParser() throws ParserConfigurationException, SAXException
+	{
+		SAXParserFactory saxParserFac = SAXParserFactory.newInstance();
+		saxParserFac.setNamespaceAware(true);
+		saxParserFac.setValidating(false);
+
+		return saxParserFac.newSAXParser();
+	}
+
+	private static DocumentBuilder createDocumentBuilder() throws ParserConfigurationException
+	{
+		DocumentBuilderFactory docBuildFac = DocumentBuilderFactory.newInstance();
+		docBuildFac.setNamespaceAware(true);
+		docBuildFac.setValidating(false);
+		docBuildFac.setAttribute(DEFER_NODE_EXPANSION, Boolean.FALSE);
+
+		return docBuildFac.newDocumentBuilder();
+	}
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Source of the current time.
+ */
+package com.qut.middleware.saml2.identifier;
+
+/** Source of the current time used by identifier caches to timestamp registrations. */
+public interface Clock
+{
+	/**
+	 * @return The current time in milliseconds since the epoch.
+	 */
+	public long currentTimeMillis();
+}
@@ -19,26 +19,49 @@
  */
 package com.qut.middleware.saml2.identifier.impl;
 
-import java.util.Date;
 import java.util.Iterator;
-import java.util.Set;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.qut.middleware.saml2.identifier.Clock;
 import com.qut.middleware.saml2.identifier.IdentifierCache;
 import com.qut.middleware.saml2.identifier.exception.IdentifierCollisionException;
 
-/** Implements IdentifierCache interface to prevent replay attacks. */
+/**
+ * Implements IdentifierCache interface to prevent replay attacks.
+ *
+ * Identifiers are registered atomically without locking. Each identifier is also recorded against the generation
+ * (time bucket) it was registered in, so cleaning the cache only visits generations old enough to hold expired
+ * identifiers rather than every entry in the cache.
+ */
 public class IdentifierCacheImpl implements IdentifierCache
 {
-	private ConcurrentMap<String, Date> cache;
-	private ReentrantLock lock;
-	
+	/** Default width of a generation in milliseconds */
+	public static final long DEFAULT_GENERATION_INTERVAL = 60000;
+
+	private static final Clock SYSTEM_CLOCK = new Clock()
+	{
+		public long currentTimeMillis()
+		{
+			return System.currentTimeMillis();
+		}
+	};
+
+	private ConcurrentMap<String, Long> cache;
+	private ConcurrentLinkedQueue<Generation> generations;
+	private volatile Generation current;
+	private long generationInterval;
+	private Clock clock;
+
+	private AtomicLong registrations;
+	private AtomicLong collisions;
+	private AtomicLong expirations;
+
 	/* Local logging instance */
 	private Logger logger = LoggerFactory.getLogger(IdentifierCacheImpl.class.getName());
 
@@ -46,38 +69,91 @@ public class IdentifierCacheImpl implements IdentifierCache
 	 * Default constructor.
 	 */
 	public IdentifierCacheImpl()
-	{		
-		this.cache = new ConcurrentHashMap<String, Date>();
-		this.lock = new ReentrantLock();
+	{
+		this(DEFAULT_GENERATION_INTERVAL);
+	}
+
+	/**
+	 * @param generationInterval
+	 *            The width in milliseconds of each generation of identifiers. Smaller generations reduce the number
+	 *            of unexpired identifiers examined by cleanCache, at the cost of more generations being held.
+	 */
+	public IdentifierCacheImpl(long generationInterval)
+	{
+		this(generationInterval, SYSTEM_CLOCK);
+	}
+
+	/**
+	 * @param generationInterval
+	 *            The width in milliseconds of each generation of identifiers.
+	 * @param clock
+	 *            The source of the current time used to timestamp and expire identifiers.
+	 */
+	public IdentifierCacheImpl(long generationInterval, Clock clock)
+	{
+		if (generationInterval <= 0)
+		{
+			throw new IllegalArgumentException(Messages.getString("IdentifierCacheImpl.10")); //$NON-NLS-1$
+		}
+
+		if (clock == null)
+		{
+			throw new IllegalArgumentException(Messages.getString("IdentifierCacheImpl.11")); //$NON-NLS-1$
+		}
+
+		this.cache = new ConcurrentHashMap<String, Long>();
+		this.generations = new ConcurrentLinkedQueue<Generation>();
+		this.generationInterval = generationInterval;
+		this.clock = clock;
+
+		this.registrations = new AtomicLong();
+		this.collisions = new AtomicLong();
+		this.expirations = new AtomicLong();
+
+		this.current = new Generation(this.clock.currentTimeMillis());
+		this.generations.add(this.current);
 
 		this.logger
-				.info(Messages.getString("IdentifierCacheImpl.6")); //$NON-NLS-1$ 
+				.info(Messages.getString("IdentifierCacheImpl.6")); //$NON-NLS-1$
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * 
+	 *
 	 * @see com.qut.middleware.core.identifier.IdentifierCache#registerIdentifier(java.lang.String)
 	 */
 	public void registerIdentifier(String identifier) throws IdentifierCollisionException
 	{
 		this.logger.debug(Messages.getString("IdentifierCacheImpl.8")); //$NON-NLS-1$
 
-		this.lock.lock();
-		try
+		if (identifier == null)
 		{
-			if (this.containsIdentifier(identifier))
-			{
-				this.logger.error(Messages.getString("IdentifierCacheImpl.9")); //$NON-NLS-1$
-				throw new IdentifierCollisionException(Messages.getString("IdentifierCacheImpl.9")); //$NON-NLS-1$
-			}
-			
-			if(identifier != null)
-				this.cache.put(identifier, new Date());
+			throw new IllegalArgumentException(Messages.getString("IdentifierCacheImpl.12")); //$NON-NLS-1$
+		}
+
+		long now = this.clock.currentTimeMillis();
+		Long timestamp = Long.valueOf(now);
+
+		if (this.cache.putIfAbsent(identifier, timestamp) != null)
+		{
+			this.collisions.incrementAndGet();
+			this.logger.error(Messages.getString("IdentifierCacheImpl.9")); //$NON-NLS-1$
+			throw new IdentifierCollisionException(Messages.getString("IdentifierCacheImpl.9")); //$NON-NLS-1$
 		}
-		finally
+
+		this.registrations.incrementAndGet();
+
+		Generation generation = this.getGeneration(now);
+		generation.identifiers.add(identifier);
+
+		/*
+		 * If cleanCache retired this generation while we were adding to it, our identifier may have been missed.
+		 * Record it again against the current generation, expiry always checks the cached timestamp so a duplicate
+		 * record is harmless.
+		 */
+		if (generation.retired)
 		{
-			this.lock.unlock();
+			this.getGeneration(now).identifiers.add(identifier);
 		}
 	}
 
@@ -86,15 +162,10 @@ public class IdentifierCacheImpl implements IdentifierCache
 	 */
 	public boolean containsIdentifier(String identifier)
 	{
-		this.lock.lock();
-		try
-		{
-			return this.cache.containsKey(identifier);
-		}
-		finally
-		{
-			this.lock.unlock();
-		}
+		if (identifier == null)
+			return false;
+
+		return this.cache.containsKey(identifier);
 	}
 
 	/* (non-Javadoc)
@@ -103,27 +174,156 @@ public class IdentifierCacheImpl implements IdentifierCache
 	public int cleanCache(int age)
 	{
 		int numRemoved = 0;
-		
-		Set<Entry<String, Date>> entryList = this.cache.entrySet();
-		Iterator<Entry<String, Date>> entryIterator = entryList.iterator();
-		
-		while (entryIterator.hasNext())
+		long expiry = this.clock.currentTimeMillis() - age;
+
+		/* Generations are queued oldest first, so stop at the first which could not contain an expired identifier */
+		Iterator<Generation> generationIterator = this.generations.iterator();
+		while (generationIterator.hasNext())
 		{
-			Entry<String, Date> entry = entryIterator.next();
+			Generation generation = generationIterator.next();
+			if (generation.start >= expiry)
+				break;
 
-			long now = new Date().getTime();
-			long expire = (entry.getValue().getTime() + (age));
+			if (generation != this.current && generation.start + this.generationInterval <= expiry)
+			{
+				/* Every identifier registered on time is expired, so the whole generation can be dropped */
+				generation.retired = true;
+				generationIterator.remove();
 
-			if (expire < now)
+				for (String identifier : generation.identifiers)
+				{
+					if (this.expire(identifier, expiry))
+					{
+						numRemoved++;
+					}
+					else if (this.cache.containsKey(identifier))
+					{
+						/* Registered late by a thread which held this generation, keep it until it is expired */
+						this.getGeneration(this.clock.currentTimeMillis()).identifiers.add(identifier);
+					}
+				}
+			}
+			else
 			{
-				this.logger.debug(Messages.getString("IdentifierCacheImpl.4")); //$NON-NLS-1$
-				entryIterator.remove();
-				numRemoved ++;
+				/* Generation straddles the expiry time, only some of its identifiers can be removed */
+				Iterator<String> identifierIterator = generation.identifiers.iterator();
+				while (identifierIterator.hasNext())
+				{
+					String identifier = identifierIterator.next();
+					Long timestamp = this.cache.get(identifier);
+
+					if (timestamp == null)
+					{
+						identifierIterator.remove();
+					}
+					else if (timestamp.longValue() < expiry)
+					{
+						identifierIterator.remove();
+						if (this.expire(identifier, expiry))
+						{
+							numRemoved++;
+						}
+					}
+				}
 			}
 		}
-		
+
+		this.logger.debug(Messages.getString("IdentifierCacheImpl.4") + " " + numRemoved); //$NON-NLS-1$ //$NON-NLS-2$
+
 		return numRemoved;
 	}
-	
-	
+
+	/**
+	 * @return The number of identifiers currently held in the cache.
+	 */
+	public int getSize()
+	{
+		return this.cache.size();
+	}
+
+	/**
+	 * @return The number of generations currently held in the cache.
+	 */
+	public int getGenerationCount()
+	{
+		return this.generations.size();
+	}
+
+	/**
+	 * @return The number of identifiers successfully registered since the cache was created.
+	 */
+	public long getRegistrationCount()
+	{
+		return this.registrations.get();
+	}
+
+	/**
+	 * @return The number of registrations rejected because the identifier was already present.
+	 */
+	public long getCollisionCount()
+	{
+		return this.collisions.get();
+	}
+
+	/**
+	 * @return The number of identifiers removed by cleanCache since the cache was created.
+	 */
+	public long getExpiredCount()
+	{
+		return this.expirations.get();
+	}
+
+	/*
+	 * Removes the identifier if it was registered before the expiry time. The conditional remove ensures an
+	 * identifier which was expired and then registered again concurrently is not lost.
+	 */
+	private boolean expire(String identifier, long expiry)
+	{
+		Long timestamp = this.cache.get(identifier);
+		if (timestamp != null && timestamp.longValue() < expiry && this.cache.remove(identifier, timestamp))
+		{
+			this.expirations.incrementAndGet();
+			return true;
+		}
+
+		return false;
+	}
+
+	/*
+	 * Returns the generation an identifier registered at the supplied time belongs in, starting a new generation if
+	 * the current one has ended. Only one racing thread succeeds in starting the new generation.
+	 */
+	private Generation getGeneration(long now)
+	{
+		Generation generation = this.current;
+		if (now < generation.start + this.generationInterval)
+			return generation;
+
+		synchronized (this.generations)
+		{
+			generation = this.current;
+			if (now >= generation.start + this.generationInterval)
+			{
+				generation = new Generation(now);
+				this.generations.add(generation);
+				this.current = generation;
+			}
+
+			return generation;
+		}
+	}
+
+	/* Identifiers registered during one generation interval */
+	private static class Generation
+	{
+		protected final long start;
+		protected final ConcurrentLinkedQueue<String> identifiers;
+		protected volatile boolean retired;
+
+		protected Generation(long start)
+		{
+			this.start = start;
+			this.identifiers = new ConcurrentLinkedQueue<String>();
+		}
+	}
 }
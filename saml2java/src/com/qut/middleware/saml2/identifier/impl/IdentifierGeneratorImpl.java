@@ -21,9 +21,7 @@ package com.qut.middleware.saml2.identifier.impl;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.concurrent.locks.ReentrantLock;
 
-import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,13 +36,22 @@ public class IdentifierGeneratorImpl implements IdentifierGenerator
 	private final String XS_ID_DELIM = "_"; //$NON-NLS-1$
 	private final String ID_DELIM = "-"; //$NON-NLS-1$
 	private final String RNG = "SHA1PRNG"; //$NON-NLS-1$
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
 	
 	/* Local logging instance */
 	private Logger logger = LoggerFactory.getLogger(IdentifierGeneratorImpl.class.getName());
 	
 	private IdentifierCache cache;
-	private ReentrantLock lock;
-	private SecureRandom random;
+	
+	/* SecureRandom synchronizes internally, so each thread is given its own instance to avoid contention */
+	private ThreadLocal<SecureRandom> random = new ThreadLocal<SecureRandom>()
+	{
+		@Override
+		protected SecureRandom initialValue()
+		{
+			return createRandom();
+		}
+	};
 	
 	public IdentifierGeneratorImpl(IdentifierCache cache)
 	{
@@ -53,21 +60,6 @@ public class IdentifierGeneratorImpl implements IdentifierGenerator
 			throw new IllegalArgumentException("identifier cache cannot be null."); //$NON-NLS-1$
 		}
 		this.cache = cache;
-		this.lock = new ReentrantLock();
-
-		try
-		{
-			/* Attempt to get the specified RNG instance */
-			this.random = SecureRandom.getInstance(this.RNG);
-		}
-		catch (NoSuchAlgorithmException nsae)
-		{
-			this.logger.error(Messages.getString("IdentifierGeneratorImpl.13")); //$NON-NLS-1$
-			this.logger.debug(nsae.getLocalizedMessage(), nsae);
-			this.random = new SecureRandom();
-		}
-		
-		this.random.setSeed(System.currentTimeMillis());
 	}
 
 	/* (non-Javadoc)
@@ -75,9 +67,12 @@ public class IdentifierGeneratorImpl implements IdentifierGenerator
 	 */
 	public String generateSAMLAuthnID()
 	{
-		String id = this.XS_ID_DELIM;
-		id = id + generate(20);
-		id = id + this.ID_DELIM + generate(16);
+		StringBuilder builder = new StringBuilder(74);
+		builder.append(this.XS_ID_DELIM);
+		generate(builder, 20);
+		builder.append(this.ID_DELIM);
+		generate(builder, 16);
+		String id = builder.toString();
 		
 		this.logger.debug(Messages.getString("IdentifierGeneratorImpl.0") + id); //$NON-NLS-1$
 		
@@ -100,9 +95,12 @@ public class IdentifierGeneratorImpl implements IdentifierGenerator
 	 */
 	public String generateSAMLID()
 	{
-		String id = this.XS_ID_DELIM;
-		id = id + generate(20);
-		id = id + this.ID_DELIM + generate(16);
+		StringBuilder builder = new StringBuilder(74);
+		builder.append(this.XS_ID_DELIM);
+		generate(builder, 20);
+		builder.append(this.ID_DELIM);
+		generate(builder, 16);
+		String id = builder.toString();
 		
 		this.logger.debug(Messages.getString("IdentifierGeneratorImpl.3") + id); //$NON-NLS-1$
 
@@ -160,9 +158,12 @@ public class IdentifierGeneratorImpl implements IdentifierGenerator
 	 */
 	public String generateSessionID()
 	{
-		String id = generate(20);
-		id = id + this.ID_DELIM + generate(16);
-		id = id + this.ID_DELIM + System.currentTimeMillis();
+		StringBuilder builder = new StringBuilder(94);
+		generate(builder, 20);
+		builder.append(this.ID_DELIM);
+		generate(builder, 16);
+		builder.append(this.ID_DELIM).append(System.currentTimeMillis());
+		String id = builder.toString();
 		
 		this.logger.debug(Messages.getString("IdentifierGeneratorImpl.10") + id); //$NON-NLS-1$
 		
@@ -189,26 +190,59 @@ public class IdentifierGeneratorImpl implements IdentifierGenerator
 	 */
 	private String generate(int length)
 	{
-		String id;
-		byte[] buf;
-		buf = new byte[length];
+		StringBuilder builder = new StringBuilder(length * 2);
+		generate(builder, length);
 
-		this.lock.lock();
+		return builder.toString();
+	}
+
+	/**
+	 * Generates the specified number of random bytes using SecureRandom and appends them to the builder as lower case
+	 * hex, without creating an intermediate string.
+	 * 
+	 * @param builder
+	 *            The builder to append to
+	 * @param length
+	 *            The number of random bytes to generate
+	 */
+	private void generate(StringBuilder builder, int length)
+	{
+		byte[] buf = new byte[length];
+		this.random.get().nextBytes(buf);
+
+		for (int i = 0; i < length; i++)
+		{
+			builder.append(HEX[(buf[i] >> 4) & 0x0F]);
+			builder.append(HEX[buf[i] & 0x0F]);
+		}
+	}
+
+	/**
+	 * Creates and seeds a SecureRandom for the calling thread. The instance seeds itself from system entropy on
+	 * first use, the thread name and time are then mixed in to further separate the per thread streams.
+	 * 
+	 * @return The seeded SecureRandom
+	 */
+	private SecureRandom createRandom()
+	{
+		SecureRandom secureRandom;
 		try
 		{
-			/* Seed the specified RNG instance and get bytes */
-			this.random.setSeed(Thread.currentThread().getName().getBytes());
-			this.random.setSeed(System.currentTimeMillis());
-			this.random.nextBytes(buf);
+			/* Attempt to get the specified RNG instance */
+			secureRandom = SecureRandom.getInstance(this.RNG);
 		}
-		finally
+		catch (NoSuchAlgorithmException nsae)
 		{
-			this.lock.unlock();
+			this.logger.error(Messages.getString("IdentifierGeneratorImpl.13")); //$NON-NLS-1$
+			this.logger.debug(nsae.getLocalizedMessage(), nsae);
+			secureRandom = new SecureRandom();
 		}
 
-		id = new String(Hex.encodeHex(buf));
+		secureRandom.nextBytes(new byte[1]);
+		secureRandom.setSeed(Thread.currentThread().getName().getBytes());
+		secureRandom.setSeed(System.currentTimeMillis());
 
-		return id;
+		return secureRandom;
 	}
 
 }
@@ -0,0 +1,444 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Implements IdentifierCache interface using a fixed size memory mapped table which survives restarts.
+ */
+package com.qut.middleware.saml2.identifier.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.SecureRandom;
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qut.middleware.saml2.identifier.Clock;
+import com.qut.middleware.saml2.identifier.IdentifierCache;
+import com.qut.middleware.saml2.identifier.exception.IdentifierCollisionException;
+
+/**
+ * Implements IdentifierCache interface using a fixed size memory mapped table which survives restarts.
+ *
+ * Each identifier is stored as a salted 64 bit hash and registration timestamp in a 16 byte slot of the table. The
+ * table is divided into buckets of 16 slots and an identifier may only occupy a slot in the bucket its hash selects,
+ * so lookups and registrations examine a bounded number of slots. Each bucket is guarded by one of a fixed set of
+ * striped locks, so registrations landing in different buckets rarely contend. If every slot in the bucket is
+ * occupied the registration is refused, see registerIdentifier for how the table should be sized.
+ *
+ * The file is held under an exclusive lock for the life of the cache, so two caches can't share a table. Timestamps
+ * are wall clock times, so identifiers registered before a restart are still rejected after it until they expire.
+ * Reopening an existing table scans every slot to count the identifiers it holds, so startup time grows with the
+ * capacity of the table.
+ */
+public class MappedIdentifierCacheImpl implements IdentifierCache
+{
+	private static final int MAGIC = 0x53494443;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+	private static final int SLOT_SIZE = 16;
+	private static final int MAX_CAPACITY = 1 << 26;
+
+	/* Number of slots in a bucket, an identifier may only occupy a slot in its own bucket */
+	private static final int BUCKET_SIZE = 16;
+
+	/* Number of locks shared between the buckets */
+	private static final int STRIPES = 64;
+
+	private static final Clock SYSTEM_CLOCK = new Clock()
+	{
+		public long currentTimeMillis()
+		{
+			return System.currentTimeMillis();
+		}
+	};
+
+	private RandomAccessFile randomAccessFile;
+	private FileLock fileLock;
+	private MappedByteBuffer table;
+	private int capacity;
+	private int mask;
+	private long salt;
+	private ReentrantLock[] locks;
+	private Clock clock;
+
+	private AtomicInteger size;
+	private AtomicLong collisions;
+	private AtomicLong rejections;
+
+	/* Local logging instance */
+	private Logger logger = LoggerFactory.getLogger(MappedIdentifierCacheImpl.class.getName());
+
+	/**
+	 * @param file
+	 *            File backing the table. An existing table with the same capacity is reused, otherwise the file is
+	 *            initialized as an empty table.
+	 * @param capacity
+	 *            The number of slots in the table, rounded up to a power of two.
+	 * @throws IOException
+	 *             if the file could not be opened, locked or mapped.
+	 */
+	public MappedIdentifierCacheImpl(File file, int capacity) throws IOException
+	{
+		this(file, capacity, SYSTEM_CLOCK);
+	}
+
+	/**
+	 * @param file
+	 *            File backing the table. An existing table with the same capacity is reused, otherwise the file is
+	 *            initialized as an empty table.
+	 * @param capacity
+	 *            The number of slots in the table, rounded up to a power of two.
+	 * @param clock
+	 *            The source of the current time used to timestamp and expire identifiers.
+	 * @throws IOException
+	 *             if the file could not be opened, locked or mapped.
+	 */
+	public MappedIdentifierCacheImpl(File file, int capacity, Clock clock) throws IOException
+	{
+		if (file == null)
+		{
+			throw new IllegalArgumentException(Messages.getString("MappedIdentifierCacheImpl.0")); //$NON-NLS-1$
+		}
+		if (capacity <= 0 || capacity > MAX_CAPACITY)
+		{
+			throw new IllegalArgumentException(Messages.getString("MappedIdentifierCacheImpl.1")); //$NON-NLS-1$
+		}
+		if (clock == null)
+		{
+			throw new IllegalArgumentException(Messages.getString("IdentifierCacheImpl.11")); //$NON-NLS-1$
+		}
+
+		this.capacity = Integer.highestOneBit(capacity);
+		if (this.capacity < capacity)
+			this.capacity = this.capacity << 1;
+		this.capacity = Math.max(this.capacity, BUCKET_SIZE);
+		this.mask = this.capacity - 1;
+		this.clock = clock;
+
+		this.locks = new ReentrantLock[STRIPES];
+		for (int i = 0; i < STRIPES; i++)
+		{
+			this.locks[i] = new ReentrantLock();
+		}
+
+		this.size = new AtomicInteger();
+		this.collisions = new AtomicLong();
+		this.rejections = new AtomicLong();
+
+		long length = HEADER_SIZE + (long) this.capacity * SLOT_SIZE;
+		boolean existing = file.exists() && file.length() == length;
+
+		this.randomAccessFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+		try
+		{
+			/* Another cache writing the same table would corrupt it, so refuse to start rather than share it */
+			try
+			{
+				this.fileLock = this.randomAccessFile.getChannel().tryLock();
+			}
+			catch (OverlappingFileLockException e)
+			{
+				this.fileLock = null;
+			}
+
+			if (this.fileLock == null)
+			{
+				throw new IOException(MessageFormat.format(Messages.getString("MappedIdentifierCacheImpl.5"), file.getPath())); //$NON-NLS-1$
+			}
+
+			this.randomAccessFile.setLength(length);
+			this.table = this.randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+		}
+		catch (IOException e)
+		{
+			this.randomAccessFile.close();
+			throw e;
+		}
+
+		if (existing && this.table.getInt(0) == MAGIC && this.table.getInt(4) == VERSION && this.table.getInt(8) == this.capacity)
+		{
+			this.salt = this.table.getLong(16);
+
+			int count = 0;
+			for (int i = 0; i < this.capacity; i++)
+			{
+				if (this.table.getLong(offset(i)) != 0)
+					count++;
+			}
+			this.size.set(count);
+
+			this.logger.info(MessageFormat.format(Messages.getString("MappedIdentifierCacheImpl.2"), file.getPath(), count)); //$NON-NLS-1$
+		}
+		else
+		{
+			this.initialize();
+			this.logger.info(MessageFormat.format(Messages.getString("MappedIdentifierCacheImpl.3"), file.getPath(), this.capacity)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Registers an identifier as having been used.
+	 *
+	 * If the bucket the identifier hashes to is already full it is refused with an IdentifierCollisionException,
+	 * as evicting an unexpired identifier would allow it to be replayed. Refusals are counted by getRejectedCount.
+	 * To keep them rare the capacity should be at least eight times the number of identifiers registered within the
+	 * age passed to cleanCache plus the interval between cleanups. At that load fewer than one registration in a
+	 * billion is refused, at four times roughly one in 200,000 is, and at twice nearly one in a hundred is.
+	 *
+	 * @param identifier
+	 *            The identifier to add to the cache.
+	 * @throws IdentifierCollisionException
+	 *             if the identifier exists in the cache, or its bucket is full.
+	 */
+	public void registerIdentifier(String identifier) throws IdentifierCollisionException
+	{
+		if (identifier == null)
+		{
+			throw new IllegalArgumentException(Messages.getString("IdentifierCacheImpl.12")); //$NON-NLS-1$
+		}
+
+		long hash = this.hash(identifier);
+		int bucket = this.bucket(hash);
+		long now = this.clock.currentTimeMillis();
+
+		ReentrantLock lock = this.lock(bucket);
+		lock.lock();
+		try
+		{
+			int free = -1;
+
+			for (int slot = bucket; slot < bucket + BUCKET_SIZE; slot++)
+			{
+				long slotHash = this.table.getLong(offset(slot));
+
+				if (slotHash == hash)
+				{
+					this.collisions.incrementAndGet();
+					this.logger.error(Messages.getString("IdentifierCacheImpl.9")); //$NON-NLS-1$
+					throw new IdentifierCollisionException(Messages.getString("IdentifierCacheImpl.9")); //$NON-NLS-1$
+				}
+
+				if (slotHash == 0 && free == -1)
+					free = slot;
+			}
+
+			if (free == -1)
+			{
+				/* Fail closed, the identifier can't be remembered so it must not be accepted */
+				this.rejections.incrementAndGet();
+				this.logger.error(Messages.getString("MappedIdentifierCacheImpl.4")); //$NON-NLS-1$
+				throw new IdentifierCollisionException(Messages.getString("MappedIdentifierCacheImpl.4")); //$NON-NLS-1$
+			}
+
+			this.table.putLong(offset(free) + 8, now);
+			this.table.putLong(offset(free), hash);
+			this.size.incrementAndGet();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.qut.middleware.saml2.identifier.IdentifierCache#containsIdentifier(java.lang.String)
+	 */
+	public boolean containsIdentifier(String identifier)
+	{
+		if (identifier == null)
+			return false;
+
+		long hash = this.hash(identifier);
+		int bucket = this.bucket(hash);
+
+		ReentrantLock lock = this.lock(bucket);
+		lock.lock();
+		try
+		{
+			for (int slot = bucket; slot < bucket + BUCKET_SIZE; slot++)
+			{
+				if (this.table.getLong(offset(slot)) == hash)
+					return true;
+			}
+
+			return false;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.qut.middleware.saml2.identifier.IdentifierCache#cleanCache(int)
+	 */
+	public int cleanCache(int age)
+	{
+		int numRemoved = 0;
+		long expiry = this.clock.currentTimeMillis() - age;
+
+		/* Only one bucket is locked at a time, so request threads are never held up for the whole scan */
+		for (int bucket = 0; bucket < this.capacity; bucket += BUCKET_SIZE)
+		{
+			ReentrantLock lock = this.lock(bucket);
+			lock.lock();
+			try
+			{
+				for (int slot = bucket; slot < bucket + BUCKET_SIZE; slot++)
+				{
+					int offset = offset(slot);
+					if (this.table.getLong(offset) != 0 && this.table.getLong(offset + 8) < expiry)
+					{
+						this.table.putLong(offset, 0);
+						this.size.decrementAndGet();
+						numRemoved++;
+					}
+				}
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+
+		this.table.force();
+		this.logger.debug(Messages.getString("IdentifierCacheImpl.4") + " " + numRemoved); //$NON-NLS-1$ //$NON-NLS-2$
+
+		return numRemoved;
+	}
+
+	/**
+	 * Flushes the table to disk and releases the lock on the backing file. The cache must not be used afterwards.
+	 *
+	 * @throws IOException
+	 *             if the file could not be unlocked or closed.
+	 */
+	public void close() throws IOException
+	{
+		this.table.force();
+		try
+		{
+			this.fileLock.release();
+		}
+		finally
+		{
+			this.randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * @return The number of identifiers currently held in the cache.
+	 */
+	public int getSize()
+	{
+		return this.size.get();
+	}
+
+	/**
+	 * @return The number of slots in the table.
+	 */
+	public int getCapacity()
+	{
+		return this.capacity;
+	}
+
+	/**
+	 * @return The number of registrations rejected because the identifier was already present.
+	 */
+	public long getCollisionCount()
+	{
+		return this.collisions.get();
+	}
+
+	/**
+	 * @return The number of registrations refused because the table was too full to hold them.
+	 */
+	public long getRejectedCount()
+	{
+		return this.rejections.get();
+	}
+
+	/*
+	 * Writes the header and clears every slot, using a new salt so hashes from a previous table can't match.
+	 */
+	private void initialize()
+	{
+		this.salt = new SecureRandom().nextLong();
+		this.size.set(0);
+
+		for (int i = 0; i < this.capacity; i++)
+		{
+			this.table.putLong(offset(i), 0);
+			this.table.putLong(offset(i) + 8, 0);
+		}
+
+		this.table.putInt(0, MAGIC);
+		this.table.putInt(4, VERSION);
+		this.table.putInt(8, this.capacity);
+		this.table.putLong(16, this.salt);
+		this.table.force();
+	}
+
+	/*
+	 * 64 bit FNV-1a hash of the identifier, starting from the table salt so that colliding identifiers can't easily be
+	 * precomputed by a remote party. Zero marks an empty slot so is never returned.
+	 */
+	private long hash(String identifier)
+	{
+		long hash = 0xcbf29ce484222325L ^ this.salt;
+		for (int i = 0; i < identifier.length(); i++)
+		{
+			hash ^= identifier.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+
+		/* Mix the high bits down, as only the low bits select the bucket */
+		hash ^= (hash >>> 29);
+
+		return hash == 0 ? 1 : hash;
+	}
+
+	/* First slot of the bucket the hash selects */
+	private int bucket(long hash)
+	{
+		return (int) hash & this.mask & ~(BUCKET_SIZE - 1);
+	}
+
+	/* Lock guarding every slot of the bucket */
+	private ReentrantLock lock(int bucket)
+	{
+		return this.locks[(bucket / BUCKET_SIZE) & (STRIPES - 1)];
+	}
+
+	private static int offset(int slot)
+	{
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+}
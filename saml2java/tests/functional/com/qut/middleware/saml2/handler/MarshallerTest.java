@@ -40,6 +40,7 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Locale;
@@ -374,6 +375,39 @@ public class MarshallerTest
 		}
 	}
 
+	/**
+	 * Tests that signatures produced, and time spent producing them, are recorded by the marshaller
+	 */
+	@Test
+	public void testMarshallSignedCounters() throws Exception
+	{
+		MarshallerImpl<AuthnRequest> marshaller = new MarshallerImpl<AuthnRequest>("com.qut.middleware.saml2.schemas.protocol", schemas,
+				localKeyResolver);
+
+		NameIDType nameID = new NameIDType();
+		Subject subject = new Subject();
+		AuthnRequest authnRequest = new AuthnRequest();
+
+		nameID.setValue("beddoes@qut.com");
+		subject.setNameID(nameID);
+
+		authnRequest.setSignature(new Signature());
+		authnRequest.setSubject(subject);
+		authnRequest.setID("abe567de6-122wert68");
+		authnRequest.setVersion("2.0");
+		authnRequest.setIssueInstant(new XMLGregorianCalendarImpl(new GregorianCalendar(new SimpleTimeZone(0, "UTC"))));
+
+		assertEquals(0, marshaller.getSignatureCount());
+
+		byte[] first = marshaller.marshallSigned(authnRequest);
+		byte[] second = marshaller.marshallSigned(authnRequest);
+
+		/* Signature templates are reused, the second document must be signed identically */
+		assertTrue(Arrays.equals(first, second));
+		assertEquals(2, marshaller.getSignatureCount());
+		assertTrue(marshaller.getSigningTime() > 0);
+	}
+
 	/**
 	 * Test method for
 	 * {@link com.qut.middleware.saml2.handler.impl.MarshallerImpl#marshallSigned(java.lang.String, java.security.PrivateKey, java.lang.String)}.
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Checks identifiers generated concurrently are unique, logging throughput as the number of generating
+ * threads increases
+ */
+package com.qut.middleware.saml2.identifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.qut.middleware.saml2.identifier.impl.IdentifierCacheImpl;
+import com.qut.middleware.saml2.identifier.impl.IdentifierGeneratorImpl;
+
+public class IdentifierGeneratorThroughputTest
+{
+	private final int ID_NUM = 20000;
+
+	/* Throughput is only reported when debug logging is enabled for this test */
+	private Logger logger = LoggerFactory.getLogger(IdentifierGeneratorThroughputTest.class.getName());
+
+	@Test
+	public void testThroughput() throws Exception
+	{
+		// Warm up so the first measurement doesn't include class loading and RNG seeding
+		this.run(1, this.ID_NUM);
+
+		for (int threadCount = 1; threadCount <= 8; threadCount *= 2)
+		{
+			long elapsed = this.run(threadCount, this.ID_NUM);
+			long rate = (threadCount * (long)this.ID_NUM * 1000000000L) / Math.max(elapsed, 1);
+
+			this.logger.debug("Identifier generation with " + threadCount + " threads: " + rate + " IDs/second");
+		}
+	}
+
+	/*
+	 * Generates count SAML IDs on each of threadCount threads, asserting no two threads were handed the same
+	 * identifier. Returns the elapsed time in nanoseconds.
+	 */
+	private long run(int threadCount, final int count) throws Exception
+	{
+		final IdentifierCacheImpl cache = new IdentifierCacheImpl();
+		final IdentifierGenerator generator = new IdentifierGeneratorImpl(cache);
+		final ConcurrentMap<String, Thread> generated = new ConcurrentHashMap<String, Thread>();
+		final ConcurrentMap<String, Thread> duplicates = new ConcurrentHashMap<String, Thread>();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[threadCount];
+
+		for (int i = 0; i < threadCount; i++)
+		{
+			threads[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+
+					for (int j = 0; j < count; j++)
+					{
+						String identifier = generator.generateSAMLID();
+						if (generated.putIfAbsent(identifier, this) != null)
+						{
+							duplicates.put(identifier, this);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+
+		assertTrue("Identifiers were handed out more than once: " + duplicates.keySet(), duplicates.isEmpty());
+		assertEquals("Every thread should have generated its share of identifiers", threadCount * count, generated.size());
+		assertEquals("Every generated identifier should be registered", threadCount * count, cache.getSize());
+
+		return elapsed;
+	}
+}
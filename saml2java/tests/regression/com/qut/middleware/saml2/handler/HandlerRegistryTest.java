@@ -0,0 +1,67 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Tests HandlerRegistry for correct operation
+ */
+
+package com.qut.middleware.saml2.handler;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.qut.middleware.saml2.schemas.assertion.Assertion;
+import com.qut.middleware.saml2.schemas.protocol.AuthnRequest;
+
+public class HandlerRegistryTest
+{
+	private String protocol = AuthnRequest.class.getPackage().getName();
+	private String assertion = Assertion.class.getPackage().getName();
+
+	@Test
+	public void testContextShared() throws Exception
+	{
+		assertSame(HandlerRegistry.getJAXBContext(this.protocol), HandlerRegistry.getJAXBContext(this.protocol));
+		assertSame(HandlerRegistry.getJAXBContext(this.protocol + ":" + this.assertion), HandlerRegistry
+				.getJAXBContext(this.assertion + ":" + this.protocol));
+		assertNotSame(HandlerRegistry.getJAXBContext(this.protocol), HandlerRegistry.getJAXBContext(this.assertion));
+	}
+
+	@Test
+	public void testSchemaShared() throws Exception
+	{
+		String[] schemas = new String[] { "saml-schema-protocol-2.0.xsd", "saml-schema-assertion-2.0.xsd" };
+		String[] reversed = new String[] { "saml-schema-assertion-2.0.xsd", "saml-schema-protocol-2.0.xsd" };
+
+		assertSame(HandlerRegistry.getSchema(schemas), HandlerRegistry.getSchema(reversed));
+		assertNotSame(HandlerRegistry.getSchema(schemas), HandlerRegistry
+				.getSchema(new String[] { "saml-schema-assertion-2.0.xsd" }));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSchema() throws Exception
+	{
+		HandlerRegistry.getSchema(new String[] { "not-a-schema.xsd" });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullPackage() throws Exception
+	{
+		HandlerRegistry.getJAXBContext(null);
+	}
+}
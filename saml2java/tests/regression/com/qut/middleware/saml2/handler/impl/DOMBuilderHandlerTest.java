@@ -0,0 +1,67 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Tests DOMBuilderHandler produces the same tree as a DocumentBuilder
+ */
+
+package com.qut.middleware.saml2.handler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+public class DOMBuilderHandlerTest
+{
+	private String xml = "<a:root xmlns:a=\"urn:a\" xmlns=\"urn:default\" ID=\"_1\"><child a:attr=\"v\">text &amp; more<!-- comment --><![CDATA[<raw>]]></child><b:other xmlns:b=\"urn:b\"/></a:root>";
+
+	@Test
+	public void testMatchesDocumentBuilder() throws Exception
+	{
+		Document expected = XMLFactoryCache.getDocumentBuilder().parse(new ByteArrayInputStream(this.xml.getBytes("UTF-8")));
+
+		DOMBuilderHandler handler = new DOMBuilderHandler(XMLFactoryCache.getDocumentBuilder().newDocument());
+		XMLReader reader = XMLFactoryCache.getSAXParser().getXMLReader();
+		reader.setContentHandler(handler);
+		reader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+		reader.parse(new InputSource(new ByteArrayInputStream(this.xml.getBytes("UTF-8"))));
+
+		Document actual = handler.getDocument();
+
+		assertEquals(serialize(expected), serialize(actual));
+		assertEquals("urn:a", actual.getDocumentElement().getNamespaceURI());
+		assertTrue(actual.getDocumentElement().hasAttributeNS("http://www.w3.org/2000/xmlns/", "a"));
+	}
+
+	private String serialize(Document doc) throws Exception
+	{
+		StringWriter writer = new StringWriter();
+		TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(writer));
+
+		return writer.toString();
+	}
+}
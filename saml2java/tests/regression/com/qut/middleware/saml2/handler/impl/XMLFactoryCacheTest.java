@@ -0,0 +1,101 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Tests XMLFactoryCache for correct operation
+ */
+
+package com.qut.middleware.saml2.handler.impl;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.parsers.DocumentBuilder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class XMLFactoryCacheTest
+{
+	@Before
+	public void setUp() throws Exception
+	{
+		System.setProperty("jsr105Provider", "org.jcp.xml.dsig.internal.dom.XMLDSigRI");
+		XMLFactoryCache.setEnabled(true);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		XMLFactoryCache.setEnabled(true);
+	}
+
+	@Test
+	public void testCachedPerThread() throws Exception
+	{
+		DocumentBuilder docBuilder = XMLFactoryCache.getDocumentBuilder();
+		XMLSignatureFactory xmlSigFac = XMLFactoryCache.getXMLSignatureFactory();
+
+		assertSame(docBuilder, XMLFactoryCache.getDocumentBuilder());
+		assertSame(xmlSigFac, XMLFactoryCache.getXMLSignatureFactory());
+		assertSame(XMLFactoryCache.getProvider(), XMLFactoryCache.getProvider());
+	}
+
+	@Test
+	public void testNotSharedBetweenThreads() throws Exception
+	{
+		final DocumentBuilder[] other = new DocumentBuilder[1];
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					other[0] = XMLFactoryCache.getDocumentBuilder();
+				}
+				catch (Exception e)
+				{
+					// Left as null and caught by assertion
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+
+		assertNotNull(other[0]);
+		assertNotSame(other[0], XMLFactoryCache.getDocumentBuilder());
+	}
+
+	@Test
+	public void testDisabled() throws Exception
+	{
+		XMLFactoryCache.setEnabled(false);
+
+		assertNotSame(XMLFactoryCache.getDocumentBuilder(), XMLFactoryCache.getDocumentBuilder());
+		assertNotSame(XMLFactoryCache.getXMLSignatureFactory(), XMLFactoryCache.getXMLSignatureFactory());
+	}
+
+	@Test(expected = ClassNotFoundException.class)
+	public void testInvalidProvider() throws Exception
+	{
+		System.setProperty("jsr105Provider", "fake.path.to.Class");
+		XMLFactoryCache.getXMLSignatureFactory();
+	}
+}
@@ -21,9 +21,14 @@ package com.qut.middleware.saml2.identifier;
 
 import static org.junit.Assert.*;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import com.qut.middleware.saml2.identifier.Clock;
 import com.qut.middleware.saml2.identifier.IdentifierCache;
 import com.qut.middleware.saml2.identifier.IdentifierGenerator;
 import com.qut.middleware.saml2.identifier.exception.IdentifierCollisionException;
@@ -34,6 +39,7 @@ public class IdentifierCacheTest
 {
 	private IdentifierGenerator generator;
 	private IdentifierCache identifierCache;
+	private ManualClock clock;
 
 	/**
 	 * @throws java.lang.Exception
@@ -42,7 +48,8 @@ public class IdentifierCacheTest
 	public void setUp() throws Exception
 	{
 		this.generator = new IdentifierGeneratorImpl(new IdentifierCacheImpl());
-		this.identifierCache = new IdentifierCacheImpl();
+		this.clock = new ManualClock(System.currentTimeMillis());
+		this.identifierCache = new IdentifierCacheImpl(IdentifierCacheImpl.DEFAULT_GENERATION_INTERVAL, this.clock);
 	}
 
 	/**
@@ -109,6 +116,12 @@ public class IdentifierCacheTest
 		assertTrue("Collision did not generate error condition", caught);
 	}
 		
+	@Test(expected = IllegalArgumentException.class)
+	public final void testRegisterNullIdentifier() throws Exception
+	{
+		this.identifierCache.registerIdentifier(null);
+	}
+	
 	/**
 	 * Test method for {@link com.qut.middleware.saml2.identifier.IdentifierCache#cleanCache(int)}.
 	 */
@@ -126,8 +139,8 @@ public class IdentifierCacheTest
 			this.identifierCache.registerIdentifier(sessionID);
 			this.identifierCache.registerIdentifier(sessionID2);
 	
-			// sleep for 10 secs so the identifiers have different timestamps
-			Thread.sleep(10000);
+			// advance 10 secs so the identifiers have different timestamps
+			this.clock.advance(10000);
 			
 			this.identifierCache.registerIdentifier(sessionID3);
 			this.identifierCache.registerIdentifier(sessionID4);
@@ -161,4 +174,107 @@ public class IdentifierCacheTest
 		
 	}
 	
-}
+	@Test
+	public void testConcurrentRegistration() throws Exception
+	{
+		final IdentifierCacheImpl cache = new IdentifierCacheImpl();
+		final int threadCount = 8;
+		final int size = 10000;
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[threadCount];
+		
+		// Every thread registers the same identifiers, so exactly one registration of each should succeed
+		for (int i = 0; i < threadCount; i++)
+		{
+			threads[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						for (int j = 0; j < size; j++)
+						{
+							try
+							{
+								cache.registerIdentifier("_" + j);
+							}
+							catch (IdentifierCollisionException e)
+							{
+								// expected for all but the first thread to get here
+							}
+						}
+					}
+					catch (InterruptedException e)
+					{
+						failures.incrementAndGet();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		
+		start.countDown();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		
+		assertEquals(0, failures.get());
+		assertEquals(size, cache.getSize());
+		assertEquals(size, cache.getRegistrationCount());
+		assertEquals(size * (threadCount - 1), cache.getCollisionCount());
+	}
+	
+	@Test
+	public void testGenerationExpiry() throws Exception
+	{
+		ManualClock clock = new ManualClock(0);
+		IdentifierCacheImpl cache = new IdentifierCacheImpl(100, clock);
+		
+		cache.registerIdentifier("_1");
+		cache.registerIdentifier("_2");
+		
+		clock.advance(350);
+		
+		cache.registerIdentifier("_3");
+		assertEquals(2, cache.getGenerationCount());
+		
+		// First generation is dropped whole, second is kept
+		assertEquals(2, cache.cleanCache(200));
+		assertEquals(1, cache.getGenerationCount());
+		assertEquals(2, cache.getExpiredCount());
+		
+		assertFalse(cache.containsIdentifier("_1"));
+		assertFalse(cache.containsIdentifier("_2"));
+		assertTrue(cache.containsIdentifier("_3"));
+		
+		// An expired identifier may be registered again
+		cache.registerIdentifier("_1");
+		assertEquals(0, cache.getCollisionCount());
+		assertEquals(2, cache.getSize());
+	}
+	
+	/* Clock which only moves when the test advances it */
+	private static class ManualClock implements Clock
+	{
+		private AtomicLong now;
+		
+		protected ManualClock(long now)
+		{
+			this.now = new AtomicLong(now);
+		}
+		
+		public long currentTimeMillis()
+		{
+			return this.now.get();
+		}
+		
+		protected void advance(long millis)
+		{
+			this.now.addAndGet(millis);
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Tests the memory mapped identifier cache
+ */
+package com.qut.middleware.saml2.identifier;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.qut.middleware.saml2.identifier.exception.IdentifierCollisionException;
+import com.qut.middleware.saml2.identifier.impl.IdentifierGeneratorImpl;
+import com.qut.middleware.saml2.identifier.impl.MappedIdentifierCacheImpl;
+
+public class MappedIdentifierCacheTest
+{
+	private File file;
+	private IdentifierGenerator generator;
+	private MappedIdentifierCacheImpl generatorCache;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.file = File.createTempFile("identifiers", ".dat");
+		this.file.delete();
+		
+		File generatorFile = File.createTempFile("generator", ".dat");
+		generatorFile.deleteOnExit();
+		this.generatorCache = new MappedIdentifierCacheImpl(generatorFile, 1024);
+		this.generator = new IdentifierGeneratorImpl(this.generatorCache);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		this.generatorCache.close();
+		this.file.delete();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() throws Exception
+	{
+		new MappedIdentifierCacheImpl(this.file, 0);
+	}
+
+	@Test
+	public void testRegisterIdentifier() throws Exception
+	{
+		MappedIdentifierCacheImpl cache = new MappedIdentifierCacheImpl(this.file, 1000);
+		assertEquals(1024, cache.getCapacity());
+
+		String sessionID = this.generator.generateSAMLID();
+		cache.registerIdentifier(sessionID);
+		assertTrue(cache.containsIdentifier(sessionID));
+		assertFalse(cache.containsIdentifier(this.generator.generateSAMLID()));
+
+		boolean caught = false;
+		try
+		{
+			cache.registerIdentifier(sessionID);
+		}
+		catch (IdentifierCollisionException e)
+		{
+			caught = true;
+		}
+
+		assertTrue("Collision did not generate error condition", caught);
+		assertEquals(1, cache.getCollisionCount());
+		assertEquals(1, cache.getSize());
+		cache.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRegisterNullIdentifier() throws Exception
+	{
+		MappedIdentifierCacheImpl cache = new MappedIdentifierCacheImpl(this.file, 1024);
+		try
+		{
+			cache.registerIdentifier(null);
+		}
+		finally
+		{
+			cache.close();
+		}
+	}
+
+	@Test
+	public void testLockedFile() throws Exception
+	{
+		MappedIdentifierCacheImpl cache = new MappedIdentifierCacheImpl(this.file, 1024);
+
+		// A second cache over the same table must refuse to start
+		boolean caught = false;
+		try
+		{
+			new MappedIdentifierCacheImpl(this.file, 1024);
+		}
+		catch (IOException e)
+		{
+			caught = true;
+		}
+		assertTrue("Second cache opened a locked table", caught);
+
+		// Once released the table can be opened again
+		cache.close();
+		new MappedIdentifierCacheImpl(this.file, 1024).close();
+	}
+
+	@Test
+	public void testReload() throws Exception
+	{
+		MappedIdentifierCacheImpl cache = new MappedIdentifierCacheImpl(this.file, 1024);
+
+		String[] ids = new String[100];
+		for (int i = 0; i < ids.length; i++)
+		{
+			ids[i] = this.generator.generateSAMLID();
+			cache.registerIdentifier(ids[i]);
+		}
+
+		cache.close();
+
+		// A new instance over the same file should see every identifier
+		MappedIdentifierCacheImpl reloaded = new MappedIdentifierCacheImpl(this.file, 1024);
+		assertEquals(ids.length, reloaded.getSize());
+		for (String id : ids)
+		{
+			assertTrue(reloaded.containsIdentifier(id));
+		}
+		reloaded.close();
+
+		// A different capacity can't reuse the table
+		MappedIdentifierCacheImpl resized = new MappedIdentifierCacheImpl(this.file, 2048);
+		assertEquals(0, resized.getSize());
+		assertFalse(resized.containsIdentifier(ids[0]));
+		resized.close();
+	}
+
+	@Test
+	public void testCleanCache() throws Exception
+	{
+		final AtomicLong now = new AtomicLong(System.currentTimeMillis());
+		MappedIdentifierCacheImpl cache = new MappedIdentifierCacheImpl(this.file, 1024, new Clock()
+		{
+			public long currentTimeMillis()
+			{
+				return now.get();
+			}
+		});
+
+		String sessionID = this.generator.generateSAMLID();
+		String sessionID2 = this.generator.generateSAMLID();
+		cache.registerIdentifier(sessionID);
+		cache.registerIdentifier(sessionID2);
+
+		now.addAndGet(200);
+
+		String sessionID3 = this.generator.generateSAMLID();
+		cache.registerIdentifier(sessionID3);
+
+		assertEquals("Clean cache removed unexpected values", 2, cache.cleanCache(100));
+		assertFalse(cache.containsIdentifier(sessionID));
+		assertTrue(cache.containsIdentifier(sessionID3));
+
+		// An expired identifier may be registered again
+		cache.registerIdentifier(sessionID);
+		assertEquals(2, cache.getSize());
+		cache.close();
+	}
+
+	@Test
+	public void testFullTable() throws Exception
+	{
+		MappedIdentifierCacheImpl cache = new MappedIdentifierCacheImpl(this.file, 16);
+
+		String[] ids = new String[16];
+		for (int i = 0; i < ids.length; i++)
+		{
+			ids[i] = this.generator.generateSAMLID();
+			cache.registerIdentifier(ids[i]);
+		}
+
+		// Memory is bounded, so once full new identifiers are refused rather than forgetting unexpired ones
+		for (int i = 0; i < 16; i++)
+		{
+			boolean caught = false;
+			try
+			{
+				cache.registerIdentifier(this.generator.generateSAMLID());
+			}
+			catch (IdentifierCollisionException e)
+			{
+				caught = true;
+			}
+			assertTrue("Full table accepted an identifier", caught);
+		}
+
+		assertEquals(16, cache.getSize());
+		assertEquals(16, cache.getRejectedCount());
+		for (String id : ids)
+		{
+			assertTrue(cache.containsIdentifier(id));
+		}
+		cache.close();
+	}
+}
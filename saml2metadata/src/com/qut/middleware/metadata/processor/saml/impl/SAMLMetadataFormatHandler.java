@@ -26,6 +26,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.xml.bind.JAXBElement;
 
@@ -51,6 +57,7 @@ import com.qut.middleware.saml2.SchemaConstants;
 import com.qut.middleware.saml2.exception.ReferenceValueException;
 import com.qut.middleware.saml2.exception.SignatureValueException;
 import com.qut.middleware.saml2.exception.UnmarshallerException;
+import com.qut.middleware.saml2.handler.MetadataStream;
 import com.qut.middleware.saml2.handler.Unmarshaller;
 import com.qut.middleware.saml2.handler.impl.UnmarshallerImpl;
 import com.qut.middleware.saml2.schemas.metadata.EntitiesDescriptor;
@@ -68,6 +75,8 @@ public class SAMLMetadataFormatHandler implements FormatHandler
 	private Unmarshaller<EntitiesDescriptor> unmarshaller;
 	private List<SAMLEntityDescriptorProcessor> processors;
 	private Random random;
+	private boolean streaming;
+	private ExecutorService executorService;
 	
 	private final String unmarshallerPackageNames = 
 		LXACMLPDPDescriptor.class.getPackage().getName() + ":" +
@@ -104,6 +113,45 @@ public class SAMLMetadataFormatHandler implements FormatHandler
 		}
 	}
 	
+	/**
+	 * @return Whether EntityDescriptors are unmarshalled and processed one at a time from the document.
+	 */
+	public boolean isStreaming()
+	{
+		return this.streaming;
+	}
+
+	/**
+	 * When streaming, the document signature is verified first and each EntityDescriptor is then unmarshalled and
+	 * processed independently, so the object tree for the full document is never held in memory. Defaults to false.
+	 * 
+	 * @param streaming Whether to stream EntityDescriptors from metadata documents.
+	 */
+	public void setStreaming(boolean streaming)
+	{
+		this.streaming = streaming;
+	}
+	
+	/**
+	 * @return The executor EntityDescriptors are processed on, or null if they are processed on the calling thread.
+	 */
+	public ExecutorService getExecutorService()
+	{
+		return this.executorService;
+	}
+
+	/**
+	 * When set, each EntityDescriptor is processed by the SAMLEntityDescriptorProcessor chain as a separate task on
+	 * the executor, and the results are merged in document order once all have completed. Processors must be safe
+	 * for concurrent use. The executor is owned by the caller and is not shut down by this handler.
+	 * 
+	 * @param executorService Executor to process EntityDescriptors on, or null to process them serially.
+	 */
+	public void setExecutorService(ExecutorService executorService)
+	{
+		this.executorService = executorService;
+	}
+	
 	public boolean canHandle(MetadataSource source)
 	{
 		return source.getFormat().equalsIgnoreCase(FormatConstants.SAML2);
@@ -121,6 +169,12 @@ public class SAMLMetadataFormatHandler implements FormatHandler
 	
 	private void processMetadata(String sourceLocation, boolean trusted, int priority, byte[] document, List<EntityData> entityList, List<KeyEntry> keyList) throws InvalidMetadataException
 	{
+		if (this.streaming)
+		{
+			this.processMetadataStream(sourceLocation, trusted, priority, document, entityList, keyList);
+			return;
+		}
+		
 		EntitiesDescriptor entitiesDescriptor = null;
 		Map<String,KeyData> keyDataMap = new HashMap<String, KeyData>();
 		try
@@ -153,22 +207,69 @@ public class SAMLMetadataFormatHandler implements FormatHandler
 			throw new InvalidMetadataException(message, e);
 		}
 		
-		this.processEntitiesDescriptor(sourceLocation, trusted, priority, entityList, entitiesDescriptor, keyDataMap, keyList);
+		List<Future<EntityDescriptorTask>> pending = this.newPendingList();
+		this.processEntitiesDescriptor(sourceLocation, trusted, priority, entityList, entitiesDescriptor, keyDataMap, keyList, pending);
+		this.mergePending(sourceLocation, pending, entityList, keyList);
+	}
+
+	private void processMetadataStream(String sourceLocation, boolean trusted, int priority, byte[] document, List<EntityData> entityList, List<KeyEntry> keyList) throws InvalidMetadataException
+	{
+		MetadataStream<EntityDescriptor> stream = null;
+		Map<String,KeyData> keyDataMap = new HashMap<String, KeyData>();
+		List<Future<EntityDescriptorTask>> pending = this.newPendingList();
+		try
+		{
+			// Nested EntitiesDescriptors are flattened, as EntityDescriptors are matched wherever they occur.
+			stream = this.unmarshaller.unMarshallMetadataStream(document, keyDataMap, trusted, EntityDescriptor.class);
+			
+			EntityDescriptor entityDescriptor;
+			while ((entityDescriptor = stream.next()) != null)
+			{
+				this.dispatchEntityDescriptor(sourceLocation, trusted, priority, entityList, entityDescriptor, keyDataMap, keyList, pending);
+			}
+		}
+		catch (SignatureValueException e)
+		{
+			String message = "Signature was deemed to be invalid on SAML metadata document. Source location: " + sourceLocation;
+			this.logger.error(message);
+			throw new InvalidMetadataException(message, e);
+		}
+		catch (ReferenceValueException e)
+		{
+			String message = "Reference value error on SAML metadata document. Source location: " + sourceLocation;
+			this.logger.error(message);
+			throw new InvalidMetadataException(message, e);
+		}
+		catch (UnmarshallerException e)
+		{
+			String message = "SAML metadata document could not be unmarshalled successfully. Source location: " + sourceLocation;
+			this.logger.error(message);
+			throw new InvalidMetadataException(message, e);
+		}
+		finally
+		{
+			if (stream != null)
+			{
+				stream.close();
+			}
+		}
+		
+		this.mergePending(sourceLocation, pending, entityList, keyList);
 	}
 
-	private void processEntitiesDescriptor(String sourceLocation, boolean trusted, int priority, List<EntityData> entityList, EntitiesDescriptor entitiesDescriptor, Map<String,KeyData> keyDataMap, List<KeyEntry> keyList) throws InvalidMetadataException
+	private void processEntitiesDescriptor(String sourceLocation, boolean trusted, int priority, List<EntityData> entityList, EntitiesDescriptor entitiesDescriptor, Map<String,KeyData> keyDataMap, List<KeyEntry> keyList, List<Future<EntityDescriptorTask>> pending) throws InvalidMetadataException
 	{
 		for (Object obj : entitiesDescriptor.getEntitiesDescriptorsAndEntityDescriptors())
 		{
 			if (obj instanceof EntityDescriptor)
 			{
 				EntityDescriptor entityDescriptor = (EntityDescriptor)obj;
-				processEntityDescriptor(sourceLocation, trusted, priority, entityList, entityDescriptor, keyDataMap, keyList);
+				dispatchEntityDescriptor(sourceLocation, trusted, priority, entityList, entityDescriptor, keyDataMap, keyList, pending);
 			}
 			else if (obj instanceof EntitiesDescriptor)
 			{
 				EntitiesDescriptor childEntitiesDescriptor = (EntitiesDescriptor)obj;
-				processEntitiesDescriptor(sourceLocation, trusted, priority, entityList, childEntitiesDescriptor, keyDataMap, keyList);
+				processEntitiesDescriptor(sourceLocation, trusted, priority, entityList, childEntitiesDescriptor, keyDataMap, keyList, pending);
 			}
 			else
 			{
@@ -177,6 +278,100 @@ public class SAMLMetadataFormatHandler implements FormatHandler
 		}
 	}
 
+	private List<Future<EntityDescriptorTask>> newPendingList()
+	{
+		if (this.executorService == null)
+		{
+			return null;
+		}
+		
+		return new ArrayList<Future<EntityDescriptorTask>>();
+	}
+	
+	/*
+	 * Processes the EntityDescriptor immediately when running serially, otherwise queues it on the executor. The key
+	 * data map is fully populated before any descriptor is dispatched and is only read by the tasks.
+	 */
+	private void dispatchEntityDescriptor(String sourceLocation, boolean trusted, int priority, List<EntityData> entityList, EntityDescriptor entityDescriptor, Map<String,KeyData> keyDataMap, List<KeyEntry> keyList, List<Future<EntityDescriptorTask>> pending) throws InvalidMetadataException
+	{
+		if (pending == null)
+		{
+			this.processEntityDescriptor(sourceLocation, trusted, priority, entityList, entityDescriptor, keyDataMap, keyList);
+			return;
+		}
+		
+		FutureTask<EntityDescriptorTask> future = new FutureTask<EntityDescriptorTask>(new EntityDescriptorTask(sourceLocation, trusted, priority, entityDescriptor, keyDataMap));
+		pending.add(future);
+		
+		try
+		{
+			this.executorService.execute(future);
+		}
+		catch (RejectedExecutionException e)
+		{
+			this.logger.warn("Executor rejected EntityDescriptor processing task, processing on the calling thread. Entity ID: " + entityDescriptor.getEntityID());
+			future.run();
+		}
+	}
+	
+	/*
+	 * Waits for all queued EntityDescriptors and merges their results in the order they were dispatched, so the cache
+	 * sees the same ordering as serial processing.
+	 */
+	private void mergePending(String sourceLocation, List<Future<EntityDescriptorTask>> pending, List<EntityData> entityList, List<KeyEntry> keyList) throws InvalidMetadataException
+	{
+		if (pending == null)
+		{
+			return;
+		}
+		
+		try
+		{
+			for (Future<EntityDescriptorTask> future : pending)
+			{
+				EntityDescriptorTask task = future.get();
+				entityList.addAll(task.entityList);
+				keyList.addAll(task.keyList);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			
+			String message = "Interrupted while processing SAML metadata document. Source location: " + sourceLocation;
+			this.logger.error(message);
+			throw new InvalidMetadataException(message, e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof InvalidMetadataException)
+			{
+				throw (InvalidMetadataException)cause;
+			}
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error)cause;
+			}
+			
+			String message = "Unexpected error processing SAML metadata document. Source location: " + sourceLocation;
+			this.logger.error(message);
+			throw new InvalidMetadataException(message, cause);
+		}
+		finally
+		{
+			// Any tasks still outstanding after a failure are of no further use.
+			for (Future<EntityDescriptorTask> future : pending)
+			{
+				future.cancel(false);
+			}
+		}
+	}
+
 	private void processEntityDescriptor(String sourceLocation, boolean trusted, int priority, List<EntityData> entityList, EntityDescriptor entityDescriptor, Map<String,KeyData> keyDataMap, List<KeyEntry> keyList) throws InvalidMetadataException
 	{
 		EntityDataImpl entityData = new EntityDataImpl(sourceLocation, priority);
@@ -311,4 +506,37 @@ public class SAMLMetadataFormatHandler implements FormatHandler
 		
 		return entity;
 	}
+
+	/*
+	 * Processes a single EntityDescriptor into its own result lists, for merging on the calling thread.
+	 */
+	private class EntityDescriptorTask implements Callable<EntityDescriptorTask>
+	{
+		private String sourceLocation;
+		private boolean trusted;
+		private int priority;
+		private EntityDescriptor entityDescriptor;
+		private Map<String,KeyData> keyDataMap;
+		
+		private List<EntityData> entityList = new ArrayList<EntityData>(1);
+		private List<KeyEntry> keyList = new ArrayList<KeyEntry>();
+		
+		public EntityDescriptorTask(String sourceLocation, boolean trusted, int priority, EntityDescriptor entityDescriptor, Map<String,KeyData> keyDataMap)
+		{
+			this.sourceLocation = sourceLocation;
+			this.trusted = trusted;
+			this.priority = priority;
+			this.entityDescriptor = entityDescriptor;
+			this.keyDataMap = keyDataMap;
+		}
+		
+		public EntityDescriptorTask call() throws InvalidMetadataException
+		{
+			processEntityDescriptor(this.sourceLocation, this.trusted, this.priority, this.entityList, this.entityDescriptor, this.keyDataMap, this.keyList);
+			
+			// Release the descriptor, only the results are needed from here on.
+			this.entityDescriptor = null;
+			return this;
+		}
+	}
 }
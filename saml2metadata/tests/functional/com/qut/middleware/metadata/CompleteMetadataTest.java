@@ -28,6 +28,8 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
@@ -134,6 +136,32 @@ public class CompleteMetadataTest
 	
 	@Test
 	public void test() throws Exception
+	{
+		this.completeMetadata(false, null);
+	}
+	
+	@Test
+	public void testStreaming() throws Exception
+	{
+		this.completeMetadata(true, null);
+	}
+	
+	@Test
+	public void testParallel() throws Exception
+	{
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try
+		{
+			this.completeMetadata(false, executorService);
+			this.completeMetadata(true, executorService);
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+	
+	private void completeMetadata(boolean streaming, ExecutorService executorService) throws Exception
 	{
 		assertTrue(true);
 		assertFalse(false);
@@ -212,8 +240,12 @@ public class CompleteMetadataTest
 		samlProcessors.add(new SAMLIdentityProviderProcessor(trustedEntityID));
 		samlProcessors.add(new SAMLServiceProviderProcessor());
 		
+		SAMLMetadataFormatHandler formatHandler = new SAMLMetadataFormatHandler(keystoreResolver, samlProcessors);
+		formatHandler.setStreaming(streaming);
+		formatHandler.setExecutorService(executorService);
+		
 		List<FormatHandler> formatHandlers = new ArrayList<FormatHandler>();
-		formatHandlers.add(new SAMLMetadataFormatHandler(keystoreResolver, samlProcessors));
+		formatHandlers.add(formatHandler);
 		
 		List<MetadataSource> sources = new ArrayList<MetadataSource>();
 		sources.add(source);
@@ -24,6 +24,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.MessageFormat;
@@ -34,6 +35,9 @@ import java.util.StringTokenizer;
 import java.util.Vector;
 import java.util.regex.Pattern;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.ServletContext;
 import javax.servlet.http.Cookie;
 
@@ -188,7 +192,24 @@ public class Initializer
 	 * @return The SPEP for the given servlet context.
 	 * @throws SPEPInitializationException
 	 */
-	public static synchronized SPEP init(ServletContext context) throws SPEPInitializationException
+	public static SPEP init(ServletContext context) throws SPEPInitializationException
+	{
+		/* The SPEP is only stored in the servlet context once fully initialized, so once it is there every request
+		 * reads it from the context without taking the initialization lock.
+		 */
+		if (context != null)
+		{
+			Object spepObject = context.getAttribute(ConfigurationConstants.SERVLET_CONTEXT_NAME);
+			if (spepObject instanceof SPEP)
+			{
+				return (SPEP)spepObject;
+			}
+		}
+
+		return initSynchronized(context);
+	}
+
+	private static synchronized SPEP initSynchronized(ServletContext context) throws SPEPInitializationException
 	{
 		Initializer initializer = new Initializer();
 		return initializer.doInit(context);
@@ -549,8 +570,30 @@ public class Initializer
 				spep.setArtifactProcessor(artifactProcessor);
 			}
 
-			// Create the session group cache, then attempt to create the policy enforcement processor
-			spep.setSessionGroupCache(new SessionGroupCacheImpl(defaultPolicyDecision));
+			// Attributes identifying principals which may share authorization decisions, if any
+			List<String> sharedAuthzAttributes = new ArrayList<String>();
+			String sharedAuthzAttribute;
+
+			for(int i = 1; (sharedAuthzAttribute = properties.getProperty("sharedAuthzAttribute-" + i)) != null; ++i) //$NON-NLS-1$
+			{
+				sharedAuthzAttributes.add(sharedAuthzAttribute.trim());
+			}
+
+			// Create the session group cache, bounded as configured, then attempt to create the policy enforcement processor
+			SessionGroupCacheImpl sessionGroupCache = new SessionGroupCacheImpl(defaultPolicyDecision, sharedAuthzAttributes);
+			if (properties.getProperty("authzCacheMaxSessionEntries") != null) //$NON-NLS-1$
+				sessionGroupCache.setMaxSessionEntries(Integer.parseInt(resolveProperty(properties, "authzCacheMaxSessionEntries", new NumberValidator(1, Integer.MAX_VALUE)))); //$NON-NLS-1$
+			if (properties.getProperty("authzCacheMaxSessionBytes") != null) //$NON-NLS-1$
+				sessionGroupCache.setMaxSessionBytes(Long.parseLong(resolveProperty(properties, "authzCacheMaxSessionBytes", new NumberValidator(1)))); //$NON-NLS-1$
+			if (properties.getProperty("authzCacheMaxEntries") != null) //$NON-NLS-1$
+				sessionGroupCache.setMaxEntries(Long.parseLong(resolveProperty(properties, "authzCacheMaxEntries", new NumberValidator(1)))); //$NON-NLS-1$
+			if (properties.getProperty("authzCacheMaxBytes") != null) //$NON-NLS-1$
+				sessionGroupCache.setMaxBytes(Long.parseLong(resolveProperty(properties, "authzCacheMaxBytes", new NumberValidator(1)))); //$NON-NLS-1$
+			if (properties.getProperty("authzCacheIdleTimeout") != null) //$NON-NLS-1$
+				sessionGroupCache.setIdleTimeout(Long.parseLong(resolveProperty(properties, "authzCacheIdleTimeout", new NumberValidator(0, Long.MAX_VALUE / 1000))) * 1000); //$NON-NLS-1$
+
+			spep.setSessionGroupCache(sessionGroupCache);
+			registerMBean(sessionGroupCache, spepIdentifier);
 			try
 			{
 				spep.setPolicyEnforcementProcessor(new PolicyEnforcementProcessorImpl(spep.getSessionCache(), spep.getSessionGroupCache(), wsClient, identifierGenerator, spep.getMetadataProcessor(), keyStoreResolver, samlValidator, esoeIdentifier, spepIdentifier, disablePolicyEnforcement, enableCompatibility));
@@ -566,13 +609,6 @@ public class Initializer
 				throw new SPEPInitializationException(Messages.getString("Initializer.6"), e); //$NON-NLS-1$
 			}
 
-			// Store the SPEP object in the servlet context.
-			context.setAttribute(ConfigurationConstants.SERVLET_CONTEXT_NAME, spep);
-
-			// Create a SPEPProxyImpl for use in external classloaders as a dynamic proxy and store in servlet context
-			SPEPProxyImpl spepProxy = new SPEPProxyImpl(spep);
-			context.setAttribute(ConfigurationConstants.SPEP_PROXY, spepProxy);
-
 			// Create the SPEP startup processor
 			try
 			{
@@ -594,6 +630,13 @@ public class Initializer
 
 			spep.setWSProcessor(new WSProcessorImpl(spep.getPolicyEnforcementProcessor(), spep.getAuthnProcessor(), spep.getArtifactProcessor(), soapHandlers));
 
+			// Create a SPEPProxyImpl for use in external classloaders as a dynamic proxy and store in servlet context
+			SPEPProxyImpl spepProxy = new SPEPProxyImpl(spep);
+			context.setAttribute(ConfigurationConstants.SPEP_PROXY, spepProxy);
+
+			// Store the SPEP object in the servlet context last, as requests use it without synchronization once it is there.
+			context.setAttribute(ConfigurationConstants.SERVLET_CONTEXT_NAME, spep);
+
 			return spep;
 		}
 
@@ -622,6 +665,48 @@ public class Initializer
 		spep.getMetadataUpdateThread().shutdown();
 		spep.getSessionCache().cleanup();
 		spep.getIdentifierCacheMonitor().stopRunning();
+		unregisterMBean(spep.getSPEPIdentifier());
+	}
+
+	private static ObjectName getMBeanName(String spepIdentifier) throws JMException
+	{
+		return new ObjectName("com.qut.middleware.spep:type=SessionGroupCache,spep=" + ObjectName.quote(spepIdentifier)); //$NON-NLS-1$
+	}
+
+	/* Exposes the size of the session group cache over JMX. The SPEP runs without it if registration fails. */
+	private static void registerMBean(SessionGroupCacheImpl sessionGroupCache, String spepIdentifier)
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = getMBeanName(spepIdentifier);
+
+			// Left behind by a previous deployment of the same SPEP which was not cleaned up
+			if (server.isRegistered(name))
+				server.unregisterMBean(name);
+
+			server.registerMBean(sessionGroupCache, name);
+		}
+		catch (JMException e)
+		{
+			logger.warn("Unable to register session group cache with the MBean server. Error was: " + e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	private static void unregisterMBean(String spepIdentifier)
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = getMBeanName(spepIdentifier);
+
+			if (server.isRegistered(name))
+				server.unregisterMBean(name);
+		}
+		catch (JMException e)
+		{
+			logger.warn("Unable to unregister session group cache from the MBean server. Error was: " + e.getMessage()); //$NON-NLS-1$
+		}
 	}
 
 }
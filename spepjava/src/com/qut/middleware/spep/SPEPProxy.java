@@ -21,6 +21,7 @@
 package com.qut.middleware.spep;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.Cookie;
 
@@ -67,6 +68,16 @@ public interface SPEPProxy
 	 */
 	public decision makeAuthzDecision(String sessionID, String resource, String action);
 	
+	/**
+	 * Makes authorization decisions for a number of resources accessed by the same session, querying the PDP
+	 * once for all resources which are not already cached.
+	 * @param sessionID The session ID to evaluate the decisions for.
+	 * @param resources The resources being accessed
+	 * @param action The action being undertaken on the resources, may be null
+	 * @return The decision made by or on behalf of the PDP for each of the resources
+	 */
+	public Map<String, decision> makeAuthzDecisions(String sessionID, List<String> resources, String action);
+	
 	/**
 	 * Live list of cookies to be cleared when a session is logged out.
 	 * This list should not be modified in any way. Any cookies needing to be
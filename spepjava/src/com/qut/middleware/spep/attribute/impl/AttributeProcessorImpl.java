@@ -409,10 +409,9 @@ public class AttributeProcessorImpl implements AttributeProcessor
 					XMLGregorianCalendar xmlCalendar = confirmationData.getNotOnOrAfter();
 					GregorianCalendar notOnOrAfterCal = xmlCalendar.toGregorianCalendar();
 
-					XMLGregorianCalendar thisXmlCal = CalendarUtils.generateXMLCalendar();
-					GregorianCalendar thisCal = thisXmlCal.toGregorianCalendar();
+					long now = CalendarUtils.currentTimeMillis();
 
-					if (thisCal.after(notOnOrAfterCal))
+					if (now > notOnOrAfterCal.getTimeInMillis())
 					{
 						// request is out of date
 						this.logger.error(Messages.getString("AttributeProcessorImpl.43")); //$NON-NLS-1$
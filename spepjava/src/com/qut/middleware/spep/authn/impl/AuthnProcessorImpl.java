@@ -418,10 +418,9 @@ public class AuthnProcessorImpl implements AuthnProcessor
 					XMLGregorianCalendar xmlCalendar = confirmationData.getNotOnOrAfter();
 					GregorianCalendar notOnOrAfterCal = xmlCalendar.toGregorianCalendar();
 
-					XMLGregorianCalendar thisXmlCal = CalendarUtils.generateXMLCalendar();
-					GregorianCalendar thisCal = thisXmlCal.toGregorianCalendar();
+					long now = CalendarUtils.currentTimeMillis();
 
-					if (thisCal.after(notOnOrAfterCal))
+					if (now > notOnOrAfterCal.getTimeInMillis())
 					{
 						// request is out of date
 						this.logger.error(Messages.getString("AuthnProcessorImpl.71")); //$NON-NLS-1$
@@ -534,10 +533,9 @@ public class AuthnProcessorImpl implements AuthnProcessor
 		XMLGregorianCalendar xmlCalendar = authnStatement.getSessionNotOnOrAfter();
 		GregorianCalendar notOnOrAfterCal = xmlCalendar.toGregorianCalendar();
 
-		XMLGregorianCalendar thisXmlCal = CalendarUtils.generateXMLCalendar();
-		GregorianCalendar thisCal = thisXmlCal.toGregorianCalendar();
+		long now = CalendarUtils.currentTimeMillis();
 
-		if (thisCal.after(notOnOrAfterCal))
+		if (now > notOnOrAfterCal.getTimeInMillis())
 		{
 			// request is out of date
 			this.logger.error(Messages.getString("AuthnProcessorImpl.77")); //$NON-NLS-1$
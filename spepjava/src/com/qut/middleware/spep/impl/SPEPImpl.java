@@ -53,7 +53,8 @@ public class SPEPImpl implements SPEP
 	private IdentifierCacheMonitor identifierCacheMonitor;
 	private MetadataUpdateThread metadataUpdateThread;
 	private WSProcessor wsProcessor;
-	private boolean started;
+	/* Once true it never changes, so requests after startup read it without locking */
+	private volatile boolean started;
 	private StartupProcessor startupProcessor;
 	private boolean lazyInit;
 	private List<String> hardInitQueries;
@@ -19,7 +19,9 @@
  */
 package com.qut.middleware.spep.impl;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.Cookie;
 
@@ -154,6 +156,37 @@ public class SPEPProxyImpl implements SPEPProxy
 		}
 	}
 
+	public Map<String, decision> makeAuthzDecisions(String sessionID, List<String> resources, String action)
+	{
+		Map<String, PolicyEnforcementProcessor.decision> pepDecisions = spep.getPolicyEnforcementProcessor().makeAuthzDecisions(sessionID, resources, action);
+		Map<String, decision> decisions = new HashMap<String, decision>();
+
+		for (Map.Entry<String, PolicyEnforcementProcessor.decision> pepDecision : pepDecisions.entrySet())
+		{
+			switch (pepDecision.getValue())
+			{
+				case permit:
+					decisions.put(pepDecision.getKey(), decision.permit);
+					break;
+				case deny:
+					decisions.put(pepDecision.getKey(), decision.deny);
+					break;
+				case notcached:
+					decisions.put(pepDecision.getKey(), decision.notcached);
+					break;
+				case error:
+					decisions.put(pepDecision.getKey(), decision.error);
+					break;
+				default:
+					this.logger.debug("Proxying PEP batch decision for " + pepDecision.getKey() + ", undetermined state, returning deny to caller");
+					decisions.put(pepDecision.getKey(), decision.deny);
+			}
+		}
+
+		this.logger.debug("Proxying " + decisions.size() + " PEP batch decisions to caller");
+		return decisions;
+	}
+
 	public PrincipalSession verifySession(String sessionID)
 	{
 		return spep.getAuthnProcessor().verifySession(sessionID);
@@ -62,7 +62,8 @@ import com.qut.middleware.spep.ws.exception.WSClientException;
 /** */
 public class StartupProcessorImpl implements StartupProcessor
 {
-	private result startupResult;
+	/* Read on every request, so published without locking */
+	private volatile result startupResult;
 	private String spepIdentifier;
 	private IdentifierGenerator identifierGenerator;
 	private String compileSystem;
@@ -189,7 +190,7 @@ public class StartupProcessorImpl implements StartupProcessor
 	/* (non-Javadoc)
 	 * @see com.qut.middleware.spep.StartupProcessor#allowProcessing()
 	 */
-	public synchronized result allowProcessing()
+	public result allowProcessing()
 	{
 		return this.startupResult;
 	}
@@ -214,7 +215,7 @@ public class StartupProcessorImpl implements StartupProcessor
 	/*
 	 * 
 	 */
-	private synchronized void setStartupResult(result startupResult)
+	private void setStartupResult(result startupResult)
 	{
 		this.startupResult = startupResult;
 	}
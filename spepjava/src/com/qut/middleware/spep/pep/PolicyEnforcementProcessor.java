@@ -21,6 +21,8 @@
 package com.qut.middleware.spep.pep;
 
 import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
 
 import org.w3c.dom.Element;
 
@@ -88,6 +90,16 @@ public interface PolicyEnforcementProcessor
 	 */
 	public decision makeAuthzDecision(String sessionID, String resource, String action);
 	
+	/**
+	 * Makes authorization decisions for a number of resources accessed by the same session. Resources which
+	 * can not be decided from cached data are sent to the PDP together, in a single query.
+	 * @param sessionID The session ID to evaluate the decisions for.
+	 * @param resources The resources being accessed
+	 * @param action The action being undertaken on the resources, may be null
+	 * @return The decision made by or on behalf of the PDP for each of the resources
+	 */
+	public Map<String, decision> makeAuthzDecisions(String sessionID, List<String> resources, String action);
+	
 	/**
 	 * Clears the authorization cache.
 	 * @param requestDocument The request document.
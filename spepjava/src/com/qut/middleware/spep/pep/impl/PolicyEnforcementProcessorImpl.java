@@ -20,10 +20,18 @@
 package com.qut.middleware.spep.pep.impl;
 
 import java.text.MessageFormat;
+import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 
@@ -95,6 +103,7 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 	private IdentifierGenerator identifierGenerator;
 	private MetadataProcessor metadata;
 	private Marshaller<LXACMLAuthzDecisionQuery> lxacmlAuthzDecisionQueryMarshaller;
+	private Marshaller<Request> requestMarshaller;
 	private Unmarshaller<Response> responseUnmarshaller;
 	private WSClient wsClient;
 	private SessionGroupCache sessionGroupCache;
@@ -104,11 +113,17 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 	private Unmarshaller<GroupTarget> groupTargetUnmarshaller;
 	private SessionCache sessionCache;
 
+	/* Queries for a single decision which are awaiting a response from the PDP */
+	private final ConcurrentMap<QueryKey, FutureTask<decision>> inFlightQueries = new ConcurrentHashMap<QueryKey, FutureTask<decision>>();
+	private final AtomicLong issuedQueries = new AtomicLong();
+	private final AtomicLong coalescedQueries = new AtomicLong();
+
 	private final String UNMAR_PKGNAMES = Response.class.getPackage().getName() + ":" + GroupTarget.class.getPackage().getName() + ":" + LXACMLAuthzDecisionStatement.class.getPackage().getName(); //$NON-NLS-1$
 	private final String UNMAR_PKGNAMES2 = ClearAuthzCacheRequest.class.getPackage().getName();
 	private final String UNMAR_PKGNAMES3 = GroupTarget.class.getPackage().getName();
 	private final String MAR_PKGNAMES = LXACMLAuthzDecisionQuery.class.getPackage().getName();
 	private final String MAR_PKGNAMES2 = ClearAuthzCacheRequest.class.getPackage().getName() + ":" + Request.class.getPackage().getName(); //$NON-NLS-1$
+	private final String MAR_PKGNAMES3 = Request.class.getPackage().getName();
 	private final String IMPLEMENTED_BINDING = BindingConstants.soap;
 
 	/* Local logging instance */
@@ -192,6 +207,7 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 		if (!disablePolicyEnforcement)
 		{
 			this.lxacmlAuthzDecisionQueryMarshaller = new MarshallerImpl<LXACMLAuthzDecisionQuery>(this.MAR_PKGNAMES, authzDecisionSchemas, keyStoreResolver);
+			this.requestMarshaller = new MarshallerImpl<Request>(this.MAR_PKGNAMES3, new String[] { SchemaConstants.lxacmlContext });
 			this.responseUnmarshaller = new UnmarshallerImpl<Response>(this.UNMAR_PKGNAMES, authzDecisionSchemas, this.metadata);
 	
 			String[] groupTargetSchemas = new String[] { SchemaConstants.lxacmlGroupTarget };
@@ -386,6 +402,69 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 		return makeAuthzDecision(principalSession, resource, action);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.qut.middleware.spep.pep.PolicyEnforcementProcessor#makeAuthzDecisions(java.lang.String, java.util.List, java.lang.String)
+	 */
+	public Map<String, decision> makeAuthzDecisions(String sessionID, List<String> resources, String action)
+	{
+		// Return permits quickly if policy enforcement is disabled.
+		if (this.disablePolicyEnforcement)
+		{
+			return uniformDecisions(resources, decision.permit);
+		}
+
+		PrincipalSession principalSession = this.sessionCache.getPrincipalSession(sessionID);
+		if (principalSession == null)
+			return uniformDecisions(resources, decision.error);
+
+		Map<String, decision> decisions = new HashMap<String, decision>();
+		List<String> uncachedResources = new Vector<String>();
+
+		// Evaluate from cache, collecting the resources the PDP must be queried for
+		for (String resource : resources)
+		{
+			if (decisions.containsKey(resource) || uncachedResources.contains(resource))
+				continue;
+
+			decision policyDecision = this.sessionGroupCache.makeCachedAuthzDecision(principalSession, resource, action);
+			if (policyDecision.equals(decision.notcached))
+			{
+				uncachedResources.add(resource);
+			}
+			else
+			{
+				decisions.put(resource, policyDecision);
+			}
+		}
+
+		if (uncachedResources.size() == 1)
+		{
+			String resource = uncachedResources.get(0);
+			decisions.put(resource, makeAuthzDecision(principalSession, resource, action));
+		}
+		else if (uncachedResources.size() > 1)
+		{
+			Map<String, decision> queriedDecisions = queryAuthzDecisions(principalSession, uncachedResources, action);
+
+			for (String resource : uncachedResources)
+			{
+				decision policyDecision = queriedDecisions.get(resource);
+
+				// An ESOE which does not support batch queries answers only the first resource. The rest are decided
+				// individually, which will use any group targets learnt from that answer before querying again.
+				if (policyDecision == null)
+				{
+					this.logger.debug("No decision was returned for resource {} in batch query. Making individual decision.", resource); //$NON-NLS-1$
+					policyDecision = makeAuthzDecision(principalSession, resource, action);
+				}
+
+				decisions.put(resource, policyDecision);
+			}
+		}
+
+		return decisions;
+	}
+
 	/*
 	 * Make an authorization decision for the requested resource based on cached authz group targets.
 	 * 
@@ -404,85 +483,186 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 		// Need more information. Query the PDP.
 		if (policyDecision.equals(decision.notcached))
 		{
-			Element decisionRequest;
-			try
-			{
-				// Generate a query based on the session and resource being requested.
-				decisionRequest = generateAuthzDecisionQuery(principalSession, resource, action);
-			}
-			catch (MarshallerException e)
-			{
-				this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.11"), new Object[] { e.getMessage() })); //$NON-NLS-1$
-				return decision.error;
-			}
+			policyDecision = queryAuthzDecision(principalSession, resource, action);
 
-			// Make the web service call.. could be a lengthy process
-			String endpoint = null;
-			try
+			// No statement was returned for the resource
+			if (policyDecision == null)
 			{
-				TrustedESOERole trustedESOERole = this.metadata.getEntityRoleData(this.trustedESOEIdentifier, TrustedESOERole.class);
-				endpoint = trustedESOERole.getLXACMLAuthzServiceEndpoint(IMPLEMENTED_BINDING);
+				policyDecision = decision.error;
 			}
-			catch (MetadataStateException e)
-			{
-				this.logger.error("Unable to get trusted ESOE role from metadata processor - the state is invalid. Returning error result from PEP for ESOE session ID " + principalSession.getEsoeSessionID(), e);
-				return decision.error;
-			}
-			
-			if (endpoint == null)
-			{
-				this.logger.error("Unable to get trusted ESOE role from metadata processor - No trusted ESOE was found with the given identifier. Returning error result from PEP for ESOE session ID " + principalSession.getEsoeSessionID());
-				return decision.error;
-			}
-			
-			Element responseDocument;
-			try
+
+			if (policyDecision.equals(decision.permit) || policyDecision.equals(decision.deny))
 			{
-				responseDocument = this.wsClient.policyDecisionPoint(decisionRequest, endpoint);
+				return policyDecision;
 			}
-			catch (WSClientException e)
+		}
+
+		// If policyDecision is "error" then we have already logged the error, otherwise log a generic message.
+		if (!policyDecision.equals(decision.error))
+		{
+			this.logger.error(Messages.getString("PolicyEnforcementProcessorImpl.16")); //$NON-NLS-1$
+		}
+
+		return decision.error;
+	}
+
+	/*
+	 * Query the PDP for a decision on a single resource. Only one query is made at a time for each session, resource
+	 * and action; any thread requiring the same decision while that query is in flight waits for and shares its result.
+	 */
+	private decision queryAuthzDecision(final PrincipalSession principalSession, final String resource, final String action)
+	{
+		QueryKey key = new QueryKey(principalSession.getEsoeSessionID(), resource, action);
+		FutureTask<decision> query = new FutureTask<decision>(new Callable<decision>()
+		{
+			public decision call()
 			{
-				this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.12"), new Object[] { e.getMessage() })); //$NON-NLS-1$
-				return decision.error;
+				return queryAuthzDecisions(principalSession, Collections.singletonList(resource), action).get(resource);
 			}
+		});
 
+		FutureTask<decision> inFlightQuery = this.inFlightQueries.putIfAbsent(key, query);
+		if (inFlightQuery == null)
+		{
 			try
 			{
-				policyDecision = processAuthzDecisionStatement(principalSession, responseDocument, resource, action);
-			}
-			catch (SignatureValueException e)
-			{
-				this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.13"), new Object[] { e.getMessage() })); //$NON-NLS-1$
-				return decision.error;
-			}
-			catch (ReferenceValueException e)
-			{
-				this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.14"), new Object[] { e.getMessage() })); //$NON-NLS-1$
-				return decision.error;
+				query.run();
 			}
-			catch (UnmarshallerException e)
+			finally
 			{
-				this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.15"), new Object[] { e.getMessage() })); //$NON-NLS-1$
-				return decision.error;
+				// Later requests see the result in the session group cache, or query again if it was not cacheable
+				this.inFlightQueries.remove(key, query);
 			}
 
-			if (policyDecision.equals(decision.permit) || policyDecision.equals(decision.deny))
-			{
-				return policyDecision;
-			}
+			inFlightQuery = query;
+		}
+		else
+		{
+			this.coalescedQueries.incrementAndGet();
+			this.logger.debug("Waiting on PDP query already in flight for resource {} in ESOE session {}", resource, principalSession.getEsoeSessionID()); //$NON-NLS-1$
 		}
 
-		// If policyDecision is "error" then we have already logged the error, otherwise log a generic message.
-		if (!policyDecision.equals(decision.error))
+		try
 		{
-			this.logger.error(Messages.getString("PolicyEnforcementProcessorImpl.16")); //$NON-NLS-1$
+			return inFlightQuery.get();
 		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			this.logger.error("Interrupted while waiting for PDP query for resource " + resource + ". Returning error result from PEP for ESOE session ID " + principalSession.getEsoeSessionID()); //$NON-NLS-1$ //$NON-NLS-2$
+			return decision.error;
+		}
+		catch (ExecutionException e)
+		{
+			this.logger.error("PDP query for resource " + resource + " failed. Returning error result from PEP for ESOE session ID " + principalSession.getEsoeSessionID(), e.getCause()); //$NON-NLS-1$ //$NON-NLS-2$
+			return decision.error;
+		}
+	}
 
-		return decision.error;
+	/**
+	 * @return The number of queries which have been sent to the PDP.
+	 */
+	public long getIssuedQueryCount()
+	{
+		return this.issuedQueries.get();
 	}
 
-	private decision processAuthzDecisionStatement(PrincipalSession principalSession, Element responseDocument, String resource, String action) throws SignatureValueException, ReferenceValueException, UnmarshallerException
+	/**
+	 * @return The number of decisions which were taken from a PDP query already in flight for the same session,
+	 * resource and action, rather than by sending another query.
+	 */
+	public long getCoalescedQueryCount()
+	{
+		return this.coalescedQueries.get();
+	}
+
+	/*
+	 * Query the PDP for decisions on the requested resources. The first resource forms the request of the query, and
+	 * any others are added to it so that a single signed query and response are exchanged with the ESOE. The returned
+	 * map has no decision for a resource the ESOE returned no statement for.
+	 */
+	private Map<String, decision> queryAuthzDecisions(PrincipalSession principalSession, List<String> resources, String action)
 	{
+		Element decisionRequest;
+		try
+		{
+			// Generate a query based on the session and resources being requested.
+			decisionRequest = generateAuthzDecisionQuery(principalSession, resources, action);
+		}
+		catch (MarshallerException e)
+		{
+			this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.11"), new Object[] { e.getMessage() })); //$NON-NLS-1$
+			return uniformDecisions(resources, decision.error);
+		}
+
+		// Make the web service call.. could be a lengthy process
+		String endpoint = null;
+		try
+		{
+			TrustedESOERole trustedESOERole = this.metadata.getEntityRoleData(this.trustedESOEIdentifier, TrustedESOERole.class);
+			endpoint = trustedESOERole.getLXACMLAuthzServiceEndpoint(IMPLEMENTED_BINDING);
+		}
+		catch (MetadataStateException e)
+		{
+			this.logger.error("Unable to get trusted ESOE role from metadata processor - the state is invalid. Returning error result from PEP for ESOE session ID " + principalSession.getEsoeSessionID(), e);
+			return uniformDecisions(resources, decision.error);
+		}
+		
+		if (endpoint == null)
+		{
+			this.logger.error("Unable to get trusted ESOE role from metadata processor - No trusted ESOE was found with the given identifier. Returning error result from PEP for ESOE session ID " + principalSession.getEsoeSessionID());
+			return uniformDecisions(resources, decision.error);
+		}
+		
+		Element responseDocument;
+		try
+		{
+			this.issuedQueries.incrementAndGet();
+			responseDocument = this.wsClient.policyDecisionPoint(decisionRequest, endpoint);
+		}
+		catch (WSClientException e)
+		{
+			this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.12"), new Object[] { e.getMessage() })); //$NON-NLS-1$
+			return uniformDecisions(resources, decision.error);
+		}
+
+		try
+		{
+			return processAuthzDecisionStatements(principalSession, responseDocument, resources, action);
+		}
+		catch (SignatureValueException e)
+		{
+			this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.13"), new Object[] { e.getMessage() })); //$NON-NLS-1$
+		}
+		catch (ReferenceValueException e)
+		{
+			this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.14"), new Object[] { e.getMessage() })); //$NON-NLS-1$
+		}
+		catch (UnmarshallerException e)
+		{
+			this.logger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.15"), new Object[] { e.getMessage() })); //$NON-NLS-1$
+		}
+
+		return uniformDecisions(resources, decision.error);
+	}
+
+	/*
+	 * Create a map giving the same decision for every resource.
+	 */
+	private static Map<String, decision> uniformDecisions(List<String> resources, decision policyDecision)
+	{
+		Map<String, decision> decisions = new HashMap<String, decision>();
+		for (String resource : resources)
+		{
+			decisions.put(resource, policyDecision);
+		}
+
+		return decisions;
+	}
+
+	private Map<String, decision> processAuthzDecisionStatements(PrincipalSession principalSession, Element responseDocument, List<String> resources, String action) throws SignatureValueException, ReferenceValueException, UnmarshallerException
+	{
+		Map<String, decision> decisions = new HashMap<String, decision>();
 		decision policyDecision = null;
 
 		this.logger.debug(Messages.getString("PolicyEnforcementProcessorImpl.18")); //$NON-NLS-1$
@@ -495,7 +675,7 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 		{
 			this.authzLogger.error(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.46"), principalSession.getEsoeSessionID())); //$NON-NLS-1$
 			this.sessionCache.terminatePrincipalSession(principalSession);
-			return decision.deny;
+			return uniformDecisions(resources, decision.deny);
 		}
 
 		// Find all assertions in the response.
@@ -512,13 +692,13 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 				if (assertion.getSubject() == null)
 				{
 					this.logger.error(Messages.getString("PolicyEnforcementProcessorImpl.41")); //$NON-NLS-1$
-					return decision.deny;
+					return uniformDecisions(resources, decision.deny);
 				}
 
 				if (assertion.getSubject().getSubjectConfirmationNonID() == null)
 				{
 					this.logger.error(Messages.getString("PolicyEnforcementProcessorImpl.42")); //$NON-NLS-1$
-					return decision.deny;
+					return uniformDecisions(resources, decision.deny);
 				}
 
 				// verify SubjectConfirmationData fields
@@ -543,12 +723,11 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 					XMLGregorianCalendar xmlCalendar = confirmationData.getNotOnOrAfter();
 					GregorianCalendar notOnOrAfterCal = xmlCalendar.toGregorianCalendar();
 
-					XMLGregorianCalendar thisXmlCal = CalendarUtils.generateXMLCalendar();
-					GregorianCalendar thisCal = thisXmlCal.toGregorianCalendar();
+					long now = CalendarUtils.currentTimeMillis();
 
-					if (thisCal.after(notOnOrAfterCal))
+					if (now > notOnOrAfterCal.getTimeInMillis())
 					{
-						this.logger.debug(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.47"), thisCal.getTimeInMillis(), notOnOrAfterCal.getTimeInMillis())); //$NON-NLS-1$
+						this.logger.debug(MessageFormat.format(Messages.getString("PolicyEnforcementProcessorImpl.47"), now, notOnOrAfterCal.getTimeInMillis())); //$NON-NLS-1$
 						// request is out of date
 						this.logger.error(Messages.getString("PolicyEnforcementProcessorImpl.45")); //$NON-NLS-1$
 						policyDecision = decision.deny;
@@ -565,6 +744,13 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 
 						this.logger.debug(Messages.getString("PolicyEnforcementProcessorImpl.20")); //$NON-NLS-1$
 
+						String resource = getStatementResource(lxacmlAuthzDecisionStatement, resources);
+						if (resource == null)
+						{
+							this.logger.warn("Ignoring LXACMLAuthzDecisionStatement for a resource which was not requested."); //$NON-NLS-1$
+							continue;
+						}
+
 						com.qut.middleware.saml2.schemas.esoe.lxacml.context.Response lxacmlResponse = lxacmlAuthzDecisionStatement.getResponse();
 						Result result = lxacmlResponse.getResult();
 
@@ -589,13 +775,45 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 
 						processObligations(principalSession, result.getObligations(), policyDecision, resource, action);
 
-						return policyDecision;
+						decisions.put(resource, policyDecision);
 					}
 				}
 			}
 		}
 
-		return decision.error;
+		return decisions;
+	}
+
+	/*
+	 * Determine the resource a statement decides, from the request the ESOE returns with it. A statement in the
+	 * response to a query for a single resource always decides that resource.
+	 */
+	private String getStatementResource(LXACMLAuthzDecisionStatement lxacmlAuthzDecisionStatement, List<String> resources)
+	{
+		if (resources.size() == 1)
+		{
+			return resources.get(0);
+		}
+
+		Request request = lxacmlAuthzDecisionStatement.getRequest();
+		if (request == null || request.getResource() == null || request.getResource().getAttribute() == null || request.getResource().getAttribute().getAttributeValue() == null)
+		{
+			return null;
+		}
+
+		StringBuilder value = new StringBuilder();
+		for (Object content : request.getResource().getAttribute().getAttributeValue().getContent())
+		{
+			value.append(content);
+		}
+
+		String resource = value.toString();
+		if (resources.contains(resource))
+		{
+			return resource;
+		}
+
+		return null;
 	}
 
 	private void processObligations(PrincipalSession principalSession, Obligations obligations, decision decision, String resource, String action)
@@ -650,12 +868,50 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 		}
 	}
 
-	private Element generateAuthzDecisionQuery(PrincipalSession principalSession, String resourceString, String action) throws MarshallerException
+	private Element generateAuthzDecisionQuery(PrincipalSession principalSession, List<String> resources, String action) throws MarshallerException
 	{
 		this.logger.debug(Messages.getString("PolicyEnforcementProcessorImpl.30")); //$NON-NLS-1$
 		Element requestDocument = null;
 		String esoeSessionIndex = principalSession.getEsoeSessionID();
 
+		Request request = generateRequest(esoeSessionIndex, resources.get(0), action);
+
+		// SPEP <Issuer> tag
+		NameIDType issuer = new NameIDType();
+		issuer.setValue(this.spepIdentifier);
+
+		// The actual authz query.
+		LXACMLAuthzDecisionQuery lxacmlAuthzDecisionQuery = new LXACMLAuthzDecisionQuery();
+		lxacmlAuthzDecisionQuery.setRequest(request);
+		lxacmlAuthzDecisionQuery.setID(this.identifierGenerator.generateSAMLID());
+		lxacmlAuthzDecisionQuery.setIssueInstant(CalendarUtils.generateXMLCalendar());
+		lxacmlAuthzDecisionQuery.setVersion(VersionConstants.saml20);
+		lxacmlAuthzDecisionQuery.setIssuer(issuer);
+		lxacmlAuthzDecisionQuery.setSignature(new Signature());
+
+		// Requests for any further resources are carried in the extensions of the query, and so are signed with it.
+		if (resources.size() > 1)
+		{
+			Extensions extensions = new Extensions();
+			for (String resourceString : resources.subList(1, resources.size()))
+			{
+				extensions.getAnies().add(this.requestMarshaller.marshallUnSignedElement(generateRequest(esoeSessionIndex, resourceString, action)));
+			}
+
+			lxacmlAuthzDecisionQuery.setExtensions(extensions);
+		}
+
+		this.logger.debug(Messages.getString("PolicyEnforcementProcessorImpl.31")); //$NON-NLS-1$
+		requestDocument = this.lxacmlAuthzDecisionQueryMarshaller.marshallSignedElement(lxacmlAuthzDecisionQuery);
+
+		return requestDocument;
+	}
+
+	/*
+	 * Builds the request of the principal's session for access to a resource.
+	 */
+	private Request generateRequest(String esoeSessionIndex, String resourceString, String action)
+	{
 		// The resource being accessed by the client
 		Resource resource = new Resource();
 		Attribute resourceAttribute = new Attribute();
@@ -687,22 +943,44 @@ public class PolicyEnforcementProcessorImpl implements PolicyEnforcementProcesso
 			request.setAction(requestAction);
 		}
 
-		// SPEP <Issuer> tag
-		NameIDType issuer = new NameIDType();
-		issuer.setValue(this.spepIdentifier);
+		return request;
+	}
 
-		// The actual authz query.
-		LXACMLAuthzDecisionQuery lxacmlAuthzDecisionQuery = new LXACMLAuthzDecisionQuery();
-		lxacmlAuthzDecisionQuery.setRequest(request);
-		lxacmlAuthzDecisionQuery.setID(this.identifierGenerator.generateSAMLID());
-		lxacmlAuthzDecisionQuery.setIssueInstant(CalendarUtils.generateXMLCalendar());
-		lxacmlAuthzDecisionQuery.setVersion(VersionConstants.saml20);
-		lxacmlAuthzDecisionQuery.setIssuer(issuer);
-		lxacmlAuthzDecisionQuery.setSignature(new Signature());
+	/* Identifies a query for a single decision by the session, resource and action it is made for */
+	private static final class QueryKey
+	{
+		private final String sessionID;
+		private final String resource;
+		private final String action;
 
-		this.logger.debug(Messages.getString("PolicyEnforcementProcessorImpl.31")); //$NON-NLS-1$
-		requestDocument = this.lxacmlAuthzDecisionQueryMarshaller.marshallSignedElement(lxacmlAuthzDecisionQuery);
+		QueryKey(String sessionID, String resource, String action)
+		{
+			this.sessionID = sessionID;
+			this.resource = resource;
+			this.action = action;
+		}
 
-		return requestDocument;
+		@Override
+		public int hashCode()
+		{
+			int hash = (this.sessionID == null) ? 0 : this.sessionID.hashCode();
+			hash = 31 * hash + ((this.resource == null) ? 0 : this.resource.hashCode());
+			return 31 * hash + ((this.action == null) ? 0 : this.action.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof QueryKey))
+				return false;
+
+			QueryKey other = (QueryKey) obj;
+			return equals(this.sessionID, other.sessionID) && equals(this.resource, other.resource) && equals(this.action, other.action);
+		}
+
+		private static boolean equals(Object a, Object b)
+		{
+			return (a == null) ? b == null : a.equals(b);
+		}
 	}
 }
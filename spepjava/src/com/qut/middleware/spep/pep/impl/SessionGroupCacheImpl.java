@@ -19,15 +19,26 @@
  */
 package com.qut.middleware.spep.pep.impl;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import org.apache.commons.codec.binary.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,13 +48,54 @@ import com.qut.middleware.spep.pep.SessionGroupCache;
 import com.qut.middleware.spep.pep.PolicyEnforcementProcessor.decision;
 import com.qut.middleware.spep.sessions.PrincipalSession;
 
-/** Implements the SessionGroupCache. */
-public class SessionGroupCacheImpl implements SessionGroupCache
+/** Implements the SessionGroupCache.
+ *
+ * Group target, authz target and action patterns are compiled once, when they are first supplied by the PDP. The
+ * combined decision for each resource and action is remembered by the group cache of the principal until that cache
+ * is next updated, so a repeated request is answered by a single hash lookup without evaluating any pattern.
+ *
+ * When shared attributes are configured, decisions are also cached for each cohort of principals having the same
+ * values for those attributes. A principal whose own cache can not answer a request is answered from its cohort's
+ * cache, so a decision the PDP made for one member of the cohort serves the rest without another query. The shared
+ * attributes must be all of those the authorization policies of the SPEP refer to.
+ *
+ * The decisions held for each principal or cohort, and for the SPEP as a whole, are bounded by a number of entries and
+ * an approximate size in bytes. A group cache exceeding the bound for a single principal is discarded, and when the
+ * bound for the SPEP is exceeded the least recently used group caches are discarded until the cache is back within
+ * 90% of it. Group caches unused for longer than the idle timeout expire. A discarded group cache is rebuilt from the
+ * PDP's next decisions, so eviction only costs further queries to the PDP.
+ */
+public class SessionGroupCacheImpl implements SessionGroupCache, SessionGroupCacheImplMBean
 {
-	private boolean initialized;
-	private Map<PrincipalSession, GroupCache> groupCaches;
-	private Map<String, List<String>> groupTargets;
+	/* Number of remembered decisions after which a principal's group cache discards them all */
+	private static final int MAX_REMEMBERED_DECISIONS = 1024;
+
+	/* Default bounds, in entries and approximate bytes, for each group cache and for the SPEP */
+	private static final int DEFAULT_MAX_SESSION_ENTRIES = 2000;
+	private static final long DEFAULT_MAX_SESSION_BYTES = 512 * 1024;
+	private static final long DEFAULT_MAX_ENTRIES = 200000;
+	private static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+	private static final long DEFAULT_IDLE_TIMEOUT = 60 * 60 * 1000;
+
+	/* Approximate size in bytes of each kind of entry, excluding the characters of its strings */
+	private static final long AUTHZ_TARGET_SIZE = 96;
+	private static final long PDP_DECISION_SIZE = 48;
+	private static final long REMEMBERED_DECISION_SIZE = 112;
+
+	/* Group targets and group caches, replaced together whenever the cache is cleared. Null until initialized. */
+	private volatile CacheState state;
 	private decision defaultPolicyDecision;
+	private List<String> sharedAttributeNames;
+
+	private volatile int maxSessionEntries = DEFAULT_MAX_SESSION_ENTRIES;
+	private volatile long maxSessionBytes = DEFAULT_MAX_SESSION_BYTES;
+	private volatile long maxEntries = DEFAULT_MAX_ENTRIES;
+	private volatile long maxBytes = DEFAULT_MAX_BYTES;
+	private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+	private final AtomicLong sessionEvictions = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expiries = new AtomicLong();
 
 	/* Local logging instance */
 	private Logger logger = LoggerFactory.getLogger(this.getClass().getName());
@@ -56,15 +108,24 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 	 *            The default policy decision
 	 */
 	public SessionGroupCacheImpl(decision defaultPolicyDecision)
+	{
+		this(defaultPolicyDecision, null);
+	}
+
+	/**
+	 * @param defaultPolicyDecision
+	 *            The default policy decision
+	 * @param sharedAttributeNames
+	 *            The attributes identifying principals which share authorization decisions, or null or empty to only
+	 *            cache decisions for each principal.
+	 */
+	public SessionGroupCacheImpl(decision defaultPolicyDecision, List<String> sharedAttributeNames)
 	{
 		if (defaultPolicyDecision == null)
 		{
 			throw new IllegalArgumentException(Messages.getString("SessionGroupCacheImpl.4")); //$NON-NLS-1$
 		}
 
-		this.groupCaches = new HashMap<PrincipalSession, GroupCache>();
-		this.initialized = false;
-
 		if (decision.permit.equals(defaultPolicyDecision) || decision.deny.equals(defaultPolicyDecision))
 		{
 			this.defaultPolicyDecision = defaultPolicyDecision;
@@ -73,6 +134,13 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 		{
 			throw new IllegalArgumentException(Messages.getString("SessionGroupCacheImpl.0")); //$NON-NLS-1$
 		}
+
+		if (sharedAttributeNames != null && sharedAttributeNames.size() > 0)
+		{
+			List<String> sortedAttributeNames = new ArrayList<String>(sharedAttributeNames);
+			Collections.sort(sortedAttributeNames);
+			this.sharedAttributeNames = Collections.unmodifiableList(sortedAttributeNames);
+		}
 	}
 
 	/*
@@ -88,37 +156,43 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 
 	public decision makeCachedAuthzDecision(PrincipalSession principalSession, String resource, String action)
 	{
-		if (!this.initialized)
+		CacheState currentState = this.state;
+		if (currentState == null)
 			throw new IllegalArgumentException(Messages.getString("SessionGroupCacheImpl.1")); //$NON-NLS-1$
 
-		// Look up group cache for this session.
-		GroupCache groupCache;
-
 		// if no Grouptargets cached, don't bother with Principal processing. This will ensure that
 		// we don't send an Authz Request for an empty PolicySet
-		synchronized (this.groupTargets)
+		if (currentState.groupTargets.size() == 0)
 		{
-			if (this.groupTargets.size() == 0)
-			{
-				this.logger.warn(MessageFormat.format(Messages.getString("SessionGroupCacheImpl.5"), this.defaultPolicyDecision)); //$NON-NLS-1$
-				return this.defaultPolicyDecision;
-			}
+			this.logger.warn(MessageFormat.format(Messages.getString("SessionGroupCacheImpl.5"), this.defaultPolicyDecision)); //$NON-NLS-1$
+			return this.defaultPolicyDecision;
 		}
 
-		synchronized (this.groupCaches)
-		{
-			groupCache = this.groupCaches.get(principalSession);
-		}
+		// Look up group cache for this session.
+		GroupCache groupCache = getGroupCache(currentState.groupCaches, principalSession);
+		decision result = (groupCache == null) ? decision.notcached : groupCache.makeCachedAuthzDecision(resource, action);
 
-		if (groupCache == null)
+		// Fall back to the decisions made for other principals in the same cohort
+		if (decision.notcached.equals(result) && this.sharedAttributeNames != null)
 		{
-			return decision.notcached;
+			GroupCache sharedGroupCache = getGroupCache(currentState.sharedGroupCaches, getCohort(currentState, principalSession));
+			if (sharedGroupCache != null)
+			{
+				decision sharedResult = sharedGroupCache.makeCachedAuthzDecision(resource, action);
+				if (!decision.notcached.equals(sharedResult))
+				{
+					this.logger.debug("Decision for Session [{}] to Resource {} made from decisions shared by its cohort", principalSession.getEsoeSessionID(), resource); //$NON-NLS-1$
+					result = sharedResult;
+				}
+			}
 		}
 
-		decision result;
-		synchronized (groupCache)
+		// Remembering the decision may have taken the cache over its bounds
+		enforceLimits(currentState);
+
+		if (groupCache == null && decision.notcached.equals(result))
 		{
-			result = groupCache.makeCachedAuthzDecision(resource, action);
+			return decision.notcached;
 		}
 
 		if (result == null)
@@ -145,12 +219,23 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 	 */
 	public void clearCache(Map<String, List<String>> groupTargetMap)
 	{
-		synchronized (this.groupCaches)
+		CacheState newState = new CacheState();
+
+		// Copied so that the iteration order, and so the order decisions are combined in, is fixed
+		newState.groupTargets = Collections.unmodifiableMap(new LinkedHashMap<String, List<String>>(groupTargetMap));
+
+		// Compile every pattern now, rather than when the first principal's group cache is created
+		for (Entry<String, List<String>> groupTargetEntry : newState.groupTargets.entrySet())
 		{
-			this.groupCaches.clear();
-			this.groupTargets = groupTargetMap;
-			this.initialized = true;
+			newState.compile(groupTargetEntry.getKey());
+			for (String authzTarget : groupTargetEntry.getValue())
+			{
+				newState.compile(authzTarget);
+			}
 		}
+
+		// Group caches created against the previous group targets are discarded along with them
+		this.state = newState;
 	}
 
 	/*
@@ -160,9 +245,26 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 	 */
 	public void clearPrincipalSession(PrincipalSession principal)
 	{
-		synchronized (this.groupCaches)
+		CacheState currentState = this.state;
+		if (currentState != null)
 		{
-			this.groupCaches.remove(principal);
+			// Decisions made for this principal may have been shared with its cohort
+			String cohort = (this.sharedAttributeNames == null) ? null : getCohort(currentState, principal);
+
+			GroupCache groupCache = currentState.groupCaches.get(principal);
+			if (groupCache != null)
+			{
+				groupCache.discard();
+			}
+
+			if (cohort != null)
+			{
+				GroupCache sharedGroupCache = currentState.sharedGroupCaches.get(cohort);
+				if (sharedGroupCache != null)
+				{
+					sharedGroupCache.discard();
+				}
+			}
 		}
 	}
 
@@ -175,69 +277,535 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 	 */
 	public void updateCache(PrincipalSession principalSession, String groupTarget, List<String> authzTargets, String action, decision decision)
 	{
-		if (!this.initialized)
+		CacheState currentState = this.state;
+		if (currentState == null)
 			throw new IllegalStateException(Messages.getString("SessionGroupCacheImpl.2")); //$NON-NLS-1$
 
+		PDPDecision pdpDecision = new PDPDecision();
+		pdpDecision.nodeDecision = decision;
+		pdpDecision.action = (action == null) ? null : currentState.compile(action);
+
 		// Look up group cache for this session.
-		GroupCache groupCache;
-		synchronized (this.groupCaches)
+		GroupCache groupCache = getOrCreateGroupCache(currentState, currentState.groupCaches, principalSession);
+		groupCache.updateCache(groupTarget, authzTargets, pdpDecision);
+		enforceSessionLimits(groupCache);
+
+		// Share the decision with other principals in the same cohort
+		if (this.sharedAttributeNames != null && decision != null)
+		{
+			GroupCache sharedGroupCache = getOrCreateGroupCache(currentState, currentState.sharedGroupCaches, getCohort(currentState, principalSession));
+			sharedGroupCache.updateCache(groupTarget, authzTargets, pdpDecision);
+			enforceSessionLimits(sharedGroupCache);
+		}
+
+		enforceLimits(currentState);
+	}
+
+	/*
+	 * Returns the group cache held for a key, or null if there is none or it has been idle for longer than the idle
+	 * timeout. A group cache which is returned is marked as used.
+	 */
+	private GroupCache getGroupCache(Map<?, GroupCache> groupCaches, Object key)
+	{
+		GroupCache groupCache = groupCaches.get(key);
+		if (groupCache == null)
+		{
+			return null;
+		}
+
+		long now = System.currentTimeMillis();
+		long timeout = this.idleTimeout;
+		if (timeout > 0 && now - groupCache.lastAccess > timeout)
+		{
+			if (groupCache.discard())
+			{
+				this.expiries.incrementAndGet();
+			}
+
+			return null;
+		}
+
+		groupCache.lastAccess = now;
+		return groupCache;
+	}
+
+	private <K> GroupCache getOrCreateGroupCache(CacheState cacheState, ConcurrentMap<K, GroupCache> groupCaches, K key)
+	{
+		GroupCache groupCache = getGroupCache(groupCaches, key);
+		if (groupCache == null)
 		{
-			groupCache = this.groupCaches.get(principalSession);
+			GroupCache newGroupCache = createDefaultGroupCache(cacheState);
+			newGroupCache.setOwner(groupCaches, key);
+
+			groupCache = groupCaches.putIfAbsent(key, newGroupCache);
 			if (groupCache == null)
 			{
-				groupCache = createDefaultGroupCache();
-				this.groupCaches.put(principalSession, groupCache);
+				groupCache = newGroupCache;
+			}
+		}
+
+		return groupCache;
+	}
+
+	/*
+	 * Discards a group cache which holds more decisions than are allowed for a single principal or cohort.
+	 */
+	private void enforceSessionLimits(GroupCache groupCache)
+	{
+		if (groupCache.exceedsSessionLimits() && groupCache.discard())
+		{
+			this.sessionEvictions.incrementAndGet();
+			this.logger.debug("Discarded group cache {} as it exceeded the bounds for a single session", groupCache.key); //$NON-NLS-1$
+		}
+	}
+
+	/*
+	 * Expires idle group caches when they are next due to be checked, and discards the least recently used group
+	 * caches if the cache exceeds the bounds for the SPEP. Only one thread does so at a time, others carry on.
+	 */
+	private void enforceLimits(CacheState cacheState)
+	{
+		long now = System.currentTimeMillis();
+		long timeout = this.idleTimeout;
+		boolean expiryDue = timeout > 0 && now >= cacheState.nextExpiry;
+
+		if (!expiryDue && cacheState.entries.get() <= this.maxEntries && cacheState.bytes.get() <= this.maxBytes)
+		{
+			return;
+		}
+
+		if (!cacheState.enforcing.compareAndSet(false, true))
+		{
+			return;
+		}
+
+		try
+		{
+			List<EvictionCandidate> candidates = new ArrayList<EvictionCandidate>();
+			for (GroupCache groupCache : cacheState.groupCaches.values())
+			{
+				candidates.add(new EvictionCandidate(groupCache));
+			}
+			for (GroupCache groupCache : cacheState.sharedGroupCaches.values())
+			{
+				candidates.add(new EvictionCandidate(groupCache));
+			}
+
+			if (timeout > 0)
+			{
+				Iterator<EvictionCandidate> iterator = candidates.iterator();
+				while (iterator.hasNext())
+				{
+					EvictionCandidate candidate = iterator.next();
+					if (now - candidate.lastAccess > timeout)
+					{
+						if (candidate.groupCache.discard())
+						{
+							this.expiries.incrementAndGet();
+						}
+						iterator.remove();
+					}
+				}
+
+				cacheState.nextExpiry = now + Math.max(timeout / 2, 1);
+			}
+
+			long targetEntries = this.maxEntries - this.maxEntries / 10;
+			long targetBytes = this.maxBytes - this.maxBytes / 10;
+			if (cacheState.entries.get() > this.maxEntries || cacheState.bytes.get() > this.maxBytes)
+			{
+				Collections.sort(candidates);
+
+				for (EvictionCandidate candidate : candidates)
+				{
+					if (cacheState.entries.get() <= targetEntries && cacheState.bytes.get() <= targetBytes)
+					{
+						break;
+					}
+
+					if (candidate.groupCache.discard())
+					{
+						this.evictions.incrementAndGet();
+					}
+				}
+
+				this.logger.debug("Evicted least recently used group caches. Cache now holds {} entries of approximately {} bytes", cacheState.entries.get(), cacheState.bytes.get()); //$NON-NLS-1$
+			}
+		}
+		finally
+		{
+			cacheState.enforcing.set(false);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.qut.middleware.spep.pep.impl.SessionGroupCacheImplMBean#getSessionCount()
+	 */
+	public int getSessionCount()
+	{
+		CacheState currentState = this.state;
+		return (currentState == null) ? 0 : currentState.groupCaches.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.qut.middleware.spep.pep.impl.SessionGroupCacheImplMBean#getCohortCount()
+	 */
+	public int getCohortCount()
+	{
+		CacheState currentState = this.state;
+		return (currentState == null) ? 0 : currentState.sharedGroupCaches.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.qut.middleware.spep.pep.impl.SessionGroupCacheImplMBean#getEntryCount()
+	 */
+	public long getEntryCount()
+	{
+		CacheState currentState = this.state;
+		return (currentState == null) ? 0 : currentState.entries.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.qut.middleware.spep.pep.impl.SessionGroupCacheImplMBean#getApproximateBytes()
+	 */
+	public long getApproximateBytes()
+	{
+		CacheState currentState = this.state;
+		return (currentState == null) ? 0 : currentState.bytes.get();
+	}
+
+	public long getSessionEvictionCount()
+	{
+		return this.sessionEvictions.get();
+	}
+
+	public long getEvictionCount()
+	{
+		return this.evictions.get();
+	}
+
+	public long getExpiryCount()
+	{
+		return this.expiries.get();
+	}
+
+	public int getMaxSessionEntries()
+	{
+		return this.maxSessionEntries;
+	}
+
+	public void setMaxSessionEntries(int maxSessionEntries)
+	{
+		if (maxSessionEntries <= 0)
+			throw new IllegalArgumentException("Maximum entries for a session must be greater than zero."); //$NON-NLS-1$
+
+		this.maxSessionEntries = maxSessionEntries;
+	}
+
+	public long getMaxSessionBytes()
+	{
+		return this.maxSessionBytes;
+	}
+
+	public void setMaxSessionBytes(long maxSessionBytes)
+	{
+		if (maxSessionBytes <= 0)
+			throw new IllegalArgumentException("Maximum bytes for a session must be greater than zero."); //$NON-NLS-1$
+
+		this.maxSessionBytes = maxSessionBytes;
+	}
+
+	public long getMaxEntries()
+	{
+		return this.maxEntries;
+	}
+
+	public void setMaxEntries(long maxEntries)
+	{
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException("Maximum entries must be greater than zero."); //$NON-NLS-1$
+
+		this.maxEntries = maxEntries;
+	}
+
+	public long getMaxBytes()
+	{
+		return this.maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes)
+	{
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("Maximum bytes must be greater than zero."); //$NON-NLS-1$
+
+		this.maxBytes = maxBytes;
+	}
+
+	public long getIdleTimeout()
+	{
+		return this.idleTimeout;
+	}
+
+	public void setIdleTimeout(long idleTimeout)
+	{
+		if (idleTimeout < 0)
+			throw new IllegalArgumentException("Idle timeout must not be negative."); //$NON-NLS-1$
+
+		this.idleTimeout = idleTimeout;
+	}
+
+	/*
+	 * Returns the cohort of a principal, a digest of its values for the shared attributes. It is calculated once for
+	 * each principal, as the attributes of a principal are not changed once its session is established. The cohort is
+	 * only remembered while the principal has a group cache, and is forgotten when that group cache is discarded.
+	 */
+	private String getCohort(CacheState cacheState, PrincipalSession principalSession)
+	{
+		String cohort = cacheState.cohorts.get(principalSession);
+		if (cohort != null)
+		{
+			return cohort;
+		}
+
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA1"); //$NON-NLS-1$
+			Map<String, List<Object>> attributes = principalSession.getAttributes();
+
+			for (String attributeName : this.sharedAttributeNames)
+			{
+				digest.update(attributeName.getBytes("UTF-8")); //$NON-NLS-1$
+
+				List<Object> attributeValues = (attributes == null) ? null : attributes.get(attributeName);
+				if (attributeValues == null)
+				{
+					// Distinguishes a missing attribute from one with no values
+					digest.update((byte) 1);
+					continue;
+				}
+
+				// The order values are supplied in is not significant to the policy
+				List<String> values = new ArrayList<String>();
+				for (Object value : attributeValues)
+				{
+					values.add(String.valueOf(value));
+				}
+				Collections.sort(values);
+
+				for (String value : values)
+				{
+					digest.update((byte) 0);
+					digest.update(value.getBytes("UTF-8")); //$NON-NLS-1$
+				}
+				digest.update((byte) 2);
 			}
+
+			cohort = new String(Hex.encodeHex(digest.digest()));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("Unable to digest shared attributes. The hash algorithm does not exist. " + e.getMessage(), e); //$NON-NLS-1$
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException("Unable to digest shared attributes. The encoding is not supported. " + e.getMessage(), e); //$NON-NLS-1$
 		}
 
-		synchronized (groupCache)
+		if (cacheState.groupCaches.containsKey(principalSession))
 		{
-			PDPDecision pdpDecision = new PDPDecision();
-			pdpDecision.nodeDecision = decision;
-			pdpDecision.action = action;
-			groupCache.updateCache(groupTarget, authzTargets, pdpDecision);
+			cacheState.cohorts.put(principalSession, cohort);
+
+			// The group cache may have been discarded meanwhile, in which case nothing would remove the cohort
+			if (!cacheState.groupCaches.containsKey(principalSession))
+			{
+				cacheState.cohorts.remove(principalSession, cohort);
+			}
+		}
+
+		return cohort;
+	}
+
+	/* The group targets, the patterns compiled from them and the group caches created against them */
+	private class CacheState
+	{
+		protected Map<String, List<String>> groupTargets;
+		protected ConcurrentMap<PrincipalSession, GroupCache> groupCaches = new ConcurrentHashMap<PrincipalSession, GroupCache>();
+		protected ConcurrentMap<String, GroupCache> sharedGroupCaches = new ConcurrentHashMap<String, GroupCache>();
+		protected ConcurrentMap<PrincipalSession, String> cohorts = new ConcurrentHashMap<PrincipalSession, String>();
+		private ConcurrentMap<String, CompiledPattern> patterns = new ConcurrentHashMap<String, CompiledPattern>();
+
+		/* Total size of the group caches held */
+		protected AtomicLong entries = new AtomicLong();
+		protected AtomicLong bytes = new AtomicLong();
+
+		protected AtomicBoolean enforcing = new AtomicBoolean();
+		protected volatile long nextExpiry;
+
+		/* Returns the compiled form of a pattern, compiling it only the first time it is seen */
+		protected CompiledPattern compile(String pattern)
+		{
+			CompiledPattern compiledPattern = this.patterns.get(pattern);
+			if (compiledPattern == null)
+			{
+				compiledPattern = new CompiledPattern(pattern);
+				CompiledPattern existing = this.patterns.putIfAbsent(pattern, compiledPattern);
+				if (existing != null)
+				{
+					compiledPattern = existing;
+				}
+			}
+
+			return compiledPattern;
 		}
 	}
 
+	/* The cached decisions of a single principal. Updates are made under the lock of the group cache, reads of
+	 * remembered decisions are not. */
 	private class GroupCache
 	{
+		private CacheState cacheState;
 		private Map<String, AuthzTargetCache> authzTargetMap;
+		private ConcurrentMap<DecisionKey, RememberedDecision> decisions;
+
+		/* The map holding the group cache, and its key there, so that it can be removed when discarded */
+		private ConcurrentMap<?, GroupCache> owner;
+		protected Object key;
+		protected volatile long lastAccess;
 
-		protected GroupCache()
+		/* Size of the decisions held, not counting the group targets every group cache starts with */
+		private int entries;
+		private long bytes;
+		private int rememberedEntries;
+		private long rememberedBytes;
+		private boolean discarded;
+
+		protected GroupCache(CacheState cacheState)
 		{
+			this.cacheState = cacheState;
 			// LinkedHashMap used because it is more efficient at keySet()
 			this.authzTargetMap = new LinkedHashMap<String, AuthzTargetCache>();
+			this.decisions = new ConcurrentHashMap<DecisionKey, RememberedDecision>();
+			this.lastAccess = System.currentTimeMillis();
+		}
+
+		protected void setOwner(ConcurrentMap<?, GroupCache> owner, Object key)
+		{
+			this.owner = owner;
+			this.key = key;
 		}
 
 		protected decision makeCachedAuthzDecision(String resource, String action)
+		{
+			DecisionKey key = new DecisionKey(resource, action);
+			RememberedDecision remembered = this.decisions.get(key);
+			if (remembered != null)
+			{
+				return remembered.value;
+			}
+
+			synchronized (this)
+			{
+				decision result = evaluate(resource, action);
+
+				// Remembered while holding the lock so that a concurrent update can't be missed
+				long size = REMEMBERED_DECISION_SIZE + 2 * (length(resource) + length(action));
+				if (this.decisions.size() >= MAX_REMEMBERED_DECISIONS || this.entries + 1 > SessionGroupCacheImpl.this.maxSessionEntries || this.bytes + size > SessionGroupCacheImpl.this.maxSessionBytes)
+				{
+					forgetDecisions();
+				}
+
+				// Decisions can be made again, so are not remembered if they would take the group cache over its bounds
+				if (this.entries + 1 <= SessionGroupCacheImpl.this.maxSessionEntries && this.bytes + size <= SessionGroupCacheImpl.this.maxSessionBytes)
+				{
+					this.decisions.put(key, RememberedDecision.valueOf(result));
+					this.rememberedEntries++;
+					this.rememberedBytes += size;
+					account(1, size);
+				}
+
+				return result;
+			}
+		}
+
+		/* Discards all remembered decisions, must be called holding the lock of the group cache */
+		private void forgetDecisions()
+		{
+			this.decisions.clear();
+			account(-this.rememberedEntries, -this.rememberedBytes);
+			this.rememberedEntries = 0;
+			this.rememberedBytes = 0;
+		}
+
+		/* Records a change in the size of the group cache, must be called holding the lock of the group cache */
+		protected void account(int entryChange, long byteChange)
+		{
+			this.entries += entryChange;
+			this.bytes += byteChange;
+
+			// Once discarded its size no longer counts towards the total
+			if (!this.discarded)
+			{
+				this.cacheState.entries.addAndGet(entryChange);
+				this.cacheState.bytes.addAndGet(byteChange);
+			}
+		}
+
+		protected synchronized boolean exceedsSessionLimits()
+		{
+			return this.entries > SessionGroupCacheImpl.this.maxSessionEntries || this.bytes > SessionGroupCacheImpl.this.maxSessionBytes;
+		}
+
+		/* Removes the group cache from the map holding it, returning false if it had already been discarded */
+		protected synchronized boolean discard()
+		{
+			if (this.discarded)
+			{
+				return false;
+			}
+
+			this.discarded = true;
+			this.cacheState.entries.addAndGet(-this.entries);
+			this.cacheState.bytes.addAndGet(-this.bytes);
+
+			if (this.owner != null)
+			{
+				this.owner.remove(this.key, this);
+			}
+
+			// The cohort of a principal is remembered only as long as its group cache
+			if (this.owner == this.cacheState.groupCaches)
+			{
+				this.cacheState.cohorts.remove(this.key);
+			}
+
+			return true;
+		}
+
+		private decision evaluate(String resource, String action)
 		{
 			decision result = null;
 
 			// Loop through matching group targets
-			for (String key : this.authzTargetMap.keySet())
+			for (AuthzTargetCache authzTargetCache : this.authzTargetMap.values())
 			{
-				if (targetMatch(key, resource))
+				if (targetMatch(authzTargetCache.groupTarget, resource))
 				{
-					AuthzTargetCache authzTargetCache = this.authzTargetMap.get(key);
-
-					if (authzTargetCache == null)
-					{
-						result = decision.notcached;
-					}
-					else
-					{
-						// Call the AuthzTargetCache to get a cached decision. If null we need to update the cache.
-						decision nodeDecision = authzTargetCache.makeCachedAuthzDecision(resource, action);
-						/*
-						 * if (nodeDecision == null) { nodeDecision = decision.cache; }
-						 */
+					// Call the AuthzTargetCache to get a cached decision. If null we need to update the cache.
+					decision nodeDecision = authzTargetCache.makeCachedAuthzDecision(resource, action);
 
-						result = addDecisions(result, nodeDecision);
+					result = addDecisions(result, nodeDecision);
 
-						if (decision.deny.equals(result))
-						{
-							return result;
-						}
+					if (decision.deny.equals(result))
+					{
+						return result;
 					}
 				}
 			}
@@ -245,35 +813,55 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 			return result;
 		}
 
-		protected void updateCache(String groupTarget, List<String> authzTargets, PDPDecision decision)
+		protected synchronized void updateCache(String groupTarget, List<String> authzTargets, PDPDecision decision)
 		{
 			// Call the AuthzTargetCache object to update its cache
 			AuthzTargetCache authzTargetCache = this.authzTargetMap.get(groupTarget);
 
 			if (authzTargetCache == null)
 			{
-				authzTargetCache = new AuthzTargetCache();
+				authzTargetCache = new AuthzTargetCache(this, groupTarget);
 				this.authzTargetMap.put(groupTarget, authzTargetCache);
 			}
 
 			authzTargetCache.updateCache(authzTargets, decision);
+
+			// Decisions made before this update may now be different
+			forgetDecisions();
 		}
 	}
 
 	private class PDPDecision
 	{
 		protected decision nodeDecision = null;
-		protected String action = null;
+		protected CompiledPattern action = null;
+
+		protected boolean sameAs(PDPDecision other)
+		{
+			if (this.nodeDecision != other.nodeDecision)
+				return false;
+
+			return (this.action == null) ? other.action == null : other.action != null && this.action.source.equals(other.action.source);
+		}
+
+		protected long size()
+		{
+			return PDP_DECISION_SIZE + 2 * ((this.action == null) ? 0 : length(this.action.source));
+		}
 	}
 
 	private class AuthzTargetCache
 	{
-		private Map<String, List<PDPDecision>> decisionMap;
+		private GroupCache groupCache;
+		protected CompiledPattern groupTarget;
+		private Map<String, AuthzTarget> decisionMap;
 
-		protected AuthzTargetCache()
+		protected AuthzTargetCache(GroupCache groupCache, String groupTarget)
 		{
+			this.groupCache = groupCache;
+			this.groupTarget = (groupTarget == null) ? null : groupCache.cacheState.compile(groupTarget);
 			// LinkedHashMap used because it is more efficient at keySet()
-			this.decisionMap = new LinkedHashMap<String, List<PDPDecision>>();
+			this.decisionMap = new LinkedHashMap<String, AuthzTarget>();
 		}
 
 		protected decision makeCachedAuthzDecision(String resource, String action)
@@ -281,17 +869,17 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 			decision result = null;
 
 			// Loop through all matching targets
-			for (String key : this.decisionMap.keySet())
+			for (AuthzTarget authzTarget : this.decisionMap.values())
 			{
-				if (targetMatch(key, resource))
+				if (targetMatch(authzTarget.target, resource))
 				{
-					if (this.decisionMap.get(key).size() == 0)
+					if (authzTarget.decisions.size() == 0)
 					{
 						result = addDecisions(result, decision.notcached);
 					}
 					else
 					{
-						for (PDPDecision pdpDecision : this.decisionMap.get(key))
+						for (PDPDecision pdpDecision : authzTarget.decisions)
 						{
 							// Find the cached decision. If null we need to update cache.
 							decision nodeDecision = pdpDecision.nodeDecision;
@@ -324,26 +912,165 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 		{
 			for (String authzTarget : authzTargets)
 			{
-				List<PDPDecision> pdpDecisionList;
+				AuthzTarget target = this.decisionMap.get(authzTarget);
+				if (target == null)
+				{
+					target = new AuthzTarget();
+					target.target = (authzTarget == null) ? null : this.groupCache.cacheState.compile(authzTarget);
+					this.decisionMap.put(authzTarget, target);
+
+					// Targets every group cache starts with are not counted, only those added by the PDP's decisions
+					if (decision != null)
+						this.groupCache.account(1, AUTHZ_TARGET_SIZE + 2 * length(authzTarget));
+				}
+
+				// The same decision repeated adds nothing to the result, so is only held once
+				if (decision != null && !target.holds(decision))
+				{
+					target.decisions.add(decision);
+					this.groupCache.account(1, decision.size());
+				}
+			}
+		}
+	}
+
+	private class AuthzTarget
+	{
+		protected CompiledPattern target;
+		protected List<PDPDecision> decisions = new ArrayList<PDPDecision>();
+
+		protected boolean holds(PDPDecision decision)
+		{
+			for (PDPDecision held : this.decisions)
+			{
+				if (held.sameAs(decision))
+					return true;
+			}
+
+			return false;
+		}
+	}
+
+	/* A group cache and the time it was last used, which is fixed so that candidates sort consistently */
+	private static class EvictionCandidate implements Comparable<EvictionCandidate>
+	{
+		protected GroupCache groupCache;
+		protected long lastAccess;
+
+		protected EvictionCandidate(GroupCache groupCache)
+		{
+			this.groupCache = groupCache;
+			this.lastAccess = groupCache.lastAccess;
+		}
+
+		public int compareTo(EvictionCandidate other)
+		{
+			return (this.lastAccess < other.lastAccess) ? -1 : ((this.lastAccess == other.lastAccess) ? 0 : 1);
+		}
+	}
+
+	/* A target or action pattern, compiled once. An invalid pattern fails each time it is matched, as it did before
+	 * patterns were compiled in advance. */
+	private static class CompiledPattern
+	{
+		protected String source;
+		private Pattern pattern;
+		private PatternSyntaxException invalid;
+
+		protected CompiledPattern(String source)
+		{
+			this.source = source;
+			try
+			{
+				this.pattern = Pattern.compile(source);
+			}
+			catch (PatternSyntaxException e)
+			{
+				this.invalid = e;
+			}
+		}
+
+		protected boolean matches(String value)
+		{
+			if (this.source.equals(value))
+				return true;
+
+			if (this.invalid != null)
+				throw this.invalid;
+
+			return this.pattern.matcher(value).matches();
+		}
+	}
+
+	/* Identifies a remembered decision by its resource and action */
+	private static class DecisionKey
+	{
+		private String resource;
+		private String action;
+		private int hashCode;
+
+		protected DecisionKey(String resource, String action)
+		{
+			this.resource = resource;
+			this.action = action;
+			this.hashCode = 31 * ((resource == null) ? 0 : resource.hashCode()) + ((action == null) ? 0 : action.hashCode());
+		}
 
-				pdpDecisionList = this.decisionMap.get(authzTarget);
-				if (pdpDecisionList == null)
-					pdpDecisionList = new ArrayList<PDPDecision>();
+		@Override
+		public int hashCode()
+		{
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof DecisionKey))
+				return false;
 
-				if(decision != null)
-					pdpDecisionList.add(decision);
+			DecisionKey other = (DecisionKey) obj;
+			return this.hashCode == other.hashCode && equals(this.resource, other.resource) && equals(this.action, other.action);
+		}
 
-				this.decisionMap.put(authzTarget, pdpDecisionList);
+		private static boolean equals(Object a, Object b)
+		{
+			return (a == null) ? b == null : a.equals(b);
+		}
+	}
+
+	/* A decision as stored by the group cache, as a concurrent map can't hold the null "no matching target" result */
+	private static class RememberedDecision
+	{
+		private static final RememberedDecision NONE = new RememberedDecision(null);
+		private static final Map<decision, RememberedDecision> VALUES = new EnumMap<decision, RememberedDecision>(decision.class);
+
+		static
+		{
+			for (decision value : decision.values())
+			{
+				VALUES.put(value, new RememberedDecision(value));
 			}
 		}
+
+		protected final decision value;
+
+		private RememberedDecision(decision value)
+		{
+			this.value = value;
+		}
+
+		protected static RememberedDecision valueOf(decision value)
+		{
+			return (value == null) ? NONE : VALUES.get(value);
+		}
 	}
 
-	protected GroupCache createDefaultGroupCache()
+	protected GroupCache createDefaultGroupCache(CacheState cacheState)
 	{
-		GroupCache defaultGroupCache = new GroupCache();
+		GroupCache defaultGroupCache = new GroupCache(cacheState);
 		PDPDecision pdpDecision = null;
 
-		for (Entry<String, List<String>> groupTargetEntry : this.groupTargets.entrySet())
+		for (Entry<String, List<String>> groupTargetEntry : cacheState.groupTargets.entrySet())
 		{
 			String groupTarget = groupTargetEntry.getKey();
 			List<String> authzTargets = groupTargetEntry.getValue();
@@ -352,32 +1079,29 @@ public class SessionGroupCacheImpl implements SessionGroupCache
 
 		return defaultGroupCache;
 	}
-	
-	protected boolean actionMatch(String target, String action)
+
+	private static int length(String value)
+	{
+		return (value == null) ? 0 : value.length();
+	}
+
+	protected boolean actionMatch(CompiledPattern target, String action)
 	{
 		if (target == null && action == null)
 			return true;
-		
+
 		if (target == null || action == null)
 			return false;
 
-		if (target.equals(action))
-			return true;
-
-		Pattern pattern = Pattern.compile(target);
-		return pattern.matcher(action).matches();
+		return target.matches(action);
 	}
 
-	protected boolean targetMatch(String target, String resource)
+	protected boolean targetMatch(CompiledPattern target, String resource)
 	{
 		if (target == null || resource == null)
 			return true;
 
-		if (target.equals(resource))
-			return true;
-
-		Pattern pattern = Pattern.compile(target);
-		return pattern.matcher(resource).matches();
+		return target.matches(resource);
 	}
 
 	protected decision addDecisions(decision lhs, decision rhs)
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Management interface exposing the size and bounds of the session group cache.
+ */
+package com.qut.middleware.spep.pep.impl;
+
+/** Management interface exposing the size and bounds of the session group cache over JMX. Sizes in bytes are
+ * estimates of the memory held by cached decisions, not exact measurements.
+ */
+public interface SessionGroupCacheImplMBean
+{
+	/**
+	 * @return The number of principal sessions with cached decisions.
+	 */
+	public int getSessionCount();
+
+	/**
+	 * @return The number of cohorts with shared cached decisions.
+	 */
+	public int getCohortCount();
+
+	/**
+	 * @return The number of decisions and targets held, across all sessions and cohorts.
+	 */
+	public long getEntryCount();
+
+	/**
+	 * @return The approximate number of bytes held by cached decisions, across all sessions and cohorts.
+	 */
+	public long getApproximateBytes();
+
+	/**
+	 * @return The number of group caches discarded for exceeding the bounds of a single session.
+	 */
+	public long getSessionEvictionCount();
+
+	/**
+	 * @return The number of least recently used group caches discarded to keep the cache within its bounds.
+	 */
+	public long getEvictionCount();
+
+	/**
+	 * @return The number of group caches discarded for being idle longer than the idle timeout.
+	 */
+	public long getExpiryCount();
+
+	/**
+	 * @return The maximum number of entries held for a single session or cohort.
+	 */
+	public int getMaxSessionEntries();
+
+	/**
+	 * @param maxSessionEntries The maximum number of entries held for a single session or cohort.
+	 */
+	public void setMaxSessionEntries(int maxSessionEntries);
+
+	/**
+	 * @return The maximum approximate bytes held for a single session or cohort.
+	 */
+	public long getMaxSessionBytes();
+
+	/**
+	 * @param maxSessionBytes The maximum approximate bytes held for a single session or cohort.
+	 */
+	public void setMaxSessionBytes(long maxSessionBytes);
+
+	/**
+	 * @return The maximum number of entries held across all sessions and cohorts.
+	 */
+	public long getMaxEntries();
+
+	/**
+	 * @param maxEntries The maximum number of entries held across all sessions and cohorts.
+	 */
+	public void setMaxEntries(long maxEntries);
+
+	/**
+	 * @return The maximum approximate bytes held across all sessions and cohorts.
+	 */
+	public long getMaxBytes();
+
+	/**
+	 * @param maxBytes The maximum approximate bytes held across all sessions and cohorts.
+	 */
+	public void setMaxBytes(long maxBytes);
+
+	/**
+	 * @return The time in milliseconds after which an unused group cache expires, or 0 if they never expire.
+	 */
+	public long getIdleTimeout();
+
+	/**
+	 * @param idleTimeout The time in milliseconds after which an unused group cache expires, or 0 if they never
+	 * expire.
+	 */
+	public void setIdleTimeout(long idleTimeout);
+}
@@ -20,18 +20,17 @@
 package com.qut.middleware.spep.sessions.impl;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
-import java.util.Map.Entry;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
-import javax.xml.datatype.XMLGregorianCalendar;
-
-import org.slf4j.Logger;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.qut.middleware.spep.sessions.Messages;
@@ -40,27 +39,23 @@ import com.qut.middleware.spep.sessions.SessionCache;
 import com.qut.middleware.spep.sessions.UnauthenticatedSession;
 import com.qut.middleware.spep.util.CalendarUtils;
 
-/** */
+/** Sessions are held in concurrent maps, so lookups never block. The identifier of each session is also indexed by
+ * the time it is due to expire, so the cleanup thread only examines sessions which have reached their expiry rather
+ * than every session in the cache. The index holds identifiers only, so a terminated session is released at once.
+ */
 public class SessionCacheImpl implements SessionCache
 {
-	protected Map<String, PrincipalSession> sessions;
-	protected Map<String, PrincipalSession> esoeSessions;
-	protected Map<String, UnauthenticatedSession> unauthenticatedSessions;
+	protected ConcurrentMap<String, PrincipalSession> sessions;
+	protected ConcurrentMap<String, PrincipalSession> esoeSessions;
+	protected ConcurrentMap<String, UnauthenticatedSession> unauthenticatedSessions;
 	private CleanupThread cleanupThread;
 	protected long sessionCacheTimeout;
 	protected long sessionCacheInterval;
 
-	private ReentrantLock lock;
-
-	protected void lock()
-	{
-		this.lock.lock();
-	}
-
-	protected void unlock()
-	{
-		this.lock.unlock();
-	}
+	/* Principal sessions by SessionNotOnOrAfter. Unauthenticated sessions all share the same timeout, so they are
+	 * queued in the order they are stored, without locking. */
+	private ExpiryIndex principalExpiries;
+	private Queue<Expiry> unauthenticatedExpiries;
 
 	/* Local logging instance */
 	private Logger logger = LoggerFactory.getLogger(SessionCacheImpl.class.getName());
@@ -90,15 +85,16 @@ public class SessionCacheImpl implements SessionCache
 		this.sessionCacheTimeout = sessionCacheTimeout * 1000;
 		this.sessionCacheInterval = sessionCacheInterval * 1000;
 
-		this.sessions = new HashMap<String, PrincipalSession>();
-		this.esoeSessions = new HashMap<String, PrincipalSession>();
-		this.unauthenticatedSessions = new HashMap<String, UnauthenticatedSession>();
+		this.sessions = new ConcurrentHashMap<String, PrincipalSession>();
+		this.esoeSessions = new ConcurrentHashMap<String, PrincipalSession>();
+		this.unauthenticatedSessions = new ConcurrentHashMap<String, UnauthenticatedSession>();
+
+		this.principalExpiries = new ExpiryIndex();
+		this.unauthenticatedExpiries = new ConcurrentLinkedQueue<Expiry>();
 
 		this.cleanupThread = new CleanupThread();
 		this.cleanupThread.start();
 
-		this.lock = new ReentrantLock(true);
-
 		this.logger.info(Messages.getString("SessionCacheImpl.0")); //$NON-NLS-1$
 	}
 	
@@ -114,30 +110,21 @@ public class SessionCacheImpl implements SessionCache
 	 */
 	public PrincipalSession getPrincipalSession(String sessionID)
 	{
-		PrincipalSession principalSession;
-
-		lock();
-		try
-		{
-			principalSession = this.sessions.get(sessionID);
-		}
-		finally
-		{
-			unlock();
-		}
+		PrincipalSession principalSession = this.sessions.get(sessionID);
 
 		if (principalSession != null)
 		{
-			XMLGregorianCalendar thisXmlCal = CalendarUtils.generateXMLCalendar();
-			GregorianCalendar thisCal = thisXmlCal.toGregorianCalendar();
+			long now = CalendarUtils.currentTimeMillis();
+			Date sessionNotOnOrAfter = principalSession.getSessionNotOnOrAfter();
 
-			if (thisCal.getTime().before(principalSession.getSessionNotOnOrAfter()))
+			if (now < sessionNotOnOrAfter.getTime())
 			{
-				this.logger.debug("Continuing with cached session " + principalSession.getEsoeSessionID() + " current time is: " + thisCal.getTime() + " sessionNotOnAfter was set to: " + principalSession.getSessionNotOnOrAfter());
+				if (this.logger.isDebugEnabled())
+					this.logger.debug("Continuing with cached session {} current time is: {} sessionNotOnAfter was set to: {}", new Object[] { principalSession.getEsoeSessionID(), new Date(now), sessionNotOnOrAfter });
 				return principalSession;
 			}
 
-			this.logger.info("Terminating session " + principalSession.getEsoeSessionID() + " current time is: " + thisCal.getTime() + " sessionNotOnAfter was set to: " + principalSession.getSessionNotOnOrAfter());
+			this.logger.info("Terminating session {} current time is: {} sessionNotOnAfter was set to: {}", new Object[] { principalSession.getEsoeSessionID(), new Date(now), sessionNotOnOrAfter });
 			this.logger.debug(MessageFormat.format(Messages.getString("SessionCacheImpl.9"), principalSession.getEsoeSessionID())); //$NON-NLS-1$
 
 			terminatePrincipalSession(principalSession);
@@ -155,30 +142,21 @@ public class SessionCacheImpl implements SessionCache
 	 */
 	public PrincipalSession getPrincipalSessionByEsoeSessionID(String esoeSessionID)
 	{
-		PrincipalSession principalSession;
-
-		lock();
-		try
-		{
-			principalSession = this.esoeSessions.get(esoeSessionID);
-		}
-		finally
-		{
-			unlock();
-		}
+		PrincipalSession principalSession = this.esoeSessions.get(esoeSessionID);
 
 		if (principalSession != null)
 		{
-			XMLGregorianCalendar thisXmlCal = CalendarUtils.generateXMLCalendar();
-			GregorianCalendar thisCal = thisXmlCal.toGregorianCalendar();
+			long now = CalendarUtils.currentTimeMillis();
+			Date sessionNotOnOrAfter = principalSession.getSessionNotOnOrAfter();
 
-			if (thisCal.getTime().before(principalSession.getSessionNotOnOrAfter()))
+			if (now < sessionNotOnOrAfter.getTime())
 			{
-				this.logger.info("Continuing with cached session " + principalSession.getEsoeSessionID() + " current time is: " + thisCal.getTime() + " sessionNotOnAfter was set to: " + principalSession.getSessionNotOnOrAfter());
+				if (this.logger.isInfoEnabled())
+					this.logger.info("Continuing with cached session {} current time is: {} sessionNotOnAfter was set to: {}", new Object[] { principalSession.getEsoeSessionID(), new Date(now), sessionNotOnOrAfter });
 				return principalSession;
 			}
 
-			this.logger.info("Terminating session " + principalSession.getEsoeSessionID() + " current time is: " + thisCal.getTime() + " sessionNotOnAfter was set to: " + principalSession.getSessionNotOnOrAfter());
+			this.logger.info("Terminating session {} current time is: {} sessionNotOnAfter was set to: {}", new Object[] { principalSession.getEsoeSessionID(), new Date(now), sessionNotOnOrAfter });
 			this.logger.debug(MessageFormat.format(Messages.getString("SessionCacheImpl.9"), principalSession.getEsoeSessionID())); //$NON-NLS-1$
 
 			terminatePrincipalSession(principalSession);
@@ -201,15 +179,14 @@ public class SessionCacheImpl implements SessionCache
 			return;
 		}
 
-		lock();
-		try
-		{
-			this.sessions.put(sessionID, principalSession);
-			this.esoeSessions.put(principalSession.getEsoeSessionID(), principalSession);
-		}
-		finally
+		this.sessions.put(sessionID, principalSession);
+		PrincipalSession previous = this.esoeSessions.put(principalSession.getEsoeSessionID(), principalSession);
+
+		// Each further local session of the principal is already indexed
+		Date sessionNotOnOrAfter = principalSession.getSessionNotOnOrAfter();
+		if (previous != principalSession && sessionNotOnOrAfter != null)
 		{
-			unlock();
+			this.principalExpiries.add(new Expiry(principalSession.getEsoeSessionID(), sessionNotOnOrAfter.getTime()));
 		}
 
 		this.logger.debug(MessageFormat.format(Messages.getString("SessionCacheImpl.2"), sessionID)); //$NON-NLS-1$
@@ -222,22 +199,18 @@ public class SessionCacheImpl implements SessionCache
 	 */
 	public void terminatePrincipalSession(PrincipalSession principalSession)
 	{
-		lock();
-		try
+		/* Terminate all SPEP sessionID's that reference this principal */
+		List<String> sessionIDList = principalSession.getSessionIDList();
+		synchronized (sessionIDList)
 		{
-			/* Terminate all SPEP sessionID's that reference this principal */
-			for (String sessionID : principalSession.getSessionIDList())
+			for (String sessionID : sessionIDList)
 			{
 				this.sessions.remove(sessionID);
 			}
-
-			this.esoeSessions.remove(principalSession.getEsoeSessionID());
-			this.logger.debug(MessageFormat.format(Messages.getString("SessionCacheImpl.3"), principalSession.getEsoeSessionID())); //$NON-NLS-1$		
-		}
-		finally
-		{
-			unlock();
 		}
+
+		this.esoeSessions.remove(principalSession.getEsoeSessionID());
+		this.logger.debug(MessageFormat.format(Messages.getString("SessionCacheImpl.3"), principalSession.getEsoeSessionID())); //$NON-NLS-1$		
 	}
 
 	/*
@@ -248,8 +221,8 @@ public class SessionCacheImpl implements SessionCache
 	 */
 	public void terminateIndividualPrincipalSession(PrincipalSession principalSession, String esoeSessionIndex)
 	{
-		lock();
-		try
+		// Another logout for the same principal must see the index as this one leaves it
+		synchronized (principalSession)
 		{
 			Map<String, String> sessionIndex = principalSession.getEsoeSessionIndex();
 			if (sessionIndex != null)
@@ -272,10 +245,6 @@ public class SessionCacheImpl implements SessionCache
 				}
 			}
 		}
-		finally
-		{
-			unlock();
-		}
 	}
 
 	/*
@@ -285,16 +254,7 @@ public class SessionCacheImpl implements SessionCache
 	 */
 	public UnauthenticatedSession getUnauthenticatedSession(String requestID)
 	{
-		UnauthenticatedSession unauthenticatedSession;
-		lock();
-		try
-		{
-			unauthenticatedSession = this.unauthenticatedSessions.get(requestID);
-		}
-		finally
-		{
-			unlock();
-		}
+		UnauthenticatedSession unauthenticatedSession = this.unauthenticatedSessions.get(requestID);
 
 		if (unauthenticatedSession != null)
 			unauthenticatedSession.updateTime();
@@ -310,17 +270,9 @@ public class SessionCacheImpl implements SessionCache
 	 */
 	public void putUnauthenticatedSession(String requestID, UnauthenticatedSession unauthenticatedSession)
 	{
-		lock();
-		try
-		{
-			this.unauthenticatedSessions.put(requestID, unauthenticatedSession);
-		}
-		finally
-		{
-			unlock();
-		}
-
 		unauthenticatedSession.updateTime();
+		this.unauthenticatedSessions.put(requestID, unauthenticatedSession);
+		this.unauthenticatedExpiries.add(new Expiry(requestID, CalendarUtils.currentTimeMillis() + this.sessionCacheTimeout));
 
 		this.logger.debug(MessageFormat.format(Messages.getString("SessionCacheImpl.4"), requestID)); //$NON-NLS-1$
 	}
@@ -332,15 +284,7 @@ public class SessionCacheImpl implements SessionCache
 	 */
 	public void terminateUnauthenticatedSession(String requestID)
 	{
-		lock();
-		try
-		{
-			this.unauthenticatedSessions.remove(requestID);
-		}
-		finally
-		{
-			unlock();
-		}
+		this.unauthenticatedSessions.remove(requestID);
 
 		this.logger.debug(MessageFormat.format(Messages.getString("SessionCacheImpl.5"), requestID)); //$NON-NLS-1$
 	}
@@ -389,49 +333,117 @@ public class SessionCacheImpl implements SessionCache
 
 		private void cleanup()
 		{
-			List<String> expired = new Vector<String>();
+			long now = CalendarUtils.currentTimeMillis();
 
-			lock();
-			try
+			this.logger.info(Messages.getString("SessionCacheImpl.15")); //$NON-NLS-1$
+			/* Remove principal sessions that have expired */
+			List<Expiry> extended = new ArrayList<Expiry>();
+			for (Expiry expiry : SessionCacheImpl.this.principalExpiries.removeExpired(now))
 			{
-				this.logger.info(Messages.getString("SessionCacheImpl.15")); //$NON-NLS-1$
-				/* Remove principal sessions that have expired */
-				for (String esoeID : SessionCacheImpl.this.esoeSessions.keySet())
+				// Already terminated
+				PrincipalSession principal = SessionCacheImpl.this.esoeSessions.get(expiry.key);
+				if (principal == null || principal.getSessionNotOnOrAfter() == null)
 				{
-					PrincipalSession principal = SessionCacheImpl.this.esoeSessions.get(esoeID);
-					if (principal != null)
-					{
-						XMLGregorianCalendar thisXmlCal = CalendarUtils.generateXMLCalendar();
-						GregorianCalendar thisCal = thisXmlCal.toGregorianCalendar();
-
-						if (thisCal.getTime().after(principal.getSessionNotOnOrAfter()))
-						{
-							this.logger.info("Terminating session " +principal.getEsoeSessionID() + " current time is: " + thisCal + " sessionNotOnAfter was set to: " + principal.getSessionNotOnOrAfter());
-							this.logger.debug(Messages.getString("SessionCacheImpl.16") + principal.getEsoeSessionID() + Messages.getString("SessionCacheImpl.17")); //$NON-NLS-1$ //$NON-NLS-2$
-							terminatePrincipalSession(principal);
-						}
-					}
+					continue;
+				}
+
+				Date sessionNotOnOrAfter = principal.getSessionNotOnOrAfter();
+				if (now > sessionNotOnOrAfter.getTime())
+				{
+					this.logger.info("Terminating session {} current time is: {} sessionNotOnAfter was set to: {}", new Object[] { principal.getEsoeSessionID(), new Date(now), sessionNotOnOrAfter });
+					this.logger.debug(Messages.getString("SessionCacheImpl.16") + principal.getEsoeSessionID() + Messages.getString("SessionCacheImpl.17")); //$NON-NLS-1$ //$NON-NLS-2$
+					terminatePrincipalSession(principal);
+				}
+				else
+				{
+					// SessionNotOnOrAfter was extended since the session was indexed
+					extended.add(new Expiry(expiry.key, sessionNotOnOrAfter.getTime()));
+				}
+			}
+			SessionCacheImpl.this.principalExpiries.addAll(extended);
+
+			// Now clean up the unauthenticated sessions
+			// Only this thread takes from the queue, so the head examined is the one polled
+			List<Expiry> used = new ArrayList<Expiry>();
+			Expiry expiry;
+			while ((expiry = SessionCacheImpl.this.unauthenticatedExpiries.peek()) != null && expiry.time <= now)
+			{
+				SessionCacheImpl.this.unauthenticatedExpiries.poll();
+
+				// Already terminated
+				UnauthenticatedSession unauthenticatedSession = SessionCacheImpl.this.unauthenticatedSessions.get(expiry.key);
+				if (unauthenticatedSession == null)
+				{
+					continue;
 				}
 
-				// Now clean up the unauthenticated sessions
-				for (Entry<String, UnauthenticatedSession> entry : SessionCacheImpl.this.unauthenticatedSessions.entrySet())
+				// Idle time is in seconds
+				long idleTime = unauthenticatedSession.getIdleTime() * 1000;
+				if (idleTime > SessionCacheImpl.this.sessionCacheTimeout)
 				{
-					if (entry.getValue().getIdleTime() > SessionCacheImpl.this.sessionCacheTimeout)
+					this.logger.debug(Messages.getString("SessionCacheImpl.18") + expiry.key + Messages.getString("SessionCacheImpl.19")); //$NON-NLS-1$ //$NON-NLS-2$
+					if (SessionCacheImpl.this.unauthenticatedSessions.remove(expiry.key, unauthenticatedSession))
 					{
-						expired.add(entry.getKey());
+						this.logger.debug(MessageFormat.format(Messages.getString("SessionCacheImpl.5"), expiry.key)); //$NON-NLS-1$
 					}
 				}
-
-				for (String requestID : expired)
+				else
 				{
-					this.logger.debug(Messages.getString("SessionCacheImpl.18") + requestID + Messages.getString("SessionCacheImpl.19")); //$NON-NLS-1$ //$NON-NLS-2$
-					terminateUnauthenticatedSession(requestID);
+					// Retrieved since it was indexed, so it times out later
+					used.add(new Expiry(expiry.key, now + SessionCacheImpl.this.sessionCacheTimeout - idleTime + 1000));
 				}
 			}
-			finally
+			// Requeued at most one timeout from now, so the queue stays close to the order sessions expire in
+			SessionCacheImpl.this.unauthenticatedExpiries.addAll(used);
+		}
+	}
+
+	/* The identifier of a session and the time at which it is due to be examined for expiry */
+	private static class Expiry implements Comparable<Expiry>
+	{
+		protected String key;
+		protected long time;
+
+		protected Expiry(String key, long time)
+		{
+			this.key = key;
+			this.time = time;
+		}
+
+		public int compareTo(Expiry other)
+		{
+			return (this.time < other.time) ? -1 : ((this.time == other.time) ? 0 : 1);
+		}
+	}
+
+	/*
+	 * Session identifiers ordered by the time they are due to expire. Identifiers of sessions removed from the cache
+	 * are discarded when they reach the head of the queue; they no longer refer to the session itself.
+	 */
+	private static class ExpiryIndex
+	{
+		private PriorityQueue<Expiry> queue = new PriorityQueue<Expiry>();
+
+		protected synchronized void add(Expiry expiry)
+		{
+			this.queue.add(expiry);
+		}
+
+		protected synchronized void addAll(List<Expiry> expiries)
+		{
+			this.queue.addAll(expiries);
+		}
+
+		/* Removes and returns the sessions due to expire at or before the given time */
+		protected synchronized List<Expiry> removeExpired(long time)
+		{
+			List<Expiry> expired = new ArrayList<Expiry>();
+			while (!this.queue.isEmpty() && this.queue.peek().time <= time)
 			{
-				unlock();
+				expired.add(this.queue.poll());
 			}
+
+			return expired;
 		}
 	}
 }
@@ -20,6 +20,7 @@
 package com.qut.middleware.spep.sessions.impl;
 
 import com.qut.middleware.spep.sessions.UnauthenticatedSession;
+import com.qut.middleware.spep.util.CalendarUtils;
 
 /** */
 public class UnauthenticatedSessionImpl implements UnauthenticatedSession
@@ -66,7 +67,7 @@ public class UnauthenticatedSessionImpl implements UnauthenticatedSession
 	 */
 	public long getIdleTime()
 	{
-		return (System.currentTimeMillis() - this.time) / 1000;
+		return (CalendarUtils.currentTimeMillis() - this.time) / 1000;
 	}
 
 	/*
@@ -75,6 +76,6 @@ public class UnauthenticatedSessionImpl implements UnauthenticatedSession
 	 */
 	public void updateTime()
 	{
-		this.time = System.currentTimeMillis();
+		this.time = CalendarUtils.currentTimeMillis();
 	}
 }
@@ -8,7 +8,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.Cookie;
 
@@ -249,6 +251,46 @@ public class SPEPProxyImplTest
 		verify(spep);	
 	}
 
+	@Test
+	public void testMakeAuthzDecisions()
+	{
+		String sessionID = "123";
+		String action = "read";
+		List<String> resources = new ArrayList<String>();
+		resources.add("/index.jsp");
+		resources.add("/admin/index.jsp");
+		resources.add("/secure/index.jsp");
+		resources.add("/private/index.jsp");
+		
+		Map<String, PolicyEnforcementProcessor.decision> pepDecisions = new HashMap<String, PolicyEnforcementProcessor.decision>();
+		pepDecisions.put("/index.jsp", PolicyEnforcementProcessor.decision.permit);
+		pepDecisions.put("/admin/index.jsp", PolicyEnforcementProcessor.decision.deny);
+		pepDecisions.put("/secure/index.jsp", PolicyEnforcementProcessor.decision.error);
+		pepDecisions.put("/private/index.jsp", PolicyEnforcementProcessor.decision.notcached);
+		
+		spep = createMock(SPEP.class);
+		PolicyEnforcementProcessor pep = createMock(PolicyEnforcementProcessor.class);
+		
+		expect(spep.getPolicyEnforcementProcessor()).andReturn(pep);
+		expect(pep.makeAuthzDecisions(sessionID, resources, action)).andReturn(pepDecisions);
+		
+		replay(pep);
+		replay(spep);
+		
+		proxy = new SPEPProxyImpl(spep);
+		
+		Map<String, SPEPProxy.decision> decisions = proxy.makeAuthzDecisions(sessionID, resources, action);
+		
+		assertEquals(4, decisions.size());
+		assertEquals(SPEPProxy.decision.permit, decisions.get("/index.jsp"));
+		assertEquals(SPEPProxy.decision.deny, decisions.get("/admin/index.jsp"));
+		assertEquals(SPEPProxy.decision.error, decisions.get("/secure/index.jsp"));
+		assertEquals(SPEPProxy.decision.notcached, decisions.get("/private/index.jsp"));
+		
+		verify(pep);
+		verify(spep);
+	}
+
 	@Test
 	public void testVerifySession()
 	{
@@ -36,10 +36,12 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SimpleTimeZone;
 import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 
@@ -78,7 +80,11 @@ import com.qut.middleware.saml2.schemas.esoe.lxacml.EffectType;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.Obligation;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.Obligations;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.assertion.LXACMLAuthzDecisionStatement;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.Attribute;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.AttributeValue;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.context.DecisionType;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.Request;
+import com.qut.middleware.saml2.schemas.esoe.lxacml.context.Resource;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.context.Result;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.grouptarget.GroupTarget;
 import com.qut.middleware.saml2.schemas.esoe.lxacml.protocol.LXACMLAuthzDecisionQuery;
@@ -483,6 +489,141 @@ public class PolicyEnforcementProcessorImplTest
 		assertTrue(authz2Targets.containsAll(captureAuthzTargets.getCaptured().get(1)));
 	}
 	
+	/**
+	 * Test method for {@link com.qut.middleware.spep.pep.PolicyEnforcementProcessor#makeAuthzDecisions(java.lang.String, java.util.List, java.lang.String)}.
+	 * Resources not decided by the cache are sent to the PDP in a single query, and each decision in the response is
+	 * matched to its resource by the request returned with it.
+	 */
+	@Test
+	public void testMakeAuthzDecisions1() throws Exception
+	{
+		this.samlID = "_29387123948719283749182374981723498712934871923874-972130587190238409128304";
+		
+		String cachedResource = "/public/index.html";
+		String permittedResource = "/secure/securedocument.html";
+		String deniedResource = "/secure/admin/index.html";
+		
+		List<String> resources = new Vector<String>();
+		resources.add(cachedResource);
+		resources.add(permittedResource);
+		resources.add(deniedResource);
+		
+		Map<String, decision> desiredDecisions = new HashMap<String, decision>();
+		desiredDecisions.put(deniedResource, decision.deny);
+		desiredDecisions.put(permittedResource, decision.permit);
+		
+		Element responseDocument = generateBatchResponse(desiredDecisions);
+		
+		expect(this.sessionGroupCache.makeCachedAuthzDecision(this.principalSession, cachedResource, null)).andReturn(decision.permit).once();
+		expect(this.sessionGroupCache.makeCachedAuthzDecision(this.principalSession, permittedResource, null)).andReturn(decision.notcached).once();
+		expect(this.sessionGroupCache.makeCachedAuthzDecision(this.principalSession, deniedResource, null)).andReturn(decision.notcached).once();
+		expect(this.principalSession.getEsoeSessionID()).andReturn(this.samlID).anyTimes();
+		
+		// a single query is made for both uncached resources
+		expect(this.wsClient.policyDecisionPoint((Element)notNull(), (String)notNull())).andReturn(responseDocument).once();
+		
+		startMock();
+		
+		Map<String, decision> decisions = this.processor.makeAuthzDecisions(this.sessionID, resources, null);
+		
+		endMock();
+		
+		assertEquals(3, decisions.size());
+		assertEquals(decision.permit, decisions.get(cachedResource));
+		assertEquals(decision.permit, decisions.get(permittedResource));
+		assertEquals(decision.deny, decisions.get(deniedResource));
+	}
+	
+	/*
+	 * Concurrent requests for the same uncached decision are answered by a single query to the PDP.
+	 */
+	@Test
+	public void testMakeAuthzDecisionCoalesced() throws Exception
+	{
+		final int threadCount = 8;
+		this.resource = "/secure/securedocument.html";
+		this.samlID = "_29387123948719283749182374981723498712934871923874-972130587190238409128304";
+		
+		final Element responseDocument = generateResponse(decision.permit, generateUnrelatedObligations());
+		final PolicyEnforcementProcessorImpl[] processorImpl = new PolicyEnforcementProcessorImpl[1];
+		
+		// Holds the query until every other thread is waiting on it
+		WSClient blockingClient = new WSClient()
+		{
+			public Element policyDecisionPoint(Element decisionRequest, String endpoint)
+			{
+				long end = System.currentTimeMillis() + 5000;
+				while (processorImpl[0].getCoalescedQueryCount() < threadCount - 1 && System.currentTimeMillis() < end)
+				{
+					Thread.yield();
+				}
+				
+				return responseDocument;
+			}
+			
+			public Element attributeAuthority(Element attributeQuery, String endpoint)
+			{
+				return null;
+			}
+			
+			public Element spepStartup(Element spepStartup, String endpoint)
+			{
+				return null;
+			}
+			
+			public Element artifactResolve(Element artifactResolve, String endpoint)
+			{
+				return null;
+			}
+		};
+		processorImpl[0] = new PolicyEnforcementProcessorImpl(this.sessionCache, this.sessionGroupCache, blockingClient, this.identifierGenerator, this.metadata, keyStoreResolver, this.samlValidator, this.esoeIdentifier, this.spepIdentifier, false, false);
+		
+		expect(this.sessionGroupCache.makeCachedAuthzDecision(this.principalSession, this.resource, null)).andReturn(decision.notcached).anyTimes();
+		expect(this.principalSession.getEsoeSessionID()).andReturn(this.samlID).anyTimes();
+		
+		startMock();
+		
+		final decision[] decisions = new decision[threadCount];
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++)
+		{
+			final int index = i;
+			threads[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						decisions[index] = processorImpl[0].makeAuthzDecision(PolicyEnforcementProcessorImplTest.this.sessionID, PolicyEnforcementProcessorImplTest.this.resource);
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		
+		start.countDown();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		
+		endMock();
+		
+		assertEquals(1, processorImpl[0].getIssuedQueryCount());
+		assertEquals(threadCount - 1, processorImpl[0].getCoalescedQueryCount());
+		for (decision threadDecision : decisions)
+		{
+			assertEquals(decision.permit, threadDecision);
+		}
+	}
+	
 	@Test
 	public void testAuthzCacheClear1() throws Exception
 	{
@@ -686,6 +827,21 @@ public class PolicyEnforcementProcessorImplTest
 		assertEquals(requestID, response.getInResponseTo());
 	}
 
+	/*
+	 * Obligations must contain at least one obligation, this one is not acted on by the SPEP.
+	 */
+	private Obligations generateUnrelatedObligations()
+	{
+		Obligation obligation = new Obligation();
+		obligation.setFulfillOn(EffectType.PERMIT);
+		obligation.setObligationId("urn:test:obligation:unrelated");
+		
+		Obligations obligations = new Obligations();
+		obligations.getObligations().add(obligation);
+		
+		return obligations;
+	}
+	
 	protected Element generateResponse(decision desiredDecision, Obligations obligations) throws SignatureValueException, ReferenceValueException, UnmarshallerException, MarshallerException
 	{
 		NameIDType issuer = new NameIDType();
@@ -776,6 +932,85 @@ public class PolicyEnforcementProcessorImplTest
 		return responseDocument;
 	}
 	
+	/*
+	 * Generates a response to a batch query, with a statement returning its request for each resource.
+	 */
+	protected Element generateBatchResponse(Map<String, decision> desiredDecisions) throws MarshallerException
+	{
+		NameIDType issuer = new NameIDType();
+		issuer.setValue(this.esoeIdentifier);
+		
+		Status status = new Status();
+		StatusCode statusCode = new StatusCode();
+		statusCode.setValue(StatusCodeConstants.success);
+		status.setStatusCode(statusCode);
+		
+		Subject subject = new Subject();
+		NameIDType subjectNameID = new NameIDType();
+		subjectNameID.setValue("whatever");
+		subject.setNameID(subjectNameID);
+		
+		SubjectConfirmation confirmation = new SubjectConfirmation();
+		confirmation.setMethod(ConfirmationMethodConstants.bearer);
+		SubjectConfirmationDataType confirmationData = new SubjectConfirmationDataType();
+		confirmationData.setInResponseTo(this.samlID);
+		confirmationData.setNotOnOrAfter(this.generateXMLCalendar(100));
+		confirmation.setSubjectConfirmationData(confirmationData);
+		subject.getSubjectConfirmationNonID().add(confirmation);
+		
+		Assertion assertion = new Assertion();
+		assertion.setID("_59182739487129384791823749817-1239084719023850912830498");
+		assertion.setIssueInstant(new XMLGregorianCalendarImpl(new GregorianCalendar()));
+		assertion.setIssuer(issuer);
+		assertion.setVersion(VersionConstants.saml20);
+		assertion.setSubject(subject);
+		
+		for (Map.Entry<String, decision> desiredDecision : desiredDecisions.entrySet())
+		{
+			AttributeValue resourceAttributeValue = new AttributeValue();
+			resourceAttributeValue.getContent().add(desiredDecision.getKey());
+			Attribute resourceAttribute = new Attribute();
+			resourceAttribute.setAttributeValue(resourceAttributeValue);
+			Resource resource = new Resource();
+			resource.setAttribute(resourceAttribute);
+			
+			AttributeValue subjectAttributeValue = new AttributeValue();
+			subjectAttributeValue.getContent().add(this.samlID);
+			Attribute subjectAttribute = new Attribute();
+			subjectAttribute.setAttributeValue(subjectAttributeValue);
+			com.qut.middleware.saml2.schemas.esoe.lxacml.context.Subject requestSubject = new com.qut.middleware.saml2.schemas.esoe.lxacml.context.Subject();
+			requestSubject.setAttribute(subjectAttribute);
+			
+			Request request = new Request();
+			request.setResource(resource);
+			request.setSubject(requestSubject);
+			
+			Result result = new Result();
+			result.setDecision(desiredDecision.getValue().equals(decision.permit) ? DecisionType.PERMIT : DecisionType.DENY);
+			result.setObligations(generateUnrelatedObligations());
+			
+			com.qut.middleware.saml2.schemas.esoe.lxacml.context.Response lxacmlResponse = new com.qut.middleware.saml2.schemas.esoe.lxacml.context.Response();
+			lxacmlResponse.setResult(result);
+			
+			LXACMLAuthzDecisionStatement lxacmlAuthzDecisionStatement = new LXACMLAuthzDecisionStatement();
+			lxacmlAuthzDecisionStatement.setRequest(request);
+			lxacmlAuthzDecisionStatement.setResponse(lxacmlResponse);
+			
+			assertion.getAuthnStatementsAndAuthzDecisionStatementsAndAttributeStatements().add(lxacmlAuthzDecisionStatement);
+		}
+		
+		Response response = new Response();
+		response.setID("_918275987192387409182304981234-01923598712398709128304981203498");
+		response.setInResponseTo(this.samlID);
+		response.setIssueInstant(new XMLGregorianCalendarImpl(new GregorianCalendar()));
+		response.setSignature(new Signature());
+		response.setStatus(status);
+		response.setVersion(VersionConstants.saml20);
+		response.getEncryptedAssertionsAndAssertions().add(assertion);
+		
+		return this.responseMarshaller.marshallSignedElement(response);
+	}
+	
 	private XMLGregorianCalendar generateXMLCalendar(int offset)
 	{
 		GregorianCalendar calendar;
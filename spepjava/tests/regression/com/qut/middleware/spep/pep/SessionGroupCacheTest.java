@@ -591,4 +591,227 @@ public class SessionGroupCacheTest
 		assertTrue("Ensures that other principal object session was not removed", (decision.notcached != this.sessionGroupCache.makeCachedAuthzDecision(prin3, "https://some.site")));
 		
 	}
+	
+	/**
+	 * Ensures decisions remembered for a resource are not returned after the principal's cache is updated or cleared.
+	 */
+	@Test
+	public void testRememberedDecisionUpdated()
+	{
+		this.sessionGroupCache = new SessionGroupCacheImpl(decision.deny);
+		
+		String groupTarget1 = "/admin/.*";
+		List<String> authzTargets1 = new Vector<String>();
+		authzTargets1.add("/admin/secure/.*");
+		
+		Map<String,List<String>> groupTargetMap = new HashMap<String, List<String>>();
+		groupTargetMap.put(groupTarget1, authzTargets1);
+		this.sessionGroupCache.clearCache(groupTargetMap);
+		
+		PrincipalSession prin1 = new PrincipalSessionImpl();
+		prin1.setEsoeSessionID("1234");
+		
+		String resource1 = "/admin/secure/index.jsp";
+		
+		this.sessionGroupCache.updateCache(prin1, groupTarget1, new Vector<String>(), null, decision.permit);
+		assertEquals("Decision before update was incorrect", decision.notcached, this.sessionGroupCache.makeCachedAuthzDecision(prin1, resource1));
+		assertEquals("Remembered decision was incorrect", decision.notcached, this.sessionGroupCache.makeCachedAuthzDecision(prin1, resource1));
+		
+		this.sessionGroupCache.updateCache(prin1, groupTarget1, authzTargets1, null, decision.permit);
+		assertEquals("Decision after update was incorrect", decision.permit, this.sessionGroupCache.makeCachedAuthzDecision(prin1, resource1));
+		
+		this.sessionGroupCache.updateCache(prin1, groupTarget1, authzTargets1, "write", decision.deny);
+		assertEquals("Decision for action was incorrect", decision.deny, this.sessionGroupCache.makeCachedAuthzDecision(prin1, resource1, "write"));
+		assertEquals("Decision without action was incorrect", decision.permit, this.sessionGroupCache.makeCachedAuthzDecision(prin1, resource1));
+		
+		this.sessionGroupCache.clearCache(groupTargetMap);
+		assertEquals("Decision after cache clear was incorrect", decision.notcached, this.sessionGroupCache.makeCachedAuthzDecision(prin1, resource1));
+	}
+	
+	/**
+	 * Ensures decisions are shared between principals with the same values of the shared attributes only.
+	 */
+	@Test
+	public void testSharedDecisions()
+	{
+		List<String> sharedAttributes = new Vector<String>();
+		sharedAttributes.add("course");
+		sharedAttributes.add("type");
+		this.sessionGroupCache = new SessionGroupCacheImpl(decision.deny, sharedAttributes);
+		
+		String groupTarget1 = "/course/.*";
+		List<String> authzTargets1 = new Vector<String>();
+		authzTargets1.add("/course/notes/.*");
+		
+		Map<String,List<String>> groupTargetMap = new HashMap<String, List<String>>();
+		groupTargetMap.put(groupTarget1, authzTargets1);
+		this.sessionGroupCache.clearCache(groupTargetMap);
+		
+		PrincipalSession prin1 = createPrincipal("1234", "INB123", "student");
+		prin1.getAttributes().put("mail", createValues("a@example.com"));
+		PrincipalSession prin2 = createPrincipal("12345", "INB123", "student");
+		prin2.getAttributes().put("mail", createValues("b@example.com"));
+		PrincipalSession prin3 = createPrincipal("123456", "INB456", "student");
+		
+		String resource1 = "/course/notes/week1.pdf";
+		
+		this.sessionGroupCache.updateCache(prin1, groupTarget1, authzTargets1, null, decision.permit);
+		
+		assertEquals("Decision for principal was incorrect", decision.permit, this.sessionGroupCache.makeCachedAuthzDecision(prin1, resource1));
+		assertEquals("Decision was not shared with principal in the same cohort", decision.permit, this.sessionGroupCache.makeCachedAuthzDecision(prin2, resource1));
+		assertEquals("Decision was shared with principal in another cohort", decision.notcached, this.sessionGroupCache.makeCachedAuthzDecision(prin3, resource1));
+		
+		// clearing a principal clears the decisions it may have shared
+		this.sessionGroupCache.clearPrincipalSession(prin1);
+		assertEquals("Shared decision remained after principal was cleared", decision.notcached, this.sessionGroupCache.makeCachedAuthzDecision(prin2, resource1));
+		
+		this.sessionGroupCache.updateCache(prin2, groupTarget1, authzTargets1, null, decision.permit);
+		this.sessionGroupCache.clearCache(groupTargetMap);
+		assertEquals("Shared decision remained after cache clear", decision.notcached, this.sessionGroupCache.makeCachedAuthzDecision(prin1, resource1));
+	}
+	
+	/*
+	 * A session holding more entries than allowed has its cached decisions discarded.
+	 */
+	@Test
+	public void testSessionLimit()
+	{
+		SessionGroupCacheImpl cache = new SessionGroupCacheImpl(decision.deny);
+		cache.setMaxSessionEntries(5);
+		
+		String groupTarget1 = "/course/.*";
+		Map<String,List<String>> groupTargetMap = new HashMap<String, List<String>>();
+		groupTargetMap.put(groupTarget1, new Vector<String>());
+		cache.clearCache(groupTargetMap);
+		
+		PrincipalSession prin1 = createPrincipal("1234", "INB123", "student");
+		for (int i = 0; i < 10; i++)
+		{
+			List<String> authzTargets = new Vector<String>();
+			authzTargets.add("/course/unit" + i + "/.*");
+			cache.updateCache(prin1, groupTarget1, authzTargets, null, decision.permit);
+		}
+		
+		assertTrue("Session was not evicted", cache.getSessionEvictionCount() > 0);
+		assertTrue("Session exceeded its bound", cache.getEntryCount() <= 5);
+		assertEquals(decision.permit, cache.makeCachedAuthzDecision(prin1, "/course/unit9/index.html"));
+		assertEquals("Discarded decision was returned", decision.deny, cache.makeCachedAuthzDecision(prin1, "/course/unit0/index.html"));
+	}
+	
+	/*
+	 * The least recently used sessions are discarded when the cache exceeds its total bound.
+	 */
+	@Test
+	public void testEviction() throws InterruptedException
+	{
+		SessionGroupCacheImpl cache = new SessionGroupCacheImpl(decision.deny);
+		cache.setMaxEntries(6);
+		
+		String groupTarget1 = "/course/.*";
+		List<String> authzTargets1 = new Vector<String>();
+		authzTargets1.add("/course/notes/.*");
+		Map<String,List<String>> groupTargetMap = new HashMap<String, List<String>>();
+		groupTargetMap.put(groupTarget1, new Vector<String>());
+		cache.clearCache(groupTargetMap);
+		
+		PrincipalSession prin1 = createPrincipal("1234", "INB123", "student");
+		PrincipalSession prin2 = createPrincipal("12345", "INB123", "student");
+		PrincipalSession prin3 = createPrincipal("123456", "INB123", "student");
+		String resource1 = "/course/notes/week1.pdf";
+		
+		cache.updateCache(prin1, groupTarget1, authzTargets1, null, decision.permit);
+		Thread.sleep(20);
+		cache.updateCache(prin2, groupTarget1, authzTargets1, null, decision.permit);
+		Thread.sleep(20);
+		assertEquals(decision.permit, cache.makeCachedAuthzDecision(prin1, resource1));
+		Thread.sleep(20);
+		cache.updateCache(prin3, groupTarget1, authzTargets1, null, decision.permit);
+		
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue("Cache exceeded its bound", cache.getEntryCount() <= 6);
+		assertEquals("Least recently used session was not evicted", decision.notcached, cache.makeCachedAuthzDecision(prin2, resource1));
+		assertEquals(decision.permit, cache.makeCachedAuthzDecision(prin1, resource1));
+		assertEquals(decision.permit, cache.makeCachedAuthzDecision(prin3, resource1));
+	}
+	
+	/*
+	 * Sessions unused for longer than the idle timeout have their cached decisions discarded.
+	 */
+	@Test
+	public void testIdleExpiry() throws InterruptedException
+	{
+		SessionGroupCacheImpl cache = new SessionGroupCacheImpl(decision.deny);
+		cache.setIdleTimeout(50);
+		
+		String groupTarget1 = "/course/.*";
+		List<String> authzTargets1 = new Vector<String>();
+		authzTargets1.add("/course/notes/.*");
+		Map<String,List<String>> groupTargetMap = new HashMap<String, List<String>>();
+		groupTargetMap.put(groupTarget1, new Vector<String>());
+		cache.clearCache(groupTargetMap);
+		
+		PrincipalSession prin1 = createPrincipal("1234", "INB123", "student");
+		cache.updateCache(prin1, groupTarget1, authzTargets1, null, decision.permit);
+		assertEquals(decision.permit, cache.makeCachedAuthzDecision(prin1, "/course/notes/week1.pdf"));
+		
+		Thread.sleep(100);
+		
+		assertEquals(decision.notcached, cache.makeCachedAuthzDecision(prin1, "/course/notes/week1.pdf"));
+		assertEquals(1, cache.getExpiryCount());
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getApproximateBytes());
+		assertEquals(0, cache.getSessionCount());
+	}
+	
+	/*
+	 * Repeating a decision the session already holds does not grow the cache.
+	 */
+	@Test
+	public void testDuplicateDecisions()
+	{
+		SessionGroupCacheImpl cache = new SessionGroupCacheImpl(decision.deny);
+		
+		String groupTarget1 = "/course/.*";
+		List<String> authzTargets1 = new Vector<String>();
+		authzTargets1.add("/course/notes/.*");
+		Map<String,List<String>> groupTargetMap = new HashMap<String, List<String>>();
+		groupTargetMap.put(groupTarget1, authzTargets1);
+		cache.clearCache(groupTargetMap);
+		
+		PrincipalSession prin1 = createPrincipal("1234", "INB123", "student");
+		cache.updateCache(prin1, groupTarget1, authzTargets1, "read", decision.permit);
+		long entries = cache.getEntryCount();
+		long bytes = cache.getApproximateBytes();
+		assertTrue(entries > 0);
+		
+		for (int i = 0; i < 100; i++)
+		{
+			cache.updateCache(prin1, groupTarget1, authzTargets1, "read", decision.permit);
+		}
+		
+		assertEquals(entries, cache.getEntryCount());
+		assertEquals(bytes, cache.getApproximateBytes());
+		
+		cache.clearPrincipalSession(prin1);
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getApproximateBytes());
+	}
+	
+	private PrincipalSession createPrincipal(String esoeSessionID, String course, String type)
+	{
+		PrincipalSession principal = new PrincipalSessionImpl();
+		principal.setEsoeSessionID(esoeSessionID);
+		principal.getAttributes().put("course", createValues(course));
+		principal.getAttributes().put("type", createValues(type));
+		
+		return principal;
+	}
+	
+	private List<Object> createValues(String value)
+	{
+		List<Object> values = new Vector<Object>();
+		values.add(value);
+		
+		return values;
+	}
 }
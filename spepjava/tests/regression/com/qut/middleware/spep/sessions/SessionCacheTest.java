@@ -24,6 +24,7 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
@@ -37,7 +38,11 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.qut.middleware.spep.sessions.impl.PrincipalSessionImpl;
 import com.qut.middleware.spep.sessions.impl.SessionCacheImpl;
+import com.qut.middleware.spep.sessions.impl.UnauthenticatedSessionImpl;
+import com.qut.middleware.spep.util.CalendarUtils;
+import com.qut.middleware.spep.util.Clock;
 
 /** */
 @SuppressWarnings({"nls"})
@@ -293,4 +298,134 @@ public class SessionCacheTest
 		
 		verify(principalSession);
 	}
+	
+	/**
+	 * Test to ensure that sessions are validated against the time given by the clock in use
+	 */
+	@Test
+	public void testPrincipalSessionClock()
+	{
+		String sessionID = "59872938759238745982374958273498572345";
+		String samlID = "_9509280t9q0we9i0q9i3209i029ti09q2ji3t-q-9jt09j230t9qi2039iq09234";
+		final long notOnOrAfter = System.currentTimeMillis() + 30000;
+		
+		PrincipalSession principalSession = new PrincipalSessionImpl();
+		principalSession.setEsoeSessionID(samlID);
+		principalSession.setSessionNotOnOrAfter(new Date(notOnOrAfter));
+		principalSession.addESOESessionIndexAndLocalSessionID("123456789", sessionID);
+		
+		this.sessionCache.putPrincipalSession(sessionID, principalSession);
+		assertSame("Incorrect session returned", principalSession, this.sessionCache.getPrincipalSession(sessionID));
+		
+		CalendarUtils.setClock(new Clock()
+		{
+			public long currentTimeMillis()
+			{
+				return notOnOrAfter;
+			}
+		});
+		try
+		{
+			assertEquals(notOnOrAfter, CalendarUtils.generateXMLCalendar().toGregorianCalendar().getTimeInMillis());
+			assertNull("Session returned at SessionNotOnOrAfter", this.sessionCache.getPrincipalSession(sessionID));
+		}
+		finally
+		{
+			CalendarUtils.setClock(null);
+		}
+	}
+	
+	/**
+	 * Test to ensure that unauthenticated session idle time is measured by the clock in use, as cleanup is
+	 */
+	@Test
+	public void testUnauthenticatedSessionClock()
+	{
+		final long[] now = new long[] { System.currentTimeMillis() };
+		
+		CalendarUtils.setClock(new Clock()
+		{
+			public long currentTimeMillis()
+			{
+				return now[0];
+			}
+		});
+		try
+		{
+			UnauthenticatedSession unauthenticatedSession = new UnauthenticatedSessionImpl();
+			unauthenticatedSession.updateTime();
+			assertEquals(0, unauthenticatedSession.getIdleTime());
+			
+			now[0] += 5000;
+			assertEquals(5, unauthenticatedSession.getIdleTime());
+		}
+		finally
+		{
+			CalendarUtils.setClock(null);
+		}
+	}
+	
+	/**
+	 * Test to ensure that the cleanup thread terminates principal sessions which reach SessionNotOnOrAfter, without
+	 * them being requested
+	 */
+	@Test
+	public void testCleanupPrincipalSession() throws Exception
+	{
+		String sessionID = "59872938759238745982374958273498572345";
+		String samlID = "_9509280t9q0we9i0q9i3209i029ti09q2ji3t-q-9jt09j230t9qi2039iq09234";
+		
+		PrincipalSession principalSession = new PrincipalSessionImpl();
+		principalSession.setEsoeSessionID(samlID);
+		principalSession.setSessionNotOnOrAfter(new Date(System.currentTimeMillis() + 200));
+		principalSession.addESOESessionIndexAndLocalSessionID("123456789", sessionID);
+		
+		this.sessionCache.putPrincipalSession(sessionID, principalSession);
+		Thread.sleep(2500);
+		
+		/* Extending the session now can't revive it if cleanup has terminated it */
+		principalSession.setSessionNotOnOrAfter(new Date(System.currentTimeMillis() + 30000));
+		assertNull("Session was not terminated by cleanup", this.sessionCache.getPrincipalSession(sessionID));
+		assertNull("Session was not terminated by cleanup", this.sessionCache.getPrincipalSessionByEsoeSessionID(samlID));
+	}
+	
+	/**
+	 * Test to ensure that the cleanup thread keeps principal sessions whose SessionNotOnOrAfter is extended after they
+	 * are stored
+	 */
+	@Test
+	public void testCleanupExtendedPrincipalSession() throws Exception
+	{
+		String sessionID = "59872938759238745982374958273498572345";
+		String samlID = "_9509280t9q0we9i0q9i3209i029ti09q2ji3t-q-9jt09j230t9qi2039iq09234";
+		
+		PrincipalSession principalSession = new PrincipalSessionImpl();
+		principalSession.setEsoeSessionID(samlID);
+		principalSession.setSessionNotOnOrAfter(new Date(System.currentTimeMillis() + 200));
+		principalSession.addESOESessionIndexAndLocalSessionID("123456789", sessionID);
+		
+		this.sessionCache.putPrincipalSession(sessionID, principalSession);
+		principalSession.setSessionNotOnOrAfter(new Date(System.currentTimeMillis() + 30000));
+		Thread.sleep(2500);
+		
+		assertSame("Extended session was terminated by cleanup", principalSession, this.sessionCache.getPrincipalSession(sessionID));
+		assertSame("Extended session was terminated by cleanup", principalSession, this.sessionCache.getPrincipalSessionByEsoeSessionID(samlID));
+	}
+	
+	/**
+	 * Test to ensure that the cleanup thread removes unauthenticated sessions left idle for longer than the timeout,
+	 * and that one terminated and stored again under the same request ID is still timed out
+	 */
+	@Test
+	public void testCleanupUnauthenticatedSession() throws Exception
+	{
+		String requestID = "_8275938457293847592834759283745-9283475928374598273459827345";
+		
+		this.sessionCache.putUnauthenticatedSession(requestID, new UnauthenticatedSessionImpl());
+		this.sessionCache.terminateUnauthenticatedSession(requestID);
+		this.sessionCache.putUnauthenticatedSession(requestID, new UnauthenticatedSessionImpl());
+		Thread.sleep(4500);
+		
+		assertNull("Idle session was not removed by cleanup", this.sessionCache.getUnauthenticatedSession(requestID));
+	}
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Decides access to further resources for the session of a request permitted by the SPEP filter.
+ */
+package com.qut.middleware.spep.filter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.qut.middleware.spep.SPEPProxy;
+
+/** Decides access to further resources for the session of a request permitted by the SPEP filter. The filter
+ * publishes one as the request attribute SPEPFilter.AUTHZ_DECIDER, so a protected application can find out which of
+ * several sub-resources, such as the links on a page, its user may access. Resources not already cached are
+ * decided by the PDP in a single query.
+ */
+public class AuthzDecider
+{
+	private final SPEPProxy spep;
+	private final String sessionID;
+
+	/**
+	 * @param spep The SPEP the request was permitted by.
+	 * @param sessionID The SPEP session ID of the request.
+	 */
+	AuthzDecider(SPEPProxy spep, String sessionID)
+	{
+		this.spep = spep;
+		this.sessionID = sessionID;
+	}
+
+	/**
+	 * @return The SPEP session ID the decisions are made for.
+	 */
+	public String getSessionID()
+	{
+		return this.sessionID;
+	}
+
+	/**
+	 * Makes authorization decisions for a number of resources.
+	 * @param resources The resources to decide, in decoded form as for the requested resource.
+	 * @return The decision made by or on behalf of the PDP for each of the resources.
+	 */
+	public Map<String, SPEPProxy.decision> makeAuthzDecisions(List<String> resources)
+	{
+		return makeAuthzDecisions(resources, null);
+	}
+
+	/**
+	 * Makes authorization decisions for a number of resources.
+	 * @param resources The resources to decide, in decoded form as for the requested resource.
+	 * @param action The action being undertaken on the resources, may be null.
+	 * @return The decision made by or on behalf of the PDP for each of the resources.
+	 */
+	public Map<String, SPEPProxy.decision> makeAuthzDecisions(List<String> resources, String action)
+	{
+		Map<String, ?> spepDecisions = this.spep.makeAuthzDecisions(this.sessionID, resources, action);
+		Map<String, SPEPProxy.decision> decisions = new HashMap<String, SPEPProxy.decision>();
+
+		/* The SPEP proxy converts enums returned directly, but not those inside a returned map, which are still
+		 * constants of the SPEP webapp's class. Resolve each by name to the local decision. */
+		for (Map.Entry<String, ?> spepDecision : spepDecisions.entrySet())
+		{
+			decisions.put(spepDecision.getKey(), SPEPProxy.decision.valueOf(((Enum<?>) spepDecision.getValue()).name()));
+		}
+
+		return decisions;
+	}
+}
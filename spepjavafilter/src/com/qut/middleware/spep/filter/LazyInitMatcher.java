@@ -0,0 +1,240 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Matches requested resources against the lazy init resource expressions of an SPEP, compiled once.
+ */
+package com.qut.middleware.spep.filter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/** Matches requested resources against the lazy init resource expressions of an SPEP. A resource matches if it
+ * matches any of the expressions entirely, as with String.matches.
+ *
+ * Expressions without regular expression syntax are compared as strings. The others are compiled into a single
+ * alternation, which is only evaluated if the resource starts with the literal prefix of one of the expressions, so
+ * resources outside the protected areas are rejected without running a regular expression.
+ */
+final class LazyInitMatcher
+{
+	private static final String META_CHARACTERS = "\\^$.|?*+()[]{}"; //$NON-NLS-1$
+	private static final String QUANTIFIERS = "?*{"; //$NON-NLS-1$
+
+	private final List<String> lazyInitResources;
+
+	private final Set<String> literals;
+	private final Pattern combined;
+	private final String[] prefixes;
+	private final Pattern[] separate;
+
+	/**
+	 * @param lazyInitResources The lazy init resource expressions of the SPEP, may be null if there are none.
+	 * @throws java.util.regex.PatternSyntaxException If an expression is not a valid regular expression.
+	 */
+	LazyInitMatcher(List<String> lazyInitResources)
+	{
+		this.lazyInitResources = lazyInitResources;
+		this.literals = new HashSet<String>();
+
+		List<String> expressions = new ArrayList<String>();
+		List<String> prefixes = new ArrayList<String>();
+		List<Pattern> separate = new ArrayList<Pattern>();
+		boolean prefixed = true;
+
+		if (lazyInitResources != null)
+		{
+			for (String lazyInitResource : lazyInitResources)
+			{
+				if (isLiteral(lazyInitResource))
+				{
+					this.literals.add(lazyInitResource);
+				}
+				else if (hasBackReference(lazyInitResource))
+				{
+					// group numbers would change inside the alternation, so keep it apart
+					separate.add(Pattern.compile(lazyInitResource));
+				}
+				else
+				{
+					expressions.add(lazyInitResource);
+
+					String prefix = literalPrefix(lazyInitResource);
+					if (prefix.length() == 0)
+						prefixed = false;
+					else
+						prefixes.add(prefix);
+				}
+			}
+		}
+
+		if (expressions.isEmpty())
+		{
+			this.combined = null;
+		}
+		else
+		{
+			StringBuilder alternation = new StringBuilder();
+			for (String expression : expressions)
+			{
+				if (alternation.length() > 0)
+					alternation.append('|');
+
+				alternation.append("(?:").append(expression).append(')'); //$NON-NLS-1$
+			}
+
+			this.combined = Pattern.compile(alternation.toString());
+		}
+
+		// an expression that could start with anything means the alternation has to be evaluated for every resource
+		this.prefixes = prefixed ? prefixes.toArray(new String[prefixes.size()]) : null;
+		this.separate = separate.toArray(new Pattern[separate.size()]);
+	}
+
+	/**
+	 * @param lazyInitResources The lazy init resource expressions currently configured for the SPEP.
+	 * @return true if this matcher was created from the given list of expressions.
+	 */
+	boolean isFor(List<String> lazyInitResources)
+	{
+		return this.lazyInitResources == lazyInitResources;
+	}
+
+	/**
+	 * @param resource The decoded resource being requested.
+	 * @return true if the resource matches any of the lazy init resource expressions.
+	 */
+	boolean matches(String resource)
+	{
+		if (this.literals.contains(resource))
+			return true;
+
+		if (this.combined != null && this.startsWithPrefix(resource) && this.combined.matcher(resource).matches())
+			return true;
+
+		for (Pattern pattern : this.separate)
+		{
+			if (pattern.matcher(resource).matches())
+				return true;
+		}
+
+		return false;
+	}
+
+	private boolean startsWithPrefix(String resource)
+	{
+		if (this.prefixes == null)
+			return true;
+
+		for (String prefix : this.prefixes)
+		{
+			if (resource.startsWith(prefix))
+				return true;
+		}
+
+		return false;
+	}
+
+	private static boolean isLiteral(String expression)
+	{
+		for (int i = 0; i < expression.length(); i++)
+		{
+			if (META_CHARACTERS.indexOf(expression.charAt(i)) >= 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	private static boolean hasBackReference(String expression)
+	{
+		for (int i = 0; i < expression.length() - 1; i++)
+		{
+			if (expression.charAt(i) == '\\')
+			{
+				char next = expression.charAt(i + 1);
+				if (Character.isDigit(next) || next == 'k')
+					return true;
+
+				// skip the escaped character, so \\1 is not mistaken for a back reference
+				i++;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Determines the literal text every resource matching the expression must start with.
+	 * @param expression The regular expression.
+	 * @return The literal prefix, or an empty string if matching resources may start with anything.
+	 */
+	static String literalPrefix(String expression)
+	{
+		// any alternative could start differently
+		if (expression.indexOf('|') >= 0)
+			return ""; //$NON-NLS-1$
+
+		StringBuilder prefix = new StringBuilder();
+		int i = expression.startsWith("^") ? 1 : 0; //$NON-NLS-1$
+
+		while (i < expression.length())
+		{
+			char c = expression.charAt(i);
+			if (c == '\\')
+			{
+				// escaped punctuation is literal, escaped letters and digits are classes, quotes and references
+				if (i + 1 >= expression.length() || Character.isLetterOrDigit(expression.charAt(i + 1)))
+					break;
+
+				c = expression.charAt(i + 1);
+				i += 2;
+			}
+			else if (META_CHARACTERS.indexOf(c) >= 0)
+			{
+				break;
+			}
+			else
+			{
+				i++;
+			}
+
+			if (i < expression.length())
+			{
+				char next = expression.charAt(i);
+
+				// the character may be absent, so the prefix ends before it
+				if (QUANTIFIERS.indexOf(next) >= 0)
+					break;
+
+				prefix.append(c);
+
+				// the character is repeated, so the prefix ends with it
+				if (next == '+')
+					break;
+			}
+			else
+			{
+				prefix.append(c);
+			}
+		}
+
+		return prefix.toString();
+	}
+}
@@ -40,6 +40,7 @@ import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.qut.middleware.spep.ConfigurationConstants;
 import com.qut.middleware.spep.SPEPProxy;
 import com.qut.middleware.spep.sessions.PrincipalSession;
 
@@ -48,11 +49,19 @@ public class SPEPFilter implements Filter
 {
 	public static final String ATTRIBUTES = "com.qut.middleware.spep.filter.attributes"; //$NON-NLS-1$
 	public static final String SPEP_SESSIONID = "com.qut.middleware.spep.filter.sessionid"; //$NON-NLS-1$
+	public static final String AUTHZ_DECIDER = "com.qut.middleware.spep.filter.authzdecider"; //$NON-NLS-1$
 
 	private FilterConfig filterConfig;
 	private static final String SPEP_CONTEXT_PARAM_NAME = "spep-context"; //$NON-NLS-1$
 	private String spepContextName;
 
+	/* Lazy init resource expressions of the SPEP, compiled when they are first needed */
+	private volatile LazyInitMatcher lazyInitMatcher;
+
+	/* The proxy created for the SPEP object last found in the SPEP context of this filter. Replaced as a whole, so
+	 * requests read it without locking. */
+	private volatile CachedProxy cachedProxy;
+
 	/* Local logging instance */
 	private Logger logger = LoggerFactory.getLogger(SPEPFilter.class.getName());
 
@@ -100,11 +109,21 @@ public class SPEPFilter implements Filter
 			throw new ServletException(Messages.getString("SPEPFilter.2") + " " + this.spepContextName); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 
-		// Establish SPEPProxy object.
+		// Establish SPEPProxy object. The SPEP object only changes if the SPEP webapp is redeployed.
 		SPEPProxy spep;
 		try
 		{
-			spep = Initializer.init(spepContext);
+			Object spepObject = spepContext.getAttribute(ConfigurationConstants.SPEP_PROXY);
+			CachedProxy cached = this.cachedProxy;
+			if (cached != null && spepObject != null && cached.spepObject == spepObject)
+			{
+				spep = cached.spep;
+			}
+			else
+			{
+				spep = Initializer.init(spepContext);
+				this.cachedProxy = new CachedProxy(spepObject, spep);
+			}
 		}
 		catch (Exception e)
 		{
@@ -191,6 +210,7 @@ public class SPEPFilter implements Filter
 					if (authzDecision == SPEPProxy.decision.permit)
 					{
 						this.logger.info("PDP advised for session ID of " + sessionID + " that access to resource " + decodedResource + " was permissable");
+						request.setAttribute(AUTHZ_DECIDER, new AuthzDecider(spep, sessionID));
 						chain.doFilter(request, response);
 						return;
 					}
@@ -270,7 +290,7 @@ public class SPEPFilter implements Filter
 		 */
 		if (spep.isLazyInit())
 		{
-			this.logger.info("Lazy init is enabled on this SPEP instance, determining if request should be interrogated by SPEP");
+			this.logger.debug("Lazy init is enabled on this SPEP instance, determining if request should be interrogated by SPEP");
 
 			/*
 			 * We are being lazy in starting sessions, determine if user has already authenticated with an IDP (the
@@ -282,30 +302,23 @@ public class SPEPFilter implements Filter
 			{
 				this.logger.debug("globalESOECookie was not set for this request");
 
-				boolean matchedLazyInitResource = false;
 				resource = request.getRequestURI();
 				if (request.getQueryString() != null)
 					resource = resource + "?" + request.getQueryString(); //$NON-NLS-1$
 
 				decodedResource = decode(resource);
 
-				for (String lazyInitResource : spep.getLazyInitResources())
-				{
-					if (decodedResource.matches(lazyInitResource))
-					{
-						matchedLazyInitResource = true;
-						this.logger.info("Lazy session init attempt matched initialization query of " + lazyInitResource + " from request of " + decodedResource);
-					}
-					else
-						this.logger.debug("Lazy session init attempt failed to match initialization query of " + lazyInitResource + " from request of " + decodedResource);
-				}
+				boolean matchedLazyInitResource = this.getLazyInitMatcher(spep.getLazyInitResources()).matches(decodedResource);
+				if (matchedLazyInitResource && this.logger.isInfoEnabled())
+					this.logger.info("Lazy session init attempt matched initialization query from request of " + decodedResource);
 
 				// If we still have no reason to engage spep functionality for this request let the request pass
 				if (matchedLazyInitResource)
 				{
 					if (spep.getLazyInitDefaultAction().equals(SPEPProxy.defaultAction.deny))
 					{
-						this.logger.info("No reason to invoke SPEP for access to resource " + decodedResource + " could be determined due to lazyInit, forwarding request to application");
+						if (this.logger.isDebugEnabled())
+							this.logger.debug("No reason to invoke SPEP for access to resource " + decodedResource + " could be determined due to lazyInit, forwarding request to application");
 						chain.doFilter(request, response);
 						return;
 					}
@@ -314,7 +327,8 @@ public class SPEPFilter implements Filter
 				{
 					if (spep.getLazyInitDefaultAction().equals(SPEPProxy.defaultAction.permit))
 					{
-						this.logger.info("No reason to invoke SPEP for access to resource " + decodedResource + " could be determined due to lazyInit, forwarding request to application");
+						if (this.logger.isDebugEnabled())
+							this.logger.debug("No reason to invoke SPEP for access to resource " + decodedResource + " could be determined due to lazyInit, forwarding request to application");
 						chain.doFilter(request, response);
 						return;
 					}
@@ -366,6 +380,26 @@ public class SPEPFilter implements Filter
 		response.sendRedirect(redirectURL);
 	}
 
+	/**
+	 * Provides the compiled form of the lazy init resource expressions, compiling them again only if the SPEP
+	 * provides a different list.
+	 * 
+	 * @param lazyInitResources The lazy init resource expressions of the SPEP.
+	 * @return Matcher for the given expressions.
+	 */
+	private LazyInitMatcher getLazyInitMatcher(List<String> lazyInitResources)
+	{
+		LazyInitMatcher matcher = this.lazyInitMatcher;
+		if (matcher == null || !matcher.isFor(lazyInitResources))
+		{
+			// compiling twice when requests race is harmless, the expressions are the same
+			matcher = new LazyInitMatcher(lazyInitResources);
+			this.lazyInitMatcher = matcher;
+		}
+
+		return matcher;
+	}
+
 	/**
 	 * Transcodes %XX symbols per RFC 2369 to normalized character format
 	 * 
@@ -429,4 +463,17 @@ public class SPEPFilter implements Filter
 			index++;
 		}
 	}
+
+	/* A proxy and the SPEP object it was created for */
+	private static class CachedProxy
+	{
+		protected final Object spepObject;
+		protected final SPEPProxy spep;
+
+		protected CachedProxy(Object spepObject, SPEPProxy spep)
+		{
+			this.spepObject = spepObject;
+			this.spep = spep;
+		}
+	}
 }
@@ -20,17 +20,26 @@
 
 package com.qut.middleware.spep.filter.proxy;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Invocation handler calling through to an object whose class was loaded by another class loader.
  * 
+ * Resolving a method on the target, and working out how to proxy the objects passed to and
+ * returned from it, involves class loading and reflection. Both are done once per method and
+ * per class, and remembered in a cache shared by this handler and every handler it creates for
+ * the objects it returns, so repeated calls only pay for the reflective invocation itself.
  */
 public class GenericObjectInvocationHandler extends Object implements
 		InvocationHandler
@@ -38,6 +47,7 @@ public class GenericObjectInvocationHandler extends Object implements
 	private Logger logger = LoggerFactory.getLogger(GenericObjectInvocationHandler.class);
 	
 	private Object invocationTarget;
+	private ProxyCache proxyCache;
 	
 	/**
 	 * Constructor specifying an invocation target. Target object must not be null
@@ -45,12 +55,18 @@ public class GenericObjectInvocationHandler extends Object implements
 	 */
 	public GenericObjectInvocationHandler( Object invocationTarget )
 	{		
+		this( invocationTarget, new ProxyCache() );
+	}
+	
+	private GenericObjectInvocationHandler( Object invocationTarget, ProxyCache proxyCache )
+	{
 		if( invocationTarget == null )
 		{
 			throw new IllegalArgumentException( "Cannot create an invocation handler for a null object." );
 		}
 		
 		this.invocationTarget = invocationTarget;
+		this.proxyCache = proxyCache;
 	}
 
 	/*
@@ -62,21 +78,17 @@ public class GenericObjectInvocationHandler extends Object implements
 	public Object invoke(Object proxyObject, Method method, Object[] localArgs)
 			throws Throwable
 	{
+		Class<?> targetClass = this.invocationTarget.getClass();
 		
-		this.logger.debug( "Calling " + method.getDeclaringClass().getName() + " method " + method.getName() + "(" + method.getParameterTypes().length + " args). Target type is " + this.invocationTarget.getClass().getName() );
-		
-		ClassLoader remoteClassLoader = this.invocationTarget.getClass().getClassLoader();
-		
-		// Build list of the parameters expected on the remote side so we can resolve the method.
-		Class<?>[] parameters = new Class<?>[ method.getParameterTypes().length ];
-		for( int i=0; i<method.getParameterTypes().length; ++i )
+		if( this.logger.isDebugEnabled() )
 		{
-			String name = method.getParameterTypes()[i].getName();
-			parameters[i] = remoteClassLoader.loadClass( name );
+			this.logger.debug( "Calling " + method.getDeclaringClass().getName() + " method " + method.getName() + "(" + method.getParameterTypes().length + " args). Target type is " + targetClass.getName() );
 		}
 		
+		ClassLoader remoteClassLoader = targetClass.getClassLoader();
+		
 		// Resolve the method on the remote object
-		Method targetMethod = this.invocationTarget.getClass().getMethod( method.getName(), parameters );
+		Method targetMethod = this.proxyCache.getTargetMethod( method, targetClass );
 		
 		// Build reverse proxies to the object we are using as parameters, so that the
 		// remote class can handle our types cleanly.
@@ -93,13 +105,16 @@ public class GenericObjectInvocationHandler extends Object implements
 		// Invoke the method with the proxied args
 		Object retval = targetMethod.invoke( this.invocationTarget, args );
 
-		if( retval == null )
+		if( this.logger.isDebugEnabled() )
 		{
-			this.logger.debug( "Returned type is null." );
-		}
-		else
-		{
-			this.logger.debug( "Returned type is " + retval.getClass().getName() + ". Trying to auto-proxy" );
+			if( retval == null )
+			{
+				this.logger.debug( "Returned type is null." );
+			}
+			else
+			{
+				this.logger.debug( "Returned type is " + retval.getClass().getName() + ". Trying to auto-proxy" );
+			}
 		}
 		
 		// Auto-proxy the object if we can, and return.
@@ -143,6 +158,8 @@ public class GenericObjectInvocationHandler extends Object implements
 	 * 		proxy object is created that implements as many of those interfaces
 	 * 		as possible.
 	 * - Failing all these avenues, the object itself is returned.
+	 * Which of these applies depends only on the class of the target object, so it is
+	 * decided once per class and class loader and cached.
 	 * @param target The target object to proxy for.
 	 * @param targetClassLoader The class loader to use when resolving interfaces if a proxy
 	 * 		object needs to be created.
@@ -158,19 +175,64 @@ public class GenericObjectInvocationHandler extends Object implements
 		
 		if( targetClassLoader == null )
 		{
-			this.logger.debug( "Null classloader given for type " + target.getClass() + " .. trying system classloader" );
+			if( this.logger.isDebugEnabled() )
+			{
+				this.logger.debug( "Null classloader given for type " + target.getClass() + " .. trying system classloader" );
+			}
 			targetClassLoader = ClassLoader.getSystemClassLoader();
 		}
 		
+		ProxyType proxyType = this.proxyCache.getProxyType( target.getClass(), targetClassLoader );
+		if( proxyType == null )
+		{
+			proxyType = this.resolveProxyType( target.getClass(), targetClassLoader );
+			this.proxyCache.putProxyType( target.getClass(), targetClassLoader, proxyType );
+		}
+		
+		switch( proxyType.kind )
+		{
+			case ENUM:
+				return Enum.valueOf( proxyType.enumClass, ((Enum<?>)target).name() );
+				
+			case PROXY:
+				try
+				{
+					return proxyType.proxyConstructor.newInstance( new GenericObjectInvocationHandler( target, this.proxyCache ) );
+				}
+				catch( InstantiationException e )
+				{
+					throw new IllegalStateException( "Unable to create proxy for type " + target.getClass().getName(), e );
+				}
+				catch( IllegalAccessException e )
+				{
+					throw new IllegalStateException( "Unable to create proxy for type " + target.getClass().getName(), e );
+				}
+				catch( InvocationTargetException e )
+				{
+					throw new IllegalStateException( "Unable to create proxy for type " + target.getClass().getName(), e );
+				}
+				
+			default:
+				return target;
+		}
+	}
+	
+	/**
+	 * Works out how objects of the given class are auto proxied when resolved with the given class loader.
+	 * @param targetClass The class of the target object.
+	 * @param targetClassLoader The class loader to use when resolving interfaces.
+	 * @return How to auto proxy objects of the target class.
+	 */
+	@SuppressWarnings("unchecked")
+	private ProxyType resolveProxyType( Class<?> targetClass, ClassLoader targetClassLoader )
+	{
 		try 
 		{
 			// If we can cast the object to a local type of the exact same name,
 			// we don't need to proxy it.
-			Class<?> clazz = targetClassLoader.loadClass( target.getClass().getName() );
-			if( clazz != null )
+			Class<?> clazz = targetClassLoader.loadClass( targetClass.getName() );
+			if( clazz != null && clazz.isAssignableFrom( targetClass ) )
 			{
-				Object retval = clazz.cast( target );
-				
 				String classLoaderName = "couldn't get classloader name";
 				if( clazz.getClassLoader() != null )
 				{
@@ -181,19 +243,15 @@ public class GenericObjectInvocationHandler extends Object implements
 				}
 				
 				this.logger.debug( "Resolved class to local class name: " + clazz.getName() + ". Class loader: " + classLoaderName );
-				return retval;
+				return ProxyType.IDENTITY;
 			}
 		} 
 		catch (ClassNotFoundException e) 
 		{
 			// Otherwise, we need to proxy it.
 		}
-		catch (ClassCastException e)
-		{
-			// Obviously a different class loader.
-		}
 		
-		if( target.getClass().isEnum() )
+		if( targetClass.isEnum() )
 		{
 			/* Special case: proxying for an enum.
 			 * We need to have an enum of the same name locally, and use the value
@@ -202,38 +260,32 @@ public class GenericObjectInvocationHandler extends Object implements
 			 */
 			try 
 			{
-				Class<?> clazz = targetClassLoader.loadClass( target.getClass().getName() );
+				Class<?> clazz = targetClassLoader.loadClass( targetClass.getName() );
 				if( !clazz.isEnum() )
 				{
-					this.logger.error( "Target class: " + clazz.getName() + " is not an enum, but original class: " + target.getClass().getName() + " is. Returning original object. This will probably cause a ClassCastException." );
-					return target;
+					this.logger.error( "Target class: " + clazz.getName() + " is not an enum, but original class: " + targetClass.getName() + " is. Returning original object. This will probably cause a ClassCastException." );
+					return ProxyType.IDENTITY;
 				}
 				
-				Class<Enum> enumClass = (Class<Enum>)clazz;
-				
-				// So when we get to here, we have an enum class to target. Now we just need to get the value.
-				if( target instanceof Enum )
-				{
-					Enum<?> e = (Enum<?>)target;
-					return Enum.valueOf( enumClass, e.name() );
-				}
+				// So when we get to here, we have an enum class to target. The value is resolved by name for each object.
+				return new ProxyType( (Class<Enum>)clazz );
 			} 
 			catch (ClassNotFoundException e) 
 			{
-				this.logger.error( "Target class for enum " + target.getClass().getName() + " not found... Returning original object. This will probably cause a ClassCastException." );
-				return target;
+				this.logger.error( "Target class for enum " + targetClass.getName() + " not found... Returning original object. This will probably cause a ClassCastException." );
+				return ProxyType.IDENTITY;
 			}
 		}
 		
-		if( target.getClass().isArray() )
+		if( targetClass.isArray() )
 		{
 			throw new UnsupportedOperationException( "No array proxy yet" );
 		}
 		
 		// All other methods failed. We need to build a proxy to access this object.
-		this.logger.debug( "Couldn't resolve " + target.getClass().getName() + " to a local class. Going to build a proxy" );
+		this.logger.debug( "Couldn't resolve " + targetClass.getName() + " to a local class. Going to build a proxy" );
 				
-		List<Class<?>> targetInterfaces = buildInterfaceList( target.getClass() );
+		List<Class<?>> targetInterfaces = buildInterfaceList( targetClass );
 		List<Class<?>> proxyInterfaces = new Vector<Class<?>>();
 		
 		for( Class<?> clazz : targetInterfaces )
@@ -251,16 +303,25 @@ public class GenericObjectInvocationHandler extends Object implements
 		
 		if( proxyInterfaces.size() > 0 )
 		{
-			this.logger.debug( "Auto-proxying for type " + target.getClass().getName() + ". " + proxyInterfaces.size() + " matching interfaces." );
+			this.logger.debug( "Auto-proxying for type " + targetClass.getName() + ". " + proxyInterfaces.size() + " matching interfaces." );
 			
-			// We got at least 1 interface on the class that can be proxied. Auto-proxy it.
-			return Proxy.newProxyInstance( this.getClass().getClassLoader(), proxyInterfaces.toArray(new Class<?>[]{}), new GenericObjectInvocationHandler( target ) );
+			// We got at least 1 interface on the class that can be proxied. Generate the proxy class once, 
+			// so each object only needs a new instance of it.
+			Class<?> proxyClass = Proxy.getProxyClass( this.getClass().getClassLoader(), proxyInterfaces.toArray(new Class<?>[]{}) );
+			try
+			{
+				return new ProxyType( proxyClass.getConstructor( InvocationHandler.class ) );
+			}
+			catch( NoSuchMethodException e )
+			{
+				throw new IllegalStateException( "Generated proxy class for type " + targetClass.getName() + " has no invocation handler constructor", e );
+			}
 		}
 		else
 		{
-			this.logger.debug( "Not auto-proxying for type " + target.getClass().getName() );
+			this.logger.debug( "Not auto-proxying for type " + targetClass.getName() );
 			
-			return target;
+			return ProxyType.IDENTITY;
 		}
 	}
 	
@@ -306,4 +367,117 @@ public class GenericObjectInvocationHandler extends Object implements
 		}
 	}
 	
+	/**
+	 * How objects of a particular class are auto proxied.
+	 */
+	private static class ProxyType
+	{
+		enum Kind { IDENTITY, ENUM, PROXY }
+		
+		static final ProxyType IDENTITY = new ProxyType( Kind.IDENTITY, null, null );
+		
+		final Kind kind;
+		final Class<Enum> enumClass;
+		final Constructor<?> proxyConstructor;
+		
+		ProxyType( Class<Enum> enumClass )
+		{
+			this( Kind.ENUM, enumClass, null );
+		}
+		
+		ProxyType( Constructor<?> proxyConstructor )
+		{
+			this( Kind.PROXY, null, proxyConstructor );
+		}
+		
+		private ProxyType( Kind kind, Class<Enum> enumClass, Constructor<?> proxyConstructor )
+		{
+			this.kind = kind;
+			this.enumClass = enumClass;
+			this.proxyConstructor = proxyConstructor;
+		}
+	}
+	
+	/**
+	 * Resolved target methods and proxy types, shared by a handler and all the handlers created
+	 * for the objects it returns. The cache lives as long as the handlers using it, so it never
+	 * holds on to the classes of an SPEP that has been replaced.
+	 */
+	private static class ProxyCache
+	{
+		private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Method>> targetMethods = new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, Method>>();
+		private final ConcurrentMap<ClassLoader, ConcurrentMap<Class<?>, ProxyType>> proxyTypes = new ConcurrentHashMap<ClassLoader, ConcurrentMap<Class<?>, ProxyType>>();
+		
+		/**
+		 * Resolves the method of the target class with the same name and parameter types as a local method.
+		 * @param method The local method being invoked.
+		 * @param targetClass The class of the target object.
+		 * @return The method to invoke on the target object.
+		 * @throws ClassNotFoundException If a parameter type can't be loaded by the class loader of the target class.
+		 * @throws NoSuchMethodException If the target class has no matching method.
+		 */
+		Method getTargetMethod( Method method, Class<?> targetClass ) throws ClassNotFoundException, NoSuchMethodException
+		{
+			ConcurrentMap<Method, Method> methods = this.targetMethods.get( targetClass );
+			if( methods == null )
+			{
+				methods = new ConcurrentHashMap<Method, Method>();
+				ConcurrentMap<Method, Method> existing = this.targetMethods.putIfAbsent( targetClass, methods );
+				if( existing != null )
+				{
+					methods = existing;
+				}
+			}
+			
+			Method targetMethod = methods.get( method );
+			if( targetMethod == null )
+			{
+				ClassLoader remoteClassLoader = targetClass.getClassLoader();
+				if( remoteClassLoader == null )
+				{
+					remoteClassLoader = ClassLoader.getSystemClassLoader();
+				}
+				
+				// Build list of the parameters expected on the remote side so we can resolve the method.
+				Class<?>[] localParameters = method.getParameterTypes();
+				Class<?>[] parameters = new Class<?>[ localParameters.length ];
+				for( int i=0; i<localParameters.length; ++i )
+				{
+					parameters[i] = remoteClassLoader.loadClass( localParameters[i].getName() );
+				}
+				
+				targetMethod = targetClass.getMethod( method.getName(), parameters );
+				methods.put( method, targetMethod );
+			}
+			
+			return targetMethod;
+		}
+		
+		ProxyType getProxyType( Class<?> targetClass, ClassLoader targetClassLoader )
+		{
+			ConcurrentMap<Class<?>, ProxyType> types = this.proxyTypes.get( targetClassLoader );
+			if( types == null )
+			{
+				return null;
+			}
+			
+			return types.get( targetClass );
+		}
+		
+		void putProxyType( Class<?> targetClass, ClassLoader targetClassLoader, ProxyType proxyType )
+		{
+			ConcurrentMap<Class<?>, ProxyType> types = this.proxyTypes.get( targetClassLoader );
+			if( types == null )
+			{
+				types = new ConcurrentHashMap<Class<?>, ProxyType>();
+				ConcurrentMap<Class<?>, ProxyType> existing = this.proxyTypes.putIfAbsent( targetClassLoader, types );
+				if( existing != null )
+				{
+					types = existing;
+				}
+			}
+			
+			types.put( targetClass, proxyType );
+		}
+	}
 }
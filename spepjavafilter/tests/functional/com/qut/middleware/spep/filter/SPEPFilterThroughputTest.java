@@ -0,0 +1,279 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Measures SPEPFilter throughput for permitted requests as the number of request threads increases
+ */
+package com.qut.middleware.spep.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.junit.Test;
+
+import com.qut.middleware.spep.SPEPProxy;
+import com.qut.middleware.spep.sessions.PrincipalSession;
+
+@SuppressWarnings("nls")
+public class SPEPFilterThroughputTest
+{
+	private final int REQUESTS = 20000;
+
+	private String spepContextName = "/spep";
+	private String spepTokenName = "spep-session";
+	private String sessionID = "_9587198273948qoierjoiqwjeroiuqwer-uqopwiejfiajsdlkgalskjfdalsdfj";
+
+	/*
+	 * Every thread sends permitted requests for an established session through a single filter instance. With no
+	 * global lock on the request path, throughput should grow with the number of threads up to the number of
+	 * available processors.
+	 */
+	@Test
+	public void testThroughput() throws Exception
+	{
+		SPEPFilter filter = this.createFilter();
+
+		// Warm up every thread count, so no measurement includes class loading and compilation that later ones don't
+		for (int threadCount = 1; threadCount <= 8; threadCount *= 2)
+			this.run(filter, threadCount, this.REQUESTS);
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		if (processors == 1)
+			System.out.println("SPEPFilter throughput measured on a single processor, figures show contention only and not scaling");
+
+		long singleThreadRate = 0;
+		for (int threadCount = 1; threadCount <= 8; threadCount *= 2)
+		{
+			long elapsed = this.run(filter, threadCount, this.REQUESTS);
+			long rate = (threadCount * (long)this.REQUESTS * 1000000000L) / Math.max(elapsed, 1);
+			if (threadCount == 1)
+				singleThreadRate = rate;
+
+			System.out.println("SPEPFilter with " + threadCount + " threads: " + rate + " requests/second, " + (rate * 100 / Math.max(singleThreadRate, 1)) + "% of single threaded throughput (" + processors + " processors)");
+		}
+	}
+
+	/* Sends count requests through the filter on each of threadCount threads, returning the elapsed time in nanoseconds */
+	private long run(final SPEPFilter filter, int threadCount, final int count) throws Exception
+	{
+		final HttpServletRequest request = this.createRequest();
+		final HttpServletResponse response = stub(HttpServletResponse.class, new HashMap<String, Object>());
+		final AtomicLong permitted = new AtomicLong();
+		final FilterChain chain = new FilterChain()
+		{
+			public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse)
+			{
+				permitted.incrementAndGet();
+			}
+		};
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicLong failures = new AtomicLong();
+		Thread[] threads = new Thread[threadCount];
+
+		for (int i = 0; i < threadCount; i++)
+		{
+			threads[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+
+						for (int j = 0; j < count; j++)
+						{
+							filter.doFilter(request, response, chain);
+						}
+					}
+					catch (Exception e)
+					{
+						e.printStackTrace();
+						failures.incrementAndGet();
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+
+		assertEquals(0, failures.get());
+		assertEquals("Every request should have been permitted", threadCount * (long)count, permitted.get());
+
+		return elapsed;
+	}
+
+	private SPEPFilter createFilter() throws Exception
+	{
+		Map<String, Object> spepContextValues = new HashMap<String, Object>();
+		spepContextValues.put("getAttribute", new PermittingSPEP());
+		ServletContext spepContext = stub(ServletContext.class, spepContextValues);
+
+		Map<String, Object> servletContextValues = new HashMap<String, Object>();
+		servletContextValues.put("getContext", spepContext);
+		ServletContext servletContext = stub(ServletContext.class, servletContextValues);
+
+		Map<String, Object> filterConfigValues = new HashMap<String, Object>();
+		filterConfigValues.put("getInitParameter", this.spepContextName);
+		filterConfigValues.put("getServletContext", servletContext);
+
+		SPEPFilter filter = new SPEPFilter();
+		filter.init(stub(FilterConfig.class, filterConfigValues));
+
+		return filter;
+	}
+
+	private HttpServletRequest createRequest()
+	{
+		// The attributes are already in the session, as they are after the first request of a session
+		Map<String, Object> sessionValues = new HashMap<String, Object>();
+		sessionValues.put("getAttribute", new HashMap<String, List<Object>>());
+		HttpSession session = stub(HttpSession.class, sessionValues);
+
+		Map<String, Object> requestValues = new HashMap<String, Object>();
+		requestValues.put("getCookies", new Cookie[] { new Cookie(this.spepTokenName, this.sessionID), new Cookie("JSESSIONID", "1234") });
+		requestValues.put("getRequestURI", "/secure/reports/index.jsp");
+		requestValues.put("getSession", session);
+
+		return stub(HttpServletRequest.class, requestValues);
+	}
+
+	/*
+	 * Creates an implementation of an interface which returns the given value for each method name, and null for any
+	 * other method. Stubs share no state, so may be used concurrently.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T stub(Class<T> type, final Map<String, Object> values)
+	{
+		return (T)Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler()
+		{
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				if (method.getName().equals("hashCode"))
+					return Integer.valueOf(System.identityHashCode(proxy));
+				if (method.getName().equals("equals"))
+					return Boolean.valueOf(proxy == args[0]);
+
+				return values.get(method.getName());
+			}
+		});
+	}
+
+	/* SPEP holding a single valid session and permitting every request */
+	public class PermittingSPEP implements SPEPProxy
+	{
+		private PrincipalSession principalSession = stub(PrincipalSession.class, new HashMap<String, Object>());
+
+		public boolean isStarted()
+		{
+			return true;
+		}
+
+		public String getEsoeGlobalTokenName()
+		{
+			return "_saml_idp";
+		}
+
+		public PrincipalSession verifySession(String sessionID)
+		{
+			return SPEPFilterThroughputTest.this.sessionID.equals(sessionID) ? this.principalSession : null;
+		}
+
+		public decision makeAuthzDecision(String sessionID, String resource)
+		{
+			return decision.permit;
+		}
+
+		public decision makeAuthzDecision(String sessionID, String resource, String action)
+		{
+			return decision.permit;
+		}
+
+		public Map<String, decision> makeAuthzDecisions(String sessionID, List<String> resources, String action)
+		{
+			Map<String, decision> decisions = new HashMap<String, decision>();
+			for (String resource : resources)
+				decisions.put(resource, decision.permit);
+			return decisions;
+		}
+
+		public List<Cookie> getLogoutClearCookies()
+		{
+			return null;
+		}
+
+		public boolean isLazyInit()
+		{
+			return false;
+		}
+
+		public List<String> getLazyInitResources()
+		{
+			return null;
+		}
+
+		public defaultAction getLazyInitDefaultAction()
+		{
+			return defaultAction.deny;
+		}
+
+		public String getTokenName()
+		{
+			return SPEPFilterThroughputTest.this.spepTokenName;
+		}
+
+		public String getServiceHost()
+		{
+			return "http://spep.imaginarycorp.com";
+		}
+
+		public String getSsoRedirect()
+		{
+			return "/spep/sso?rd={0}";
+		}
+
+		public String getDefaultUrl()
+		{
+			return "/";
+		}
+	}
+}
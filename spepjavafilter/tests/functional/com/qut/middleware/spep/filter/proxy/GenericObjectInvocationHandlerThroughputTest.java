@@ -0,0 +1,232 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Measures the overhead of calling the SPEP through the cross class loader proxy used by the filter
+ */
+package com.qut.middleware.spep.filter.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.qut.middleware.spep.SPEPProxy;
+import com.qut.middleware.spep.SPEPProxy.decision;
+import com.qut.middleware.spep.sessions.PrincipalSession;
+
+@SuppressWarnings("nls")
+public class GenericObjectInvocationHandlerThroughputTest
+{
+	private final int ITERATIONS = 200000;
+
+	private static final String SESSION_ID = "_9587198273948qoierjoiqwjeroiuqwer-uqopwiejfiajsdlkgalskjfdalsdfj";
+
+	private SPEPProxy direct;
+	private SPEPProxy proxied;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.direct = new RemoteSPEP();
+
+		/*
+		 * As in a servlet container, the SPEP classes are loaded by a class loader of their own, so every object
+		 * returned from it has to be proxied or mapped to a local type.
+		 */
+		ClassLoader remoteClassLoader = new URLClassLoader(classPath(), null);
+		Object spepObject = remoteClassLoader.loadClass(RemoteSPEP.class.getName()).newInstance();
+		assertTrue(!(spepObject instanceof SPEPProxy));
+
+		this.proxied = (SPEPProxy)Proxy.newProxyInstance(SPEPProxy.class.getClassLoader(), new Class<?>[] { SPEPProxy.class }, new GenericObjectInvocationHandler(spepObject));
+	}
+
+	@Test
+	public void testProxiedResults() throws Exception
+	{
+		PrincipalSession principalSession = this.proxied.verifySession(SESSION_ID);
+		assertNotNull(principalSession);
+		assertEquals("_esoe-session", principalSession.getEsoeSessionID());
+
+		assertNull(this.proxied.verifySession("unknown"));
+		assertEquals(decision.permit, this.proxied.makeAuthzDecision(SESSION_ID, "/secure/index.jsp"));
+		assertEquals(decision.deny, this.proxied.makeAuthzDecision(SESSION_ID, "/secure/index.jsp", "delete"));
+
+		// Enums inside a returned map are left as constants of the remote enum, so the filter resolves them by name
+		List<String> resources = new ArrayList<String>();
+		resources.add("/secure/index.jsp");
+		Map<String, ?> decisions = this.proxied.makeAuthzDecisions(SESSION_ID, resources, "delete");
+		Object remoteDecision = decisions.get("/secure/index.jsp");
+		assertTrue(!(remoteDecision instanceof decision));
+		assertEquals(decision.deny, decision.valueOf(((Enum<?>)remoteDecision).name()));
+	}
+
+	/*
+	 * Compares calls made directly on the SPEP with those made through the proxy. The calls through the proxy
+	 * include creating a proxy for each returned session, and mapping each returned decision to the local enum.
+	 */
+	@Test
+	public void testBenchmark() throws Exception
+	{
+		long direct = this.time(this.direct);
+		long proxied = this.time(this.proxied);
+
+		System.out.println("verifySession and makeAuthzDecision called directly: " + direct + " ns per request, through the proxy: " + proxied + " ns per request");
+	}
+
+	private long time(SPEPProxy spep)
+	{
+		// warm up
+		this.call(spep, this.ITERATIONS);
+
+		long begin = System.nanoTime();
+		this.call(spep, this.ITERATIONS);
+
+		return (System.nanoTime() - begin) / this.ITERATIONS;
+	}
+
+	private void call(SPEPProxy spep, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			PrincipalSession principalSession = spep.verifySession(SESSION_ID);
+			assertNotNull(principalSession.getEsoeSessionID());
+			assertEquals(decision.permit, spep.makeAuthzDecision(SESSION_ID, "/secure/index.jsp"));
+		}
+	}
+
+	private static URL[] classPath() throws Exception
+	{
+		String[] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+		URL[] urls = new URL[entries.length];
+		for (int i = 0; i < entries.length; i++)
+		{
+			urls[i] = new File(entries[i]).toURI().toURL();
+		}
+
+		return urls;
+	}
+
+	/* SPEP holding a single valid session, permitting reads of every resource */
+	public static class RemoteSPEP implements SPEPProxy
+	{
+		private PrincipalSession principalSession;
+
+		public RemoteSPEP()
+		{
+			final Map<String, Object> values = new HashMap<String, Object>();
+			values.put("getEsoeSessionID", "_esoe-session");
+			values.put("getAttributes", new HashMap<String, List<Object>>());
+
+			this.principalSession = (PrincipalSession)Proxy.newProxyInstance(PrincipalSession.class.getClassLoader(), new Class<?>[] { PrincipalSession.class }, new InvocationHandler()
+			{
+				public Object invoke(Object proxy, Method method, Object[] args)
+				{
+					return values.get(method.getName());
+				}
+			});
+		}
+
+		public boolean isStarted()
+		{
+			return true;
+		}
+
+		public String getEsoeGlobalTokenName()
+		{
+			return "_saml_idp";
+		}
+
+		public PrincipalSession verifySession(String sessionID)
+		{
+			return SESSION_ID.equals(sessionID) ? this.principalSession : null;
+		}
+
+		public decision makeAuthzDecision(String sessionID, String resource)
+		{
+			return decision.permit;
+		}
+
+		public decision makeAuthzDecision(String sessionID, String resource, String action)
+		{
+			return action == null || action.equals("read") ? decision.permit : decision.deny;
+		}
+
+		public Map<String, decision> makeAuthzDecisions(String sessionID, List<String> resources, String action)
+		{
+			Map<String, decision> decisions = new HashMap<String, decision>();
+			for (String resource : resources)
+				decisions.put(resource, this.makeAuthzDecision(sessionID, resource, action));
+			return decisions;
+		}
+
+		public List<Cookie> getLogoutClearCookies()
+		{
+			return new ArrayList<Cookie>();
+		}
+
+		public boolean isLazyInit()
+		{
+			return false;
+		}
+
+		public List<String> getLazyInitResources()
+		{
+			return null;
+		}
+
+		public defaultAction getLazyInitDefaultAction()
+		{
+			return defaultAction.deny;
+		}
+
+		public String getTokenName()
+		{
+			return "spep-session";
+		}
+
+		public String getServiceHost()
+		{
+			return "http://spep.imaginarycorp.com";
+		}
+
+		public String getSsoRedirect()
+		{
+			return "/spep/sso?rd={0}";
+		}
+
+		public String getDefaultUrl()
+		{
+			return "/";
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Tests deciding further resources for the session of a permitted request
+ */
+package com.qut.middleware.spep.filter;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isNull;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.qut.middleware.spep.SPEPProxy;
+import com.qut.middleware.spep.pep.PolicyEnforcementProcessor;
+
+@SuppressWarnings("nls")
+public class AuthzDeciderTest
+{
+	private String sessionID = "_9587198273948qoierjoiqwjeroiuqwer-uqopwiejfiajsdlkgalskjfdalsdfj";
+	private List<String> resources;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		this.resources = new ArrayList<String>();
+		this.resources.add("/secure/index.jsp");
+		this.resources.add("/secure/admin.jsp");
+		this.resources.add("/secure/reports.jsp");
+	}
+
+	/**
+	 * Test method for {@link com.qut.middleware.spep.filter.AuthzDecider#makeAuthzDecisions(java.util.List)}.
+	 */
+	@Test
+	public void testMakeAuthzDecisions()
+	{
+		Map<String, SPEPProxy.decision> spepDecisions = new HashMap<String, SPEPProxy.decision>();
+		spepDecisions.put("/secure/index.jsp", SPEPProxy.decision.permit);
+		spepDecisions.put("/secure/admin.jsp", SPEPProxy.decision.deny);
+		spepDecisions.put("/secure/reports.jsp", SPEPProxy.decision.error);
+
+		SPEPProxy spep = createMock(SPEPProxy.class);
+		expect(spep.makeAuthzDecisions(eq(this.sessionID), eq(this.resources), (String) isNull())).andReturn(spepDecisions).once();
+		replay(spep);
+
+		AuthzDecider decider = new AuthzDecider(spep, this.sessionID);
+		Map<String, SPEPProxy.decision> decisions = decider.makeAuthzDecisions(this.resources);
+
+		assertEquals(this.sessionID, decider.getSessionID());
+		assertEquals(3, decisions.size());
+		assertEquals(SPEPProxy.decision.permit, decisions.get("/secure/index.jsp"));
+		assertEquals(SPEPProxy.decision.deny, decisions.get("/secure/admin.jsp"));
+		assertEquals(SPEPProxy.decision.error, decisions.get("/secure/reports.jsp"));
+
+		verify(spep);
+	}
+
+	/**
+	 * Decisions returned through the SPEP proxy are constants of an enum of the same name in another class loader.
+	 * Another enum with the same constants stands in for it here.
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testMakeAuthzDecisionsForeignEnum()
+	{
+		Map spepDecisions = new HashMap<String, PolicyEnforcementProcessor.decision>();
+		spepDecisions.put("/secure/index.jsp", PolicyEnforcementProcessor.decision.permit);
+		spepDecisions.put("/secure/admin.jsp", PolicyEnforcementProcessor.decision.deny);
+		spepDecisions.put("/secure/reports.jsp", PolicyEnforcementProcessor.decision.notcached);
+
+		SPEPProxy spep = createMock(SPEPProxy.class);
+		expect(spep.makeAuthzDecisions(eq(this.sessionID), eq(this.resources), eq("write"))).andReturn(spepDecisions).once();
+		replay(spep);
+
+		AuthzDecider decider = new AuthzDecider(spep, this.sessionID);
+		Map<String, SPEPProxy.decision> decisions = decider.makeAuthzDecisions(this.resources, "write");
+
+		assertEquals(3, decisions.size());
+		assertEquals(SPEPProxy.decision.permit, decisions.get("/secure/index.jsp"));
+		assertEquals(SPEPProxy.decision.deny, decisions.get("/secure/admin.jsp"));
+		assertEquals(SPEPProxy.decision.notcached, decisions.get("/secure/reports.jsp"));
+
+		verify(spep);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2006, Queensland University of Technology
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * Author:
+ * Creation Date: 17/10/2026
+ *
+ * Purpose: Tests matching of requested resources against compiled lazy init resource expressions
+ */
+package com.qut.middleware.spep.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class LazyInitMatcherTest
+{
+	private String[] expressions = new String[] { "/secure/.*", "/admin/index.jsp", "^/reports/[0-9]+\\.pdf", "/a+b/.*", "/opt?ional/.*", "/ex\\.act", "/(one|two)/.*", ".*\\.do", "/(?i)mixed/.*", "/([a-z])\\1/.*", "/x{2}/.*", "/\\Qquoted.\\E/.*" };
+
+	private String[] resources = new String[] { "/secure/index.jsp", "/secure", "/secured/a", "/admin/index.jsp", "/admin/index.jspx", "/reports/12.pdf", "/reports/x.pdf", "/ab/a", "/aab/a", "/b/a", "/opional/a", "/optional/a", "/exact", "/ex.act", "/one/a", "/three/a", "/login.do", "/images/logo.png", "/mixed/a", "/MIXED/a", "/aa/b", "/ab/b", "/xx/a", "/x/a", "/quoted./a", "/quotedX/a", "", "/" };
+
+	/*
+	 * Every resource must match if and only if it matches one of the expressions with String.matches.
+	 */
+	@Test
+	public void testEquivalence()
+	{
+		LazyInitMatcher matcher = new LazyInitMatcher(Arrays.asList(this.expressions));
+
+		for (String resource : this.resources)
+		{
+			assertEquals("Match differs for " + resource, matchesAny(Arrays.asList(this.expressions), resource), matcher.matches(resource));
+		}
+
+		// and for each expression alone, which exercises the prefix checks without other expressions present
+		for (String expression : this.expressions)
+		{
+			List<String> single = new ArrayList<String>();
+			single.add(expression);
+			LazyInitMatcher singleMatcher = new LazyInitMatcher(single);
+
+			for (String resource : this.resources)
+			{
+				assertEquals("Match differs for " + resource + " against " + expression, resource.matches(expression), singleMatcher.matches(resource));
+			}
+		}
+	}
+
+	@Test
+	public void testLiteralPrefix()
+	{
+		assertEquals("/secure/", LazyInitMatcher.literalPrefix("/secure/.*"));
+		assertEquals("/reports/", LazyInitMatcher.literalPrefix("^/reports/[0-9]+\\.pdf"));
+		assertEquals("/a", LazyInitMatcher.literalPrefix("/a+b/.*"));
+		assertEquals("/op", LazyInitMatcher.literalPrefix("/opt?ional/.*"));
+		assertEquals("/", LazyInitMatcher.literalPrefix("/x{2}/.*"));
+		assertEquals("/ex.act", LazyInitMatcher.literalPrefix("/ex\\.act"));
+		assertEquals("", LazyInitMatcher.literalPrefix("/(one|two)/.*"));
+		assertEquals("", LazyInitMatcher.literalPrefix(".*\\.do"));
+		assertEquals("/", LazyInitMatcher.literalPrefix("/\\Qquoted.\\E/.*"));
+	}
+
+	@Test
+	public void testNoExpressions()
+	{
+		assertFalse(new LazyInitMatcher(null).matches("/secure/index.jsp"));
+		assertFalse(new LazyInitMatcher(new ArrayList<String>()).matches("/secure/index.jsp"));
+	}
+
+	@Test
+	public void testIsFor()
+	{
+		List<String> expressions = Arrays.asList(this.expressions);
+		LazyInitMatcher matcher = new LazyInitMatcher(expressions);
+
+		assertTrue(matcher.isFor(expressions));
+		assertFalse(matcher.isFor(new ArrayList<String>(expressions)));
+	}
+
+	@Test(expected = PatternSyntaxException.class)
+	public void testInvalidExpression()
+	{
+		new LazyInitMatcher(Arrays.asList(new String[] { "/secure/[" }));
+	}
+
+	private static boolean matchesAny(List<String> expressions, String resource)
+	{
+		for (String expression : expressions)
+		{
+			if (resource.matches(expression))
+				return true;
+		}
+
+		return false;
+	}
+}
@@ -512,6 +512,9 @@ public class SPEPFilterTest
 		
 		FilterChain chain = createMock( FilterChain.class );
 		
+		request.setAttribute( eq( SPEPFilter.AUTHZ_DECIDER ), notNull() );
+		expectLastCall().once();
+		
 		chain.doFilter( eq( request ), eq( response ) );
 		expectLastCall().once();
 		
@@ -616,6 +619,9 @@ public class SPEPFilterTest
 		
 		FilterChain chain = createMock( FilterChain.class );
 		
+		request.setAttribute( eq( SPEPFilter.AUTHZ_DECIDER ), notNull() );
+		expectLastCall().once();
+		
 		chain.doFilter( eq( request ), eq( response ) );
 		expectLastCall().once();
 		